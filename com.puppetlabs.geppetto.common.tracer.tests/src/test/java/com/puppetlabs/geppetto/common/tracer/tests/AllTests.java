@@ -0,0 +1,18 @@
+package com.puppetlabs.geppetto.common.tracer.tests;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * All Tracer Tests.
+ */
+@SuiteClasses({
+// @fmtOff
+	HistogramTest.class,
+	MetricsTest.class
+// @fmtOn
+})
+@RunWith(Suite.class)
+public class AllTests {
+}
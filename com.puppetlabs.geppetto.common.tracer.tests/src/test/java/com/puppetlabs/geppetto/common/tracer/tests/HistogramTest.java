@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.common.tracer.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.puppetlabs.geppetto.common.tracer.Histogram;
+import com.puppetlabs.geppetto.common.tracer.Metrics;
+import org.junit.Test;
+
+/**
+ * Unit tests for Histogram.
+ */
+public class HistogramTest {
+	/**
+	 * Returns the highest value of the bucket that the given value is counted in. The value is recorded together with
+	 * a larger value, so that the median is the highest value of its bucket rather than the max.
+	 */
+	private static long highestValueInBucketOf(long value) {
+		Histogram histogram = new Metrics().histogram("h");
+		histogram.record(value);
+		histogram.record(Long.MAX_VALUE);
+		return histogram.getValueAtPercentile(50);
+	}
+
+	@Test
+	public void bucketOfLargestValue() {
+		// the last bucket must not overflow
+		assertEquals(Long.MAX_VALUE, highestValueInBucketOf(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, highestValueInBucketOf(Long.MAX_VALUE - 1));
+		assertEquals(Long.MAX_VALUE, highestValueInBucketOf(15L << 59));
+		assertEquals((15L << 59) - 1, highestValueInBucketOf((15L << 59) - 1));
+	}
+
+	@Test
+	public void bucketsAreExactBelowSixteen() {
+		for(long value = 0; value <= 15; ++value)
+			assertEquals(value, highestValueInBucketOf(value));
+	}
+
+	@Test
+	public void bucketsAtPowersOfTwo() {
+		// from 16 to 31 the buckets are two wide
+		assertEquals(17, highestValueInBucketOf(16));
+		assertEquals(17, highestValueInBucketOf(17));
+		assertEquals(19, highestValueInBucketOf(18));
+		assertEquals(31, highestValueInBucketOf(30));
+		assertEquals(31, highestValueInBucketOf(31));
+
+		// from 32 to 63 the buckets are four wide
+		assertEquals(35, highestValueInBucketOf(32));
+		assertEquals(35, highestValueInBucketOf(35));
+		assertEquals(39, highestValueInBucketOf(36));
+		assertEquals(63, highestValueInBucketOf(60));
+		assertEquals(71, highestValueInBucketOf(64));
+	}
+
+	@Test
+	public void bucketsAreWithinPrecision() {
+		for(long value = 16; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			long highest = highestValueInBucketOf(value);
+			assertTrue(value + " <= " + highest, value <= highest);
+			assertTrue(highest + " within 12.5% of " + value, highest - value <= value / 8);
+		}
+	}
+
+	@Test
+	public void emptyHistogram() {
+		Histogram histogram = new Metrics().histogram("h");
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0.0, histogram.getMean(), 0.0);
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(0, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void exactStatistics() {
+		Histogram histogram = new Metrics().histogram("h");
+		histogram.record(1);
+		histogram.record(2);
+		histogram.record(1000);
+		histogram.record(-5);
+		assertEquals(4, histogram.getCount());
+		assertEquals(1003, histogram.getSum());
+		assertEquals(0, histogram.getMin());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(250.75, histogram.getMean(), 0.0);
+	}
+
+	@Test
+	public void percentileBounds() {
+		Histogram histogram = new Metrics().histogram("h");
+		for(long value = 1; value <= 100; ++value)
+			histogram.record(value);
+
+		// the lowest percentiles are in the bucket of the smallest value
+		assertEquals(1, histogram.getValueAtPercentile(0));
+		assertEquals(1, histogram.getValueAtPercentile(-10));
+		assertEquals(1, histogram.getValueAtPercentile(1));
+
+		// the highest percentiles never exceed the max
+		assertEquals(100, histogram.getValueAtPercentile(100));
+		assertEquals(100, histogram.getValueAtPercentile(200));
+		assertEquals(100, histogram.getValueAtPercentile(99.5));
+
+		// the value at a percentile is in the bucket of the recorded value at that rank
+		assertEquals(15, histogram.getValueAtPercentile(15));
+		assertEquals(17, histogram.getValueAtPercentile(16));
+		assertEquals(51, histogram.getValueAtPercentile(50));
+		assertEquals(95, histogram.getValueAtPercentile(90));
+		assertEquals(100, histogram.getValueAtPercentile(99));
+		for(int percentile = 1; percentile <= 100; ++percentile) {
+			long value = histogram.getValueAtPercentile(percentile);
+			assertTrue("p" + percentile + " = " + value, value >= percentile && value - percentile <= percentile / 8);
+		}
+	}
+
+	@Test
+	public void reset() {
+		Metrics metrics = new Metrics();
+		Histogram histogram = metrics.histogram("h");
+		histogram.record(10);
+		metrics.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getSum());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		histogram.record(3);
+		assertEquals(3, histogram.getMin());
+		assertEquals(3, histogram.getMax());
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.common.tracer.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import com.puppetlabs.geppetto.common.tracer.Histogram;
+import com.puppetlabs.geppetto.common.tracer.Metrics;
+import com.puppetlabs.geppetto.common.tracer.Timer;
+import org.junit.Test;
+
+/**
+ * Unit tests for Metrics.
+ */
+public class MetricsTest {
+	private static String toJSON(Metrics metrics) throws IOException {
+		StringBuilder bld = new StringBuilder();
+		metrics.writeJSON(bld);
+		return bld.toString();
+	}
+
+	@Test
+	public void enabled() {
+		Metrics metrics = new Metrics();
+		assertEquals(Boolean.getBoolean(Metrics.METRICS_PROPERTY), metrics.isEnabled());
+		metrics.setEnabled(true);
+		assertTrue(metrics.isEnabled());
+		metrics.setEnabled(false);
+		assertFalse(metrics.isEnabled());
+	}
+
+	@Test
+	public void instrumentsAreCreatedOnce() {
+		Metrics metrics = new Metrics();
+		assertSame(metrics.counter("a"), metrics.counter("a"));
+		assertSame(metrics.histogram("a"), metrics.histogram("a"));
+		assertSame(metrics.timer("a"), metrics.timer("a"));
+	}
+
+	@Test
+	public void writeJSON() throws IOException {
+		Metrics metrics = new Metrics();
+		metrics.counter("b.count").add(12);
+		metrics.counter("a.count").increment();
+		metrics.counter("unused");
+
+		Histogram histogram = metrics.histogram("matches");
+		histogram.record(1);
+		histogram.record(2);
+		histogram.record(4);
+		metrics.histogram("empty");
+
+		Timer timer = metrics.timer("link");
+		timer.record(1000000);
+		timer.record(250000);
+		timer.record(3000000);
+
+		assertEquals("{\n" + //
+				"  \"counters\": {\n" + //
+				"    \"a.count\": 1,\n" + //
+				"    \"b.count\": 12\n" + //
+				"  },\n" + //
+				"  \"histograms\": {\n" + //
+				"    \"matches\": { \"count\": 3, \"sum\": 7, \"min\": 1, \"mean\": 2.333, \"p50\": 2, \"p90\": 4, \"p99\": 4, \"max\": 4 }\n" + //
+				"  },\n" + //
+				"  \"timers\": {\n" + //
+				"    \"link\": { \"count\": 3, \"totalMs\": 4.250, \"meanMs\": 1.417, \"p50Ms\": 1.049, \"p90Ms\": 3.000, \"p99Ms\": 3.000, \"maxMs\": 3.000 }\n" + //
+				"  }\n" + //
+				"}\n", toJSON(metrics));
+	}
+
+	@Test
+	public void writeJSONEscapesNames() throws IOException {
+		Metrics metrics = new Metrics();
+		metrics.counter("quote\"backslash\\tab\t").increment();
+		assertEquals("{\n" + //
+				"  \"counters\": {\n" + //
+				"    \"quote\\\"backslash\\\\tab\\u0009\": 1\n" + //
+				"  },\n" + //
+				"  \"histograms\": {\n" + //
+				"  },\n" + //
+				"  \"timers\": {\n" + //
+				"  }\n" + //
+				"}\n", toJSON(metrics));
+	}
+
+	@Test
+	public void writeJSONAfterReset() throws IOException {
+		Metrics metrics = new Metrics();
+		metrics.counter("c").increment();
+		metrics.histogram("h").record(3);
+		metrics.timer("t").record(5);
+		metrics.reset();
+		assertEquals("{\n" + //
+				"  \"counters\": {\n" + //
+				"  },\n" + //
+				"  \"histograms\": {\n" + //
+				"  },\n" + //
+				"  \"timers\": {\n" + //
+				"  }\n" + //
+				"}\n", toJSON(metrics));
+	}
+}
@@ -49,7 +49,9 @@ public abstract class AbstractTracer implements ITracer {
 	}
 
 	/**
-	 * Method used for injection. Should normally not be called explicitly
+	 * Method used for injection. Should normally not be called explicitly. Tracing is enabled when the option is set in
+	 * debug mode, or when a system property with the same name as the option is set to <code>true</code> (which also
+	 * works when running standalone).
 	 * 
 	 * @param provider
 	 * @param bundleAccess
@@ -57,7 +59,8 @@ public abstract class AbstractTracer implements ITracer {
 	@Inject
 	public void inject(IStringProvider provider, BundleAccess bundleAccess) {
 		stringProvider = provider;
-		tracing = bundleAccess.inDebugMode() && Boolean.parseBoolean(bundleAccess.getDebugOption(option));
+		tracing = Boolean.getBoolean(option) ||
+				bundleAccess.inDebugMode() && Boolean.parseBoolean(bundleAccess.getDebugOption(option));
 	}
 
 	@Override
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.common.tracer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named counter that can be incremented concurrently without locking.
+ * 
+ * @see Metrics#counter(String)
+ */
+public class Counter {
+	private final String name;
+
+	private final AtomicLong count = new AtomicLong();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Adds the given amount to the counter.
+	 * 
+	 * @param amount
+	 */
+	public void add(long amount) {
+		count.addAndGet(amount);
+	}
+
+	/**
+	 * @return the current count
+	 */
+	public long get() {
+		return count.get();
+	}
+
+	/**
+	 * @return the name of the counter
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Adds one to the counter.
+	 */
+	public void increment() {
+		count.incrementAndGet();
+	}
+
+	void reset() {
+		count.set(0);
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.common.tracer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A named histogram of non negative values that can be recorded concurrently without locking.
+ * </p>
+ * <p>
+ * Values are counted in buckets with a fixed relative precision (in the style of an HDR histogram): values below 16
+ * have a bucket each, and every power of two above that is split in 8 buckets. A value read from the histogram (such
+ * as a percentile) is therefore never more than 12.5% above the recorded value. The count, sum, min and max are exact.
+ * </p>
+ * 
+ * @see Metrics#histogram(String)
+ */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Values below this limit are counted exactly
+	 */
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+	private static final int LINEAR_BITS = 4;
+
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - LINEAR_BITS) * SUB_BUCKETS;
+
+	static int bucketOf(long value) {
+		if(value < LINEAR_LIMIT)
+			return (int) value;
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_LIMIT + (msb - LINEAR_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return the highest value that is counted in the given bucket
+	 */
+	static long highestValueOf(int bucket) {
+		if(bucket < LINEAR_LIMIT)
+			return bucket;
+		int msb = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+		int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		long lowest = (long) (SUB_BUCKETS + sub) << (msb - SUB_BUCKET_BITS);
+		return lowest + (1L << (msb - SUB_BUCKET_BITS)) - 1;
+	}
+
+	private final String name;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	Histogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the largest recorded value, or 0 if no values have been recorded
+	 */
+	public long getMax() {
+		return getCount() == 0
+				? 0
+				: max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded values, or 0 if no values have been recorded
+	 */
+	public double getMean() {
+		long n = getCount();
+		return n == 0
+				? 0
+				: (double) getSum() / n;
+	}
+
+	/**
+	 * @return the smallest recorded value, or 0 if no values have been recorded
+	 */
+	public long getMin() {
+		return getCount() == 0
+				? 0
+				: min.get();
+	}
+
+	/**
+	 * @return the name of the histogram
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the sum of the recorded values
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * Returns the value at the given percentile, i.e. the smallest value that is greater than or equal to the given
+	 * percentage of the recorded values.
+	 * 
+	 * @param percentile
+	 *            - a percentage between 0 and 100
+	 * @return the value at the percentile (within the precision of the histogram), or 0 if no values have been
+	 *         recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = getCount();
+		if(n == 0)
+			return 0;
+		long wanted = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) * n / 100.0));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += buckets.get(i);
+			if(seen >= wanted)
+				return Math.min(highestValueOf(i), getMax());
+		}
+		// concurrently recorded values may not yet be visible in the buckets
+		return getMax();
+	}
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 * 
+	 * @param value
+	 */
+	public void record(long value) {
+		if(value < 0)
+			value = 0;
+		buckets.incrementAndGet(bucketOf(value));
+		sum.addAndGet(value);
+		long current;
+		while(value < (current = min.get()) && !min.compareAndSet(current, value))
+			;
+		while(value > (current = max.get()) && !max.compareAndSet(current, value))
+			;
+		count.incrementAndGet();
+	}
+
+	void reset() {
+		for(int i = 0; i < BUCKET_COUNT; ++i)
+			buckets.set(i, 0);
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+}
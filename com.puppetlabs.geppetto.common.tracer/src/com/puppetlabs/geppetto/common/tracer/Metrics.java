@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.common.tracer;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.inject.Singleton;
+
+/**
+ * <p>
+ * A registry of named {@link Counter counters}, {@link Histogram histograms} and {@link Timer timers}. The instruments
+ * are created on first use and can be updated concurrently without locking. Instrumented code obtains its
+ * instruments once (typically when it is injected) and only updates them when the metrics are
+ * {@link #isEnabled() enabled}, which makes the cost of disabled metrics a single volatile read.
+ * </p>
+ * <p>
+ * The metrics are disabled by default. They are enabled by setting the system property {@value #METRICS_PROPERTY} to
+ * <code>true</code>, or by calling {@link #setEnabled(boolean)}. No OSGi debug options are needed, so this works both
+ * in the IDE and in standalone (e.g. Maven) runs. A summary of all instruments can be written in JSON format using
+ * {@link #writeJSON(Appendable)}.
+ * </p>
+ */
+@Singleton
+public class Metrics {
+	/**
+	 * The system property that enables metrics when set to <code>true</code>
+	 */
+	public static final String METRICS_PROPERTY = "geppetto.metrics";
+
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	private static void appendName(Appendable out, String name) throws IOException {
+		out.append('"');
+		for(int i = 0; i < name.length(); ++i) {
+			char c = name.charAt(i);
+			switch(c) {
+				case '"':
+				case '\\':
+					out.append('\\').append(c);
+					break;
+				default:
+					if(c < 0x20)
+						out.append(String.format("\\u%04x", (int) c));
+					else
+						out.append(c);
+			}
+		}
+		out.append('"');
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI);
+	}
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+	private volatile boolean enabled = Boolean.getBoolean(METRICS_PROPERTY);
+
+	/**
+	 * Returns the counter with the given name, creating it if needed.
+	 * 
+	 * @param name
+	 * @return the counter
+	 */
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if(counter == null) {
+			Counter created = new Counter(name);
+			counter = counters.putIfAbsent(name, created);
+			if(counter == null)
+				counter = created;
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the histogram with the given name, creating it if needed.
+	 * 
+	 * @param name
+	 * @return the histogram
+	 */
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if(histogram == null) {
+			Histogram created = new Histogram(name);
+			histogram = histograms.putIfAbsent(name, created);
+			if(histogram == null)
+				histogram = created;
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return <code>true</code> if instrumented code should record metrics
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Clears the recorded values of all instruments. The instruments themselves are kept since instrumented code
+	 * holds on to them.
+	 */
+	public void reset() {
+		for(Counter counter : counters.values())
+			counter.reset();
+		for(Histogram histogram : histograms.values())
+			histogram.reset();
+		for(Timer timer : timers.values())
+			timer.reset();
+	}
+
+	/**
+	 * @param enabled
+	 *            - <code>true</code> if instrumented code should record metrics
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the timer with the given name, creating it if needed.
+	 * 
+	 * @param name
+	 * @return the timer
+	 */
+	public Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if(timer == null) {
+			Timer created = new Timer(name);
+			timer = timers.putIfAbsent(name, created);
+			if(timer == null)
+				timer = created;
+		}
+		return timer;
+	}
+
+	/**
+	 * <p>
+	 * Writes a summary of all instruments that have recorded something, sorted on name. Timer values are in
+	 * milliseconds:
+	 * </p>
+	 * 
+	 * <pre>
+	 * {
+	 *   "counters": { "name": 12 },
+	 *   "histograms": { "name": { "count": 3, "sum": 7, "min": 1, "mean": 2.333, "p50": 2, "p90": 4, "p99": 4, "max": 4 } },
+	 *   "timers": { "name": { "count": 3, "totalMs": 1.250, "meanMs": 0.417, "p50Ms": 0.375, "p90Ms": 0.500, "p99Ms": 0.500, "maxMs": 0.500 } }
+	 * }
+	 * </pre>
+	 * 
+	 * @param out
+	 *            - where to write the summary
+	 * @throws IOException
+	 */
+	public void writeJSON(Appendable out) throws IOException {
+		out.append("{\n  \"counters\": {");
+		String sep = "\n    ";
+		for(Counter counter : new TreeMap<String, Counter>(counters).values()) {
+			long count = counter.get();
+			if(count == 0)
+				continue;
+			out.append(sep);
+			appendName(out, counter.getName());
+			out.append(": ").append(Long.toString(count));
+			sep = ",\n    ";
+		}
+		out.append("\n  },\n  \"histograms\": {");
+		sep = "\n    ";
+		for(Histogram histogram : new TreeMap<String, Histogram>(histograms).values()) {
+			if(histogram.getCount() == 0)
+				continue;
+			out.append(sep);
+			appendName(out, histogram.getName());
+			out.append(": { \"count\": ").append(Long.toString(histogram.getCount()));
+			out.append(", \"sum\": ").append(Long.toString(histogram.getSum()));
+			out.append(", \"min\": ").append(Long.toString(histogram.getMin()));
+			out.append(", \"mean\": ").append(String.format(Locale.ROOT, "%.3f", histogram.getMean()));
+			out.append(", \"p50\": ").append(Long.toString(histogram.getValueAtPercentile(50)));
+			out.append(", \"p90\": ").append(Long.toString(histogram.getValueAtPercentile(90)));
+			out.append(", \"p99\": ").append(Long.toString(histogram.getValueAtPercentile(99)));
+			out.append(", \"max\": ").append(Long.toString(histogram.getMax())).append(" }");
+			sep = ",\n    ";
+		}
+		out.append("\n  },\n  \"timers\": {");
+		sep = "\n    ";
+		for(Timer timer : new TreeMap<String, Timer>(timers).values()) {
+			Histogram nanos = timer.getHistogram();
+			if(nanos.getCount() == 0)
+				continue;
+			out.append(sep);
+			appendName(out, timer.getName());
+			out.append(": { \"count\": ").append(Long.toString(nanos.getCount()));
+			out.append(", \"totalMs\": ").append(millis(nanos.getSum()));
+			out.append(", \"meanMs\": ").append(millis(Math.round(nanos.getMean())));
+			out.append(", \"p50Ms\": ").append(millis(nanos.getValueAtPercentile(50)));
+			out.append(", \"p90Ms\": ").append(millis(nanos.getValueAtPercentile(90)));
+			out.append(", \"p99Ms\": ").append(millis(nanos.getValueAtPercentile(99)));
+			out.append(", \"maxMs\": ").append(millis(nanos.getMax())).append(" }");
+			sep = ",\n    ";
+		}
+		out.append("\n  }\n}\n");
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.common.tracer;
+
+/**
+ * A named timer that records the duration of calls in a {@link Histogram} of nanoseconds. A timer does not allocate
+ * anything when timing a call:
+ * 
+ * <pre>
+ * long start = System.nanoTime();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ * 
+ * Callers typically only do this when {@link Metrics#isEnabled()} is true.
+ * 
+ * @see Metrics#timer(String)
+ */
+public class Timer {
+	private final Histogram nanos;
+
+	Timer(String name) {
+		nanos = new Histogram(name);
+	}
+
+	/**
+	 * @return the number of timed calls
+	 */
+	public long getCount() {
+		return nanos.getCount();
+	}
+
+	/**
+	 * @return the durations of the timed calls in nanoseconds
+	 */
+	public Histogram getHistogram() {
+		return nanos;
+	}
+
+	/**
+	 * @return the name of the timer
+	 */
+	public String getName() {
+		return nanos.getName();
+	}
+
+	/**
+	 * @return the total time of all timed calls in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return nanos.getSum();
+	}
+
+	/**
+	 * Records the duration of a call.
+	 * 
+	 * @param durationNanos
+	 *            - the duration in nanoseconds
+	 */
+	public void record(long durationNanos) {
+		nanos.record(durationNanos);
+	}
+
+	void reset() {
+		nanos.reset();
+	}
+
+	/**
+	 * Records the time that has passed since the given start time.
+	 * 
+	 * @param startNanos
+	 *            - the start time as obtained from {@link System#nanoTime()}
+	 */
+	public void stop(long startNanos) {
+		nanos.record(System.nanoTime() - startNanos);
+	}
+}
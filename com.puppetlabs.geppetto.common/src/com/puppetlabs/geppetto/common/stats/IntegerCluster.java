@@ -13,6 +13,7 @@ package com.puppetlabs.geppetto.common.stats;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
@@ -34,7 +35,11 @@ import com.google.common.collect.Ranges;
  * The algorithm orders the set of observed values into an set of clusters of 0 size (min = max = value), and searches for the two adjacent clusters
  * that produce the smallest resulting cluster if merged. If the smallest available merge is bigger than the max, the work is done. If the range is
  * smaller than the max, the merged cluster replaces the two inputs. The algorithm now loops back to check for the next two adjacent clusters with the
- * smallest distance.
+ * smallest distance. When several merges are equally small, the leftmost is made first.
+ * </p>
+ * <p>
+ * The clusters are kept in a linked list and the candidate merges of adjacent clusters in a priority queue. Candidates that refer to an already
+ * merged cluster are discarded when they reach the head of the queue, so clustering n observations is O(n log n).
  * </p>
  * <p>
  * The implementation is primarily intended for a fairly small number of observations/clusters as the final step of mapping observations to clusters
@@ -72,6 +77,67 @@ public class IntegerCluster {
 
 	}
 
+	/**
+	 * A cluster in the list of clusters being merged. The position is the index of the cluster in the sorted list; a merged cluster takes the
+	 * position of the left cluster so the order of positions always follows the order in the list.
+	 */
+	private static class Link {
+		final ClusterNode node;
+
+		final int position;
+
+		Link previous;
+
+		Link next;
+
+		boolean merged;
+
+		Link(ClusterNode node, int position) {
+			this.node = node;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * A candidate merge of two adjacent clusters.
+	 */
+	private static class Merge {
+		final Link left;
+
+		final Link right;
+
+		final int distance;
+
+		Merge(Link left, Link right, int distance) {
+			this.left = left;
+			this.right = right;
+			this.distance = distance;
+		}
+
+		boolean isValid() {
+			return !(left.merged || right.merged);
+		}
+	}
+
+	/**
+	 * Orders merges on distance, and then on position (the leftmost first).
+	 */
+	private static final Comparator<Merge> mergeComparator = new Comparator<Merge>() {
+
+		@Override
+		public int compare(Merge o1, Merge o2) {
+			if(o1.distance != o2.distance)
+				return o1.distance < o2.distance
+						? -1
+						: 1;
+			if(o1.left.position != o2.left.position)
+				return o1.left.position < o2.left.position
+						? -1
+						: 1;
+			return 0;
+		}
+	};
+
 	/**
 	 * Compares nodes; the node that starts first is smaller. If starting on the same value, the node that ends first is smaller.
 	 */
@@ -114,24 +180,52 @@ public class IntegerCluster {
 
 	private void cluster() {
 		Collections.sort(clusterList, comparator);
+		int size = clusterList.size();
+		if(size > 1) {
+			PriorityQueue<Merge> merges = new PriorityQueue<Merge>(size - 1, mergeComparator);
+			Link first = null;
+			Link last = null;
+			for(int i = 0; i < size; i++) {
+				Link link = new Link(clusterList.get(i), i);
+				if(last == null)
+					first = link;
+				else {
+					last.next = link;
+					link.previous = last;
+					merges.add(merge(last, link));
+				}
+				last = link;
+			}
 
-		while(clusterList.size() > 1) {
-			int limit = clusterList.size() - 1;
-			int mind = Integer.MAX_VALUE;
-			int minix = -1;
-			for(int i = 0; i < limit; i++) {
-				int d = distance(clusterList.get(i), clusterList.get(i + 1));
-				if(d < mind) {
-					mind = d;
-					minix = i;
+			while(!merges.isEmpty()) {
+				Merge m = merges.poll();
+				if(!m.isValid())
+					continue;
+				// the two smallest causes a range that is bigger than max allowed
+				if(m.distance > maxDistance)
+					break;
+				// join the two clusters closest to each other.
+				Link joined = new Link(new ClusterNode(m.left.node, m.right.node), m.left.position);
+				m.left.merged = true;
+				m.right.merged = true;
+				joined.previous = m.left.previous;
+				joined.next = m.right.next;
+				if(joined.previous == null)
+					first = joined;
+				else {
+					joined.previous.next = joined;
+					merges.add(merge(joined.previous, joined));
+				}
+				if(joined.next != null) {
+					joined.next.previous = joined;
+					merges.add(merge(joined, joined.next));
 				}
 			}
-			// the two smallest causes a range that is bigger than max allowed
-			if(mind > maxDistance)
-				return;
-			// join the two clusters closest to each other.
-			clusterList.set(minix, new ClusterNode(clusterList.get(minix), clusterList.get(minix + 1)));
-			clusterList.remove(minix + 1);
+
+			List<ClusterNode> clustered = Lists.newArrayList();
+			for(Link link = first; link != null; link = link.next)
+				clustered.add(link.node);
+			clusterList = clustered;
 		}
 		dirty = false;
 	}
@@ -201,6 +295,10 @@ public class IntegerCluster {
 			cluster();
 	}
 
+	private Merge merge(Link left, Link right) {
+		return new Merge(left, right, distance(left.node, right.node));
+	}
+
 	public List<Range<Integer>> toListOfRanges() {
 		lazyCluster();
 		List<Range<Integer>> result = Lists.newArrayListWithExpectedSize(clusterList.size());
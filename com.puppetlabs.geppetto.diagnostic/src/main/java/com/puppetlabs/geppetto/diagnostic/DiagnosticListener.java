@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.diagnostic;
+
+/**
+ * A listener that receives diagnostics as they are produced.
+ * 
+ * @see StreamingDiagnostic
+ * @see DiagnosticWriter
+ */
+public interface DiagnosticListener {
+	/**
+	 * Called when a diagnostic has been added. The diagnostic may have children of its own.
+	 * 
+	 * @param diagnostic
+	 *            The added diagnostic
+	 */
+	void diagnosticAdded(Diagnostic diagnostic);
+}
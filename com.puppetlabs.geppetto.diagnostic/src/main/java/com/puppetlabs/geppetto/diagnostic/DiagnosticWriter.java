@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.diagnostic;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A {@link DiagnosticListener} that writes each diagnostic to a {@link Writer} as soon as it is received. The
+ * diagnostics of a chain are written one by one (a diagnostic without a message is not written), and the output is
+ * flushed after each received diagnostic so that it can be followed while the operation is in progress.
+ * </p>
+ * <p>
+ * A diagnostic that is identical to one already written for the same file (same severity, line, issue and message) is
+ * not written again. The messages of the written diagnostics are shared so that repeated strings are only kept once.
+ * Only the diagnostics of the current file are remembered; they are forgotten when a diagnostic for another file is
+ * received, so the memory used does not grow with the number of files. Diagnostics are typically reported one file at
+ * a time, but a diagnostic that is repeated after diagnostics for other files have been received is written again.
+ * Diagnostics without a file are treated as if they had a file of their own.
+ * </p>
+ * <p>
+ * Writers are thread safe. The first {@link IOException} thrown by the underlying writer stops all further output and
+ * is thrown from {@link #close()}.
+ * </p>
+ */
+public abstract class DiagnosticWriter implements DiagnosticListener, Closeable {
+	private static class Key {
+		private final int severity;
+
+		private final String path;
+
+		private final int line;
+
+		private final String issue;
+
+		private final String message;
+
+		private final int hashCode;
+
+		Key(int severity, String path, int line, String issue, String message) {
+			this.severity = severity;
+			this.path = path;
+			this.line = line;
+			this.issue = issue;
+			this.message = message;
+			int h = severity;
+			h = 31 * h + (path == null
+					? 0
+					: path.hashCode());
+			h = 31 * h + line;
+			h = 31 * h + (issue == null
+					? 0
+					: issue.hashCode());
+			h = 31 * h + (message == null
+					? 0
+					: message.hashCode());
+			hashCode = h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(o == this)
+				return true;
+			if(!(o instanceof Key))
+				return false;
+			// all strings are pooled
+			Key k = (Key) o;
+			return severity == k.severity && line == k.line && path == k.path && issue == k.issue &&
+					message == k.message;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * The destination
+	 */
+	protected final Writer out;
+
+	private final Map<String, String> pool = new HashMap<String, String>();
+
+	private final Set<Key> written = new HashSet<Key>();
+
+	private String currentPath;
+
+	private final int[] severityCounts = new int[Diagnostic.FATAL + 1];
+
+	private IOException error;
+
+	private boolean started;
+
+	private boolean closed;
+
+	/**
+	 * @param out
+	 *            The destination. It is closed when this writer is closed.
+	 */
+	protected DiagnosticWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the trailer of the output (if any) and closes the destination.
+	 * 
+	 * @throws IOException
+	 *             if writing failed, now or when a diagnostic was received
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(closed)
+			return;
+		closed = true;
+		try {
+			if(error == null) {
+				if(!started)
+					writeHeader();
+				writeTrailer();
+			}
+		}
+		catch(IOException e) {
+			error = e;
+		}
+		finally {
+			out.close();
+		}
+		if(error != null)
+			throw error;
+	}
+
+	@Override
+	public synchronized void diagnosticAdded(Diagnostic diagnostic) {
+		if(error != null || closed)
+			return;
+		try {
+			if(!started) {
+				started = true;
+				writeHeader();
+			}
+			write(diagnostic);
+			out.flush();
+		}
+		catch(IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * @param severity
+	 *            One of the severity constants in {@link Diagnostic}
+	 * @return the number of written diagnostics with the given severity
+	 */
+	public synchronized int getCount(int severity) {
+		return severity >= 0 && severity < severityCounts.length
+				? severityCounts[severity]
+				: 0;
+	}
+
+	/**
+	 * @return the file path of the diagnostic, shared with earlier diagnostics for the same file, or
+	 *         <code>null</code> if the diagnostic has no file.
+	 */
+	protected String getPath(Diagnostic diagnostic) {
+		File file = diagnostic.getFile();
+		if(file == null)
+			return null;
+		String path = file.getPath();
+		return path.equals(currentPath)
+				? currentPath
+				: path;
+	}
+
+	private String pooled(String s) {
+		if(s == null)
+			return null;
+		String p = pool.get(s);
+		if(p == null) {
+			pool.put(s, s);
+			p = s;
+		}
+		return p;
+	}
+
+	private void write(Diagnostic diagnostic) throws IOException {
+		String message = diagnostic.getMessage();
+		if(message != null) {
+			String path = getPath(diagnostic);
+			if(path == null
+					? currentPath != null
+					: !path.equals(currentPath)) {
+				// forget the diagnostics of the previous file
+				written.clear();
+				pool.clear();
+				currentPath = path;
+			}
+			int severity = diagnostic.getSeverity();
+			if(written.add(new Key(
+				severity, path, diagnostic.getLineNumber(), pooled(diagnostic.getIssue()), pooled(message)))) {
+				if(severity >= 0 && severity < severityCounts.length)
+					++severityCounts[severity];
+				writeDiagnostic(diagnostic, path, pooled(message));
+			}
+		}
+		for(Diagnostic child : diagnostic)
+			write(child);
+	}
+
+	/**
+	 * Writes one diagnostic.
+	 * 
+	 * @param diagnostic
+	 *            The diagnostic to write
+	 * @param path
+	 *            The file path of the diagnostic or <code>null</code>
+	 * @param message
+	 *            The message of the diagnostic
+	 * @throws IOException
+	 */
+	protected abstract void writeDiagnostic(Diagnostic diagnostic, String path, String message) throws IOException;
+
+	/**
+	 * Writes what comes before the first diagnostic. The default implementation writes nothing.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeHeader() throws IOException {
+	}
+
+	/**
+	 * Writes what comes after the last diagnostic. The default implementation writes nothing. The counts returned by
+	 * {@link #getCount(int)} are complete when this method is called.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeTrailer() throws IOException {
+	}
+}
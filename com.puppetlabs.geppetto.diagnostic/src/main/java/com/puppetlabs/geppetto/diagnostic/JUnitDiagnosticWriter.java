@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.diagnostic;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>
+ * Writes the diagnostics as a JUnit XML test suite that can be read by CI servers. Each diagnostic becomes a test case
+ * named after its location and message, with the file path as the class name. Errors (and fatal diagnostics) are
+ * written as failures, while test cases for other diagnostics pass and carry the message as system output.
+ * </p>
+ * <p>
+ * The test cases are written as the diagnostics are received. Since the number of test cases is not known until the
+ * end, the suite element does not carry the count attributes; the counts per severity are instead written as the
+ * system output of the suite.
+ * </p>
+ */
+public class JUnitDiagnosticWriter extends DiagnosticWriter {
+	private static void appendEscaped(Writer out, String s) throws IOException {
+		for(int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '&':
+					out.write("&amp;");
+					break;
+				case '<':
+					out.write("&lt;");
+					break;
+				case '>':
+					out.write("&gt;");
+					break;
+				case '"':
+					out.write("&quot;");
+					break;
+				case '\n':
+				case '\r':
+				case '\t':
+					out.write(c);
+					break;
+				default:
+					// characters that are not allowed in XML 1.0 are dropped
+					if(c >= 0x20 && c != 0xfffe && c != 0xffff)
+						out.write(c);
+			}
+		}
+	}
+
+	private final String suiteName;
+
+	/**
+	 * @param out
+	 *            The destination
+	 * @param suiteName
+	 *            The name of the test suite
+	 */
+	public JUnitDiagnosticWriter(Writer out, String suiteName) {
+		super(out);
+		this.suiteName = suiteName;
+	}
+
+	@Override
+	protected void writeDiagnostic(Diagnostic diagnostic, String path, String message) throws IOException {
+		out.write("  <testcase classname=\"");
+		appendEscaped(out, path == null
+				? diagnostic.getType().getName()
+				: path);
+		out.write("\" name=\"");
+		String location = diagnostic.getLocationLabel(false);
+		if(location != null) {
+			appendEscaped(out, location);
+			out.write(": ");
+		}
+		appendEscaped(out, message);
+		out.write('"');
+		int severity = diagnostic.getSeverity();
+		if(severity >= Diagnostic.ERROR) {
+			out.write(">\n    <failure type=\"");
+			appendEscaped(out, diagnostic.getSeverityString());
+			out.write("\" message=\"");
+			appendEscaped(out, message);
+			out.write("\">");
+			String issue = diagnostic.getIssue();
+			if(issue != null)
+				appendEscaped(out, issue);
+			out.write("</failure>\n  </testcase>\n");
+		}
+		else {
+			out.write(">\n    <system-out>");
+			appendEscaped(out, diagnostic.getSeverityString());
+			out.write(": ");
+			appendEscaped(out, message);
+			out.write("</system-out>\n  </testcase>\n");
+		}
+	}
+
+	@Override
+	protected void writeHeader() throws IOException {
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuite name=\"");
+		appendEscaped(out, suiteName);
+		out.write("\">\n");
+	}
+
+	@Override
+	protected void writeTrailer() throws IOException {
+		out.write("  <system-out>");
+		for(int severity = Diagnostic.FATAL; severity >= Diagnostic.INFO; --severity) {
+			out.write(Diagnostic.getSeverityString(severity));
+			out.write(": ");
+			out.write(Integer.toString(getCount(severity)));
+			out.write(severity == Diagnostic.INFO
+					? ""
+					: ", ");
+		}
+		out.write("</system-out>\n</testsuite>\n");
+	}
+}
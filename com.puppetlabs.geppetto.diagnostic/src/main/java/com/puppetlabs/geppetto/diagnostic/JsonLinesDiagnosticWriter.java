@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.diagnostic;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes each diagnostic as a JSON object on a line of its own (the JSON Lines format):
+ * 
+ * <pre>
+ * {"severity":"WARNING","type":"GEPPETTO","file":"manifests/init.pp","line":12,"issue":"...","message":"..."}
+ * </pre>
+ * 
+ * The <code>file</code>, <code>line</code>, <code>issue</code> and <code>exception</code> properties are only present
+ * when the diagnostic has them.
+ */
+public class JsonLinesDiagnosticWriter extends DiagnosticWriter {
+	private static void appendString(Writer out, String s) throws IOException {
+		out.write('"');
+		for(int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '"':
+					out.write("\\\"");
+					break;
+				case '\\':
+					out.write("\\\\");
+					break;
+				case '\n':
+					out.write("\\n");
+					break;
+				case '\r':
+					out.write("\\r");
+					break;
+				case '\t':
+					out.write("\\t");
+					break;
+				default:
+					if(c < 0x20)
+						out.write(String.format("\\u%04x", (int) c));
+					else
+						out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+	public JsonLinesDiagnosticWriter(Writer out) {
+		super(out);
+	}
+
+	@Override
+	protected void writeDiagnostic(Diagnostic diagnostic, String path, String message) throws IOException {
+		out.write("{\"severity\":");
+		appendString(out, diagnostic.getSeverityString());
+		out.write(",\"type\":");
+		appendString(out, diagnostic.getType().getName());
+		if(path != null) {
+			out.write(",\"file\":");
+			appendString(out, path);
+		}
+		int line = diagnostic.getLineNumber();
+		if(line > 0) {
+			out.write(",\"line\":");
+			out.write(Integer.toString(line));
+		}
+		String issue = diagnostic.getIssue();
+		if(issue != null) {
+			out.write(",\"issue\":");
+			appendString(out, issue);
+		}
+		out.write(",\"message\":");
+		appendString(out, message);
+		Exception exception = diagnostic instanceof ExceptionDiagnostic
+				? diagnostic.getException()
+				: null;
+		if(exception != null) {
+			out.write(",\"exception\":");
+			appendString(out, exception.toString());
+		}
+		out.write("}\n");
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.diagnostic;
+
+/**
+ * <p>
+ * A diagnostic that passes every added child to a {@link DiagnosticListener} as soon as it is added, and only keeps
+ * the children with a severity at or above a given level. The severity of this diagnostic reflects all added
+ * children, also those that are not kept.
+ * </p>
+ * <p>
+ * This makes it possible to report a very large number of diagnostics (typically warnings) without keeping them all
+ * in memory, while the kept errors can still be inspected when the operation is done.
+ * </p>
+ */
+public class StreamingDiagnostic extends Diagnostic {
+	private static final long serialVersionUID = 1L;
+
+	private final int retainedSeverity;
+
+	private final transient DiagnosticListener listener;
+
+	/**
+	 * @param retainedSeverity
+	 *            The lowest severity of the children that are kept. Use {@link #OK} to keep all children.
+	 * @param listener
+	 *            The listener that receives all children
+	 */
+	public StreamingDiagnostic(int retainedSeverity, DiagnosticListener listener) {
+		this.retainedSeverity = retainedSeverity;
+		this.listener = listener;
+	}
+
+	@Override
+	public void addChild(Diagnostic child) {
+		if(getSeverity() < child.getSeverity())
+			setSeverity(child.getSeverity());
+		listener.diagnosticAdded(child);
+		if(child.getSeverity() >= retainedSeverity)
+			super.addChild(child);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.diagnostic;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes each diagnostic at or above a given severity as a line of text in the same form as
+ * {@link Diagnostic#toString()}, i.e. <code>SEVERITY:path:location:message</code>, and ends with a summary line with
+ * the number of errors and warnings.
+ */
+public class TerminalDiagnosticWriter extends DiagnosticWriter {
+	private final int minSeverity;
+
+	/**
+	 * @param out
+	 *            The destination
+	 * @param minSeverity
+	 *            The lowest severity to write
+	 */
+	public TerminalDiagnosticWriter(Writer out, int minSeverity) {
+		super(out);
+		this.minSeverity = minSeverity;
+	}
+
+	@Override
+	protected void writeDiagnostic(Diagnostic diagnostic, String path, String message) throws IOException {
+		if(diagnostic.getSeverity() < minSeverity)
+			return;
+		StringBuilder bld = new StringBuilder();
+		bld.append(diagnostic.getSeverityString());
+		bld.append(':');
+		if(path != null) {
+			bld.append(path);
+			bld.append(':');
+		}
+		if(diagnostic.appendLocationLabel(bld, false))
+			bld.append(':');
+		bld.append(message);
+		bld.append('\n');
+		out.write(bld.toString());
+	}
+
+	@Override
+	protected void writeTrailer() throws IOException {
+		int errors = getCount(Diagnostic.FATAL) + getCount(Diagnostic.ERROR);
+		int warnings = getCount(Diagnostic.WARNING);
+		out.write(errors + (errors == 1
+				? " error, "
+				: " errors, ") + warnings + (warnings == 1
+				? " warning\n"
+				: " warnings\n"));
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.forge.api.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.puppetlabs.geppetto.forge.model.Dependency;
+import com.puppetlabs.geppetto.forge.model.ModuleName;
+import com.puppetlabs.geppetto.forge.model.ModuleVersionIndex;
+import com.puppetlabs.geppetto.semver.Version;
+import com.puppetlabs.geppetto.semver.VersionRange;
+
+public class ModuleVersionIndexTest {
+	private static ModuleVersionIndex<String> createIndex() {
+		ModuleVersionIndex<String> index = new ModuleVersionIndex<String>();
+		index.add(ModuleName.fromString("puppetlabs-stdlib"), Version.fromString("3.2.0"), "stdlib-3.2.0");
+		index.add(ModuleName.fromString("PuppetLabs/StdLib"), Version.fromString("4.1.0"), "StdLib-4.1.0");
+		index.add(ModuleName.fromString("example/apache"), Version.fromString("1.0.0"), "apache-1.0.0");
+		return index;
+	}
+
+	@Test
+	public void testAdd__SameVersionKeepsFirst() {
+		ModuleVersionIndex<String> index = createIndex();
+		assertFalse(index.add(ModuleName.fromString("PUPPETLABS-STDLIB"), Version.fromString("4.1.0"), "other"));
+		assertTrue(index.add(ModuleName.fromString("PUPPETLABS-STDLIB"), Version.fromString("4.2.0"), "other"));
+		assertEquals("other", index.findBestMatch(ModuleName.fromString("puppetlabs/stdlib"), null));
+		assertEquals(
+			"StdLib-4.1.0",
+			index.findBestMatch(ModuleName.fromString("puppetlabs/stdlib"), VersionRange.create("4.1.x")));
+	}
+
+	@Test
+	public void testFindBestMatch() {
+		ModuleVersionIndex<String> index = createIndex();
+		ModuleName stdlib = ModuleName.fromString("puppetlabs/stdlib");
+		assertEquals("StdLib-4.1.0", index.findBestMatch(stdlib, null));
+		assertEquals("StdLib-4.1.0", index.findBestMatch(stdlib, VersionRange.create(">=3.0.0")));
+		assertEquals("stdlib-3.2.0", index.findBestMatch(stdlib, VersionRange.create("3.x")));
+		assertNull(index.findBestMatch(stdlib, VersionRange.create(">=5.0.0")));
+		assertNull(index.findBestMatch(ModuleName.fromString("puppetlabs/apache"), null));
+	}
+
+	@Test
+	public void testFindBestMatch__MixedCaseDependency() {
+		ModuleVersionIndex<String> index = createIndex();
+		for(String name : new String[] { "puppetlabs-stdlib", "PuppetLabs/StdLib", "PUPPETLABS/stdlib", "puppetLabs-STDLIB" }) {
+			Dependency dep = new Dependency();
+			dep.setName(ModuleName.fromString(name));
+			dep.setVersionRequirement(VersionRange.create("3.x"));
+			assertEquals(name, "stdlib-3.2.0", index.findBestMatch(dep.getName(), dep.getVersionRequirement()));
+		}
+		assertEquals("apache-1.0.0", index.findBestMatch(ModuleName.fromString("Example-Apache"), null));
+	}
+}
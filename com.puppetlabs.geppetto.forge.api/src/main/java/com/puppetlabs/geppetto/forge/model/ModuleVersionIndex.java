@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.forge.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.puppetlabs.geppetto.semver.Version;
+import com.puppetlabs.geppetto.semver.VersionRange;
+
+/**
+ * An index of things that provide a module with a given name and version, such as a project that contains the module.
+ * Module names are compared the way {@link ModuleName#equals(Object)} compares them, i.e. without regard to case or
+ * to the separator used between owner and name.
+ *
+ * @param <T>
+ *            The type of the thing that provides the module
+ */
+public class ModuleVersionIndex<T> {
+	private final Map<ModuleName, NavigableMap<Version, T>> index = new HashMap<ModuleName, NavigableMap<Version, T>>();
+
+	/**
+	 * Adds a provider of a module. If a provider has already been added for the same module name and version, that
+	 * provider is kept.
+	 *
+	 * @param name
+	 *            The name of the module
+	 * @param version
+	 *            The version of the module
+	 * @param provider
+	 *            The provider of the module
+	 * @return <code>true</code> if the provider was added, <code>false</code> if another provider was already added
+	 *         for the same name and version
+	 */
+	public boolean add(ModuleName name, Version version, T provider) {
+		NavigableMap<Version, T> versions = index.get(name);
+		if(versions == null) {
+			versions = new TreeMap<Version, T>();
+			index.put(name, versions);
+		}
+		if(versions.containsKey(version))
+			return false;
+		versions.put(version, provider);
+		return true;
+	}
+
+	/**
+	 * Returns the provider of the highest version of the named module that is included in the given range, i.e. the
+	 * same version as {@link VersionRange#findBestMatch(Iterable)} would select.
+	 *
+	 * @param name
+	 *            The name of the module
+	 * @param range
+	 *            The version requirement. Can be <code>null</code> in which case any version will do.
+	 * @return The provider of the best match or <code>null</code> if there is no match
+	 */
+	public T findBestMatch(ModuleName name, VersionRange range) {
+		NavigableMap<Version, T> versions = index.get(name);
+		if(versions == null)
+			return null;
+		if(range == null)
+			range = VersionRange.ALL_INCLUSIVE;
+		for(Map.Entry<Version, T> entry : versions.descendingMap().entrySet())
+			if(range.isIncluded(entry.getKey()))
+				return entry.getValue();
+		return null;
+	}
+}
@@ -46,6 +46,7 @@ import com.puppetlabs.geppetto.diagnostic.Diagnostic;
 import com.puppetlabs.geppetto.forge.Forge;
 import com.puppetlabs.geppetto.forge.model.Metadata;
 import com.puppetlabs.geppetto.forge.util.ModuleUtils;
+import com.puppetlabs.geppetto.validation.FormattingService;
 import com.puppetlabs.geppetto.validation.ValidationService;
 import com.puppetlabs.geppetto.validation.impl.ValidationModule;
 
@@ -96,6 +97,13 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 	@Parameter(property = "forge.modules.root", defaultValue = "${project.basedir}")
 	private String modulesRoot;
 
+	/**
+	 * The directory where the types and providers that are extracted from the Ruby files of the modules are cached
+	 * between builds. When not set, they are only cached for the duration of the build.
+	 */
+	@Parameter(property = "forge.types.cache.location")
+	private File typesCacheLocation;
+
 	@Component
 	private MavenSession session;
 
@@ -110,7 +118,7 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 	private transient Logger log;
 
 	protected void addModules(Diagnostic diagnostic, List<Module> modules) {
-		modules.add(new ForgeMavenModule(getFileFilter(), session.getCurrentProject()));
+		modules.add(new ForgeMavenModule(getFileFilter(), session.getCurrentProject(), typesCacheLocation));
 		modules.add(new ValidationModule());
 		modules.add(getCommonModule());
 	}
@@ -198,6 +206,10 @@ public abstract class AbstractForgeMojo extends AbstractMojo {
 		};
 	}
 
+	protected FormattingService getFormattingService() {
+		return injector.getInstance(FormattingService.class);
+	}
+
 	protected Forge getForgeUtil() {
 		return injector.getInstance(Forge.class);
 	}
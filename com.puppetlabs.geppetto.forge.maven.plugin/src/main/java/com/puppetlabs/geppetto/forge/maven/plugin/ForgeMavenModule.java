@@ -10,6 +10,7 @@
  */
 package com.puppetlabs.geppetto.forge.maven.plugin;
 
+import java.io.File;
 import java.io.FileFilter;
 
 import org.apache.maven.project.MavenProject;
@@ -23,9 +24,12 @@ public class ForgeMavenModule extends ForgeModule {
 
 	private final MavenProject mavenProject;
 
-	public ForgeMavenModule(FileFilter fileFilter, MavenProject mavenProject) {
+	private final File typesCacheLocation;
+
+	public ForgeMavenModule(FileFilter fileFilter, MavenProject mavenProject, File typesCacheLocation) {
 		this.fileFilter = fileFilter;
 		this.mavenProject = mavenProject;
+		this.typesCacheLocation = typesCacheLocation;
 	}
 
 	@Override
@@ -46,4 +50,9 @@ public class ForgeMavenModule extends ForgeModule {
 	protected FileFilter getFileFilter() {
 		return fileFilter;
 	}
+
+	@Override
+	protected File getTypesCacheLocation() {
+		return typesCacheLocation;
+	}
 }
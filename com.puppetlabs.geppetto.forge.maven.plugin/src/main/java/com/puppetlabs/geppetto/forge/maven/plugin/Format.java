@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.forge.maven.plugin;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.common.util.URI;
+
+import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
+import com.puppetlabs.geppetto.validation.FormattingOptions;
+import com.puppetlabs.geppetto.validation.FormattingService;
+import com.puppetlabs.geppetto.validation.runner.IEncodingProvider;
+
+/**
+ * The <tt>format</tt> goal formats all .pp files found beneath the modules root using the Geppetto formatter. When
+ * <tt>check</tt> is set, no files are written and the goal fails if any file is not formatted.
+ */
+@Mojo(name = "format", requiresProject = false, defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+public class Format extends AbstractForgeMojo {
+	/**
+	 * Set to <tt>true</tt> to only check that the files are formatted. Each file that would change is reported and the
+	 * build fails if there are any.
+	 */
+	@Parameter(property = "forge.format.check", defaultValue = "false")
+	private boolean check;
+
+	/**
+	 * The compliance level used when parsing the files.
+	 */
+	@Parameter(property = "forge.validation.complianceLevel", defaultValue = "PUPPET_2_7")
+	private ComplianceLevel complianceLevel = ComplianceLevel.PUPPET_2_7;
+
+	/**
+	 * The number of files to format in parallel. A value of <tt>0</tt> means one thread per available processor.
+	 */
+	@Parameter(property = "forge.format.threads", defaultValue = "0")
+	private int threads;
+
+	@Override
+	protected String getActionName() {
+		return "Format";
+	}
+
+	@Override
+	protected void invoke(Diagnostic result) throws Exception {
+		FormattingOptions options = new FormattingOptions();
+		options.setCheckOnly(check);
+		options.setComplianceLevel(complianceLevel);
+		options.setThreadCount(threads);
+		options.setEncodingProvider(new IEncodingProvider() {
+			public String getEncoding(URI file) {
+				return UTF_8.name();
+			}
+		});
+
+		Diagnostic formatResult = new Diagnostic();
+		List<File> files = getFormattingService().format(
+			formatResult, getModulesDir(), options, new NullProgressMonitor());
+
+		// The files that are not formatted are warnings to the service but a failure when checking
+		if(check)
+			for(Diagnostic child : formatResult.getChildren())
+				if(FormattingService.FORMATTING.equals(child.getType()))
+					child.setSeverity(Diagnostic.ERROR);
+		result.addChildren(formatResult.getChildren());
+
+		if(check)
+			getLog().info(String.format("%d file(s) need to be formatted", files.size()));
+		else
+			getLog().info(String.format("Formatted %d file(s)", files.size()));
+	}
+}
@@ -15,6 +15,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
 import org.apache.maven.artifact.versioning.Restriction;
@@ -50,6 +51,12 @@ public class PomMetadataExtractor extends AbstractMetadataExtractor {
 		// @fmtOn
 	}
 
+	@Override
+	public boolean canExtractFrom(File moduleDirectory, Set<String> entryNames, FileFilter filter) {
+		// The pom of the current project is known so the entries are of no interest
+		return canExtractFrom(moduleDirectory, filter);
+	}
+
 	@Override
 	public int getCardinal() {
 		return 20;
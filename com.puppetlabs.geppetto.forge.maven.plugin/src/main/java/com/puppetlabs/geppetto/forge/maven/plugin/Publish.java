@@ -23,9 +23,12 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.forge.Forge;
 import com.puppetlabs.geppetto.forge.client.OAuthModule;
 
+import com.google.inject.AbstractModule;
 import com.google.inject.Module;
+import com.google.inject.name.Names;
 
 /**
  * Goal which performs basic validation.
@@ -69,6 +72,18 @@ public class Publish extends AbstractForgeServiceMojo {
 	@Parameter(property = "forge.publish.dryrun")
 	private boolean dryRun;
 
+	/**
+	 * The maximum number of modules that are uploaded concurrently
+	 */
+	@Parameter(property = "forge.publish.concurrency", defaultValue = "4")
+	private int concurrency = 4;
+
+	/**
+	 * The maximum number of attempts made to upload a module when the upload fails due to a transient error
+	 */
+	@Parameter(property = "forge.publish.maxAttempts", defaultValue = "3")
+	private int maxAttempts = 3;
+
 	public Publish() {
 		try {
 			Properties props = readForgeProperties();
@@ -95,6 +110,13 @@ public class Publish extends AbstractForgeServiceMojo {
 			return;
 
 		modules.add(new OAuthModule(clientID, clientSecret, login, password));
+		modules.add(new AbstractModule() {
+			@Override
+			protected void configure() {
+				bindConstant().annotatedWith(Names.named(Forge.PUBLISH_CONCURRENCY)).to(concurrency);
+				bindConstant().annotatedWith(Names.named(Forge.PUBLISH_MAX_ATTEMPTS)).to(maxAttempts);
+			}
+		});
 	}
 
 	@Override
@@ -14,11 +14,20 @@ import static com.puppetlabs.geppetto.pp.dsl.validation.ValidationPreference.IGN
 import static com.puppetlabs.geppetto.pp.dsl.validation.ValidationPreference.WARNING;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -30,7 +39,12 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 import com.google.inject.name.Names;
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.diagnostic.DiagnosticWriter;
 import com.puppetlabs.geppetto.diagnostic.FileDiagnostic;
+import com.puppetlabs.geppetto.diagnostic.JUnitDiagnosticWriter;
+import com.puppetlabs.geppetto.diagnostic.JsonLinesDiagnosticWriter;
+import com.puppetlabs.geppetto.diagnostic.StreamingDiagnostic;
+import com.puppetlabs.geppetto.diagnostic.TerminalDiagnosticWriter;
 import com.puppetlabs.geppetto.forge.Forge;
 import com.puppetlabs.geppetto.forge.model.Metadata;
 import com.puppetlabs.geppetto.pp.dsl.target.PuppetTarget;
@@ -46,7 +60,6 @@ import com.puppetlabs.geppetto.validation.FileType;
 import com.puppetlabs.geppetto.validation.ValidationOptions;
 import com.puppetlabs.geppetto.validation.ValidationService;
 import com.puppetlabs.geppetto.validation.runner.IEncodingProvider;
-import com.puppetlabs.geppetto.validation.runner.PPDiagnosticsSetup;
 
 /**
  * The <tt>validate</tt> goal can perform a very elaborate analyzis of the module using the Geppetto platform. It is
@@ -54,6 +67,26 @@ import com.puppetlabs.geppetto.validation.runner.PPDiagnosticsSetup;
  */
 @Mojo(name = "validate", requiresProject = false, defaultPhase = LifecyclePhase.COMPILE)
 public class Validate extends AbstractForgeServiceMojo {
+	/**
+	 * The formats of the validation report
+	 */
+	public enum ReportFormat {
+		/**
+		 * One JSON object per diagnostic and line
+		 */
+		JSON_LINES,
+
+		/**
+		 * A JUnit XML test suite with one test case per diagnostic
+		 */
+		JUNIT,
+
+		/**
+		 * Plain text, one line per diagnostic
+		 */
+		TERMINAL
+	}
+
 	private static int getSeverity(Issue issue) {
 		switch(issue.getSeverity()) {
 			case ERROR:
@@ -205,6 +238,37 @@ public class Validate extends AbstractForgeServiceMojo {
 	@Parameter(property = "forge.lint.options")
 	private PuppetLintRunner.Option[] puppetLintOptions;
 
+	/**
+	 * The number of threads to use when running the Geppetto validation and puppet-lint concurrently. The
+	 * puppet-lint work is split per module. A value of <tt>0</tt> means one thread per available processor.
+	 */
+	@Parameter(property = "forge.validation.threads", defaultValue = "0")
+	private int threads;
+
+	/**
+	 * When set, the time spent in the phases of the Geppetto validation (and in linking and in each validation check)
+	 * is recorded, and a summary is written to this file in JSON format.
+	 */
+	@Parameter(property = "forge.validation.metricsFile")
+	private File metricsFile;
+
+	/**
+	 * When set, all diagnostics are written to this file as they are produced, in the format given by
+	 * {@link #reportFormat}. Only errors are then kept in memory and logged, which keeps the memory use down when
+	 * validating a large number of modules. A {@link ReportFormat#TERMINAL TERMINAL} report without a file is written
+	 * to standard output.
+	 */
+	@Parameter(property = "forge.validation.reportFile")
+	private File reportFile;
+
+	/**
+	 * The format of the report written to {@link #reportFile}.
+	 */
+	@Parameter(property = "forge.validation.reportFormat", defaultValue = "JSON_LINES")
+	private ReportFormat reportFormat = ReportFormat.JSON_LINES;
+
+	private transient DiagnosticWriter report;
+
 	private final IPotentialProblemsAdvisor potentialProblemsAdvisor = new IPotentialProblemsAdvisor() {
 		@Override
 		public ValidationPreference assignmentToVarNamedString() {
@@ -302,7 +366,46 @@ public class Validate extends AbstractForgeServiceMojo {
 		return diagnostic;
 	}
 
-	private void geppettoValidation(Collection<File> moduleLocations, Diagnostic result) throws IOException {
+	private DiagnosticWriter createReport() throws IOException {
+		Writer out;
+		if(reportFile != null) {
+			File parent = reportFile.getParentFile();
+			if(parent != null)
+				parent.mkdirs();
+			out = new OutputStreamWriter(new FileOutputStream(reportFile), UTF_8);
+		}
+		else if(reportFormat == ReportFormat.TERMINAL)
+			// standard output must not be closed with the report
+			out = new FilterWriter(new OutputStreamWriter(System.out, UTF_8)) {
+				@Override
+				public void close() throws IOException {
+					flush();
+				}
+			};
+		else
+			return null;
+
+		switch(reportFormat) {
+			case JUNIT:
+				return new JUnitDiagnosticWriter(out, getActionName());
+			case TERMINAL:
+				return new TerminalDiagnosticWriter(out, Diagnostic.INFO);
+			default:
+				return new JsonLinesDiagnosticWriter(out);
+		}
+	}
+
+	/**
+	 * Creates the diagnostic that receives the result of one validation task.
+	 */
+	private Diagnostic createTaskDiagnostic() {
+		return report == null
+				? new Diagnostic()
+				: new StreamingDiagnostic(Diagnostic.ERROR, report);
+	}
+
+	private Diagnostic geppettoValidation(Collection<File> moduleLocations) throws IOException {
+		Diagnostic result = createTaskDiagnostic();
 
 		Collection<File> importedModuleLocations = null;
 		List<Metadata> metadatas = new ArrayList<Metadata>();
@@ -313,7 +416,7 @@ public class Validate extends AbstractForgeServiceMojo {
 		}
 
 		if(result.getSeverity() == Diagnostic.ERROR)
-			return;
+			return result;
 
 		if(checkModuleSemantics) {
 			File importedModulesDir = new File(getBuildDir(), IMPORTED_MODULES_ROOT);
@@ -324,11 +427,10 @@ public class Validate extends AbstractForgeServiceMojo {
 
 		RubyHelper.setRubyServicesFactory(JRubyServices.FACTORY);
 		ValidationOptions options = getValidationOptions(moduleLocations, importedModuleLocations);
-		new PPDiagnosticsSetup(complianceLevel, options.getProblemsAdvisor()).createInjectorAndDoEMFRegistration();
-
 		getValidationService().validate(
 			result, getModulesDir(), options,
 			importedModuleLocations.toArray(new File[importedModuleLocations.size()]), new NullProgressMonitor());
+		return result;
 	}
 
 	@Override
@@ -336,6 +438,12 @@ public class Validate extends AbstractForgeServiceMojo {
 		return "Validation";
 	}
 
+	private int getThreadCount() {
+		return threads > 0
+				? threads
+				: Runtime.getRuntime().availableProcessors();
+	}
+
 	private String getSearchPath(Collection<File> moduleLocations, Collection<File> importedModuleLocations) {
 		StringBuilder searchPath = new StringBuilder();
 
@@ -352,9 +460,12 @@ public class Validate extends AbstractForgeServiceMojo {
 	private ValidationOptions getValidationOptions(Collection<File> moduleLocations,
 			Collection<File> importedModuleLocations) {
 		ValidationOptions options = new ValidationOptions();
+		options.setComplianceLevel(complianceLevel);
+		options.setReuseSetup(true);
 		options.setCheckLayout(checkLayout);
 		options.setCheckModuleSemantics(checkModuleSemantics);
 		options.setCheckReferences(checkReferences);
+		options.setMetricsFile(metricsFile);
 
 		if(moduleLocations.size() == 1 && getModulesDir().equals(moduleLocations.iterator().next()))
 			options.setFileType(FileType.MODULE_ROOT);
@@ -374,31 +485,93 @@ public class Validate extends AbstractForgeServiceMojo {
 
 	@Override
 	protected void invoke(Diagnostic result) throws IOException {
-		Collection<File> moduleRoots = findModuleRoots();
+		final Collection<File> moduleRoots = findModuleRoots();
 		if(moduleRoots.isEmpty()) {
 			result.addChild(new Diagnostic(
 				Diagnostic.ERROR, ValidationService.GEPPETTO, "No modules found in repository"));
 			return;
 		}
 
-		if(checkLayout || checkModuleSemantics || checkReferences)
-			geppettoValidation(moduleRoots, result);
+		// Each task produces its own diagnostic since the Diagnostic is not thread safe. The results
+		// are then merged into the result in a predictable order. When a report is written, the tasks
+		// stream their diagnostics to the (thread safe) report and only keep the errors.
+		List<Future<Diagnostic>> tasks = new ArrayList<Future<Diagnostic>>();
+		report = createReport();
+		ExecutorService executor = Executors.newFixedThreadPool(getThreadCount());
+		boolean completed = false;
+		try {
+			if(checkLayout || checkModuleSemantics || checkReferences)
+				tasks.add(executor.submit(new Callable<Diagnostic>() {
+					@Override
+					public Diagnostic call() throws Exception {
+						return geppettoValidation(moduleRoots);
+					}
+				}));
+
+			if(enablePuppetLintValidation) {
+				final PuppetLintRunner runner = PuppetLintService.getInstance().getPuppetLintRunner();
+				getLog().debug("Performing puppet lint validation on all modules");
+				if(puppetLintOptions == null)
+					puppetLintOptions = new PuppetLintRunner.Option[0];
+				for(final File moduleRoot : moduleRoots)
+					tasks.add(executor.submit(new Callable<Diagnostic>() {
+						@Override
+						public Diagnostic call() throws Exception {
+							return lintValidation(runner, moduleRoot);
+						}
+					}));
+			}
 
-		if(enablePuppetLintValidation)
-			lintValidation(moduleRoots, result);
+			for(Future<Diagnostic> task : tasks)
+				result.addChildren(waitFor(task).getChildren());
+			completed = true;
+		}
+		finally {
+			executor.shutdownNow();
+			if(report != null) {
+				DiagnosticWriter closing = report;
+				report = null;
+				if(completed)
+					closing.close();
+				else
+					try {
+						closing.close();
+					}
+					catch(IOException e) {
+						// the exception that is propagating is the one to report
+						getLog().warn("Unable to close the validation report", e);
+					}
+			}
+		}
 	}
 
-	private void lintValidation(Collection<File> moduleLocations, Diagnostic result) throws IOException {
-		PuppetLintRunner runner = PuppetLintService.getInstance().getPuppetLintRunner();
-		getLog().debug("Performing puppet lint validation on all modules");
-		if(puppetLintOptions == null)
-			puppetLintOptions = new PuppetLintRunner.Option[0];
-		for(File moduleRoot : moduleLocations) {
-			for(PuppetLintRunner.Issue issue : runner.run(moduleRoot, puppetLintOptions)) {
-				Diagnostic diag = convertPuppetLintDiagnostic(moduleRoot, issue);
-				if(diag != null)
-					result.addChild(diag);
-			}
+	private Diagnostic lintValidation(PuppetLintRunner runner, File moduleRoot) throws IOException {
+		Diagnostic result = createTaskDiagnostic();
+		for(PuppetLintRunner.Issue issue : runner.run(moduleRoot, puppetLintOptions)) {
+			Diagnostic diag = convertPuppetLintDiagnostic(moduleRoot, issue);
+			if(diag != null)
+				result.addChild(diag);
+		}
+		return result;
+	}
+
+	private Diagnostic waitFor(Future<Diagnostic> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Validation was interrupted", e);
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause.getMessage(), cause);
 		}
 	}
 }
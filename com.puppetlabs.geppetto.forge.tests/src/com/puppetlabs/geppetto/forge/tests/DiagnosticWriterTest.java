@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.forge.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.diagnostic.DiagnosticListener;
+import com.puppetlabs.geppetto.diagnostic.DiagnosticType;
+import com.puppetlabs.geppetto.diagnostic.DiagnosticWriter;
+import com.puppetlabs.geppetto.diagnostic.ExceptionDiagnostic;
+import com.puppetlabs.geppetto.diagnostic.FileDiagnostic;
+import com.puppetlabs.geppetto.diagnostic.JUnitDiagnosticWriter;
+import com.puppetlabs.geppetto.diagnostic.JsonLinesDiagnosticWriter;
+import com.puppetlabs.geppetto.diagnostic.StreamingDiagnostic;
+import com.puppetlabs.geppetto.diagnostic.TerminalDiagnosticWriter;
+
+public class DiagnosticWriterTest {
+	private static final DiagnosticType TEST = new DiagnosticType("TEST", DiagnosticWriterTest.class.getName());
+
+	private static final String INIT = new File("manifests", "init.pp").getPath();
+
+	private static final String PARAMS = new File("manifests", "params.pp").getPath();
+
+	private static FileDiagnostic fileDiagnostic(int severity, String path, int line, String issue, String message) {
+		FileDiagnostic diagnostic = new FileDiagnostic(severity, TEST, message, new File(path));
+		diagnostic.setLineNumber(line);
+		diagnostic.setIssue(issue);
+		return diagnostic;
+	}
+
+	private static String write(DiagnosticWriter writer, StringWriter out, Diagnostic... diagnostics)
+			throws IOException {
+		for(Diagnostic diagnostic : diagnostics)
+			writer.diagnosticAdded(diagnostic);
+		writer.close();
+		return out.toString();
+	}
+
+	@Test
+	public void duplicatesAreWrittenOncePerFile() throws IOException {
+		StringWriter out = new StringWriter();
+		TerminalDiagnosticWriter writer = new TerminalDiagnosticWriter(out, Diagnostic.INFO);
+		assertEquals("WARNING:" + INIT + ":3:Unquoted\n" + //
+				"WARNING:" + INIT + ":4:Unquoted\n" + //
+				"WARNING:" + PARAMS + ":3:Unquoted\n" + //
+				"WARNING:" + INIT + ":3:Unquoted\n" + //
+				"0 errors, 4 warnings\n", write(writer, out, //
+			fileDiagnostic(Diagnostic.WARNING, INIT, 3, "X", "Unquoted"), //
+			fileDiagnostic(Diagnostic.WARNING, INIT, 3, "X", "Unquoted"), //
+			fileDiagnostic(Diagnostic.WARNING, INIT, 4, "X", "Unquoted"), //
+			fileDiagnostic(Diagnostic.WARNING, PARAMS, 3, "X", "Unquoted"), //
+			fileDiagnostic(Diagnostic.WARNING, PARAMS, 3, "X", "Unquoted"), //
+			fileDiagnostic(Diagnostic.WARNING, INIT, 3, "X", "Unquoted")));
+		assertEquals(4, writer.getCount(Diagnostic.WARNING));
+	}
+
+	@Test
+	public void jsonLines() throws IOException {
+		Diagnostic chain = new Diagnostic();
+		chain.addChild(fileDiagnostic(Diagnostic.WARNING, INIT, 12, "SOME_ISSUE", "Say \"hi\"\\\tthere\u0001!"));
+		chain.addChild(new ExceptionDiagnostic(Diagnostic.ERROR, TEST, "Failed", new IOException("broken")));
+		chain.addChild(new Diagnostic(Diagnostic.INFO, TEST, "Line 1\r\nLine 2"));
+
+		StringWriter out = new StringWriter();
+		assertEquals(
+			"{\"severity\":\"WARNING\",\"type\":\"TEST\",\"file\":\"" + INIT.replace("\\", "\\\\") +
+					"\",\"line\":12,\"issue\":\"SOME_ISSUE\",\"message\":\"Say \\\"hi\\\"\\\\\\tthere\\u0001!\"}\n" + //
+					"{\"severity\":\"ERROR\",\"type\":\"TEST\",\"message\":\"Failed\"," +
+					"\"exception\":\"java.io.IOException: broken\"}\n" + //
+					"{\"severity\":\"INFO\",\"type\":\"TEST\",\"message\":\"Line 1\\r\\nLine 2\"}\n",
+			write(new JsonLinesDiagnosticWriter(out), out, chain));
+	}
+
+	@Test
+	public void jsonLinesWithoutDiagnostics() throws IOException {
+		StringWriter out = new StringWriter();
+		assertEquals("", write(new JsonLinesDiagnosticWriter(out), out));
+	}
+
+	@Test
+	public void junitEscaping() throws IOException {
+		StringWriter out = new StringWriter();
+		assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + //
+				"<testsuite name=\"a &amp; &quot;b&quot;\">\n" + //
+				"  <testcase classname=\"" + INIT + "\" name=\"7: &lt;x&gt; &amp; &quot;y&quot;\">\n" + //
+				"    <failure type=\"ERROR\" message=\"&lt;x&gt; &amp; &quot;y&quot;\">A&amp;B</failure>\n" + //
+				"  </testcase>\n" + //
+				"  <testcase classname=\"TEST\" name=\"tab\there\">\n" + //
+				"    <system-out>WARNING: tab\there</system-out>\n" + //
+				"  </testcase>\n" + //
+				"  <system-out>FATAL: 0, ERROR: 1, WARNING: 1, INFO: 0</system-out>\n" + //
+				"</testsuite>\n", write(new JUnitDiagnosticWriter(out, "a & \"b\""), out, //
+			fileDiagnostic(Diagnostic.ERROR, INIT, 7, "A&B", "<x> & \"y\""), //
+			new Diagnostic(Diagnostic.WARNING, TEST, "tab\there\u0000\u001f")));
+	}
+
+	@Test
+	public void junitWithoutDiagnostics() throws IOException {
+		StringWriter out = new StringWriter();
+		assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + //
+				"<testsuite name=\"empty\">\n" + //
+				"  <system-out>FATAL: 0, ERROR: 0, WARNING: 0, INFO: 0</system-out>\n" + //
+				"</testsuite>\n", write(new JUnitDiagnosticWriter(out, "empty"), out));
+	}
+
+	@Test
+	public void streamingDiagnostic() {
+		final List<Diagnostic> received = new ArrayList<Diagnostic>();
+		StreamingDiagnostic chain = new StreamingDiagnostic(Diagnostic.ERROR, new DiagnosticListener() {
+			@Override
+			public void diagnosticAdded(Diagnostic diagnostic) {
+				received.add(diagnostic);
+			}
+		});
+		Diagnostic warning = new Diagnostic(Diagnostic.WARNING, TEST, "warning");
+		Diagnostic error = new Diagnostic(Diagnostic.ERROR, TEST, "error");
+		Diagnostic info = new Diagnostic(Diagnostic.INFO, TEST, "info");
+		chain.addChild(warning);
+		assertEquals(Diagnostic.WARNING, chain.getSeverity());
+		chain.addChild(error);
+		chain.addChild(info);
+
+		assertEquals(3, received.size());
+		assertSame(warning, received.get(0));
+		assertSame(error, received.get(1));
+		assertSame(info, received.get(2));
+		assertEquals(1, chain.getChildren().size());
+		assertSame(error, chain.getChildren().get(0));
+		assertEquals(Diagnostic.ERROR, chain.getSeverity());
+	}
+
+	@Test
+	public void terminal() throws IOException {
+		StringWriter out = new StringWriter();
+		TerminalDiagnosticWriter writer = new TerminalDiagnosticWriter(out, Diagnostic.WARNING);
+		assertEquals("ERROR:" + INIT + ":2:Syntax error\n" + //
+				"WARNING:Deprecated\n" + //
+				"FATAL:Crashed\n" + //
+				"2 errors, 1 warning\n", write(writer, out, //
+			fileDiagnostic(Diagnostic.ERROR, INIT, 2, null, "Syntax error"), //
+			new Diagnostic(Diagnostic.INFO, TEST, "Not shown"), //
+			new Diagnostic(Diagnostic.WARNING, TEST, "Deprecated"), //
+			new Diagnostic(Diagnostic.FATAL, TEST, "Crashed")));
+
+		// diagnostics below the minimum severity are not written but still counted
+		assertEquals(1, writer.getCount(Diagnostic.INFO));
+	}
+
+	@Test
+	public void terminalWithoutDiagnostics() throws IOException {
+		StringWriter out = new StringWriter();
+		assertEquals("0 errors, 0 warnings\n", write(new TerminalDiagnosticWriter(out, Diagnostic.INFO), out));
+	}
+}
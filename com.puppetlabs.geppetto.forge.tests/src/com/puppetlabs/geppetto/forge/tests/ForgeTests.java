@@ -25,6 +25,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	MetadataTest.class,
 	ModuleUtilsTest.class,
 	TypeTest.class,
+	DiagnosticWriterTest.class,
 	// @fmtOn
 })
 @RunWith(Suite.class)
@@ -11,9 +11,12 @@
 package com.puppetlabs.geppetto.forge.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 
 import org.junit.Test;
 
@@ -24,6 +27,24 @@ import com.puppetlabs.geppetto.forge.util.ModuleUtils;
 
 public class ModuleUtilsTest extends AbstractForgeTest {
 
+	@Test
+	public void findModuleRoots() {
+		try {
+			Collection<File> roots = getForgeUtil().findModuleRoots(getTestData(""), null);
+			assertEquals("Unexpected number of module roots", 6, roots.size());
+			assertTrue("Module root not found", roots.contains(getTestData("ghoneycutt-rsync")));
+
+			// A module root is not scanned in turn
+			File apache = getTestData("puppetlabs-apache");
+			roots = getForgeUtil().findModuleRoots(apache, null);
+			assertEquals("Unexpected number of module roots", 1, roots.size());
+			assertEquals("Module should be its own root", apache, roots.iterator().next());
+		}
+		catch(IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
 	@Test
 	public void loadModule() {
 		try {
@@ -11,12 +11,18 @@
 package com.puppetlabs.geppetto.forge.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
+import com.puppetlabs.geppetto.forge.model.NamedTypeItem;
 import com.puppetlabs.geppetto.forge.model.Type;
 import com.puppetlabs.geppetto.forge.util.Types;
+import com.puppetlabs.geppetto.forge.util.TypesCache;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -114,4 +120,55 @@ public class TypeTest extends AbstractForgeTest {
 		}
 	}
 
+	@Test
+	public void testLoadTypes__Cached() {
+		try {
+			File puppetDir = getTestData("puppetlabs-apache/lib/puppet");
+			File cacheDir = getTestOutputFolder("typesCache", true);
+			List<Type> expected = Types.loadTypes(puppetDir, null);
+			assertFalse("Expected types", expected.isEmpty());
+			assertEquals("Unexpected types when parsed", expected, new TypesCache(cacheDir).loadTypes(puppetDir, null));
+
+			// A new cache must find the same result on disk
+			TypesCache cache = new TypesCache(cacheDir);
+			assertEquals("Unexpected types when read from disk", expected, cache.loadTypes(puppetDir, null));
+			assertEquals("Unexpected types when found in memory", expected, cache.loadTypes(puppetDir, null));
+		}
+		catch(IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLoadTypes__CachedCopies() {
+		try {
+			File puppetDir = getTestData("puppetlabs-apache/lib/puppet");
+			File cacheDir = getTestOutputFolder("typesCacheCopies", true);
+			List<Type> expected = Types.loadTypes(puppetDir, null);
+			TypesCache cache = new TypesCache(cacheDir);
+			List<Type> types = cache.loadTypes(puppetDir, null);
+			assertTrue("Entries should be stored by format version", new File(
+				cacheDir, "v" + TypesCache.FORMAT_VERSION).isDirectory());
+
+			// Changing the result must not change what is cached
+			// The lists are null when a type has no such items
+			for(Type type : types) {
+				type.setName("changed");
+				if(type.getParameters() != null)
+					for(NamedTypeItem item : type.getParameters())
+						item.setName("changed");
+				if(type.getProperties() != null)
+					for(NamedTypeItem item : type.getProperties())
+						item.setDocumentation("changed");
+				if(type.getProviders() != null)
+					for(NamedTypeItem item : type.getProviders())
+						item.setName("changed");
+			}
+			assertEquals("Unexpected types when found in memory", expected, cache.loadTypes(puppetDir, null));
+		}
+		catch(IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
 } // TypeTest
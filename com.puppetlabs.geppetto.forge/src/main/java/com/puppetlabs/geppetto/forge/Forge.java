@@ -46,6 +46,22 @@ public interface Forge {
 	 */
 	public static final String CACHE_LOCATION = "forge.cache.location";
 
+	/**
+	 * Name of optionally injected directory where types and providers extracted from Ruby files are cached
+	 */
+	public static final String TYPES_CACHE_LOCATION = "forge.types.cache.location";
+
+	/**
+	 * Name of optionally injected max number of concurrent uploads performed by
+	 * {@link ForgeService#publishAll(File[], boolean, Diagnostic)}
+	 */
+	public static final String PUBLISH_CONCURRENCY = "forge.publish.concurrency";
+
+	/**
+	 * Name of optionally injected max number of attempts made when an upload fails due to a transient error
+	 */
+	public static final String PUBLISH_MAX_ATTEMPTS = "forge.publish.maxAttempts";
+
 	/**
 	 * Build a module for release. The end result is a gzipped tar file (.tar.gz) archive that
 	 * contains the module source and a freshly generated metadata.json.
@@ -13,6 +13,7 @@ package com.puppetlabs.geppetto.forge;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.util.Set;
 
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
 import com.puppetlabs.geppetto.forge.model.Metadata;
@@ -32,6 +33,20 @@ public interface MetadataExtractor {
 	 */
 	boolean canExtractFrom(File moduleDirectory, FileFilter filter);
 
+	/**
+	 * Checks if the files needed to extract metadata are present, given the names of the entries that a scan has
+	 * already read from the <tt>moduleDirectory</tt>. Implementations should avoid accessing the file system when
+	 * the names are sufficient.
+	 * 
+	 * @param moduleDirectory
+	 * @param entryNames
+	 *            The names of the entries in the <tt>moduleDirectory</tt> that were accepted by the scan
+	 * @param filter
+	 *            The filter that is used by the scan.
+	 * @return <tt>true</tt> to indicate that this extractor will be able to extract metadata
+	 */
+	boolean canExtractFrom(File moduleDirectory, Set<String> entryNames, FileFilter filter);
+
 	/**
 	 * Determines the order in which extractors will be consulted. The &quot;metadata.json&quot; extractor
 	 * will have a cardinal of 20, the Modulefile extractor has a cardinal of 10.
@@ -14,20 +14,35 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Set;
 
+import com.google.inject.Inject;
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
 import com.puppetlabs.geppetto.forge.MetadataExtractor;
 import com.puppetlabs.geppetto.forge.model.Metadata;
 import com.puppetlabs.geppetto.forge.util.Checksums;
 import com.puppetlabs.geppetto.forge.util.Types;
+import com.puppetlabs.geppetto.forge.util.TypesCache;
 
 public abstract class AbstractMetadataExtractor implements MetadataExtractor {
+	@Inject(optional = true)
+	private TypesCache typesCache;
+
 	@Override
 	public boolean canExtractFrom(File moduleDirectory, FileFilter filter) {
 		File mdSource = new File(moduleDirectory, getPrimarySource());
 		return filter.accept(mdSource) && mdSource.exists();
 	}
 
+	@Override
+	public boolean canExtractFrom(File moduleDirectory, Set<String> entryNames, FileFilter filter) {
+		String primarySource = getPrimarySource();
+		if(primarySource.indexOf('/') >= 0)
+			// Not an entry of the directory itself
+			return canExtractFrom(moduleDirectory, filter);
+		return entryNames.contains(primarySource) && filter.accept(new File(moduleDirectory, primarySource));
+	}
+
 	@Override
 	public boolean hasTypesAndProviders() {
 		return false;
@@ -45,7 +60,7 @@ public abstract class AbstractMetadataExtractor implements MetadataExtractor {
 
 		Metadata md = performMetadataExtraction(metadataFile, result);
 		if(md != null && !hasTypesAndProviders() && includeTypesAndChecksums) {
-			md.setTypes(Types.loadTypes(new File(moduleDirectory, "lib/puppet"), filter));
+			md.setTypes(Types.loadTypes(new File(moduleDirectory, "lib/puppet"), filter, typesCache));
 			md.setChecksums(Checksums.loadChecksums(moduleDirectory, filter));
 		}
 		return md;
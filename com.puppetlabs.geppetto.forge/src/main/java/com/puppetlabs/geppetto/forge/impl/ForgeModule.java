@@ -12,8 +12,10 @@ package com.puppetlabs.geppetto.forge.impl;
 
 import static com.google.inject.name.Names.named;
 import static com.puppetlabs.geppetto.forge.Forge.MODULE_FILE_FILTER;
+import static com.puppetlabs.geppetto.forge.Forge.TYPES_CACHE_LOCATION;
 import static com.puppetlabs.geppetto.forge.util.ModuleUtils.DEFAULT_FILE_FILTER;
 
+import java.io.File;
 import java.io.FileFilter;
 
 import com.puppetlabs.geppetto.forge.ERB;
@@ -36,6 +38,9 @@ public class ForgeModule extends AbstractModule {
 		bind(Forge.class).to(ForgeImpl.class);
 		bind(ERB.class).to(ERBImpl.class);
 		bind(FileFilter.class).annotatedWith(named(MODULE_FILE_FILTER)).toInstance(getFileFilter());
+		File typesCacheLocation = getTypesCacheLocation();
+		if(typesCacheLocation != null)
+			bind(File.class).annotatedWith(named(TYPES_CACHE_LOCATION)).toInstance(typesCacheLocation);
 		Multibinder<MetadataExtractor> mdeBinder = Multibinder.newSetBinder(binder(), MetadataExtractor.class);
 		addMetadataExtractors(mdeBinder);
 	}
@@ -43,4 +48,12 @@ public class ForgeModule extends AbstractModule {
 	protected FileFilter getFileFilter() {
 		return DEFAULT_FILE_FILTER;
 	}
+
+	/**
+	 * @return The directory where types and providers extracted from Ruby files are cached between runs or
+	 *         <code>null</code> if they should only be cached in memory. The default is <code>null</code>.
+	 */
+	protected File getTypesCacheLocation() {
+		return null;
+	}
 }
@@ -10,6 +10,7 @@
  */
 package com.puppetlabs.geppetto.forge.impl;
 
+import static com.puppetlabs.geppetto.diagnostic.Diagnostic.DEBUG;
 import static com.puppetlabs.geppetto.diagnostic.Diagnostic.ERROR;
 import static com.puppetlabs.geppetto.diagnostic.Diagnostic.INFO;
 import static com.puppetlabs.geppetto.diagnostic.Diagnostic.WARNING;
@@ -17,6 +18,9 @@ import static com.puppetlabs.geppetto.forge.Forge.FORGE;
 import static com.puppetlabs.geppetto.forge.Forge.METADATA_JSON_NAME;
 import static com.puppetlabs.geppetto.forge.Forge.MODULE_FILE_FILTER;
 import static com.puppetlabs.geppetto.forge.Forge.PUBLISHER;
+import static com.puppetlabs.geppetto.forge.Forge.PUBLISH_CONCURRENCY;
+import static com.puppetlabs.geppetto.forge.Forge.PUBLISH_MAX_ATTEMPTS;
+import static java.lang.String.format;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -24,20 +28,30 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpResponseException;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.name.Named;
+import com.puppetlabs.geppetto.common.annotations.Nullable;
 import com.puppetlabs.geppetto.common.os.FileUtils;
 import com.puppetlabs.geppetto.common.os.StreamUtil;
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
@@ -51,14 +65,44 @@ import com.puppetlabs.geppetto.forge.model.Dependency;
 import com.puppetlabs.geppetto.forge.model.Metadata;
 import com.puppetlabs.geppetto.forge.model.MetadataRepository;
 import com.puppetlabs.geppetto.forge.model.ModuleName;
+import com.puppetlabs.geppetto.forge.model.VersionedName;
 import com.puppetlabs.geppetto.forge.util.ModuleUtils;
 import com.puppetlabs.geppetto.forge.util.TarUtils;
 import com.puppetlabs.geppetto.forge.v2.model.Release;
 import com.puppetlabs.geppetto.forge.v2.service.ModuleService;
 import com.puppetlabs.geppetto.forge.v2.service.ReleaseService;
+import com.puppetlabs.geppetto.forge.v3.ProgressMonitor;
+import com.puppetlabs.geppetto.forge.v3.Releases;
+import com.puppetlabs.geppetto.forge.v3.Visitor;
 import com.puppetlabs.geppetto.semver.VersionRange;
 
 class ForgeServiceImpl implements ForgeService {
+	private static final int DEFAULT_PUBLISH_CONCURRENCY = 4;
+
+	private static final int DEFAULT_PUBLISH_MAX_ATTEMPTS = 3;
+
+	/**
+	 * Delay before the first retry of a failed upload. The delay is doubled for each subsequent retry.
+	 */
+	private static final long PUBLISH_RETRY_DELAY = 2000;
+
+	private static boolean isPublishArchive(File file) {
+		String name = file.getName();
+		return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+	}
+
+	/**
+	 * Checks if an upload that failed with the given exception is worth another attempt. Server errors, throttling,
+	 * and network failures are considered transient. Other client errors are not.
+	 */
+	private static boolean isTransient(IOException e) {
+		if(e instanceof HttpResponseException) {
+			int code = ((HttpResponseException) e).getStatusCode();
+			return code >= HttpStatus.SC_INTERNAL_SERVER_ERROR || code == HttpStatus.SC_REQUEST_TIMEOUT || code == 429;
+		}
+		return !(e instanceof ForgeException);
+	}
+
 	@Inject
 	private Cache cache;
 
@@ -68,6 +112,22 @@ class ForgeServiceImpl implements ForgeService {
 	@Inject
 	private ReleaseService releaseService;
 
+	@Inject
+	private Provider<ReleaseService> releaseServiceProvider;
+
+	@Inject
+	private Releases releases;
+
+	@Inject(optional = true)
+	@Nullable
+	@Named(PUBLISH_CONCURRENCY)
+	private Integer publishConcurrency;
+
+	@Inject(optional = true)
+	@Nullable
+	@Named(PUBLISH_MAX_ATTEMPTS)
+	private Integer publishMaxAttempts;
+
 	@Inject
 	private MetadataRepository metadataRepo;
 
@@ -163,8 +223,21 @@ class ForgeServiceImpl implements ForgeService {
 		return forgeUtil.loadJSONMetadata(new File(destination, METADATA_JSON_NAME));
 	}
 
-	@Override
-	public void publish(File moduleArchive, boolean dryRun, Diagnostic result) throws IOException {
+	private void addPublishError(File moduleArchive, Exception e, Diagnostic result) {
+		if(e instanceof ForgeException)
+			result.addChild(new Diagnostic(ERROR, PUBLISHER, e.getMessage()));
+		else
+			result.addChild(new ExceptionDiagnostic(ERROR, PUBLISHER, "Unable to publish module " +
+					moduleArchive.getName(), e));
+	}
+
+	private int getPublishConcurrency() {
+		return publishConcurrency == null || publishConcurrency.intValue() < 1
+				? DEFAULT_PUBLISH_CONCURRENCY
+				: publishConcurrency.intValue();
+	}
+
+	private Metadata getPublishMetadata(File moduleArchive) throws IOException {
 		if(releaseService == null)
 			throw new UnsupportedOperationException(
 				"Unable to publish since no release service is configured. Was a serviceURL provided in the preferences?");
@@ -180,7 +253,66 @@ class ForgeServiceImpl implements ForgeService {
 		if(metadata.getVersion() == null)
 			throw new ForgeException("The \"metadata.json\" found in archive: " + moduleArchive.getAbsolutePath() +
 					" has no version");
+		return metadata;
+	}
 
+	private int getPublishMaxAttempts() {
+		return publishMaxAttempts == null || publishMaxAttempts.intValue() < 1
+				? DEFAULT_PUBLISH_MAX_ATTEMPTS
+				: publishMaxAttempts.intValue();
+	}
+
+	/**
+	 * Finds out which of the given releases that have already been published. All releases of each owner are
+	 * obtained in one paginated query rather than one query per module.
+	 * 
+	 * @param metadatas
+	 *            The releases to check
+	 * @return The subset of the releases that are published
+	 * @throws IOException
+	 */
+	private Set<VersionedName> getPublishedReleases(Collection<Metadata> metadatas) throws IOException {
+		final Set<VersionedName> wanted = new HashSet<VersionedName>();
+		Set<String> owners = new HashSet<String>();
+		for(Metadata metadata : metadatas) {
+			wanted.add(new VersionedName(metadata.getName(), metadata.getVersion()));
+			owners.add(metadata.getName().getOwner());
+		}
+
+		final Set<VersionedName> published = new HashSet<VersionedName>();
+		Visitor<com.puppetlabs.geppetto.forge.v3.model.Release> collector = new Visitor<com.puppetlabs.geppetto.forge.v3.model.Release>() {
+			@Override
+			public void visit(com.puppetlabs.geppetto.forge.v3.model.Release release, ProgressMonitor monitor) {
+				Metadata metadata = release.getMetadata();
+				if(metadata == null || metadata.getName() == null || metadata.getVersion() == null)
+					return;
+
+				VersionedName vn = new VersionedName(metadata.getName(), metadata.getVersion());
+				if(wanted.contains(vn))
+					published.add(vn);
+			}
+		};
+
+		for(String owner : owners) {
+			try {
+				releases.accept(new Releases.OwnedBy(owner), null, false, collector, null);
+			}
+			catch(HttpResponseException e) {
+				// A SC_NOT_FOUND can be expected and is OK.
+				if(e.getStatusCode() != HttpStatus.SC_NOT_FOUND)
+					throw new ForgeException("Unable to check module existence on the forge: " + e.getMessage());
+			}
+			catch(InvocationTargetException e) {
+				// The collector never throws
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return published;
+	}
+
+	@Override
+	public void publish(File moduleArchive, boolean dryRun, Diagnostic result) throws IOException {
+		Metadata metadata = getPublishMetadata(moduleArchive);
 		try {
 			if(metadataRepo.resolve(metadata.getName(), metadata.getVersion()) != null)
 				throw new AlreadyPublishedException("Module " + metadata.getName() + ':' + metadata.getVersion() +
@@ -191,7 +323,68 @@ class ForgeServiceImpl implements ForgeService {
 			if(e.getStatusCode() != HttpStatus.SC_NOT_FOUND)
 				throw new ForgeException("Unable to check module existence on the forge: " + e.getMessage());
 		}
+		upload(releaseService, moduleArchive, metadata, dryRun, result);
+	}
+
+	/**
+	 * Publishes all archives in a pipeline. Metadata of all archives is read first and the forge is then asked
+	 * once per owner for releases that already exist. The remaining archives are uploaded using a bounded number of
+	 * concurrent uploads where each upload is retried with an exponential backoff on transient failures. The
+	 * outcome of each upload is added to the <code>result</code> as soon as it is known. No new uploads are
+	 * started once an upload has failed.
+	 */
+	public void publishAll(File[] builtModules, boolean dryRun, final Diagnostic result) {
+		List<File> archives = new ArrayList<File>();
+		List<Metadata> metadatas = new ArrayList<Metadata>();
+		for(File builtModule : builtModules) {
+			if(!isPublishArchive(builtModule))
+				continue;
 
+			try {
+				metadatas.add(getPublishMetadata(builtModule));
+				archives.add(builtModule);
+			}
+			catch(Exception e) {
+				addPublishError(builtModule, e, result);
+				return;
+			}
+		}
+
+		Set<VersionedName> published;
+		try {
+			published = getPublishedReleases(metadatas);
+		}
+		catch(ForgeException e) {
+			result.addChild(new Diagnostic(ERROR, PUBLISHER, e.getMessage()));
+			return;
+		}
+		catch(IOException e) {
+			result.addChild(new ExceptionDiagnostic(
+				ERROR, PUBLISHER, "Unable to check module existence on the forge", e));
+			return;
+		}
+
+		Map<File, Metadata> toUpload = new LinkedHashMap<File, Metadata>();
+		int top = archives.size();
+		for(int idx = 0; idx < top; ++idx) {
+			Metadata metadata = metadatas.get(idx);
+			if(published.contains(new VersionedName(metadata.getName(), metadata.getVersion())))
+				result.addChild(new Diagnostic(WARNING, PUBLISHER, "Module " + metadata.getName() + ':' +
+						metadata.getVersion() + " has already been published"));
+			else
+				toUpload.put(archives.get(idx), metadata);
+		}
+
+		if(toUpload.isEmpty()) {
+			result.addChild(new Diagnostic(
+				INFO, PUBLISHER, "All modules have already been published at their current version"));
+			return;
+		}
+		uploadAll(toUpload, dryRun, result);
+	}
+
+	private void upload(ReleaseService service, File moduleArchive, Metadata metadata, boolean dryRun,
+			Diagnostic result) throws IOException {
 		if(dryRun) {
 			result.addChild(new Diagnostic(INFO, PUBLISHER, "Module file " + moduleArchive.getName() +
 					" would have been uploaded (but wasn't since this is a dry run)"));
@@ -201,7 +394,7 @@ class ForgeServiceImpl implements ForgeService {
 		InputStream gzInput = new FileInputStream(moduleArchive);
 		try {
 			ModuleName name = metadata.getName();
-			releaseService.create(
+			service.create(
 				name.getOwner(), name.getName(), "Published using GitHub trigger", gzInput, moduleArchive.length());
 			result.addChild(new Diagnostic(INFO, PUBLISHER, "Module file " + moduleArchive.getName() +
 					" has been uploaded"));
@@ -211,35 +404,88 @@ class ForgeServiceImpl implements ForgeService {
 		}
 	}
 
-	public void publishAll(File[] builtModules, boolean dryRun, Diagnostic result) {
-		boolean noPublishingMade = true;
-		for(File builtModule : builtModules) {
-			String name = builtModule.getName();
-			if(!(name.endsWith(".tar.gz") || name.endsWith(".tgz")))
-				continue;
+	private void uploadAll(Map<File, Metadata> toUpload, final boolean dryRun, final Diagnostic result) {
+		final int total = toUpload.size();
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicBoolean failed = new AtomicBoolean();
 
-			try {
-				publish(builtModule, dryRun, result);
-				noPublishingMade = false;
-				continue;
-			}
-			catch(AlreadyPublishedException e) {
-				result.addChild(new Diagnostic(WARNING, PUBLISHER, e.getMessage()));
-				continue;
+		// The forge client is not thread safe so each worker thread needs a release service of its own.
+		final ThreadLocal<ReleaseService> services = new ThreadLocal<ReleaseService>() {
+			@Override
+			protected ReleaseService initialValue() {
+				return releaseServiceProvider.get();
 			}
-			catch(ForgeException e) {
-				result.addChild(new Diagnostic(ERROR, PUBLISHER, e.getMessage()));
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(total, getPublishConcurrency()));
+		try {
+			for(Map.Entry<File, Metadata> entry : toUpload.entrySet()) {
+				final File moduleArchive = entry.getKey();
+				final Metadata metadata = entry.getValue();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						if(failed.get())
+							return;
+
+						Diagnostic moduleResult = new Diagnostic();
+						if(!uploadWithRetry(services.get(), moduleArchive, metadata, dryRun, moduleResult))
+							failed.set(true);
+
+						synchronized(result) {
+							result.addChildren(moduleResult.getChildren());
+							result.addChild(new Diagnostic(DEBUG, PUBLISHER, format(
+								"Processed %d of %d modules", completed.incrementAndGet(), total)));
+						}
+					}
+				});
 			}
-			catch(Exception e) {
-				result.addChild(new ExceptionDiagnostic(ERROR, PUBLISHER, "Unable to publish module " +
-						builtModule.getName(), e));
+			executor.shutdown();
+			while(!executor.awaitTermination(1, TimeUnit.SECONDS))
+				;
+		}
+		catch(InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			synchronized(result) {
+				result.addChild(new Diagnostic(ERROR, PUBLISHER, "Publishing was interrupted"));
 			}
-			return;
 		}
+	}
 
-		if(noPublishingMade) {
-			result.addChild(new Diagnostic(
-				INFO, PUBLISHER, "All modules have already been published at their current version"));
+	private boolean uploadWithRetry(ReleaseService service, File moduleArchive, Metadata metadata, boolean dryRun,
+			Diagnostic result) {
+		int maxAttempts = getPublishMaxAttempts();
+		long delay = PUBLISH_RETRY_DELAY;
+		for(int attempt = 1;; ++attempt) {
+			try {
+				upload(service, moduleArchive, metadata, dryRun, result);
+				return true;
+			}
+			catch(IOException e) {
+				if(attempt >= maxAttempts || !isTransient(e)) {
+					addPublishError(moduleArchive, e, result);
+					return false;
+				}
+				result.addChild(new Diagnostic(INFO, PUBLISHER, format(
+					"Upload of module file %s failed: %s. Retrying in %d ms (attempt %d of %d)",
+					moduleArchive.getName(), e.getMessage(), delay, attempt + 1, maxAttempts)));
+			}
+			catch(RuntimeException e) {
+				addPublishError(moduleArchive, e, result);
+				return false;
+			}
+
+			try {
+				Thread.sleep(delay);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.addChild(new Diagnostic(ERROR, PUBLISHER, "Publishing of module file " +
+						moduleArchive.getName() + " was interrupted"));
+				return false;
+			}
+			delay *= 2;
 		}
 	}
 
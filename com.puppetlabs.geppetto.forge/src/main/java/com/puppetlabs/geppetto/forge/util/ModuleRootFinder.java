@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.forge.util;
+
+import static com.puppetlabs.geppetto.forge.Forge.METADATA_JSON_NAME;
+import static com.puppetlabs.geppetto.forge.util.ModuleUtils.DEFAULT_EXCLUDES_PATTERN;
+import static com.puppetlabs.geppetto.forge.util.ModuleUtils.DEFAULT_FILE_FILTER;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.puppetlabs.geppetto.forge.MetadataExtractor;
+
+/**
+ * Scans a directory tree for module roots, i.e. directories that contain a 'metadata.json' file or some other
+ * artifact that is recognized by one of the {@link MetadataExtractor metadata extractors}. A module root is not
+ * scanned in turn.
+ * <p>
+ * The entries of each directory are read once. The entry names are pruned using the
+ * {@link ModuleUtils#DEFAULT_EXCLUDES_PATTERN} before the filter is consulted and the extractors classify the
+ * directory from the remaining names, so no additional file system access is needed for that. The tree is scanned one
+ * level at a time and the directories of a level are read in parallel.
+ * </p>
+ */
+public class ModuleRootFinder {
+	private static class DirectoryScan {
+		boolean moduleRoot;
+
+		List<File> subdirectories;
+	}
+
+	private static DirectoryScan waitFor(Future<DirectoryScan> task) {
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Scan for module roots was interrupted", e);
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private final FileFilter filter;
+
+	private final Iterable<MetadataExtractor> metadataExtractors;
+
+	private final int threadCount;
+
+	/**
+	 * Creates a finder that uses one thread per available processor.
+	 *
+	 * @param filter
+	 *            The filter that is used by the scan or <code>null</code> to use the default excludes only
+	 * @param metadataExtractors
+	 *            The extractors that determine if a directory without a 'metadata.json' file is a module root
+	 */
+	public ModuleRootFinder(FileFilter filter, Iterable<MetadataExtractor> metadataExtractors) {
+		this(filter, metadataExtractors, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param filter
+	 *            The filter that is used by the scan or <code>null</code> to use the default excludes only
+	 * @param metadataExtractors
+	 *            The extractors that determine if a directory without a 'metadata.json' file is a module root
+	 * @param threadCount
+	 *            The maximum number of directories that are read at the same time
+	 */
+	public ModuleRootFinder(FileFilter filter, Iterable<MetadataExtractor> metadataExtractors, int threadCount) {
+		this.filter = filter == null
+				? DEFAULT_FILE_FILTER
+				: filter;
+		this.metadataExtractors = metadataExtractors;
+		this.threadCount = Math.max(threadCount, 1);
+	}
+
+	private boolean accept(File directory, String name) {
+		if(DEFAULT_EXCLUDES_PATTERN.matcher(name).matches())
+			return false;
+
+		// The default filter has nothing more to say so there's no need to create the file
+		return filter == DEFAULT_FILE_FILTER || filter.accept(new File(directory, name));
+	}
+
+	/**
+	 * Scan for module roots beneath (or at) the given directory.
+	 *
+	 * @param modulesRoot
+	 *            The directory to scan
+	 * @return A list of directories that are module roots. If <code>modulesRoot</code> is a module root in itself,
+	 *         this will be the only entry.
+	 */
+	public Collection<File> findModuleRoots(File modulesRoot) {
+		Collection<File> moduleRoots = new ArrayList<File>();
+		ExecutorService executor = null;
+		try {
+			List<File> level = new ArrayList<File>();
+			level.add(modulesRoot);
+			while(!level.isEmpty()) {
+				List<DirectoryScan> scans = new ArrayList<DirectoryScan>(level.size());
+				if(level.size() == 1 || threadCount == 1) {
+					for(File directory : level)
+						scans.add(scan(directory));
+				}
+				else {
+					if(executor == null)
+						executor = Executors.newFixedThreadPool(threadCount);
+					List<Future<DirectoryScan>> tasks = new ArrayList<Future<DirectoryScan>>(level.size());
+					for(final File directory : level)
+						tasks.add(executor.submit(new Callable<DirectoryScan>() {
+							@Override
+							public DirectoryScan call() {
+								return scan(directory);
+							}
+						}));
+					for(Future<DirectoryScan> task : tasks)
+						scans.add(waitFor(task));
+				}
+
+				// Merge in the order the directories were found to keep the result stable
+				List<File> nextLevel = new ArrayList<File>();
+				int idx = 0;
+				for(DirectoryScan scan : scans) {
+					File directory = level.get(idx++);
+					if(scan == null)
+						continue;
+					if(scan.moduleRoot)
+						moduleRoots.add(directory);
+					else
+						nextLevel.addAll(scan.subdirectories);
+				}
+				level = nextLevel;
+			}
+		}
+		finally {
+			if(executor != null)
+				executor.shutdownNow();
+		}
+		return moduleRoots;
+	}
+
+	/**
+	 * Reads the entries of one directory.
+	 *
+	 * @return The result of the scan or <code>null</code> if <code>directory</code> is not a directory or if it is
+	 *         empty
+	 */
+	private DirectoryScan scan(File directory) {
+		String[] names = directory.list();
+		if(names == null || names.length == 0)
+			return null;
+
+		Set<String> accepted = new HashSet<String>();
+		for(String name : names)
+			if(accept(directory, name))
+				accepted.add(name);
+
+		DirectoryScan scan = new DirectoryScan();
+		if(accepted.contains(METADATA_JSON_NAME))
+			scan.moduleRoot = true;
+		else
+			for(MetadataExtractor extractor : metadataExtractors)
+				if(extractor.canExtractFrom(directory, accepted, filter)) {
+					scan.moduleRoot = true;
+					break;
+				}
+
+		if(!scan.moduleRoot) {
+			// Entries that aren't directories are sorted out when they are scanned
+			String[] sorted = accepted.toArray(new String[accepted.size()]);
+			Arrays.sort(sorted);
+			scan.subdirectories = new ArrayList<File>(sorted.length);
+			for(String name : sorted)
+				scan.subdirectories.add(new File(directory, name));
+		}
+		return scan;
+	}
+}
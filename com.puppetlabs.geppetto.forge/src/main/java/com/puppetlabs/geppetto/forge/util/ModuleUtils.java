@@ -11,7 +11,6 @@
 package com.puppetlabs.geppetto.forge.util;
 
 import static com.puppetlabs.geppetto.diagnostic.Diagnostic.ERROR;
-import static com.puppetlabs.geppetto.forge.Forge.METADATA_JSON_NAME;
 import static com.puppetlabs.geppetto.forge.Forge.PARSE_FAILURE;
 
 import java.io.File;
@@ -19,7 +18,6 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.regex.Pattern;
 
@@ -183,42 +181,11 @@ public class ModuleUtils {
 	 * A directory that contains such a file will not be scanned in turn.
 	 * 
 	 * @return A list of directories where such files were found
+	 * @see ModuleRootFinder
 	 */
 	public static Collection<File> findModuleRoots(File modulesRoot, FileFilter filter,
 			Iterable<MetadataExtractor> metadataExtractors) {
-		Collection<File> moduleRoots = new ArrayList<File>();
-		if(ModuleUtils.findModuleRoots(filter, modulesRoot, moduleRoots, metadataExtractors))
-			// The repository is a module in itself
-			moduleRoots.add(modulesRoot);
-		return moduleRoots;
-	}
-
-	private static boolean findModuleRoots(FileFilter filter, File modulesRoot, Collection<File> moduleFiles,
-			Iterable<MetadataExtractor> metadataExtractors) {
-		File[] files = modulesRoot.listFiles(filter);
-		if(files != null) {
-			// This is a directory
-			int idx = files.length;
-			if(idx > 0) {
-				// And it's not empty
-				while(--idx >= 0)
-					if(METADATA_JSON_NAME.equals(files[idx].getName()))
-						return true;
-
-				for(MetadataExtractor extractor : metadataExtractors)
-					if(extractor.canExtractFrom(modulesRoot, filter))
-						return true;
-
-				// Check subdirectories
-				idx = files.length;
-				while(--idx >= 0) {
-					File file = files[idx];
-					if(findModuleRoots(filter, file, moduleFiles, metadataExtractors))
-						moduleFiles.add(file);
-				}
-			}
-		}
-		return false;
+		return new ModuleRootFinder(filter, metadataExtractors).findModuleRoots(modulesRoot);
 	}
 
 	/**
@@ -15,7 +15,9 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.puppetlabs.geppetto.forge.model.NamedTypeItem;
 import com.puppetlabs.geppetto.forge.model.Type;
@@ -39,82 +41,131 @@ import org.jrubyparser.ast.SymbolNode;
  * 
  */
 public class Types {
-	public static void loadProvider(Type type, File providerDir) throws IOException {
-		providerDir = new File(providerDir, type.getName());
+	/**
+	 * Collects all providers that are declared in a provider file, i.e. all calls on the form
+	 * <code>Puppet::Type.type(:&lt;type&gt;).provide(:&lt;provider&gt;)</code>.
+	 * 
+	 * @param root
+	 *            The parsed provider file
+	 * @param providers
+	 *            Map that receives the providers, keyed by the name of the type that they provide for
+	 */
+	static void collectProviders(RootNode root, Map<String, List<NamedTypeItem>> providers) {
+		for(Node node : RubyParserUtils.findNodes(root.getBody(), new NodeType[] { NodeType.CALLNODE })) {
+			CallNode call = (CallNode) node;
+			if(!"provide".equals(call.getName()))
+				continue;
 
-		File[] providerFiles = providerDir.listFiles();
-		if(providerFiles == null || providerFiles.length == 0)
-			// That's OK. It's optional
-			return;
+			Node receiverNode = call.getReceiver();
+			if(!(receiverNode instanceof CallNode))
+				continue;
 
-		ArrayList<NamedTypeItem> providers = null;
+			CallNode receiver = (CallNode) receiverNode;
+			if(!"type".equals(receiver.getName()))
+				continue;
+			Node recRecNode = receiver.getReceiver();
+			if(!(recRecNode instanceof Colon2ConstNode))
+				continue;
+			Colon2ConstNode recRec = (Colon2ConstNode) recRecNode;
+			if(!("Puppet".equals(((ConstNode) recRec.getLeftNode()).getName()) && "Type".equals(recRec.getName())))
+				continue;
 
-		for(File providerFile : providerFiles) {
-			String providerFileName = providerFile.getName();
-			if(!providerFileName.endsWith(".rb"))
+			// Receiver is Puppet::Type.type
+			List<Node> symArgs = RubyParserUtils.findNodes(receiver.getArgs(), new NodeType[] { NodeType.SYMBOLNODE });
+			if(symArgs.size() != 1)
 				continue;
+			String typeName = ((SymbolNode) symArgs.get(0)).getName();
 
-			for(Node node : RubyParserUtils.findNodes(
-				RubyParserUtils.parseFile(providerFile).getBody(), new NodeType[] { NodeType.CALLNODE })) {
-				CallNode call = (CallNode) node;
-				if(!"provide".equals(call.getName()))
-					continue;
-
-				Node receiverNode = call.getReceiver();
-				if(!(receiverNode instanceof CallNode))
-					continue;
-
-				CallNode receiver = (CallNode) receiverNode;
-				if(!"type".equals(receiver.getName()))
-					continue;
-				Node recRecNode = receiver.getReceiver();
-				if(!(recRecNode instanceof Colon2ConstNode))
-					continue;
-				Colon2ConstNode recRec = (Colon2ConstNode) recRecNode;
-				if(!("Puppet".equals(((ConstNode) recRec.getLeftNode()).getName()) && "Type".equals(recRec.getName())))
-					continue;
-
-				// Receiver is Puppet::Type.type
-				List<Node> symArgs = RubyParserUtils.findNodes(
-					receiver.getArgs(), new NodeType[] { NodeType.SYMBOLNODE });
-				if(!(symArgs.size() == 1 && type.getName().equals(((SymbolNode) symArgs.get(0)).getName())))
-					// Not this type
-					continue;
-
-				symArgs = RubyParserUtils.findNodes(call.getArgs(), new NodeType[] { NodeType.SYMBOLNODE });
-				if(symArgs.isEmpty())
-					continue;
-
-				NamedTypeItem provider = new NamedTypeItem();
-				provider.setName(((SymbolNode) symArgs.get(0)).getName());
-				if(providers == null)
-					providers = new ArrayList<NamedTypeItem>();
-				providers.add(provider);
-
-				List<Node> calls = RubyParserUtils.findNodes(call.getIter(), new NodeType[] {
-						NodeType.BLOCKNODE, NodeType.FCALLNODE });
-				if(calls.isEmpty())
-					calls = RubyParserUtils.findNodes(call.getIter(), new NodeType[] { NodeType.FCALLNODE });
-				if(!calls.isEmpty()) {
-					for(Node snode : calls) {
-						FCallNode subCall = (FCallNode) snode;
-						if("desc".equals(subCall.getName())) {
-							List<Node> strArgs = RubyParserUtils.findNodes(
-								subCall.getArgs(), new NodeType[] { NodeType.STRNODE });
-							if(strArgs.size() >= 1)
-								provider.setDocumentation(((StrNode) strArgs.get(0)).getValue());
-							break;
-						}
+			symArgs = RubyParserUtils.findNodes(call.getArgs(), new NodeType[] { NodeType.SYMBOLNODE });
+			if(symArgs.isEmpty())
+				continue;
+
+			NamedTypeItem provider = new NamedTypeItem();
+			provider.setName(((SymbolNode) symArgs.get(0)).getName());
+			List<NamedTypeItem> typeProviders = providers.get(typeName);
+			if(typeProviders == null) {
+				typeProviders = new ArrayList<NamedTypeItem>();
+				providers.put(typeName, typeProviders);
+			}
+			typeProviders.add(provider);
+
+			List<Node> calls = RubyParserUtils.findNodes(call.getIter(), new NodeType[] {
+					NodeType.BLOCKNODE, NodeType.FCALLNODE });
+			if(calls.isEmpty())
+				calls = RubyParserUtils.findNodes(call.getIter(), new NodeType[] { NodeType.FCALLNODE });
+			if(!calls.isEmpty()) {
+				for(Node snode : calls) {
+					FCallNode subCall = (FCallNode) snode;
+					if("desc".equals(subCall.getName())) {
+						List<Node> strArgs = RubyParserUtils.findNodes(
+							subCall.getArgs(), new NodeType[] { NodeType.STRNODE });
+						if(strArgs.size() >= 1)
+							provider.setDocumentation(((StrNode) strArgs.get(0)).getValue());
+						break;
 					}
 				}
 			}
 		}
+	}
+
+	/**
+	 * Returns the Ruby files in the provider directory of the given type.
+	 * 
+	 * @return The files, possibly empty but never <code>null</code>
+	 */
+	static List<File> getProviderFiles(String typeName, File providerDir) {
+		File[] providerFiles = new File(providerDir, typeName).listFiles();
+		if(providerFiles == null || providerFiles.length == 0)
+			// That's OK. It's optional
+			return Collections.emptyList();
+
+		List<File> rbFiles = new ArrayList<File>(providerFiles.length);
+		for(File providerFile : providerFiles)
+			if(providerFile.getName().endsWith(".rb"))
+				rbFiles.add(providerFile);
+		return rbFiles;
+	}
+
+	/**
+	 * Returns the Ruby files in the type directory.
+	 * 
+	 * @return The files, possibly empty but never <code>null</code>
+	 */
+	static List<File> getTypeFiles(File puppetDir, FileFilter exclusionFilter) {
+		if(exclusionFilter == null)
+			exclusionFilter = ModuleUtils.DEFAULT_FILE_FILTER;
+		File[] typeFiles = new File(puppetDir, "type").listFiles(exclusionFilter);
+		if(typeFiles == null || typeFiles.length == 0)
+			return Collections.emptyList();
+
+		List<File> rbFiles = new ArrayList<File>(typeFiles.length);
+		for(File typeFile : typeFiles)
+			if(typeFile.getName().endsWith(".rb"))
+				rbFiles.add(typeFile);
+		return rbFiles;
+	}
+
+	public static void loadProvider(Type type, File providerDir) throws IOException {
+		ArrayList<NamedTypeItem> providers = null;
+		for(File providerFile : getProviderFiles(type.getName(), providerDir)) {
+			Map<String, List<NamedTypeItem>> fileProviders = new LinkedHashMap<String, List<NamedTypeItem>>();
+			collectProviders(RubyParserUtils.parseFile(providerFile), fileProviders);
+			List<NamedTypeItem> typeProviders = fileProviders.get(type.getName());
+			if(typeProviders == null)
+				// Not this type
+				continue;
+			if(providers == null)
+				providers = new ArrayList<NamedTypeItem>();
+			providers.addAll(typeProviders);
+		}
 		type.setProviders(providers);
 	}
 
 	public static void loadTypeFile(Type type, File typeFile) throws IOException {
-		String typeFileStr = typeFile.getAbsolutePath();
-		RootNode root = RubyParserUtils.parseFile(typeFile);
+		loadTypeFile(type, RubyParserUtils.parseFile(typeFile), typeFile.getAbsolutePath());
+	}
+
+	static void loadTypeFile(Type type, RootNode root, String typeFileStr) throws IOException {
 		List<Node> nodes = RubyParserUtils.findNodes(root.getBody(), new NodeType[] { NodeType.MODULENODE });
 		ModuleNode puppetModule = null;
 		for(Node node : nodes) {
@@ -263,16 +314,8 @@ public class Types {
 	}
 
 	public static List<Type> loadTypes(File puppetDir, FileFilter exclusionFilter) throws IOException {
-		if(exclusionFilter == null)
-			exclusionFilter = ModuleUtils.DEFAULT_FILE_FILTER;
-		File[] typeFiles = new File(puppetDir, "type").listFiles(exclusionFilter);
-		if(typeFiles == null || typeFiles.length == 0)
-			return Collections.emptyList();
-
 		List<Type> typeList = new ArrayList<Type>();
-		for(File typeFile : typeFiles) {
-			if(!typeFile.getName().endsWith(".rb"))
-				continue;
+		for(File typeFile : getTypeFiles(puppetDir, exclusionFilter)) {
 			Type type = new Type();
 			loadTypeFile(type, typeFile);
 			typeList.add(type);
@@ -287,4 +330,22 @@ public class Types {
 		return typeList;
 	}
 
+	/**
+	 * Loads the types and providers found beneath <tt>puppetDir</tt>. Files that have been parsed before are not
+	 * parsed again if a <tt>cache</tt> is given.
+	 * 
+	 * @param puppetDir
+	 *            The directory containing the <tt>type</tt> and <tt>provider</tt> directories
+	 * @param exclusionFilter
+	 *            The filter that is used for selecting the type files. Can be <tt>null</tt>.
+	 * @param cache
+	 *            The cache to use or <tt>null</tt> to parse all files
+	 * @return The types, possibly empty but never <code>null</code>
+	 * @throws IOException
+	 */
+	public static List<Type> loadTypes(File puppetDir, FileFilter exclusionFilter, TypesCache cache) throws IOException {
+		return cache == null
+				? loadTypes(puppetDir, exclusionFilter)
+				: cache.loadTypes(puppetDir, exclusionFilter);
+	}
 }
@@ -0,0 +1,501 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.forge.util;
+
+import static com.puppetlabs.geppetto.forge.Forge.TYPES_CACHE_LOCATION;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.puppetlabs.geppetto.common.annotations.Nullable;
+import com.puppetlabs.geppetto.common.os.StreamUtil;
+import com.puppetlabs.geppetto.forge.model.NamedTypeItem;
+import com.puppetlabs.geppetto.forge.model.Type;
+
+/**
+ * Caches what {@link Types} extracts from Ruby type and provider files. Entries are keyed by the SHA1 digest of the
+ * file content so a file is never parsed twice, regardless of where it is found, and a changed file is always parsed
+ * again. The most recently used entries are kept in memory. When a location is injected using the name
+ * {@link com.puppetlabs.geppetto.forge.Forge#TYPES_CACHE_LOCATION} (see
+ * {@link com.puppetlabs.geppetto.forge.impl.ForgeModule#getTypesCacheLocation()}), entries are also stored on disk and
+ * survive between runs. The entries are stored in a sub directory named after the {@link #FORMAT_VERSION} so that
+ * entries written in another format are never read.
+ * <p>
+ * Files that are not found in the cache are parsed in parallel.
+ * </p>
+ * <p>
+ * The cached types and providers are never handed out. Each call returns new {@link Type} and {@link NamedTypeItem}
+ * instances that the caller is free to modify.
+ * </p>
+ */
+@Singleton
+public class TypesCache {
+	/**
+	 * What is stored for a provider file
+	 */
+	private static class ProviderEntry {
+		ProviderMap providers;
+	}
+
+	/**
+	 * The providers declared in a file, keyed by the name of the type that they provide for
+	 */
+	static class ProviderMap extends LinkedHashMap<String, List<NamedTypeItem>> {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * What is stored for a type file
+	 */
+	private static class TypeEntry {
+		Type type;
+	}
+
+	public static final int MAX_ENTRIES = 4096;
+
+	/**
+	 * The version of the format of the entries stored on disk. It must be increased whenever the stored classes or what
+	 * {@link Types} extracts from the files changes.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final String PROVIDER_SUFFIX = "-provider.json";
+
+	private static final String TYPE_SUFFIX = "-type.json";
+
+	private static <T> Future<T> completed(final T value) {
+		FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() {
+				return value;
+			}
+		});
+		future.run();
+		return future;
+	}
+
+	private static NamedTypeItem copy(NamedTypeItem item) {
+		NamedTypeItem copy = new NamedTypeItem();
+		copy.setName(item.getName());
+		copy.setDocumentation(item.getDocumentation());
+		return copy;
+	}
+
+	/**
+	 * Returns a list with copies of the given items, or <code>null</code> if there are no items (the same as when the
+	 * file is parsed without a cache).
+	 */
+	private static List<NamedTypeItem> copy(List<NamedTypeItem> items) {
+		if(items.isEmpty())
+			return null;
+		List<NamedTypeItem> copy = new ArrayList<NamedTypeItem>(items.size());
+		for(NamedTypeItem item : items)
+			copy.add(copy(item));
+		return copy;
+	}
+
+	private static Type copy(Type type) {
+		Type copy = new Type();
+		copy.setName(type.getName());
+		copy.setDocumentation(type.getDocumentation());
+		copy.setParameters(copy(type.getParameters()));
+		copy.setProperties(copy(type.getProperties()));
+		return copy;
+	}
+
+	private static String digest(byte[] content) {
+		try {
+			StringBuilder bld = new StringBuilder();
+			Checksums.appendHex(bld, MessageDigest.getInstance("SHA1").digest(content));
+			return bld.toString();
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Runs the given tasks. More than one task is run in parallel by an executor that is created the first time it is
+	 * needed and then reused.
+	 *
+	 * @param executor
+	 *            The executor created by an earlier call or <code>null</code>
+	 * @return The executor, or <code>null</code> if none has been needed yet
+	 */
+	private static ExecutorService execute(ExecutorService executor, List<FutureTask<?>> tasks) {
+		if(executor == null) {
+			int threadCount = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+			if(threadCount > 1)
+				executor = Executors.newFixedThreadPool(threadCount);
+		}
+		for(FutureTask<?> task : tasks)
+			if(executor != null)
+				executor.execute(task);
+			else
+				// Run it here and now
+				task.run();
+		return executor;
+	}
+
+	private static byte[] read(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bld = new ByteArrayOutputStream((int) file.length());
+			byte[] buf = new byte[0x1000];
+			int cnt;
+			while((cnt = input.read(buf)) > 0)
+				bld.write(buf, 0, cnt);
+			return bld.toByteArray();
+		}
+		finally {
+			StreamUtil.close(input);
+		}
+	}
+
+	private static Reader reader(byte[] content) {
+		// Same encoding as used by RubyParserUtils.parseFile
+		return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)));
+	}
+
+	private static <T> T waitFor(Future<T> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Loading of types was interrupted");
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	@Inject(optional = true)
+	@Nullable
+	@Named(TYPES_CACHE_LOCATION)
+	private File location;
+
+	private final Gson gson = new Gson();
+
+	private final Map<String, Object> entries = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Creates a cache that is kept in memory only
+	 */
+	public TypesCache() {
+	}
+
+	/**
+	 * @param location
+	 *            The directory where entries are stored on disk or <tt>null</tt> if entries should be kept in memory
+	 *            only
+	 */
+	public TypesCache(File location) {
+		this.location = location;
+	}
+
+	/**
+	 * Returns the providers stored under the given key in memory or on disk, or <code>null</code> if they are not
+	 * cached. The returned map is the cached one and must not be modified.
+	 */
+	private ProviderMap getCachedProviders(String key) {
+		ProviderEntry entry = (ProviderEntry) getEntry(key);
+		if(entry == null) {
+			entry = readEntry(key, ProviderEntry.class);
+			if(entry == null || entry.providers == null)
+				return null;
+			putEntry(key, entry);
+		}
+		return entry.providers;
+	}
+
+	/**
+	 * Returns the type stored under the given key in memory or on disk, or <code>null</code> if it is not cached. The
+	 * returned type is the cached one and must not be modified.
+	 */
+	private Type getCachedType(String key) {
+		TypeEntry entry = (TypeEntry) getEntry(key);
+		if(entry == null) {
+			entry = readEntry(key, TypeEntry.class);
+			if(entry == null || entry.type == null)
+				return null;
+			putEntry(key, entry);
+		}
+		return entry.type;
+	}
+
+	private synchronized Object getEntry(String key) {
+		return entries.get(key);
+	}
+
+	private File getEntryFile(String key) {
+		// Use the first two characters of the digest as a sub directory to keep the directories reasonably small
+		File versionDir = new File(location, "v" + FORMAT_VERSION);
+		return new File(new File(versionDir, key.substring(0, 2)), key);
+	}
+
+	/**
+	 * @return The directory where entries are stored on disk or <tt>null</tt> if entries are kept in memory only
+	 */
+	public File getLocation() {
+		return location;
+	}
+
+	/**
+	 * Returns the providers declared in the given file, keyed by the name of the type that they provide for. The
+	 * returned map is the cached one and must not be modified.
+	 */
+	ProviderMap getProviders(File providerFile) throws IOException {
+		byte[] content = read(providerFile);
+		String key = digest(content) + PROVIDER_SUFFIX;
+		ProviderMap providers = getCachedProviders(key);
+		return providers == null
+				? parseProviders(providerFile, content, key)
+				: providers;
+	}
+
+	/**
+	 * Returns the type declared in the given file, without providers.
+	 */
+	Type getType(File typeFile) throws IOException {
+		byte[] content = read(typeFile);
+		String key = digest(content) + TYPE_SUFFIX;
+		Type type = getCachedType(key);
+		return copy(type == null
+				? parseType(typeFile, content, key)
+				: type);
+	}
+
+	/**
+	 * Loads the types and providers found beneath <tt>puppetDir</tt>. The result is the same as the result of
+	 * {@link Types#loadTypes(File, FileFilter)}.
+	 *
+	 * @param puppetDir
+	 *            The directory containing the <tt>type</tt> and <tt>provider</tt> directories
+	 * @param exclusionFilter
+	 *            The filter that is used for selecting the type files. Can be <tt>null</tt>.
+	 * @return The types, possibly empty but never <code>null</code>
+	 * @throws IOException
+	 */
+	public List<Type> loadTypes(File puppetDir, FileFilter exclusionFilter) throws IOException {
+		List<File> typeFiles = Types.getTypeFiles(puppetDir, exclusionFilter);
+		if(typeFiles.isEmpty())
+			return Collections.emptyList();
+
+		// Files are looked up in the cache here, only the files that are not found are parsed by the executor
+		ExecutorService executor = null;
+		try {
+			List<Future<Type>> typeTasks = new ArrayList<Future<Type>>(typeFiles.size());
+			List<FutureTask<?>> misses = new ArrayList<FutureTask<?>>();
+			for(final File typeFile : typeFiles) {
+				final byte[] content = read(typeFile);
+				final String key = digest(content) + TYPE_SUFFIX;
+				Type type = getCachedType(key);
+				if(type != null) {
+					typeTasks.add(completed(type));
+					continue;
+				}
+				FutureTask<Type> task = new FutureTask<Type>(new Callable<Type>() {
+					@Override
+					public Type call() throws IOException {
+						return parseType(typeFile, content, key);
+					}
+				});
+				misses.add(task);
+				typeTasks.add(task);
+			}
+			executor = execute(executor, misses);
+
+			List<Type> typeList = new ArrayList<Type>(typeFiles.size());
+			for(Future<Type> typeTask : typeTasks)
+				typeList.add(copy(waitFor(typeTask)));
+
+			File providerDir = new File(puppetDir, "provider");
+			List<List<Future<ProviderMap>>> providerTasks = new ArrayList<List<Future<ProviderMap>>>(typeList.size());
+			misses.clear();
+			for(Type type : typeList) {
+				List<File> providerFiles = Types.getProviderFiles(type.getName(), providerDir);
+				List<Future<ProviderMap>> tasks = new ArrayList<Future<ProviderMap>>(providerFiles.size());
+				for(final File providerFile : providerFiles) {
+					final byte[] content = read(providerFile);
+					final String key = digest(content) + PROVIDER_SUFFIX;
+					ProviderMap providers = getCachedProviders(key);
+					if(providers != null) {
+						tasks.add(completed(providers));
+						continue;
+					}
+					FutureTask<ProviderMap> task = new FutureTask<ProviderMap>(new Callable<ProviderMap>() {
+						@Override
+						public ProviderMap call() throws IOException {
+							return parseProviders(providerFile, content, key);
+						}
+					});
+					misses.add(task);
+					tasks.add(task);
+				}
+				providerTasks.add(tasks);
+			}
+			executor = execute(executor, misses);
+
+			int idx = 0;
+			for(Type type : typeList) {
+				ArrayList<NamedTypeItem> providers = null;
+				for(Future<ProviderMap> task : providerTasks.get(idx)) {
+					List<NamedTypeItem> typeProviders = waitFor(task).get(type.getName());
+					if(typeProviders == null)
+						// Not this type
+						continue;
+					if(providers == null)
+						providers = new ArrayList<NamedTypeItem>();
+					for(NamedTypeItem provider : typeProviders)
+						providers.add(copy(provider));
+				}
+				type.setProviders(providers);
+				++idx;
+			}
+			return typeList;
+		}
+		finally {
+			if(executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Parses the providers declared in the given file and caches them. The returned map is the cached one and must not
+	 * be modified.
+	 */
+	private ProviderMap parseProviders(File providerFile, byte[] content, String key) throws IOException {
+		ProviderEntry entry = new ProviderEntry();
+		entry.providers = new ProviderMap();
+		Types.collectProviders(RubyParserUtils.parse(providerFile.getAbsolutePath(), reader(content)), entry.providers);
+		writeEntry(key, entry);
+		putEntry(key, entry);
+		return entry.providers;
+	}
+
+	/**
+	 * Parses the type declared in the given file and caches it. The returned type is the cached one and must not be
+	 * modified.
+	 */
+	private Type parseType(File typeFile, byte[] content, String key) throws IOException {
+		// Failures are not cached since the message contains the path of the file
+		TypeEntry entry = new TypeEntry();
+		entry.type = new Type();
+		String typeFileStr = typeFile.getAbsolutePath();
+		Types.loadTypeFile(entry.type, RubyParserUtils.parse(typeFileStr, reader(content)), typeFileStr);
+		writeEntry(key, entry);
+		putEntry(key, entry);
+		return entry.type;
+	}
+
+	private synchronized void putEntry(String key, Object entry) {
+		entries.put(key, entry);
+	}
+
+	private <T> T readEntry(String key, Class<T> entryClass) {
+		if(location == null)
+			return null;
+
+		File entryFile = getEntryFile(key);
+		if(!entryFile.isFile())
+			return null;
+
+		try {
+			Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(entryFile), "UTF-8"));
+			try {
+				return gson.fromJson(reader, entryClass);
+			}
+			finally {
+				StreamUtil.close(reader);
+			}
+		}
+		catch(IOException e) {
+			// Parse the file again
+			return null;
+		}
+		catch(JsonParseException e) {
+			// Parse the file again
+			return null;
+		}
+	}
+
+	private void writeEntry(String key, Object entry) {
+		if(location == null)
+			return;
+
+		File entryFile = getEntryFile(key);
+		File dir = entryFile.getParentFile();
+		try {
+			if(!(dir.mkdirs() || dir.isDirectory()))
+				return;
+
+			// Write to a temporary file first so that concurrent readers never see a partial entry
+			File tmpFile = File.createTempFile(key, ".tmp", dir);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+			try {
+				gson.toJson(entry, writer);
+			}
+			finally {
+				StreamUtil.close(writer);
+			}
+			if(!tmpFile.renameTo(entryFile))
+				tmpFile.delete();
+		}
+		catch(IOException e) {
+			// The entry is still cached in memory
+		}
+	}
+}
@@ -12,6 +12,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
 	TestCatalogGraph.class,
 	TestDependencyGraph.class, // has Xtest methods that can be turned on if repo is present
+	TestLayeredLayout.class,
 })
 // @fmtOn
 @RunWith(Suite.class)
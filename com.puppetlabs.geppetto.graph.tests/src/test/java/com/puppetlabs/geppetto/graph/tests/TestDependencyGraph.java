@@ -10,12 +10,21 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.graph.DependencyGraphOptions;
+import com.puppetlabs.geppetto.graph.DependencyGraphOptions.Aggregation;
 import com.puppetlabs.geppetto.graph.GraphHrefType;
 import com.puppetlabs.geppetto.graph.IHrefProducer;
 import com.puppetlabs.geppetto.graph.SVGProducer;
 import com.puppetlabs.geppetto.graph.dependency.DependencyGraphModule;
+import com.puppetlabs.geppetto.graph.layout.DotReader;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Edge;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Node;
 import com.puppetlabs.geppetto.validation.FileType;
 import com.puppetlabs.geppetto.validation.ValidationOptions;
 import com.puppetlabs.geppetto.validation.ValidationService;
@@ -27,10 +36,101 @@ import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.emf.ecore.EClass;
 import org.junit.Test;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
 public class TestDependencyGraph extends AbstractValidationTest {
+	/**
+	 * @return the edges of the graph as "from -> to [label]" where from and to are the first lines of the vertex labels
+	 */
+	private static Set<String> edgesOf(LayeredGraph graph) {
+		Set<String> edges = Sets.newTreeSet();
+		for(Edge edge : graph.getEdges()) {
+			StringBuilder bld = new StringBuilder();
+			bld.append(labelLines(edge.getFrom()).get(0));
+			bld.append(" -> ");
+			bld.append(labelLines(edge.getTo()).get(0));
+			List<String> label = labelLines(edge.getAttribute("label"));
+			if(!label.isEmpty())
+				bld.append(" [").append(Joiner.on(" / ").join(label)).append(']');
+			edges.add(bld.toString());
+		}
+		return edges;
+	}
+
+	private static List<String> labelLines(Node node) {
+		List<String> lines = labelLines(node.getAttribute("label"));
+		if(lines.isEmpty())
+			lines.add(node.getId());
+		return lines;
+	}
+
+	/**
+	 * @return the non empty lines of an escaped or HTML label
+	 */
+	private static List<String> labelLines(String label) {
+		List<String> lines = Lists.newArrayList();
+		if(label == null)
+			return lines;
+		if(label.startsWith("<") && label.endsWith(">"))
+			label = label.substring(1, label.length() - 1).replaceAll("(?i)<\\s*(br|/tr)\\b[^>]*>", "\n").replaceAll(
+				"<[^>]*>", "");
+		else
+			label = label.replaceAll("\\\\[nlr]", "\n");
+		for(String line : label.split("\n")) {
+			line = line.trim();
+			if(line.length() > 0)
+				lines.add(line);
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the vertices of the graph as the lines of their labels separated by " / "
+	 */
+	private static Set<String> nodesOf(LayeredGraph graph) {
+		Set<String> nodes = Sets.newTreeSet();
+		for(Node node : graph.getNodes())
+			nodes.add(Joiner.on(" / ").join(labelLines(node)));
+		return nodes;
+	}
+
+	/**
+	 * Produces the graph of testData/graphAggregation where all relationships are module dependencies:
+	 * one-a and one-b depend on each other and on one-c, two-d depends on one-c and two-e, and two-e depends on
+	 * the missing one-x.
+	 *
+	 * @param focus
+	 *            The directories of the modules to focus on, or <code>null</code> for all modules
+	 */
+	private LayeredGraph produceAggregationGraph(String[] focus, DependencyGraphOptions graphOptions)
+			throws Exception {
+		File root = TestDataProvider.getTestFile(new Path("testData/graphAggregation/"));
+		ValidationService vs = getValidationService();
+		Diagnostic chain = new Diagnostic();
+		ValidationOptions options = getValidationOptions();
+		options.setCheckLayout(true);
+		options.setCheckModuleSemantics(true);
+		options.setCheckReferences(true);
+		options.setFileType(FileType.PUPPET_ROOT);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		File[] modules = null;
+		if(focus != null) {
+			modules = new File[focus.length];
+			for(int i = 0; i < focus.length; ++i)
+				modules[i] = new File(root, "modules/" + focus[i] + "/Modulefile");
+		}
+		BuildResult buildResult = vs.validate(chain, root, options, null, SubMonitor.convert(null));
+		getDependencyGraphProducer().produceGraph(
+			null, "Module dependencies for graphAggregation", modules, graphOptions, stream, buildResult, chain);
+
+		assertTrue("Stream should contain data", stream.size() > 10);
+		return new DotReader().read(new ByteArrayInputStream(stream.toByteArray()));
+	}
+
 	@Test
 	public void demoDependencyGraph() throws Exception {
 		File root = TestDataProvider.getTestFile(new Path("testData/test-modules/"));
@@ -80,9 +180,6 @@ public class TestDependencyGraph extends AbstractValidationTest {
 			null, "Module dependencies for graphTestData", null, stream, result, chain);
 
 		assertTrue("Stream contains data", stream.size() > 10);
-		String output = stream.toString();
-		System.err.println(output);
-
 	}
 
 	/**
@@ -109,9 +206,73 @@ public class TestDependencyGraph extends AbstractValidationTest {
 		// Currently found ok by dump or visual inspection.
 
 		assertTrue("Stream contains data", stream.size() > 10);
-		String output = stream.toString();
-		System.err.println(output);
+	}
+
+	@Test
+	public void dependencyGraph_Aggregated() throws Exception {
+		DependencyGraphOptions graphOptions = new DependencyGraphOptions();
+		graphOptions.setAggregation(Aggregation.OWNER);
+		LayeredGraph graph = produceAggregationGraph(null, graphOptions);
+
+		// the unresolved one-x is owned by one as well
+		assertEquals(Sets.newTreeSet(Arrays.asList("one / 4 modules", "two / 2 modules")), nodesOf(graph));
+		// d -> c and e -> x
+		assertEquals(Sets.newTreeSet(Arrays.asList("two -> one [2]")), edgesOf(graph));
+	}
 
+	@Test
+	public void dependencyGraph_Component() throws Exception {
+		DependencyGraphOptions graphOptions = new DependencyGraphOptions();
+		graphOptions.setAggregation(Aggregation.COMPONENT);
+		LayeredGraph graph = produceAggregationGraph(null, graphOptions);
+
+		// one-a and one-b depend on each other, all other components are drawn as the module itself
+		assertEquals(Sets.newTreeSet(Arrays.asList(
+			"one-a / + 1 more modules", "one-c / 1.0.0", "one-x", "two-d / 1.0.0", "two-e / 1.0.0")), nodesOf(graph));
+		// a -> c and b -> c
+		assertEquals(Sets.newTreeSet(Arrays.asList(
+			"one-a -> one-c [2]", "two-d -> one-c", "two-d -> two-e", "two-e -> one-x")), edgesOf(graph));
+	}
+
+	@Test
+	public void dependencyGraph_Dependents() throws Exception {
+		DependencyGraphOptions graphOptions = new DependencyGraphOptions();
+		graphOptions.setDepth(1);
+		graphOptions.setDependents(true);
+		LayeredGraph graph = produceAggregationGraph(new String[] { "c" }, graphOptions);
+
+		// c has no dependencies, the modules that depend on it are included
+		assertEquals(
+			Sets.newTreeSet(Arrays.asList("one-a / 1.0.0", "one-b / 1.0.0", "one-c / 1.0.0", "two-d / 1.0.0")),
+			nodesOf(graph));
+		assertEquals(Sets.newTreeSet(Arrays.asList(
+			"one-a -> one-b [unversioned]", "one-a -> one-c [unversioned]", "one-b -> one-a [unversioned]",
+			"one-b -> one-c [unversioned]", "two-d -> one-c [unversioned]")), edgesOf(graph));
+
+		// without dependents only the focus is within the depth
+		graphOptions.setDependents(false);
+		graph = produceAggregationGraph(new String[] { "c" }, graphOptions);
+		assertEquals(Sets.newTreeSet(Arrays.asList("one-c / 1.0.0")), nodesOf(graph));
+		assertTrue("There should be no edges", edgesOf(graph).isEmpty());
+	}
+
+	@Test
+	public void dependencyGraph_Depth() throws Exception {
+		DependencyGraphOptions graphOptions = new DependencyGraphOptions();
+		graphOptions.setDepth(1);
+		LayeredGraph graph = produceAggregationGraph(new String[] { "d" }, graphOptions);
+
+		// one-x is two relationships away
+		assertEquals(
+			Sets.newTreeSet(Arrays.asList("one-c / 1.0.0", "two-d / 1.0.0", "two-e / 1.0.0")), nodesOf(graph));
+		assertEquals(
+			Sets.newTreeSet(Arrays.asList("two-d -> one-c [unversioned]", "two-d -> two-e [unversioned]")),
+			edgesOf(graph));
+
+		graphOptions.setDepth(0);
+		graph = produceAggregationGraph(new String[] { "d" }, graphOptions);
+		assertEquals(Sets.newTreeSet(Arrays.asList("two-d / 1.0.0")), nodesOf(graph));
+		assertTrue("There should be no edges", edgesOf(graph).isEmpty());
 	}
 
 	@Test
@@ -132,7 +293,6 @@ public class TestDependencyGraph extends AbstractValidationTest {
 			null, "Module dependencies for graphTestData", modules, stream, buildResult, chain);
 
 		String output = stream.toString();
-		System.err.println(output);
 		assertTrue("Stream should contain data", stream.size() > 10);
 		assertFalse("xfunc should not be included", output.contains("xfunc"));
 		assertTrue("cfunc should  be included", output.contains("cfunc"));
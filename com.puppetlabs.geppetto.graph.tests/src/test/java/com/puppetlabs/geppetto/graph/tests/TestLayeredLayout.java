@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.puppetlabs.geppetto.graph.EmptyStringHrefProducer;
+import com.puppetlabs.geppetto.graph.catalog.CatalogServices;
+import com.puppetlabs.geppetto.graph.layout.DotReader;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Edge;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Node;
+import com.puppetlabs.geppetto.graph.layout.LayeredLayout;
+import com.puppetlabs.geppetto.graph.layout.LayeredLayoutEngine;
+
+public class TestLayeredLayout {
+
+	private static LayeredGraph layout(String dot) throws IOException {
+		LayeredGraph graph = new DotReader().read(dot);
+		new LayeredLayout().layout(graph, null);
+		return graph;
+	}
+
+	@Test
+	public void catalogGraph() throws Exception {
+		File catalogFile = TestDataProvider.getTestFile(new Path("testData/jsonCatalogs/sample1.json"));
+		InputStream catalogStream = new FileInputStream(catalogFile);
+		File svgFile = new File(TestDataProvider.getTestOutputDir(), "sampleCatalog1Layered.svg");
+		FileOutputStream svgStream = new FileOutputStream(svgFile);
+
+		CatalogServices catalogServices = new CatalogServices(
+			EmptyStringHrefProducer.class, "", LayeredLayoutEngine.class);
+		catalogServices.produceSVGGraph("Sample catalog", catalogStream, svgStream, new NullProgressMonitor(), null);
+		svgStream.close();
+		assertTrue("No SVG produced", Files.toString(svgFile, Charsets.UTF_8).contains("</svg>"));
+	}
+
+	@Test
+	public void cyclesAreLayered() throws Exception {
+		LayeredGraph graph = layout("digraph { a -> b -> c -> a; c -> c }");
+		assertEquals(0, graph.getNode("a").getLayer());
+		assertEquals(1, graph.getNode("b").getLayer());
+		assertEquals(2, graph.getNode("c").getLayer());
+		for(Edge edge : graph.getEdges())
+			assertNotNull("Edge not routed", edge.getPoints());
+
+		// the reversed edge still ends at a
+		double[] points = graph.getEdges().get(2).getPoints();
+		Node a = graph.getNode("a");
+		assertTrue(points[points.length - 1] <= a.getY() + a.getHeight() / 2 + 0.01);
+	}
+
+	@Test
+	public void deterministicOutput() throws Exception {
+		LayeredLayoutEngine engine = Guice.createInjector(new AbstractModule() {
+			@Override
+			protected void configure() {
+				bindConstant().annotatedWith(Names.named(LayeredLayoutEngine.DETERMINISTIC)).to(true);
+			}
+		}).getInstance(LayeredLayoutEngine.class);
+		assertTrue(engine.isDeterministic());
+
+		File dotFile = TestDataProvider.getTestFile(new Path("testData/layeredLayout/small.dot"));
+		File expected = TestDataProvider.getTestFile(new Path("testData/layeredLayout/small.svg"));
+		ByteArrayOutputStream svg = new ByteArrayOutputStream();
+		InputStream dotStream = new FileInputStream(dotFile);
+		try {
+			engine.writeSVG(null, dotStream, svg);
+		}
+		finally {
+			dotStream.close();
+		}
+		assertEquals(Files.toString(expected, Charsets.UTF_8), new String(svg.toByteArray(), Charsets.UTF_8));
+	}
+
+	@Test
+	public void longEdgesSpanLayers() throws Exception {
+		LayeredGraph graph = layout("digraph { a -> b -> c -> d; a -> d }");
+		assertEquals(3, graph.getNode("d").getLayer());
+		double[] points = graph.getEdges().get(3).getPoints();
+		// one dummy per layer in between
+		assertEquals(8, points.length);
+	}
+
+	@Test
+	public void treeHasNoCrossings() throws Exception {
+		LayeredGraph graph = layout("digraph { r -> a; r -> b; b -> b1; a -> a1; b -> b2; a -> a2 }");
+		double a = graph.getNode("a").getX();
+		double b = graph.getNode("b").getX();
+		for(String child : new String[] { "a1", "a2" })
+			for(String other : new String[] { "b1", "b2" })
+				assertEquals(a < b, graph.getNode(child).getX() < graph.getNode(other).getX());
+	}
+}
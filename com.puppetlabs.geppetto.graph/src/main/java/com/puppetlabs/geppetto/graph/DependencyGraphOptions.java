@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph;
+
+/**
+ * Controls the level of detail of a graph produced by a {@link DependencyGraphProducer}. The default options produce
+ * the full graph, i.e. one vertex per module and one labeled edge per relationship.
+ * <p>
+ * For large repositories the size of the graph can be bounded by giving focus modules (the <code>roots</code> passed
+ * to the producer) together with a {@link #setDepth(int) depth}, and/or by {@link #setAggregation(Aggregation)
+ * aggregating} modules into groups.
+ * </p>
+ */
+public class DependencyGraphOptions {
+	/**
+	 * How modules are collapsed into aggregate vertices
+	 */
+	public enum Aggregation {
+		/**
+		 * One vertex per module
+		 */
+		NONE,
+
+		/**
+		 * One vertex per module owner (namespace)
+		 */
+		OWNER,
+
+		/**
+		 * One vertex per strongly connected component, i.e. per set of modules that all depend on each other
+		 */
+		COMPONENT;
+	}
+
+	private Aggregation aggregation = Aggregation.NONE;
+
+	private int depth = -1;
+
+	private boolean dependents;
+
+	/**
+	 * @return the aggregation of modules, never <code>null</code>
+	 * @see #setAggregation(Aggregation)
+	 */
+	public Aggregation getAggregation() {
+		return aggregation;
+	}
+
+	/**
+	 * @return the maximum distance from the focus modules, negative for no limit
+	 * @see #setDepth(int)
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return <code>true</code> if modules that depend on the focus modules are included
+	 * @see #setDependents(boolean)
+	 */
+	public boolean isDependents() {
+		return dependents;
+	}
+
+	/**
+	 * Sets how modules are collapsed into aggregate vertices. Edges between aggregates are weighted by the number of
+	 * module relationships they represent. A group with only one module is shown as that module.
+	 *
+	 * @param aggregation
+	 *            The aggregation, <code>null</code> is the same as {@link Aggregation#NONE}
+	 */
+	public void setAggregation(Aggregation aggregation) {
+		this.aggregation = aggregation == null
+				? Aggregation.NONE
+				: aggregation;
+	}
+
+	/**
+	 * Controls if the modules that depend on the focus modules are included, in addition to the modules that the
+	 * focus modules depend on. The default is <code>false</code>. Has no effect unless focus modules are given.
+	 *
+	 * @param dependents
+	 *            <code>true</code> to also include dependent modules
+	 */
+	public void setDependents(boolean dependents) {
+		this.dependents = dependents;
+	}
+
+	/**
+	 * Sets the maximum number of relationships between a focus module and any other module that is included in the
+	 * graph. A depth of 0 shows the focus modules only, 1 adds their direct dependencies and so on. The default is
+	 * -1, i.e. everything that can be reached. Has no effect unless focus modules are given.
+	 *
+	 * @param depth
+	 *            The maximum depth, negative for no limit
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+}
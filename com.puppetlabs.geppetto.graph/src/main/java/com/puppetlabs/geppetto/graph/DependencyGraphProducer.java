@@ -25,6 +25,34 @@ import com.google.common.collect.Multimap;
  * Producer of dot graphs
  */
 public interface DependencyGraphProducer {
+	void produceGraph(ICancel cancel, String title, File[] roots, DependencyGraphOptions options, OutputStream output,
+			BuildResult buildResult, Diagnostic chain);
+
+	/**
+	 * Produces the graph of the given modules.
+	 * 
+	 * @param cancel
+	 *        Checked for cancellation, may be <code>null</code>
+	 * @param title
+	 *        The title of the graph
+	 * @param roots
+	 *        The focus modules. If empty or <code>null</code> all modules are included.
+	 * @param options
+	 *        Controls the level of detail, <code>null</code> for the full graph
+	 * @param output
+	 *        Where the DOT text is written
+	 * @param root
+	 *        The root of the analyzed repository
+	 * @param moduleData
+	 *        Name -> 0* MetadataInfo representing one version of a module with given name
+	 * @param exportData
+	 *        The references between the modules
+	 * @param chain
+	 *        Receives diagnostics
+	 */
+	void produceGraph(ICancel cancel, String title, File[] roots, DependencyGraphOptions options, OutputStream output,
+			File root, Multimap<ModuleName, MetadataInfo> moduleData, AllModuleReferences exportData, Diagnostic chain);
+
 	void produceGraph(ICancel cancel, String title, File[] roots, OutputStream output, BuildResult buildResult,
 			Diagnostic chain);
 
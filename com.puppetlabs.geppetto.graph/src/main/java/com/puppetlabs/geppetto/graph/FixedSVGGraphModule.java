@@ -27,15 +27,25 @@ import com.google.inject.name.Names;
  * output as empty strings will contain the magic text which may be rendered to a non post-processable format
  * (e.g. removing text rendered into a JPEG).
  * 
+ * The SVG is produced by Graphviz unless another {@link ISVGLayoutEngine} is given to the constructor, e.g. the
+ * in process {@link com.puppetlabs.geppetto.graph.layout.LayeredLayoutEngine LayeredLayoutEngine}.
  */
 public class FixedSVGGraphModule extends DefaultGraphModule {
 	private final Class<? extends IHrefProducer> hrefProducerClass;
 
 	private final String urlPrefix;
 
+	private final Class<? extends ISVGLayoutEngine> layoutEngineClass;
+
 	public FixedSVGGraphModule(Class<? extends IHrefProducer> hrefProducerClass, String urlPrefix) {
+		this(hrefProducerClass, urlPrefix, GraphvizLayoutEngine.class);
+	}
+
+	public FixedSVGGraphModule(Class<? extends IHrefProducer> hrefProducerClass, String urlPrefix,
+			Class<? extends ISVGLayoutEngine> layoutEngineClass) {
 		this.hrefProducerClass = hrefProducerClass;
 		this.urlPrefix = urlPrefix;
+		this.layoutEngineClass = layoutEngineClass;
 	}
 
 	@Override
@@ -49,6 +59,10 @@ public class FixedSVGGraphModule extends DefaultGraphModule {
 		bind(IHrefProducer.class).to(hrefProducerClass);
 	}
 
+	protected void bindSVGLayoutEngine() {
+		bind(ISVGLayoutEngine.class).to(layoutEngineClass);
+	}
+
 	@Override
 	protected void bindSVGOutputFilterProvider() {
 		bind(IOutputStreamFilterFactory.class).annotatedWith(IGraphviz.SVGOutputFilter.class).to(
@@ -59,5 +73,6 @@ public class FixedSVGGraphModule extends DefaultGraphModule {
 	protected void configure() {
 		super.configure();
 		bindIHrefProducer();
+		bindSVGLayoutEngine();
 	}
 }
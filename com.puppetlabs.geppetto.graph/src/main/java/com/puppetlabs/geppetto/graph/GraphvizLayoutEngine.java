@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.puppetlabs.graph.ICancel;
+import com.puppetlabs.graph.graphviz.GraphvizFormat;
+import com.puppetlabs.graph.graphviz.GraphvizLayout;
+import com.puppetlabs.graph.graphviz.IGraphviz;
+
+/**
+ * An {@link ISVGLayoutEngine} that runs the external Graphviz <code>dot</code> program.
+ */
+@Singleton
+public class GraphvizLayoutEngine implements ISVGLayoutEngine {
+	// graphviz runner
+	@Inject
+	private IGraphviz graphviz;
+
+	@Override
+	public void writeSVG(ICancel cancel, InputStream dotStream, OutputStream svgStream) throws IOException {
+		if(graphviz.writeGraphvizOutput(cancel, svgStream, GraphvizFormat.svg, null, GraphvizLayout.dot, dotStream) == null)
+			throw new IOException("Graphviz SVG production failed - view logs");
+	}
+}
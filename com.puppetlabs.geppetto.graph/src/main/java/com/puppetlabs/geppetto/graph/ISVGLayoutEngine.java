@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.google.inject.ImplementedBy;
+import com.puppetlabs.graph.ICancel;
+
+/**
+ * Lays out a graph given in the DOT language and renders it as SVG. This is what the {@link SVGProducer} uses to turn
+ * the DOT written by the graph producers into SVG. The default implementation runs Graphviz, the
+ * {@link com.puppetlabs.geppetto.graph.layout.LayeredLayoutEngine LayeredLayoutEngine} does the layout in process.
+ *
+ * @see FixedSVGGraphModule#FixedSVGGraphModule(Class, String, Class)
+ */
+@ImplementedBy(GraphvizLayoutEngine.class)
+public interface ISVGLayoutEngine {
+	/**
+	 * Reads the graph from the given dotStream and writes it as SVG to the given svgStream. The svgStream is neither
+	 * flushed nor closed.
+	 *
+	 * @param cancel
+	 *            Checked for cancellation, may be <code>null</code>
+	 * @param dotStream
+	 *            stream with text in DOT language
+	 * @param svgStream
+	 *            stream where the SVG will be written
+	 * @throws IOException
+	 *             if the graph could not be read or the SVG could not be produced
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the operation was canceled
+	 */
+	void writeSVG(ICancel cancel, InputStream dotStream, OutputStream svgStream) throws IOException;
+}
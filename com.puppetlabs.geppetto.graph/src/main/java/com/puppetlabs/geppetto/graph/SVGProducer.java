@@ -17,9 +17,6 @@ import java.util.concurrent.CancellationException;
 import java.util.zip.GZIPOutputStream;
 
 import com.puppetlabs.graph.ICancel;
-import com.puppetlabs.graph.graphviz.GraphvizFormat;
-import com.puppetlabs.graph.graphviz.GraphvizLayout;
-import com.puppetlabs.graph.graphviz.IGraphviz;
 import com.puppetlabs.graph.graphviz.IGraphviz.SVGOutputFilter;
 import com.puppetlabs.graph.utils.IOutputStreamFilterFactory;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -30,8 +27,9 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
- * A service facade for Graphviz SVG production that configures a Guice injector and performs
- * optional post processing of SVG stream.
+ * A service facade for SVG production that configures a Guice injector and performs
+ * optional post processing of SVG stream. The layout is done by the bound {@link ISVGLayoutEngine}, which
+ * by default runs Graphviz.
  * 
  * The only state held by the SVGProducer is the injector. It is safe to hold on to an instance
  * of this class and use it multiple times. If instantiated via Guice it is a singleton.
@@ -40,9 +38,8 @@ import com.google.inject.Singleton;
 @Singleton
 public class SVGProducer {
 
-	// graphviz runner
 	@Inject
-	private IGraphviz graphviz;
+	private ISVGLayoutEngine layoutEngine;
 
 	@Inject
 	@SVGOutputFilter
@@ -99,8 +96,7 @@ public class SVGProducer {
 
 		// produce SVG from DOT
 		try {
-			if(graphviz.writeGraphvizOutput(cancel, svgStream, GraphvizFormat.svg, null, GraphvizLayout.dot, dotStream) == null)
-				throw new IOException("Graphviz SVG production failed - view logs");
+			layoutEngine.writeSVG(cancel, dotStream, svgStream);
 		}
 		catch(CancellationException e) {
 			// translate to expected exception when using IProgressMonitor
@@ -12,6 +12,7 @@ package com.puppetlabs.geppetto.graph.catalog;
 
 import com.puppetlabs.geppetto.graph.FixedSVGGraphModule;
 import com.puppetlabs.geppetto.graph.IHrefProducer;
+import com.puppetlabs.geppetto.graph.ISVGLayoutEngine;
 
 /**
  * Configuration for CatalogGraph.
@@ -22,6 +23,11 @@ public class CatalogGraphModule extends FixedSVGGraphModule {
 		super(hrefProducerClass, urlPrefix);
 	}
 
+	public CatalogGraphModule(Class<? extends IHrefProducer> hrefProducerClass, String urlPrefix,
+			Class<? extends ISVGLayoutEngine> layoutEngineClass) {
+		super(hrefProducerClass, urlPrefix, layoutEngineClass);
+	}
+
 	@Override
 	protected void configure() {
 		super.configure();
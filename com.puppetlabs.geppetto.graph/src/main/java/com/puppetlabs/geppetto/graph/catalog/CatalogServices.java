@@ -18,7 +18,9 @@ import com.puppetlabs.geppetto.catalog.Catalog;
 import com.puppetlabs.geppetto.catalog.util.CatalogJsonSerializer;
 import com.puppetlabs.geppetto.graph.EmptyStringHrefProducer;
 import com.puppetlabs.geppetto.graph.GraphHrefType;
+import com.puppetlabs.geppetto.graph.GraphvizLayoutEngine;
 import com.puppetlabs.geppetto.graph.IHrefProducer;
+import com.puppetlabs.geppetto.graph.ISVGLayoutEngine;
 import com.puppetlabs.geppetto.graph.ProgressMonitorCancelIndicator;
 import com.puppetlabs.graph.ICancel;
 import com.puppetlabs.graph.utils.ByteArrayOutputStream2;
@@ -46,7 +48,21 @@ public class CatalogServices {
 	}
 
 	public CatalogServices(Class<? extends IHrefProducer> hrefProducerClass, String prefix) {
-		injector = Guice.createInjector(new CatalogGraphModule(hrefProducerClass, prefix));
+		this(hrefProducerClass, prefix, GraphvizLayoutEngine.class);
+	}
+
+	/**
+	 * @param hrefProducerClass
+	 *        Produces the links of the graph elements
+	 * @param prefix
+	 *        The URL prefix used by the href producer
+	 * @param layoutEngineClass
+	 *        The engine that turns the graph into SVG, e.g. the in process
+	 *        {@link com.puppetlabs.geppetto.graph.layout.LayeredLayoutEngine LayeredLayoutEngine}
+	 */
+	public CatalogServices(Class<? extends IHrefProducer> hrefProducerClass, String prefix,
+			Class<? extends ISVGLayoutEngine> layoutEngineClass) {
+		injector = Guice.createInjector(new CatalogGraphModule(hrefProducerClass, prefix, layoutEngineClass));
 	}
 
 	public CatalogServices(GraphHrefType graphHrefType, String prefix) {
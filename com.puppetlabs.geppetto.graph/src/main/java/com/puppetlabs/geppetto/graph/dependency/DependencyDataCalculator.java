@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +41,8 @@ import com.puppetlabs.geppetto.diagnostic.DiagnosticType;
 import com.puppetlabs.geppetto.forge.model.Dependency;
 import com.puppetlabs.geppetto.forge.model.Metadata;
 import com.puppetlabs.geppetto.forge.model.ModuleName;
+import com.puppetlabs.geppetto.graph.DependencyGraphOptions;
+import com.puppetlabs.geppetto.graph.DependencyGraphOptions.Aggregation;
 import com.puppetlabs.geppetto.graph.DependencyGraphProducer;
 import com.puppetlabs.geppetto.graph.IHrefProducer;
 import com.puppetlabs.geppetto.pp.PPPackage;
@@ -63,6 +66,7 @@ import com.puppetlabs.graph.graphcss.IFunctionFactory;
 import com.puppetlabs.graph.graphcss.StyleSet;
 import com.puppetlabs.graph.style.IStyle;
 import com.puppetlabs.graph.style.IStyleFactory;
+import com.puppetlabs.graph.style.LineType;
 import com.puppetlabs.graph.style.labels.LabelRow;
 
 /**
@@ -161,6 +165,29 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 		}
 	}
 
+	/**
+	 * A set of modules that is shown as one vertex in an aggregated graph
+	 */
+	private static class ModuleGroup {
+		final String id;
+
+		/**
+		 * The owner of all members, or <code>null</code> if the group is not formed by owner
+		 */
+		final String owner;
+
+		final List<ModuleNodeData> members = Lists.newArrayList();
+
+		int unresolvedReferences;
+
+		IVertex vertex;
+
+		ModuleGroup(String id, String owner) {
+			this.id = id;
+			this.owner = owner;
+		}
+	}
+
 	public static class ModuleNodeData {
 		public static ModuleNodeData existing(ModuleName name, Version version, boolean isNode, String href) {
 			return new ModuleNodeData(name, version, isNode
@@ -453,6 +480,31 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 		return classesFor(edge.from, edge.to);
 	}
 
+	private Edge createEdgeForGroups(ModuleGroup from, ModuleGroup to, int relationships, boolean unresolved) {
+		Edge e = new Edge(relationships > 1
+				? Integer.toString(relationships)
+				: "", unresolved
+				? STYLE_EDGE__UNRESOLVED_DEP
+				: STYLE_EDGE__AGGREGATE, from.vertex, to.vertex);
+
+		// the line gets thicker with the number of module relationships
+		double lineWidth = 1.0 + Math.log(relationships) / Math.log(2);
+		StringBuilder tooltip = new StringBuilder();
+		tooltip.append(labelOfGroup(from).replace('\n', ' '));
+		tooltip.append(" &#8658; "); // i.e. &rArr; a non defined entity in SVG
+		tooltip.append(labelOfGroup(to).replace('\n', ' '));
+		tooltip.append(": ");
+		tooltip.append(relationships);
+		tooltip.append(relationships == 1
+				? " module dependency"
+				: " module dependencies");
+		e.setStyles(StyleSet.withStyle(styles.lineBrush(LineType.solid, lineWidth)).add(
+			StyleSet.withStyle(styles.tooltip(tooltip.toString()))));
+		e.addAllStyleClasses(Collections.singletonList("FROM__" + from.id));
+		e.addAllStyleClasses(Collections.singletonList("TO__" + to.id));
+		return e;
+	}
+
 	private void createImportEdge(ModuleNodeData from, ModuleNodeData to, Iterable<Export> imported,
 			Collection<Export> ambiguities) {
 		moduleEdges.add(new ModuleEdge(from, to, EdgeType.IMPLIED, imported, ambiguities));
@@ -498,6 +550,43 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 		return edgeVertex;
 	}
 
+	private Vertex createVertexForGroup(ModuleGroup group) {
+		Vertex v;
+		if(group.members.size() == 1) {
+			// a group of one is shown as the module itself
+			ModuleNodeData mnd = group.members.get(0);
+			if(mnd == nonModularNode)
+				v = createVertexForRootNode(mnd);
+			else if(mnd.isNode())
+				v = createVertexForPPNodeNode(mnd);
+			else
+				v = createVertexForModuleNode(mnd);
+		}
+		else {
+			StringBuilder label = new StringBuilder(labelOfGroup(group));
+			if(group.unresolvedReferences > 0) {
+				label.append('\n');
+				label.append(group.unresolvedReferences);
+				label.append(" unresolved");
+			}
+			v = new Vertex(label.toString(), STYLE_CLASS_AGGREGATE);
+			v.putUserData(IFunctionFactory.ID_KEY, group.id);
+			List<String> names = Lists.newArrayList();
+			for(ModuleNodeData mnd : group.members)
+				names.add(idOfVertex(mnd));
+			Collections.sort(names);
+			StringBuilder tooltip = new StringBuilder();
+			for(String name : names) {
+				if(tooltip.length() > 0)
+					tooltip.append(", ");
+				tooltip.append(name);
+			}
+			addTooltip(tooltip.toString(), v);
+		}
+		group.vertex = v;
+		return v;
+	}
+
 	private Vertex createVertexForModuleNode(ModuleNodeData mnd) {
 		StringBuilder builder = new StringBuilder();
 		builder.append(mnd.name);
@@ -594,6 +683,103 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 
 	}
 
+	/**
+	 * Groups the given modules by their strongly connected component (Tarjan's algorithm). Only edges between the
+	 * given modules are considered.
+	 */
+	private Map<ModuleNodeData, ModuleGroup> groupByComponent(List<ModuleNodeData> shown) {
+		int n = shown.size();
+		Map<ModuleNodeData, Integer> indexes = Maps.newHashMap();
+		for(int i = 0; i < n; ++i)
+			indexes.put(shown.get(i), Integer.valueOf(i));
+		List<List<Integer>> successors = Lists.newArrayListWithCapacity(n);
+		for(ModuleNodeData a : shown) {
+			List<Integer> targets = Lists.newArrayList();
+			for(ModuleNodeData b : a.outgoing.keySet()) {
+				Integer j = indexes.get(b);
+				if(j != null)
+					targets.add(j);
+			}
+			successors.add(targets);
+		}
+
+		Map<ModuleNodeData, ModuleGroup> groups = Maps.newLinkedHashMap();
+		int[] order = new int[n];
+		int[] low = new int[n];
+		int[] nextChild = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		Arrays.fill(order, -1);
+		int counter = 0;
+		int sp = 0;
+		int componentCount = 0;
+		for(int start = 0; start < n; ++start) {
+			if(order[start] >= 0)
+				continue;
+			int top = 0;
+			callStack[0] = start;
+			order[start] = low[start] = counter++;
+			stack[sp++] = start;
+			onStack[start] = true;
+			while(top >= 0) {
+				int v = callStack[top];
+				List<Integer> targets = successors.get(v);
+				if(nextChild[v] < targets.size()) {
+					int w = targets.get(nextChild[v]++).intValue();
+					if(order[w] < 0) {
+						order[w] = low[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[++top] = w;
+					}
+					else if(onStack[w])
+						low[v] = Math.min(low[v], order[w]);
+					continue;
+				}
+				if(low[v] == order[v]) {
+					ModuleGroup group = new ModuleGroup("component__" + ++componentCount, null);
+					int w;
+					do {
+						w = stack[--sp];
+						onStack[w] = false;
+						group.members.add(shown.get(w));
+						groups.put(shown.get(w), group);
+					} while(w != v);
+				}
+				if(--top >= 0)
+					low[callStack[top]] = Math.min(low[callStack[top]], low[v]);
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Groups the given modules by owner. The non modular content is always a group of its own.
+	 */
+	private Map<ModuleNodeData, ModuleGroup> groupByOwner(List<ModuleNodeData> shown) {
+		Map<String, ModuleGroup> owners = Maps.newHashMap();
+		Map<ModuleNodeData, ModuleGroup> groups = Maps.newLinkedHashMap();
+		for(ModuleNodeData mnd : shown) {
+			ModuleGroup group;
+			if(mnd == nonModularNode)
+				group = new ModuleGroup(idOfVertex(mnd), null);
+			else {
+				String owner = mnd.name == null
+						? ""
+						: mnd.name.getOwner();
+				group = owners.get(owner);
+				if(group == null) {
+					group = new ModuleGroup("owner__" + owner, owner);
+					owners.put(owner, group);
+				}
+			}
+			group.members.add(mnd);
+			groups.put(mnd, group);
+		}
+		return groups;
+	}
+
 	/**
 	 * Produce id on the form NAME[@ambiguityIdx] e.g. Foo, Bar-1, Bar-2
 	 * 
@@ -611,6 +797,30 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 
 	}
 
+	/**
+	 * @return <code>true</code> if an edge to the given module should be rendered when not everything is rendered
+	 */
+	private boolean isShownTarget(ModuleNodeData to) {
+		// unresolved and puppet references are shown as part of the referencing module
+		return to == null || to == pptpNode || to.marked;
+	}
+
+	private String labelOfGroup(ModuleGroup group) {
+		if(group.members.size() == 1)
+			return idOfVertex(group.members.get(0));
+		int count = group.members.size();
+		if(group.owner != null)
+			return group.owner + '\n' + count + " modules";
+
+		String first = null;
+		for(ModuleNodeData mnd : group.members) {
+			String name = idOfVertex(mnd);
+			if(first == null || name.compareTo(first) < 0)
+				first = name;
+		}
+		return first + '\n' + "+ " + (count - 1) + " more modules";
+	}
+
 	private String labelOfType(EClass clazz) {
 		if(clazz == PPPackage.Literals.DEFINITION)
 			return "define";
@@ -701,51 +911,184 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 		return tooltipBuilder.toString();
 	}
 
-	public void produceGraph(ICancel cancel, String title, File[] roots, OutputStream output, BuildResult buildResult,
-			Diagnostic chain) {
+	/**
+	 * Marks the given modules and all modules that are at most <code>depth</code> relationships away from them.
+	 *
+	 * @param focus
+	 *            The modules to start from
+	 * @param depth
+	 *            The maximum distance, negative for no limit
+	 * @param dependents
+	 *            <code>true</code> if relationships are followed backwards as well, i.e. to the modules that depend on
+	 *            the focus modules
+	 */
+	private void markWithin(Collection<ModuleNodeData> focus, int depth, boolean dependents) {
+		Multimap<ModuleNodeData, ModuleNodeData> incoming = null;
+		if(dependents) {
+			incoming = ArrayListMultimap.create();
+			for(ModuleNodeData a : Iterables.concat(moduleNodeData.values(), Collections.singleton(nonModularNode)))
+				for(ModuleNodeData b : a.outgoing.keySet())
+					if(b != null)
+						incoming.put(b, a);
+		}
+		Map<ModuleNodeData, Integer> distances = Maps.newHashMap();
+		LinkedList<ModuleNodeData> queue = Lists.newLinkedList();
+		for(ModuleNodeData mnd : focus)
+			if(distances.put(mnd, Integer.valueOf(0)) == null) {
+				mnd.marked = true;
+				queue.add(mnd);
+			}
+		while(!queue.isEmpty()) {
+			ModuleNodeData mnd = queue.removeFirst();
+			int distance = distances.get(mnd).intValue();
+			if(depth >= 0 && distance >= depth)
+				continue;
+			Iterable<ModuleNodeData> adjacent = mnd.outgoing.keySet();
+			if(incoming != null)
+				adjacent = Iterables.concat(adjacent, incoming.get(mnd));
+			for(ModuleNodeData next : adjacent)
+				if(next != null && !distances.containsKey(next)) {
+					distances.put(next, Integer.valueOf(distance + 1));
+					next.marked = true;
+					queue.add(next);
+				}
+		}
+	}
+
+	/**
+	 * Produces a graph where modules are collapsed into groups. Edges between groups are weighted by the number of
+	 * module relationships they represent. If renderAll is false, only marked ModuleNodeData will be rendered.
+	 */
+	private RootGraph produceAggregatedGraph(ICancel cancel, String title, Aggregation aggregation, boolean renderAll) {
+		if(title == null)
+			title = "";
+		if(cancel == null)
+			cancel = new NullIndicator();
+
+		RootGraph g = new RootGraph(title, "RootGraph", "root");
+
+		List<ModuleNodeData> shown = Lists.newArrayList();
+		for(ModuleNodeData mnd : moduleNodeData.values())
+			if(renderAll || mnd.marked)
+				shown.add(mnd);
+		if(renderAll && nonModularNode.outgoing.size() > 0 || nonModularNode.marked)
+			shown.add(nonModularNode);
+		Map<ModuleNodeData, ModuleGroup> groups = aggregation == Aggregation.OWNER
+				? groupByOwner(shown)
+				: groupByComponent(shown);
+
+		// count the relationships between the groups, the first count is the total and the second the unresolved
+		Map<ModuleGroup, Map<ModuleGroup, int[]>> weights = Maps.newLinkedHashMap();
+		for(ModuleNodeData a : shown) {
+			ModuleGroup from = groups.get(a);
+			for(ModuleNodeData b : a.outgoing.keySet()) {
+				cancel.assertContinue();
+				if(b == null) {
+					++from.unresolvedReferences;
+					continue;
+				}
+				ModuleGroup to = groups.get(b);
+				if(to == null || to == from)
+					continue; // not shown (or puppet), or within the group
+				Map<ModuleGroup, int[]> targets = weights.get(from);
+				if(targets == null) {
+					targets = Maps.newLinkedHashMap();
+					weights.put(from, targets);
+				}
+				int[] weight = targets.get(to);
+				if(weight == null) {
+					weight = new int[2];
+					targets.put(to, weight);
+				}
+				++weight[0];
+				for(ModuleEdge e : a.outgoing.get(b))
+					if(e.edgeType == EdgeType.UNRESOLVED) {
+						++weight[1];
+						break;
+					}
+			}
+		}
+
+		for(ModuleGroup group : Sets.newLinkedHashSet(groups.values())) {
+			cancel.assertContinue();
+			g.addVertex(createVertexForGroup(group));
+		}
+		for(Map.Entry<ModuleGroup, Map<ModuleGroup, int[]>> from : weights.entrySet())
+			for(Map.Entry<ModuleGroup, int[]> to : from.getValue().entrySet()) {
+				int[] weight = to.getValue();
+				g.addEdge(createEdgeForGroups(from.getKey(), to.getKey(), weight[0], weight[1] > 0));
+			}
+		return g;
+	}
+
+	public void produceGraph(ICancel cancel, String title, File[] roots, DependencyGraphOptions options,
+			OutputStream output, BuildResult buildResult, Diagnostic chain) {
 		if(title == null)
 			title = "Module Dependencies";
 
 		AllModuleReferences all = buildResult.getAllModuleReferences();
-		produceGraph(cancel, title, roots, output, all.getRoot(), buildResult.getModuleData(), all, chain);
+		produceGraph(cancel, title, roots, options, output, all.getRoot(), buildResult.getModuleData(), all, chain);
 	}
 
-	/**
-	 * 
-	 * @param root
-	 * @param moduleData
-	 *            Name -> 0* MetadataInfo representing one version of a module with given name
-	 */
-	public void produceGraph(ICancel cancel, String title, File[] roots, OutputStream output, File root,
-			Multimap<ModuleName, MetadataInfo> moduleData, AllModuleReferences exportData, Diagnostic chain) {
+	public void produceGraph(ICancel cancel, String title, File[] roots, DependencyGraphOptions options,
+			OutputStream output, File root, Multimap<ModuleName, MetadataInfo> moduleData,
+			AllModuleReferences exportData, Diagnostic chain) {
 
 		if(cancel == null)
 			cancel = new NullIndicator();
+		if(options == null)
+			options = new DependencyGraphOptions();
 
 		this.root = root;
 
 		Map<File, ModuleNodeData> fileMap = calculateDependencyData(root, moduleData, exportData);
 
 		// Render all unless there is a list of roots to include. If roots are given, mark their
-		// transitive closures, and tell renderer to render only those that are marked.
+		// transitive closures (or the modules within the given depth), and tell renderer to render
+		// only those that are marked.
 		boolean renderAll = roots == null || roots.length == 0;
-		if(!renderAll)
+		if(!renderAll) {
+			List<ModuleNodeData> focus = Lists.newArrayList();
 			for(File f : roots) {
 				ModuleNodeData x = file2Module(f, fileMap);
 				if(x != null)
-					x.mark();
+					focus.add(x);
 			}
+			if(options.getDepth() < 0 && !options.isDependents())
+				for(ModuleNodeData x : focus)
+					x.mark();
+			else
+				markWithin(focus, options.getDepth(), options.isDependents());
+		}
 		else {
 			// mark all
 			for(ModuleNodeData x : fileMap.values())
 				x.mark();
 		}
-		RootGraph g = produceRootGraph(cancel, title, moduleData, exportData, renderAll, chain);
+		RootGraph g = options.getAggregation() == Aggregation.NONE
+				? produceRootGraph(cancel, title, moduleData, exportData, renderAll, chain)
+				: produceAggregatedGraph(cancel, title, options.getAggregation(), renderAll);
 
 		instanceRules.addAll(theme.getInstanceRules());
 		dotRenderer.write(cancel, output, g, theme.getDefaultRules(), instanceRules);
 	}
 
+	public void produceGraph(ICancel cancel, String title, File[] roots, OutputStream output, BuildResult buildResult,
+			Diagnostic chain) {
+		produceGraph(cancel, title, roots, null, output, buildResult, chain);
+	}
+
+	/**
+	 * 
+	 * @param root
+	 * @param moduleData
+	 *            Name -> 0* MetadataInfo representing one version of a module with given name
+	 */
+	public void produceGraph(ICancel cancel, String title, File[] roots, OutputStream output, File root,
+			Multimap<ModuleName, MetadataInfo> moduleData, AllModuleReferences exportData, Diagnostic chain) {
+		produceGraph(cancel, title, roots, null, output, root, moduleData, exportData, chain);
+	}
+
 	/**
 	 * Produces the graph with vertex and edge data. If renderAll is false, only marked ModuleNodeData
 	 * will be rendered.
@@ -791,7 +1134,7 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 			// filter out self references
 			if(me.from == me.to)
 				continue;
-			if(renderAll || me.from.marked) {
+			if(renderAll || me.from.marked && isShownTarget(me.to)) {
 				cancel.assertContinue();
 				Vertex v = createVertexForEdge(me);
 				if(v != null) {
@@ -809,6 +1152,8 @@ public class DependencyDataCalculator implements DependencyGraphStyles, Dependen
 
 			for(ModuleNodeData b : a.outgoing.keySet()) {
 				cancel.assertContinue();
+				if(!(renderAll || isShownTarget(b)))
+					continue; // beyond the depth limit
 
 				int resolved = 0;
 				int unresolved = 0;
@@ -13,6 +13,7 @@ package com.puppetlabs.geppetto.graph.dependency;
 import com.puppetlabs.geppetto.graph.DependencyGraphProducer;
 import com.puppetlabs.geppetto.graph.FixedSVGGraphModule;
 import com.puppetlabs.geppetto.graph.IHrefProducer;
+import com.puppetlabs.geppetto.graph.ISVGLayoutEngine;
 
 /**
  * Configuration for DependencyGraph.
@@ -23,6 +24,11 @@ public class DependencyGraphModule extends FixedSVGGraphModule {
 		super(hrefProducerClass, urlPrefix);
 	}
 
+	public DependencyGraphModule(Class<? extends IHrefProducer> hrefProducerClass, String urlPrefix,
+			Class<? extends ISVGLayoutEngine> layoutEngineClass) {
+		super(hrefProducerClass, urlPrefix, layoutEngineClass);
+	}
+
 	protected void bindDependencyGraphProducer() {
 		bind(DependencyGraphProducer.class).to(DependencyDataCalculator.class);
 	}
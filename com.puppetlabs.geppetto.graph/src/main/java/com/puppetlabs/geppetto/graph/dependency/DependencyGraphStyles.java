@@ -29,6 +29,8 @@ public interface DependencyGraphStyles {
 
 	public static final String STYLE_CLASS_UNRESOLVED_IMPORTS = "UnresolvedImports";
 
+	public static final String STYLE_CLASS_AGGREGATE = "Aggregate";
+
 	public final static String STYLE__IMPORT_ROW = "ImportRow";
 
 	public final static String STYLE__IMPORT_NAME_CELL = "ImportNameCell";
@@ -55,4 +57,6 @@ public interface DependencyGraphStyles {
 
 	public static final String STYLE_EDGE__UNRESOLVED_IMPLIED_DEP = "EUIDep";
 
+	public static final String STYLE_EDGE__AGGREGATE = "EAggregate";
+
 }
@@ -117,6 +117,13 @@ public class DependencyGraphTheme extends DefaultStyleTheme implements Dependenc
 			styles.shape(NodeShape.rectangle) //
 		));
 
+		// vertex representing a group of modules
+		Collections.addAll(rules, Select.vertex(STYLE_CLASS_AGGREGATE).withStyles(//
+			styles.lineColor(COLOR__DARKEST_GREY), //
+			styles.shape(NodeShape.rectangle), //
+			styles.id(functions.idClassReplacer()), //
+			styles.href("")));
+
 		// -- LABEL STYLES
 		Collections.addAll(rules, Select.table(STYLE__IMPORT_TABLE).withStyles(//
 			styles.rendered(true) // import tables always render the table (it is by definition not empty).
@@ -183,6 +190,12 @@ public class DependencyGraphTheme extends DefaultStyleTheme implements Dependenc
 			styles.id(functions.idClassReplacer()) //
 		));
 
+		// Edge between groups of modules, the width is set per instance
+		Collections.addAll(rules, Select.edge(STYLE_EDGE__AGGREGATE).withStyles(//
+			styles.arrowHead(Arrow.vee), //
+			styles.id(functions.idClassReplacer()) //
+		));
+
 		return rules;
 	}
 }
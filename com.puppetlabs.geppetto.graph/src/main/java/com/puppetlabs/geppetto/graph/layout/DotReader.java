@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.layout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Node;
+
+/**
+ * Reads a graph in the DOT language, as written by the {@link com.puppetlabs.graph.dot.DotRenderer DotRenderer} for a
+ * {@link com.puppetlabs.graph.elements.RootGraph RootGraph}, into a {@link LayeredGraph}. The complete DOT grammar is
+ * accepted, but subgraphs and clusters are flattened and ports are ignored. HTML labels are kept as is, including the
+ * enclosing angle brackets.
+ */
+public class DotReader {
+	/**
+	 * Default attributes in effect in a graph or subgraph
+	 */
+	private static class Scope {
+		final boolean root;
+
+		final Map<String, String> nodeDefaults;
+
+		final Map<String, String> edgeDefaults;
+
+		Scope(Scope parent) {
+			root = parent == null;
+			nodeDefaults = parent == null
+					? Maps.<String, String> newHashMap()
+					: Maps.newHashMap(parent.nodeDefaults);
+			edgeDefaults = parent == null
+					? Maps.<String, String> newHashMap()
+					: Maps.newHashMap(parent.edgeDefaults);
+		}
+	}
+
+	private static final int EOF = -1;
+
+	private static final int ID = -2;
+
+	private static final int EDGE_OP = -3;
+
+	private static boolean isIdChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c >= 0x80;
+	}
+
+	private String text;
+
+	private int pos;
+
+	/**
+	 * {@link #ID}, {@link #EDGE_OP}, {@link #EOF} or the punctuation character
+	 */
+	private int tokenType;
+
+	private int tokenStart;
+
+	private String tokenValue;
+
+	private LayeredGraph graph;
+
+	private IOException error(String message) {
+		int line = 1;
+		for(int i = 0; i < tokenStart && i < text.length(); ++i)
+			if(text.charAt(i) == '\n')
+				++line;
+		return new IOException(message + " at line " + line);
+	}
+
+	private void expect(int type, String what) throws IOException {
+		if(tokenType != type)
+			throw error("Expected " + what);
+	}
+
+	private boolean isKeyword(String keyword) {
+		return tokenType == ID && keyword.equalsIgnoreCase(tokenValue);
+	}
+
+	private void next() throws IOException {
+		skipWhitespaceAndComments();
+		tokenStart = pos;
+		tokenValue = null;
+		int top = text.length();
+		if(pos >= top) {
+			tokenType = EOF;
+			return;
+		}
+		char c = text.charAt(pos);
+		if(c == '"') {
+			StringBuilder bld = new StringBuilder();
+			for(;;) {
+				readQuoted(bld);
+				// "a" + "b" concatenation
+				int save = pos;
+				skipWhitespaceAndComments();
+				if(pos < top && text.charAt(pos) == '+') {
+					++pos;
+					skipWhitespaceAndComments();
+					if(pos < top && text.charAt(pos) == '"')
+						continue;
+				}
+				pos = save;
+				break;
+			}
+			tokenType = ID;
+			tokenValue = bld.toString();
+			return;
+		}
+		if(c == '<') {
+			int depth = 0;
+			int start = pos;
+			do {
+				if(pos >= top)
+					throw error("Unterminated HTML string");
+				char h = text.charAt(pos++);
+				if(h == '<')
+					++depth;
+				else if(h == '>')
+					--depth;
+			} while(depth > 0);
+			tokenType = ID;
+			tokenValue = text.substring(start, pos);
+			return;
+		}
+		if(c == '-' && pos + 1 < top && (text.charAt(pos + 1) == '>' || text.charAt(pos + 1) == '-')) {
+			pos += 2;
+			tokenType = EDGE_OP;
+			return;
+		}
+		if(isIdChar(c) || c == '-') {
+			int start = pos++;
+			while(pos < top && isIdChar(text.charAt(pos)))
+				++pos;
+			tokenType = ID;
+			tokenValue = text.substring(start, pos);
+			return;
+		}
+		if("{}[];,=:".indexOf(c) < 0)
+			throw error("Unexpected character '" + c + "'");
+		++pos;
+		tokenType = c;
+	}
+
+	private Map<String, String> parseAttributes() throws IOException {
+		Map<String, String> attributes = Maps.newHashMap();
+		while(tokenType == '[') {
+			next();
+			while(tokenType != ']') {
+				expect(ID, "attribute name");
+				String name = tokenValue;
+				String value = "true";
+				next();
+				if(tokenType == '=') {
+					next();
+					expect(ID, "attribute value");
+					value = tokenValue;
+					next();
+				}
+				attributes.put(name, value);
+				if(tokenType == ';' || tokenType == ',')
+					next();
+			}
+			next();
+		}
+		return attributes;
+	}
+
+	private void parseEdges(Scope scope, List<Node> first, List<Node> members) throws IOException {
+		List<List<Node>> operands = Lists.newArrayList();
+		operands.add(first);
+		while(tokenType == EDGE_OP) {
+			next();
+			if(tokenType == '{' || isKeyword("subgraph"))
+				operands.add(parseSubgraph(scope, members));
+			else
+				operands.add(Lists.newArrayList(parseNodeId(scope, members)));
+		}
+		Map<String, String> attributes = Maps.newHashMap(scope.edgeDefaults);
+		attributes.putAll(parseAttributes());
+		for(int i = 1; i < operands.size(); ++i)
+			for(Node from : operands.get(i - 1))
+				for(Node to : operands.get(i))
+					graph.addEdge(from, to, Maps.newHashMap(attributes));
+	}
+
+	private Node parseNodeId(Scope scope, List<Node> members) throws IOException {
+		expect(ID, "node id");
+		Node node = graph.ensureNode(tokenValue, scope.nodeDefaults);
+		members.add(node);
+		next();
+		// ports are of no interest to the layout
+		for(int i = 0; i < 2 && tokenType == ':'; ++i) {
+			next();
+			expect(ID, "port");
+			next();
+		}
+		return node;
+	}
+
+	private void parseStatement(Scope scope, List<Node> members) throws IOException {
+		if(isKeyword("graph") || isKeyword("node") || isKeyword("edge")) {
+			String keyword = tokenValue.toLowerCase();
+			next();
+			Map<String, String> attributes = parseAttributes();
+			if("node".equals(keyword))
+				scope.nodeDefaults.putAll(attributes);
+			else if("edge".equals(keyword))
+				scope.edgeDefaults.putAll(attributes);
+			else if(scope.root)
+				for(Map.Entry<String, String> entry : attributes.entrySet())
+					graph.setAttribute(entry.getKey(), entry.getValue());
+			return;
+		}
+		if(tokenType == '{' || isKeyword("subgraph")) {
+			List<Node> subgraph = parseSubgraph(scope, members);
+			if(tokenType == EDGE_OP)
+				parseEdges(scope, subgraph, members);
+			return;
+		}
+		expect(ID, "statement");
+		int save = pos;
+		String id = tokenValue;
+		next();
+		if(tokenType == '=') {
+			next();
+			expect(ID, "attribute value");
+			if(scope.root)
+				graph.setAttribute(id, tokenValue);
+			next();
+			return;
+		}
+
+		// back up and read the id as a node id
+		pos = save;
+		tokenType = ID;
+		tokenValue = id;
+		Node node = parseNodeId(scope, members);
+		if(tokenType == EDGE_OP) {
+			List<Node> first = Lists.newArrayList();
+			first.add(node);
+			parseEdges(scope, first, members);
+			return;
+		}
+		for(Map.Entry<String, String> entry : parseAttributes().entrySet())
+			node.setAttribute(entry.getKey(), entry.getValue());
+	}
+
+	private void parseStatements(Scope scope, List<Node> members) throws IOException {
+		expect('{', "'{'");
+		next();
+		while(tokenType != '}') {
+			if(tokenType == EOF)
+				throw error("Expected '}'");
+			parseStatement(scope, members);
+			if(tokenType == ';' || tokenType == ',')
+				next();
+		}
+		next();
+	}
+
+	private List<Node> parseSubgraph(Scope scope, List<Node> members) throws IOException {
+		if(isKeyword("subgraph")) {
+			next();
+			if(tokenType == ID)
+				next();
+		}
+		List<Node> subgraphMembers = Lists.newArrayList();
+		parseStatements(new Scope(scope), subgraphMembers);
+		members.addAll(subgraphMembers);
+		return subgraphMembers;
+	}
+
+	/**
+	 * Reads a graph from a stream with UTF-8 encoded DOT text. The stream is read to the end but not closed.
+	 *
+	 * @param dotStream
+	 *            The stream to read
+	 * @return The graph
+	 * @throws IOException
+	 *             if the stream could not be read or does not contain a valid graph
+	 */
+	public LayeredGraph read(InputStream dotStream) throws IOException {
+		StringBuilder bld = new StringBuilder();
+		Reader reader = new InputStreamReader(dotStream, Charsets.UTF_8);
+		char[] buffer = new char[4096];
+		int count;
+		while((count = reader.read(buffer)) > 0)
+			bld.append(buffer, 0, count);
+		return read(bld.toString());
+	}
+
+	/**
+	 * Reads a graph from DOT text
+	 *
+	 * @param dotText
+	 *            The text to read
+	 * @return The graph
+	 * @throws IOException
+	 *             if the text does not contain a valid graph
+	 */
+	public synchronized LayeredGraph read(String dotText) throws IOException {
+		text = dotText;
+		pos = 0;
+		graph = null;
+		try {
+			next();
+			if(isKeyword("strict"))
+				next();
+			boolean directed = isKeyword("digraph");
+			if(!(directed || isKeyword("graph")))
+				throw error("Expected 'graph' or 'digraph'");
+			next();
+			String id = null;
+			if(tokenType == ID) {
+				id = tokenValue;
+				next();
+			}
+			graph = new LayeredGraph(id, directed);
+			parseStatements(new Scope(null), Lists.<Node> newArrayList());
+			return graph;
+		}
+		finally {
+			text = null;
+			graph = null;
+		}
+	}
+
+	private void readQuoted(StringBuilder bld) throws IOException {
+		int top = text.length();
+		++pos;
+		for(;;) {
+			if(pos >= top)
+				throw error("Unterminated string");
+			char c = text.charAt(pos++);
+			if(c == '"')
+				return;
+			if(c == '\\' && pos < top) {
+				char n = text.charAt(pos);
+				if(n == '"') {
+					bld.append('"');
+					++pos;
+					continue;
+				}
+				if(n == '\n') {
+					// line continuation
+					++pos;
+					continue;
+				}
+				if(n == '\\') {
+					bld.append("\\\\");
+					++pos;
+					continue;
+				}
+			}
+			bld.append(c);
+		}
+	}
+
+	private void skipWhitespaceAndComments() {
+		int top = text.length();
+		boolean lineStart = pos == 0 || text.charAt(pos - 1) == '\n';
+		while(pos < top) {
+			char c = text.charAt(pos);
+			if(c == '\n') {
+				lineStart = true;
+				++pos;
+			}
+			else if(Character.isWhitespace(c))
+				++pos;
+			else if(c == '#' && lineStart) {
+				// preprocessor output line
+				while(pos < top && text.charAt(pos) != '\n')
+					++pos;
+			}
+			else if(c == '/' && pos + 1 < top && text.charAt(pos + 1) == '/') {
+				while(pos < top && text.charAt(pos) != '\n')
+					++pos;
+			}
+			else if(c == '/' && pos + 1 < top && text.charAt(pos + 1) == '*') {
+				int end = text.indexOf("*/", pos + 2);
+				pos = end < 0
+						? top
+						: end + 2;
+			}
+			else
+				break;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.layout;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Turns DOT labels into the lines of plain text that are measured and rendered. Escaped labels (<code>\n</code>,
+ * <code>\l</code>, <code>\N</code> etc.) and HTML labels are understood. For HTML labels only the text is kept, with
+ * one line per table row or line break.
+ */
+class LabelText {
+	private static final String[] NO_LINES = new String[0];
+
+	private static final Pattern LINE_BREAK_TAG = Pattern.compile(
+		"<\\s*(br|/tr)\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern TAG = Pattern.compile("<[^>]*>");
+
+	private static final Pattern ENTITY = Pattern.compile("&(#x?[0-9a-fA-F]+|[a-zA-Z]+);");
+
+	private static void addLine(List<String> lines, CharSequence line) {
+		String trimmed = line.toString().replaceAll("\\s+", " ").trim();
+		if(trimmed.length() > 0)
+			lines.add(trimmed);
+	}
+
+	private static String decodeEntities(String text) {
+		Matcher m = ENTITY.matcher(text);
+		StringBuffer bld = new StringBuffer();
+		while(m.find()) {
+			String entity = m.group(1);
+			String replacement;
+			if(entity.startsWith("#x") || entity.startsWith("#X"))
+				replacement = String.valueOf((char) Integer.parseInt(entity.substring(2), 16));
+			else if(entity.startsWith("#"))
+				replacement = String.valueOf((char) Integer.parseInt(entity.substring(1)));
+			else if("amp".equals(entity))
+				replacement = "&";
+			else if("lt".equals(entity))
+				replacement = "<";
+			else if("gt".equals(entity))
+				replacement = ">";
+			else if("quot".equals(entity))
+				replacement = "\"";
+			else if("apos".equals(entity))
+				replacement = "'";
+			else if("nbsp".equals(entity))
+				replacement = " ";
+			else
+				replacement = m.group();
+			m.appendReplacement(bld, Matcher.quoteReplacement(replacement));
+		}
+		m.appendTail(bld);
+		return bld.toString();
+	}
+
+	private static String[] htmlLines(String html) {
+		List<String> lines = Lists.newArrayList();
+		String body = html.substring(1, html.length() - 1);
+		for(String line : LINE_BREAK_TAG.matcher(body).replaceAll("\n").split("\n"))
+			addLine(lines, decodeEntities(TAG.matcher(line).replaceAll(" ")));
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	static boolean isHtml(String label) {
+		return label.length() > 1 && label.charAt(0) == '<' && label.charAt(label.length() - 1) == '>';
+	}
+
+	/**
+	 * @param label
+	 *            The label attribute, or <code>null</code> for the default label
+	 * @param objectName
+	 *            The name substituted for <code>\N</code> and used when there is no label
+	 * @param graphName
+	 *            The name substituted for <code>\G</code>
+	 * @return the lines of the label, never <code>null</code>
+	 */
+	static String[] lines(String label, String objectName, String graphName) {
+		if(label == null)
+			label = objectName == null
+					? ""
+					: "\\N";
+		if(isHtml(label))
+			return htmlLines(label);
+
+		List<String> lines = Lists.newArrayList();
+		StringBuilder line = new StringBuilder();
+		int top = label.length();
+		for(int i = 0; i < top; ++i) {
+			char c = label.charAt(i);
+			if(c != '\\' || i + 1 == top) {
+				line.append(c);
+				continue;
+			}
+			c = label.charAt(++i);
+			switch(c) {
+				case 'n':
+				case 'l':
+				case 'r':
+					addLine(lines, line);
+					line.setLength(0);
+					break;
+				case 'N':
+					if(objectName != null)
+						line.append(objectName);
+					break;
+				case 'G':
+					if(graphName != null)
+						line.append(graphName);
+					break;
+				default:
+					line.append(c);
+			}
+		}
+		addLine(lines, line);
+		return lines.isEmpty()
+				? NO_LINES
+				: lines.toArray(new String[lines.size()]);
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.layout;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A directed graph with DOT attributes, as read by the {@link DotReader}, and the geometry computed for it by the
+ * {@link LayeredLayout}. Coordinates are in points with the origin in the upper left corner. Nodes and edges are kept
+ * in the order they were declared, which makes the layout reproducible.
+ */
+public class LayeredGraph {
+	/**
+	 * An edge between two nodes
+	 */
+	public static class Edge extends Element {
+		private final Node from;
+
+		private final Node to;
+
+		private double[] points;
+
+		Edge(Node from, Node to, Map<String, String> attributes) {
+			super(attributes);
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * @return the node where the edge starts
+		 */
+		public Node getFrom() {
+			return from;
+		}
+
+		/**
+		 * Returns the route of the edge as alternating x and y coordinates, from the border of the
+		 * {@link #getFrom() from} node to the border of the {@link #getTo() to} node.
+		 *
+		 * @return the route or <code>null</code> if the graph has not been laid out
+		 */
+		public double[] getPoints() {
+			return points;
+		}
+
+		/**
+		 * @return the node where the edge ends
+		 */
+		public Node getTo() {
+			return to;
+		}
+
+		void setPoints(double[] points) {
+			this.points = points;
+		}
+	}
+
+	/**
+	 * Common base of nodes and edges
+	 */
+	public static abstract class Element {
+		private final Map<String, String> attributes;
+
+		Element(Map<String, String> attributes) {
+			this.attributes = attributes;
+		}
+
+		/**
+		 * @param name
+		 *            The name of the attribute
+		 * @return the value of the attribute or <code>null</code> if it is not set
+		 */
+		public String getAttribute(String name) {
+			return attributes.get(name);
+		}
+
+		/**
+		 * @return the attributes of this element
+		 */
+		public Map<String, String> getAttributes() {
+			return Collections.unmodifiableMap(attributes);
+		}
+
+		void setAttribute(String name, String value) {
+			attributes.put(name, value);
+		}
+	}
+
+	/**
+	 * A node. The coordinates denote the center of the node.
+	 */
+	public static class Node extends Element {
+		private final String id;
+
+		private double width;
+
+		private double height;
+
+		private double x;
+
+		private double y;
+
+		private int layer;
+
+		Node(String id, Map<String, String> attributes) {
+			super(attributes);
+			this.id = id;
+		}
+
+		/**
+		 * @return the height of the node in points
+		 */
+		public double getHeight() {
+			return height;
+		}
+
+		/**
+		 * @return the id that the node has in the DOT text
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return the layer (rank) of the node, 0 is the top layer
+		 */
+		public int getLayer() {
+			return layer;
+		}
+
+		/**
+		 * @return the width of the node in points
+		 */
+		public double getWidth() {
+			return width;
+		}
+
+		/**
+		 * @return the x coordinate of the center of the node
+		 */
+		public double getX() {
+			return x;
+		}
+
+		/**
+		 * @return the y coordinate of the center of the node
+		 */
+		public double getY() {
+			return y;
+		}
+
+		void setCenter(double x, double y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		void setLayer(int layer) {
+			this.layer = layer;
+		}
+
+		void setSize(double width, double height) {
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	private final String id;
+
+	private final boolean directed;
+
+	private final Map<String, String> attributes = Maps.newHashMap();
+
+	private final Map<String, Node> nodes = Maps.newLinkedHashMap();
+
+	private final List<Edge> edges = Lists.newArrayList();
+
+	private double width;
+
+	private double height;
+
+	LayeredGraph(String id, boolean directed) {
+		this.id = id;
+		this.directed = directed;
+	}
+
+	Edge addEdge(Node from, Node to, Map<String, String> edgeAttributes) {
+		Edge edge = new Edge(from, to, edgeAttributes);
+		edges.add(edge);
+		return edge;
+	}
+
+	/**
+	 * Returns the node with the given id, creating it with the given attributes if it does not exist.
+	 */
+	Node ensureNode(String nodeId, Map<String, String> defaults) {
+		Node node = nodes.get(nodeId);
+		if(node == null) {
+			node = new Node(nodeId, Maps.newHashMap(defaults));
+			nodes.put(nodeId, node);
+		}
+		return node;
+	}
+
+	/**
+	 * @param name
+	 *            The name of the attribute
+	 * @return the value of the graph attribute or <code>null</code> if it is not set
+	 */
+	public String getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * @return the edges in declaration order
+	 */
+	public List<Edge> getEdges() {
+		return Collections.unmodifiableList(edges);
+	}
+
+	/**
+	 * @return the height of the laid out graph in points, including margins
+	 */
+	public double getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the id of the graph, may be <code>null</code>
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @param nodeId
+	 *            The id that the node has in the DOT text
+	 * @return the node or <code>null</code> if there is no such node
+	 */
+	public Node getNode(String nodeId) {
+		return nodes.get(nodeId);
+	}
+
+	/**
+	 * @return the nodes in declaration order
+	 */
+	public Collection<Node> getNodes() {
+		return Collections.unmodifiableCollection(nodes.values());
+	}
+
+	/**
+	 * @return the width of the laid out graph in points, including margins
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return <code>true</code> if this is a <code>digraph</code>
+	 */
+	public boolean isDirected() {
+		return directed;
+	}
+
+	void setAttribute(String name, String value) {
+		attributes.put(name, value);
+	}
+
+	void setSize(double width, double height) {
+		this.width = width;
+		this.height = height;
+	}
+}
@@ -0,0 +1,886 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.layout;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Edge;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Node;
+import com.puppetlabs.graph.ICancel;
+
+/**
+ * A Sugiyama style layered layout of a {@link LayeredGraph}. The layout is done in four stages:
+ * <ol>
+ * <li>cycle removal, edges that close a cycle in a depth first traversal are reversed</li>
+ * <li>longest path layering, long edges are then split into chains of dummy vertices</li>
+ * <li>crossing reduction using the barycenter heuristic in alternating down and up sweeps</li>
+ * <li>coordinate assignment according to Brandes and K&ouml;pf, i.e. the balanced median of four vertical
+ * alignments</li>
+ * </ol>
+ * The graph attributes <code>rankdir</code>, <code>nodesep</code> and <code>ranksep</code> and the node attributes
+ * <code>label</code>, <code>shape</code>, <code>fontsize</code>, <code>width</code>, <code>height</code> and
+ * <code>fixedsize</code> are taken into account. Node sizes are estimated from the label text since no fonts are
+ * available.
+ * <p>
+ * The result only depends on the graph and the order of its nodes and edges, unless a time budget is given. The
+ * crossing reduction then stops when the budget is spent, which makes the result depend on the speed of the machine.
+ * </p>
+ */
+public class LayeredLayout {
+	/**
+	 * A vertex of the layered graph, either a node or a dummy on a long edge
+	 */
+	private static class Vertex {
+		final int id;
+
+		/**
+		 * The node or <code>null</code> for dummies
+		 */
+		final Node node;
+
+		final List<Vertex> upper = Lists.newArrayList();
+
+		final List<Vertex> lower = Lists.newArrayList();
+
+		/**
+		 * Extent along the layer
+		 */
+		double width;
+
+		/**
+		 * Extent across the layer
+		 */
+		double height;
+
+		int layer;
+
+		int pos;
+
+		double key;
+
+		double x;
+
+		Vertex(int id, Node node) {
+			this.id = id;
+			this.node = node;
+		}
+	}
+
+	public static final double POINTS_PER_INCH = 72;
+
+	static final double DEFAULT_FONT_SIZE = 14;
+
+	static final double CHAR_WIDTH = 0.6;
+
+	static final double LINE_HEIGHT = 1.2;
+
+	static final double MARGIN = 4;
+
+	private static final double LABEL_PADDING_X = 16;
+
+	private static final double LABEL_PADDING_Y = 8;
+
+	private static final double LOOP_SIZE = 18;
+
+	private static final int MAX_SWEEPS = 24;
+
+	private static final int MAX_FAILED_SWEEPS = 4;
+
+	private static final Pattern NUMBER = Pattern.compile("^\\s*([+-]?(?:[0-9]+\\.?[0-9]*|\\.[0-9]+))");
+
+	private static final Comparator<Vertex> BY_KEY = new Comparator<Vertex>() {
+		@Override
+		public int compare(Vertex a, Vertex b) {
+			return Double.compare(a.key, b.key);
+		}
+	};
+
+	private static double[] clip(Node node, double cx, double cy, double tx, double ty) {
+		double dx = tx - cx;
+		double dy = ty - cy;
+		double hw = node.getWidth() / 2;
+		double hh = node.getHeight() / 2;
+		if(dx == 0 && dy == 0 || hw == 0 || hh == 0)
+			return new double[] { cx, cy };
+		double t;
+		if(isEllipse(node))
+			t = 1 / Math.sqrt(dx * dx / (hw * hw) + dy * dy / (hh * hh));
+		else
+			t = Math.min(dx == 0
+					? Double.MAX_VALUE
+					: hw / Math.abs(dx), dy == 0
+					? Double.MAX_VALUE
+					: hh / Math.abs(dy));
+		t = Math.min(t, 1);
+		return new double[] { cx + dx * t, cy + dy * t };
+	}
+
+	/**
+	 * Counts the crossings between two adjacent layers using the accumulator tree of Barth, J&uuml;nger and Mutzel.
+	 */
+	private static long countCrossings(List<Vertex> upperLayer, List<Vertex> lowerLayer) {
+		int lowerSize = lowerLayer.size();
+		if(lowerSize < 2)
+			return 0;
+		int firstIndex = 1;
+		while(firstIndex < lowerSize)
+			firstIndex *= 2;
+		int[] tree = new int[2 * firstIndex - 1];
+		--firstIndex;
+		long crossings = 0;
+		int[] positions = new int[8];
+		for(Vertex u : upperLayer) {
+			int count = u.lower.size();
+			if(positions.length < count)
+				positions = new int[count];
+			for(int i = 0; i < count; ++i)
+				positions[i] = u.lower.get(i).pos;
+			Arrays.sort(positions, 0, count);
+			for(int i = 0; i < count; ++i) {
+				int index = positions[i] + firstIndex;
+				++tree[index];
+				while(index > 0) {
+					if(index % 2 == 1)
+						crossings += tree[index + 1];
+					index = (index - 1) / 2;
+					++tree[index];
+				}
+			}
+		}
+		return crossings;
+	}
+
+	/**
+	 * @return the height of the graph label, 0 if there is none
+	 */
+	static double graphLabelHeight(LayeredGraph graph) {
+		int lineCount = graphLabelLines(graph).length;
+		return lineCount == 0
+				? 0
+				: lineCount * fontSize(graph.getAttribute("fontsize")) * LINE_HEIGHT + LABEL_PADDING_Y;
+	}
+
+	static String[] graphLabelLines(LayeredGraph graph) {
+		return LabelText.lines(graph.getAttribute("label"), null, graph.getId());
+	}
+
+	static double fontSize(String value) {
+		return number(value, DEFAULT_FONT_SIZE);
+	}
+
+	static boolean isEllipse(Node node) {
+		String shape = node.getAttribute("shape");
+		return shape == null || "ellipse".equals(shape) || "oval".equals(shape) || "circle".equals(shape) ||
+				"doublecircle".equals(shape) || "point".equals(shape);
+	}
+
+	private static void measure(Node node, String graphName) {
+		String shape = node.getAttribute("shape");
+		double fontSize = fontSize(node.getAttribute("fontsize"));
+		double minWidth = number(node.getAttribute("width"), 0.75) * POINTS_PER_INCH;
+		double minHeight = number(node.getAttribute("height"), 0.5) * POINTS_PER_INCH;
+		if("true".equals(node.getAttribute("fixedsize"))) {
+			node.setSize(minWidth, minHeight);
+			return;
+		}
+		String[] lines = LabelText.lines(node.getAttribute("label"), node.getId(), graphName);
+		int maxChars = 0;
+		for(String line : lines)
+			maxChars = Math.max(maxChars, line.length());
+		double width = maxChars * fontSize * CHAR_WIDTH + LABEL_PADDING_X;
+		double height = lines.length * fontSize * LINE_HEIGHT + LABEL_PADDING_Y;
+		if("plain".equals(shape)) {
+			node.setSize(width, height);
+			return;
+		}
+		if(isEllipse(node)) {
+			// the ellipse that encloses the label box
+			width *= Math.sqrt(2);
+			height *= Math.sqrt(2);
+			if(shape != null && shape.endsWith("circle"))
+				width = height = Math.max(width, height);
+		}
+		node.setSize(Math.max(width, minWidth), Math.max(height, minHeight));
+	}
+
+	static double number(String value, double defaultValue) {
+		if(value == null)
+			return defaultValue;
+		Matcher m = NUMBER.matcher(value);
+		return m.find()
+				? Double.parseDouble(m.group(1))
+				: defaultValue;
+	}
+
+	private static void sortByKey(List<Vertex> layer) {
+		// Collections.sort is stable so vertices with the same key keep their relative order
+		Collections.sort(layer, BY_KEY);
+		for(int i = 0; i < layer.size(); ++i)
+			layer.get(i).pos = i;
+	}
+
+	private final long timeBudget;
+
+	private double nodeSeparation;
+
+	private double rankSeparation;
+
+	private List<Vertex> vertices;
+
+	private List<List<Vertex>> layers;
+
+	/**
+	 * Keys of the edges between two vertices that may not be aligned since they cross an inner segment
+	 */
+	private Set<Long> conflicts;
+
+	/**
+	 * Creates a layout that produces the same result for the same graph every time.
+	 */
+	public LayeredLayout() {
+		this(0);
+	}
+
+	/**
+	 * @param timeBudget
+	 *            The maximum number of milliseconds to spend on crossing reduction, or 0 for no limit. A limit makes the
+	 *            result non deterministic.
+	 */
+	public LayeredLayout(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	private void addConflict(Vertex upper, Vertex lower) {
+		conflicts.add(Long.valueOf((long) upper.id * vertices.size() + lower.id));
+	}
+
+	private double[] alignAndCompact(boolean down, boolean left) {
+		int n = vertices.size();
+		List<List<Vertex>> sweep = Lists.newArrayListWithCapacity(layers.size());
+		for(List<Vertex> layer : layers) {
+			List<Vertex> ordered = Lists.newArrayList(layer);
+			if(!left)
+				Collections.reverse(ordered);
+			sweep.add(ordered);
+		}
+		if(!down)
+			Collections.reverse(sweep);
+
+		int[] p = new int[n];
+		for(List<Vertex> layer : sweep)
+			for(int k = 0; k < layer.size(); ++k)
+				p[layer.get(k).id] = k;
+
+		// vertical alignment with the median neighbours
+		int[] root = new int[n];
+		int[] align = new int[n];
+		for(int i = 0; i < n; ++i)
+			root[i] = align[i] = i;
+		Vertex[] neighbours = new Vertex[8];
+		for(int i = 1; i < sweep.size(); ++i) {
+			int r = -1;
+			for(Vertex v : sweep.get(i)) {
+				List<Vertex> adjacent = down
+						? v.upper
+						: v.lower;
+				int d = adjacent.size();
+				if(d == 0)
+					continue;
+				if(neighbours.length < d)
+					neighbours = new Vertex[d];
+				adjacent.toArray(neighbours);
+				sortBySweepPosition(neighbours, d, p);
+				for(int m = (d - 1) / 2; m <= d / 2; ++m) {
+					if(align[v.id] != v.id)
+						break;
+					Vertex u = neighbours[m];
+					boolean conflict = down
+							? isConflict(u, v)
+							: isConflict(v, u);
+					if(!conflict && r < p[u.id]) {
+						align[u.id] = v.id;
+						root[v.id] = root[u.id];
+						align[v.id] = root[v.id];
+						r = p[u.id];
+					}
+				}
+			}
+		}
+
+		// horizontal compaction, each block is placed as far left as its left neighbours permit
+		int[] edgeFrom = new int[n];
+		int[] edgeTo = new int[n];
+		double[] edgeWeight = new double[n];
+		int[] inDegree = new int[n];
+		int edgeCount = 0;
+		for(List<Vertex> layer : sweep)
+			for(int k = 1; k < layer.size(); ++k) {
+				Vertex a = layer.get(k - 1);
+				Vertex b = layer.get(k);
+				edgeFrom[edgeCount] = root[a.id];
+				edgeTo[edgeCount] = root[b.id];
+				edgeWeight[edgeCount] = separation(a, b);
+				++inDegree[root[b.id]];
+				++edgeCount;
+			}
+		int[] firstEdge = new int[n + 1];
+		for(int e = 0; e < edgeCount; ++e)
+			++firstEdge[edgeFrom[e] + 1];
+		for(int i = 0; i < n; ++i)
+			firstEdge[i + 1] += firstEdge[i];
+		int[] byFrom = new int[edgeCount];
+		int[] fill = Arrays.copyOf(firstEdge, n);
+		for(int e = 0; e < edgeCount; ++e)
+			byFrom[fill[edgeFrom[e]]++] = e;
+
+		double[] blockX = new double[n];
+		ArrayDeque<Integer> ready = new ArrayDeque<Integer>();
+		for(int i = 0; i < n; ++i)
+			if(root[i] == i && inDegree[i] == 0)
+				ready.add(Integer.valueOf(i));
+		while(!ready.isEmpty()) {
+			int b = ready.removeFirst().intValue();
+			for(int i = firstEdge[b]; i < firstEdge[b + 1]; ++i) {
+				int e = byFrom[i];
+				int t = edgeTo[e];
+				blockX[t] = Math.max(blockX[t], blockX[b] + edgeWeight[e]);
+				if(--inDegree[t] == 0)
+					ready.add(Integer.valueOf(t));
+			}
+		}
+
+		double[] x = new double[n];
+		for(int i = 0; i < n; ++i)
+			x[i] = left
+					? blockX[root[i]]
+					: -blockX[root[i]];
+		return x;
+	}
+
+	private void assignCoordinates() {
+		markConflicts();
+		int n = vertices.size();
+		double[][] candidates = new double[4][];
+		double[] minX = new double[4];
+		double[] maxX = new double[4];
+		int smallest = 0;
+		for(int c = 0; c < 4; ++c) {
+			candidates[c] = alignAndCompact(c < 2, c % 2 == 0);
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for(Vertex v : vertices) {
+				min = Math.min(min, candidates[c][v.id] - v.width / 2);
+				max = Math.max(max, candidates[c][v.id] + v.width / 2);
+			}
+			minX[c] = min;
+			maxX[c] = max;
+			if(max - min < maxX[smallest] - minX[smallest])
+				smallest = c;
+		}
+		for(int c = 0; c < 4; ++c) {
+			double shift = c % 2 == 0
+					? minX[smallest] - minX[c]
+					: maxX[smallest] - maxX[c];
+			for(int i = 0; i < n; ++i)
+				candidates[c][i] += shift;
+		}
+		double[] values = new double[4];
+		for(Vertex v : vertices) {
+			for(int c = 0; c < 4; ++c)
+				values[c] = candidates[c][v.id];
+			Arrays.sort(values);
+			v.x = (values[1] + values[2]) / 2;
+		}
+
+		// the balanced result is not guaranteed to be free of overlaps
+		for(List<Vertex> layer : layers)
+			for(int k = 1; k < layer.size(); ++k) {
+				Vertex a = layer.get(k - 1);
+				Vertex b = layer.get(k);
+				b.x = Math.max(b.x, a.x + separation(a, b));
+			}
+		double min = Double.MAX_VALUE;
+		for(Vertex v : vertices)
+			min = Math.min(min, v.x - v.width / 2);
+		for(Vertex v : vertices)
+			v.x -= min;
+	}
+
+	private void assignLayers(List<Edge> edges, boolean[] reversed, Map<Node, Vertex> vertexMap) {
+		int n = vertices.size();
+		int[] inDegree = new int[n];
+		List<List<Vertex>> successors = Lists.newArrayListWithCapacity(n);
+		for(int i = 0; i < n; ++i)
+			successors.add(Lists.<Vertex> newArrayList());
+		for(int e = 0; e < edges.size(); ++e) {
+			Vertex from = vertexMap.get(source(edges.get(e), reversed[e]));
+			Vertex to = vertexMap.get(target(edges.get(e), reversed[e]));
+			successors.get(from.id).add(to);
+			++inDegree[to.id];
+		}
+		boolean[] isSource = new boolean[n];
+		ArrayDeque<Vertex> ready = new ArrayDeque<Vertex>();
+		for(Vertex v : vertices)
+			if(inDegree[v.id] == 0) {
+				isSource[v.id] = true;
+				ready.add(v);
+			}
+		List<Vertex> topological = Lists.newArrayListWithCapacity(n);
+		while(!ready.isEmpty()) {
+			Vertex v = ready.removeFirst();
+			topological.add(v);
+			for(Vertex w : successors.get(v.id)) {
+				w.layer = Math.max(w.layer, v.layer + 1);
+				if(--inDegree[w.id] == 0)
+					ready.add(w);
+			}
+		}
+
+		// sources are moved down next to their closest successor to avoid long edges
+		for(Vertex v : topological) {
+			if(!isSource[v.id] || successors.get(v.id).isEmpty())
+				continue;
+			int closest = Integer.MAX_VALUE;
+			for(Vertex w : successors.get(v.id))
+				closest = Math.min(closest, w.layer);
+			v.layer = closest - 1;
+		}
+	}
+
+	private void checkCanceled(ICancel cancel) {
+		if(cancel != null)
+			cancel.assertContinue();
+	}
+
+	/**
+	 * Reduces the number of crossings by sorting the layers on the barycenter of the positions of their neighbours.
+	 */
+	private void reduceCrossings(ICancel cancel) {
+		long deadline = timeBudget > 0
+				? System.currentTimeMillis() + timeBudget
+				: Long.MAX_VALUE;
+		long best = totalCrossings();
+		int[] bestPos = new int[vertices.size()];
+		savePositions(bestPos);
+		int failures = 0;
+		for(int sweep = 0; sweep < MAX_SWEEPS && best > 0; ++sweep) {
+			checkCanceled(cancel);
+			boolean down = sweep % 2 == 0;
+			if(down)
+				for(int i = 1; i < layers.size(); ++i)
+					sortByBarycenter(layers.get(i), true);
+			else
+				for(int i = layers.size() - 2; i >= 0; --i)
+					sortByBarycenter(layers.get(i), false);
+			long crossings = totalCrossings();
+			if(crossings < best) {
+				best = crossings;
+				savePositions(bestPos);
+				failures = 0;
+			}
+			else if(++failures >= MAX_FAILED_SWEEPS)
+				break;
+			if(System.currentTimeMillis() > deadline)
+				break;
+		}
+		for(Vertex v : vertices)
+			v.key = bestPos[v.id];
+		for(List<Vertex> layer : layers)
+			sortByKey(layer);
+	}
+
+	private Vertex createVertex(Node node) {
+		Vertex v = new Vertex(vertices.size(), node);
+		vertices.add(v);
+		return v;
+	}
+
+	/**
+	 * Marks the edges that cross an inner segment, i.e. an edge between two dummies (type 1 conflicts).
+	 */
+	private void markConflicts() {
+		conflicts = Sets.newHashSet();
+		for(int i = 0; i + 1 < layers.size(); ++i) {
+			List<Vertex> upperLayer = layers.get(i);
+			List<Vertex> lowerLayer = layers.get(i + 1);
+			int k0 = 0;
+			int l = 0;
+			for(int l1 = 0; l1 < lowerLayer.size(); ++l1) {
+				Vertex v = lowerLayer.get(l1);
+				Vertex innerUpper = null;
+				if(v.node == null)
+					for(Vertex u : v.upper)
+						if(u.node == null) {
+							innerUpper = u;
+							break;
+						}
+				if(l1 == lowerLayer.size() - 1 || innerUpper != null) {
+					int k1 = innerUpper == null
+							? upperLayer.size() - 1
+							: innerUpper.pos;
+					for(; l <= l1; ++l) {
+						Vertex w = lowerLayer.get(l);
+						for(Vertex u : w.upper)
+							if(u.pos < k0 || u.pos > k1)
+								addConflict(u, w);
+					}
+					k0 = k1;
+				}
+			}
+		}
+	}
+
+	private boolean isConflict(Vertex upper, Vertex lower) {
+		return conflicts.contains(Long.valueOf((long) upper.id * vertices.size() + lower.id));
+	}
+
+	/**
+	 * Lays out the graph. The size of all nodes, the center of all nodes, the points of all edges and the size of the
+	 * graph are set.
+	 *
+	 * @param graph
+	 *            The graph to lay out
+	 * @param cancel
+	 *            Checked for cancellation between the stages, may be <code>null</code>
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the layout was canceled
+	 */
+	public void layout(LayeredGraph graph, ICancel cancel) {
+		String rankdir = graph.getAttribute("rankdir");
+		boolean horizontal = "LR".equalsIgnoreCase(rankdir) || "RL".equalsIgnoreCase(rankdir);
+		boolean flipped = "BT".equalsIgnoreCase(rankdir) || "RL".equalsIgnoreCase(rankdir);
+		nodeSeparation = Math.max(0.02, number(graph.getAttribute("nodesep"), 0.25)) * POINTS_PER_INCH;
+		rankSeparation = Math.max(0.02, number(graph.getAttribute("ranksep"), 0.5)) * POINTS_PER_INCH;
+		vertices = Lists.newArrayList();
+		Map<Node, Vertex> vertexMap = Maps.newHashMap();
+		for(Node node : graph.getNodes()) {
+			measure(node, graph.getId());
+			Vertex v = createVertex(node);
+			v.width = horizontal
+					? node.getHeight()
+					: node.getWidth();
+			v.height = horizontal
+					? node.getWidth()
+					: node.getHeight();
+			vertexMap.put(node, v);
+		}
+		List<Edge> edges = Lists.newArrayList();
+		List<Edge> loops = Lists.newArrayList();
+		for(Edge edge : graph.getEdges())
+			if(edge.getFrom() == edge.getTo())
+				loops.add(edge);
+			else
+				edges.add(edge);
+		if(!horizontal)
+			// make room for the loop on the right hand side of the node
+			for(Edge loop : loops) {
+				Vertex v = vertexMap.get(loop.getFrom());
+				v.width = Math.max(v.width, v.node.getWidth() + 2 * LOOP_SIZE);
+			}
+
+		boolean[] reversed = removeCycles(edges, vertexMap);
+		checkCanceled(cancel);
+		assignLayers(edges, reversed, vertexMap);
+		List<List<Vertex>> routes = splitLongEdges(edges, reversed, vertexMap);
+		orderLayers();
+		checkCanceled(cancel);
+		reduceCrossings(cancel);
+		checkCanceled(cancel);
+		assignCoordinates();
+
+		// the across coordinate of each layer and the total extents
+		double[] layerCenter = new double[layers.size()];
+		double along = 0;
+		for(int i = 0; i < layers.size(); ++i) {
+			double layerHeight = 0;
+			for(Vertex v : layers.get(i))
+				layerHeight = Math.max(layerHeight, v.height);
+			if(i > 0)
+				along += rankSeparation;
+			layerCenter[i] = along + layerHeight / 2;
+			along += layerHeight;
+		}
+		double across = 0;
+		for(Vertex v : vertices)
+			across = Math.max(across, v.x + v.width / 2);
+		double loopExtent = horizontal && !loops.isEmpty()
+				? LOOP_SIZE
+				: 0;
+
+		// transform to graph coordinates
+		double[][] centers = new double[vertices.size()][];
+		for(Vertex v : vertices) {
+			double a = layerCenter[v.layer];
+			if(flipped)
+				a = along - a;
+			centers[v.id] = horizontal
+					? new double[] { MARGIN + a, MARGIN + v.x }
+					: new double[] { MARGIN + v.x, MARGIN + a };
+			if(v.node != null)
+				v.node.setCenter(centers[v.id][0], centers[v.id][1]);
+		}
+		double width = (horizontal
+				? along
+				: across) + loopExtent + 2 * MARGIN;
+		double height = (horizontal
+				? across
+				: along) + 2 * MARGIN;
+
+		for(int e = 0; e < edges.size(); ++e)
+			route(edges.get(e), routes.get(e), reversed[e], centers);
+		for(Edge loop : loops)
+			routeLoop(loop);
+
+		String[] labelLines = graphLabelLines(graph);
+		if(labelLines.length > 0) {
+			double labelFontSize = fontSize(graph.getAttribute("fontsize"));
+			int maxChars = 0;
+			for(String line : labelLines)
+				maxChars = Math.max(maxChars, line.length());
+			width = Math.max(width, maxChars * labelFontSize * CHAR_WIDTH + LABEL_PADDING_X + 2 * MARGIN);
+			height += graphLabelHeight(graph);
+		}
+		graph.setSize(width, height);
+
+		for(Vertex v : vertices)
+			if(v.node != null)
+				v.node.setLayer(v.layer);
+		vertices = null;
+		layers = null;
+		conflicts = null;
+	}
+
+	/**
+	 * Creates the initial order of the layers. The top layer is kept in declaration order and the vertices of every
+	 * other layer are ordered as they are reached from the layer above, which gives few crossings in trees.
+	 */
+	private void orderLayers() {
+		int layerCount = 0;
+		for(Vertex v : vertices)
+			layerCount = Math.max(layerCount, v.layer + 1);
+		List<List<Vertex>> byLayer = Lists.newArrayListWithCapacity(layerCount);
+		layers = Lists.newArrayListWithCapacity(layerCount);
+		for(int i = 0; i < layerCount; ++i) {
+			byLayer.add(Lists.<Vertex> newArrayList());
+			layers.add(Lists.<Vertex> newArrayList());
+		}
+		for(Vertex v : vertices)
+			byLayer.get(v.layer).add(v);
+
+		boolean[] placed = new boolean[vertices.size()];
+		for(int i = 0; i < layerCount; ++i) {
+			List<Vertex> layer = layers.get(i);
+			for(Vertex v : byLayer.get(i))
+				if(!placed[v.id]) {
+					placed[v.id] = true;
+					layer.add(v);
+				}
+			for(Vertex v : layer)
+				for(Vertex w : v.lower)
+					if(!placed[w.id]) {
+						placed[w.id] = true;
+						layers.get(w.layer).add(w);
+					}
+		}
+		for(List<Vertex> layer : layers)
+			for(int k = 0; k < layer.size(); ++k)
+				layer.get(k).pos = k;
+	}
+
+	/**
+	 * Reverses the edges that close a cycle in a depth first traversal, starting from the nodes that have no incoming
+	 * edges.
+	 *
+	 * @return the reversed state of each edge
+	 */
+	private boolean[] removeCycles(List<Edge> edges, Map<Node, Vertex> vertexMap) {
+		int n = vertices.size();
+		List<List<Integer>> outgoing = Lists.newArrayListWithCapacity(n);
+		for(int i = 0; i < n; ++i)
+			outgoing.add(Lists.<Integer> newArrayList());
+		boolean[] hasIncoming = new boolean[n];
+		int[] targets = new int[edges.size()];
+		for(int e = 0; e < edges.size(); ++e) {
+			Edge edge = edges.get(e);
+			outgoing.get(vertexMap.get(edge.getFrom()).id).add(Integer.valueOf(e));
+			targets[e] = vertexMap.get(edge.getTo()).id;
+			hasIncoming[targets[e]] = true;
+		}
+
+		boolean[] reversed = new boolean[edges.size()];
+		int[] state = new int[n]; // 0 = not visited, 1 = on the stack, 2 = done
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		for(int pass = 0; pass < 2; ++pass)
+			for(int start = 0; start < n; ++start) {
+				if(state[start] != 0 || pass == 0 && hasIncoming[start])
+					continue;
+				int top = 0;
+				stack[0] = start;
+				state[start] = 1;
+				while(top >= 0) {
+					int v = stack[top];
+					List<Integer> out = outgoing.get(v);
+					if(next[v] < out.size()) {
+						int e = out.get(next[v]++).intValue();
+						int w = targets[e];
+						if(state[w] == 1)
+							reversed[e] = true;
+						else if(state[w] == 0) {
+							state[w] = 1;
+							stack[++top] = w;
+						}
+					}
+					else {
+						state[v] = 2;
+						--top;
+					}
+				}
+			}
+		return reversed;
+	}
+
+	private void route(Edge edge, List<Vertex> route, boolean reversed, double[][] centers) {
+		int count = route.size();
+		double[] points = new double[count * 2];
+		for(int i = 0; i < count; ++i) {
+			double[] center = centers[route.get(i).id];
+			points[i * 2] = center[0];
+			points[i * 2 + 1] = center[1];
+		}
+		double[] start = clip(route.get(0).node, points[0], points[1], points[2], points[3]);
+		double[] end = clip(
+			route.get(count - 1).node, points[count * 2 - 2], points[count * 2 - 1], points[count * 2 - 4],
+			points[count * 2 - 3]);
+		points[0] = start[0];
+		points[1] = start[1];
+		points[count * 2 - 2] = end[0];
+		points[count * 2 - 1] = end[1];
+		if(reversed)
+			for(int i = 0, j = count - 1; i < j; ++i, --j) {
+				double tx = points[i * 2];
+				double ty = points[i * 2 + 1];
+				points[i * 2] = points[j * 2];
+				points[i * 2 + 1] = points[j * 2 + 1];
+				points[j * 2] = tx;
+				points[j * 2 + 1] = ty;
+			}
+		edge.setPoints(points);
+	}
+
+	private void routeLoop(Edge loop) {
+		Node node = loop.getFrom();
+		double right = node.getX() + node.getWidth() / 2;
+		double y = node.getY();
+		double h = node.getHeight();
+		loop.setPoints(new double[] {
+				right, y - h / 6, right + LOOP_SIZE, y - h / 3, right + LOOP_SIZE, y + h / 3, right, y + h / 6 });
+	}
+
+	private void savePositions(int[] positions) {
+		for(Vertex v : vertices)
+			positions[v.id] = v.pos;
+	}
+
+	private double separation(Vertex a, Vertex b) {
+		double gap = a.node == null || b.node == null
+				? nodeSeparation / 2
+				: nodeSeparation;
+		return (a.width + b.width) / 2 + gap;
+	}
+
+	private void sortByBarycenter(List<Vertex> layer, boolean upper) {
+		for(Vertex v : layer) {
+			List<Vertex> adjacent = upper
+					? v.upper
+					: v.lower;
+			if(adjacent.isEmpty()) {
+				// vertices without neighbours keep their position
+				v.key = v.pos;
+				continue;
+			}
+			double sum = 0;
+			for(Vertex w : adjacent)
+				sum += w.pos;
+			v.key = sum / adjacent.size();
+		}
+		sortByKey(layer);
+	}
+
+	private void sortBySweepPosition(Vertex[] neighbours, int count, final int[] p) {
+		Arrays.sort(neighbours, 0, count, new Comparator<Vertex>() {
+			@Override
+			public int compare(Vertex a, Vertex b) {
+				return p[a.id] - p[b.id];
+			}
+		});
+	}
+
+	private Node source(Edge edge, boolean reversed) {
+		return reversed
+				? edge.getTo()
+				: edge.getFrom();
+	}
+
+	/**
+	 * Splits edges that span more than one layer into chains of dummy vertices so that all edges of the layered graph
+	 * connect adjacent layers.
+	 *
+	 * @return the route of each edge, from the upper to the lower vertex
+	 */
+	private List<List<Vertex>> splitLongEdges(List<Edge> edges, boolean[] reversed, Map<Node, Vertex> vertexMap) {
+		List<List<Vertex>> routes = Lists.newArrayListWithCapacity(edges.size());
+		for(int e = 0; e < edges.size(); ++e) {
+			Vertex from = vertexMap.get(source(edges.get(e), reversed[e]));
+			Vertex to = vertexMap.get(target(edges.get(e), reversed[e]));
+			List<Vertex> route = Lists.newArrayList();
+			route.add(from);
+			Vertex previous = from;
+			for(int layer = from.layer + 1; layer < to.layer; ++layer) {
+				Vertex dummy = createVertex(null);
+				dummy.layer = layer;
+				previous.lower.add(dummy);
+				dummy.upper.add(previous);
+				route.add(dummy);
+				previous = dummy;
+			}
+			previous.lower.add(to);
+			to.upper.add(previous);
+			route.add(to);
+			routes.add(route);
+		}
+		return routes;
+	}
+
+	private Node target(Edge edge, boolean reversed) {
+		return reversed
+				? edge.getFrom()
+				: edge.getTo();
+	}
+
+	private long totalCrossings() {
+		long total = 0;
+		for(int i = 0; i + 1 < layers.size(); ++i)
+			total += countCrossings(layers.get(i), layers.get(i + 1));
+		return total;
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.layout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.google.common.base.Charsets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.puppetlabs.geppetto.graph.ISVGLayoutEngine;
+import com.puppetlabs.graph.ICancel;
+
+/**
+ * An {@link ISVGLayoutEngine} that lays out the graph in process using the {@link LayeredLayout} and writes the SVG
+ * with the {@link LayeredSVGWriter}. No external program is needed.
+ * <p>
+ * By default the crossing reduction is given a time budget of {@link #TIME_BUDGET} milliseconds, which keeps large
+ * graphs fast but makes the result depend on the machine. Bind the constant named {@link #DETERMINISTIC} to
+ * <code>true</code> to always get the same SVG for the same DOT, e.g. when comparing with expected output in tests.
+ * </p>
+ */
+@Singleton
+public class LayeredLayoutEngine implements ISVGLayoutEngine {
+	public static final String DETERMINISTIC = "layered.layout.deterministic";
+
+	public static final long TIME_BUDGET = 2000;
+
+	@Inject(optional = true)
+	@Named(DETERMINISTIC)
+	private boolean deterministic = false;
+
+	/**
+	 * @return <code>true</code> if the result is independent of the time it takes to produce it
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	@Override
+	public void writeSVG(ICancel cancel, InputStream dotStream, OutputStream svgStream) throws IOException {
+		LayeredGraph graph = new DotReader().read(dotStream);
+		new LayeredLayout(deterministic
+				? 0
+				: TIME_BUDGET).layout(graph, cancel);
+		Writer writer = new OutputStreamWriter(svgStream, Charsets.UTF_8);
+		new LayeredSVGWriter().write(graph, writer);
+		// flush the encoder but leave the stream open
+		writer.flush();
+	}
+}
@@ -0,0 +1,369 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.graph.layout;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Edge;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Element;
+import com.puppetlabs.geppetto.graph.layout.LayeredGraph.Node;
+
+/**
+ * Writes a {@link LayeredGraph} that has been laid out by the {@link LayeredLayout} as SVG. The structure of the
+ * document follows the SVG written by Graphviz (one group per node and edge with a title and the DOT
+ * <code>class</code> and <code>id</code> attributes) so that style sheets and scripts written for Graphviz output
+ * continue to work. All coordinates are written with two decimals, independent of the default locale.
+ */
+public class LayeredSVGWriter {
+	private static final double ARROW_LENGTH = 10;
+
+	private static final double ARROW_HALF_WIDTH = 3.5;
+
+	private static final String DEFAULT_FONT = "Times,serif";
+
+	private static String color(String value, String defaultValue) {
+		if(value == null || value.length() == 0)
+			return defaultValue;
+		// color lists, use the first color
+		int colon = value.indexOf(':');
+		if(colon > 0)
+			value = value.substring(0, colon);
+		// color scheme prefix, e.g. /x11/red
+		if(value.startsWith("/"))
+			value = value.substring(value.lastIndexOf('/') + 1);
+		return value;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.2f", Double.valueOf(value));
+	}
+
+	private static boolean hasStyle(Element element, String style) {
+		String styles = element.getAttribute("style");
+		if(styles == null)
+			return false;
+		for(String s : styles.split(","))
+			if(s.trim().equals(style))
+				return true;
+		return false;
+	}
+
+	private static boolean isOutlined(Node node) {
+		String shape = node.getAttribute("shape");
+		return !("none".equals(shape) || "plaintext".equals(shape) || "plain".equals(shape));
+	}
+
+	private int count;
+
+	private Appendable out;
+
+	private void attribute(String name, String value) throws IOException {
+		out.append(' ').append(name).append("=\"");
+		escape(value);
+		out.append('"');
+	}
+
+	private void beginAnchor(Element element, String text) throws IOException {
+		String href = element.getAttribute("URL");
+		if(href == null)
+			href = element.getAttribute("href");
+		if(href == null)
+			return;
+		String tooltip = element.getAttribute("tooltip");
+		out.append("<a");
+		attribute("xlink:href", href);
+		attribute("xlink:title", tooltip == null
+				? text
+				: tooltip);
+		String target = element.getAttribute("target");
+		if(target != null)
+			attribute("target", target);
+		out.append(">\n");
+	}
+
+	private void beginGroup(Element element, String kind, String title) throws IOException {
+		String id = element.getAttribute("id");
+		String styleClass = element.getAttribute("class");
+		out.append("<g");
+		attribute("id", id == null
+				? kind + ++count
+				: id);
+		attribute("class", styleClass == null
+				? kind
+				: kind + ' ' + styleClass);
+		out.append(">\n<title>");
+		escape(title);
+		out.append("</title>\n");
+	}
+
+	private void endAnchor(Element element) throws IOException {
+		if(element.getAttribute("URL") != null || element.getAttribute("href") != null)
+			out.append("</a>\n");
+	}
+
+	private void escape(String text) throws IOException {
+		for(int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			switch(c) {
+				case '&':
+					out.append("&amp;");
+					break;
+				case '<':
+					out.append("&lt;");
+					break;
+				case '>':
+					out.append("&gt;");
+					break;
+				case '"':
+					out.append("&quot;");
+					break;
+				case '\'':
+					out.append("&#39;");
+					break;
+				default:
+					out.append(c);
+			}
+		}
+	}
+
+	private void stroke(Element element, String defaultColor) throws IOException {
+		attribute("stroke", color(element.getAttribute("color"), defaultColor));
+		String penWidth = element.getAttribute("penwidth");
+		if(penWidth != null)
+			attribute("stroke-width", penWidth);
+		else if(hasStyle(element, "bold"))
+			attribute("stroke-width", "2");
+		if(hasStyle(element, "dashed"))
+			attribute("stroke-dasharray", "5,2");
+		else if(hasStyle(element, "dotted"))
+			attribute("stroke-dasharray", "1,5");
+	}
+
+	/**
+	 * Writes the given graph as an SVG document
+	 *
+	 * @param graph
+	 *            A graph that has been laid out
+	 * @param output
+	 *            Where the SVG is written
+	 * @throws IOException
+	 *             if the output could not be written
+	 */
+	public synchronized void write(LayeredGraph graph, Appendable output) throws IOException {
+		out = output;
+		count = 0;
+		try {
+			String width = format(graph.getWidth());
+			String height = format(graph.getHeight());
+			out.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+			out.append("<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\"\n");
+			out.append(" \"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">\n");
+			out.append("<svg");
+			attribute("width", width + "pt");
+			attribute("height", height + "pt");
+			attribute("viewBox", "0.00 0.00 " + width + ' ' + height);
+			attribute("xmlns", "http://www.w3.org/2000/svg");
+			attribute("xmlns:xlink", "http://www.w3.org/1999/xlink");
+			out.append(">\n<g id=\"graph0\" class=\"graph\">\n<title>");
+			escape(graph.getId() == null
+					? ""
+					: graph.getId());
+			out.append("</title>\n<polygon");
+			attribute("fill", color(graph.getAttribute("bgcolor"), "white"));
+			attribute("stroke", "none");
+			attribute("points", "0,0 " + width + ",0 " + width + ',' + height + " 0," + height);
+			out.append("/>\n");
+			writeGraphLabel(graph);
+			for(Node node : graph.getNodes())
+				writeNode(node, graph);
+			count = 0;
+			for(Edge edge : graph.getEdges())
+				writeEdge(edge, graph);
+			out.append("</g>\n</svg>\n");
+		}
+		finally {
+			out = null;
+		}
+	}
+
+	private void writeArrow(double[] points, int tip, int base, String color) throws IOException {
+		double tx = points[tip];
+		double ty = points[tip + 1];
+		double dx = tx - points[base];
+		double dy = ty - points[base + 1];
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if(length == 0)
+			return;
+		dx /= length;
+		dy /= length;
+		double bx = tx - dx * ARROW_LENGTH;
+		double by = ty - dy * ARROW_LENGTH;
+		out.append("<polygon");
+		attribute("fill", color);
+		attribute("stroke", color);
+		attribute("points", format(tx) + ',' + format(ty) + ' ' + format(bx - dy * ARROW_HALF_WIDTH) + ',' +
+				format(by + dx * ARROW_HALF_WIDTH) + ' ' + format(bx + dy * ARROW_HALF_WIDTH) + ',' +
+				format(by - dx * ARROW_HALF_WIDTH));
+		out.append("/>\n");
+
+		// the line ends where the arrow starts
+		points[tip] = bx;
+		points[tip + 1] = by;
+	}
+
+	private void writeEdge(Edge edge, LayeredGraph graph) throws IOException {
+		double[] points = edge.getPoints();
+		if(points == null || points.length < 4 || hasStyle(edge, "invis"))
+			return;
+		points = points.clone();
+		String title = edge.getFrom().getId() + (graph.isDirected()
+				? "->"
+				: "--") + edge.getTo().getId();
+		beginGroup(edge, "edge", title);
+		beginAnchor(edge, title);
+		String color = color(edge.getAttribute("color"), "black");
+		String dir = edge.getAttribute("dir");
+		if(dir == null)
+			dir = graph.isDirected()
+					? "forward"
+					: "none";
+		int last = points.length - 2;
+		if(("forward".equals(dir) || "both".equals(dir)) && !"none".equals(edge.getAttribute("arrowhead")))
+			writeArrow(points, last, last - 2, color);
+		if(("back".equals(dir) || "both".equals(dir)) && !"none".equals(edge.getAttribute("arrowtail")))
+			writeArrow(points, 0, 2, color);
+
+		StringBuilder path = new StringBuilder();
+		path.append('M').append(format(points[0])).append(',').append(format(points[1]));
+		// a self loop is a single cubic curve
+		boolean loop = edge.getFrom() == edge.getTo() && points.length == 8;
+		path.append(loop
+				? 'C'
+				: 'L');
+		for(int i = 2; i < points.length; i += 2) {
+			if(i > 2)
+				path.append(' ');
+			path.append(format(points[i])).append(',').append(format(points[i + 1]));
+		}
+		out.append("<path");
+		attribute("fill", "none");
+		stroke(edge, "black");
+		attribute("d", path.toString());
+		out.append("/>\n");
+
+		String[] lines = LabelText.lines(edge.getAttribute("label"), null, graph.getId());
+		if(lines.length > 0) {
+			// next to the middle of the route
+			int middle = points.length / 4 * 2;
+			double x = (points[middle - 2] + points[middle]) / 2;
+			double y = (points[middle - 1] + points[middle + 1]) / 2;
+			writeText(edge, lines, x + 4, y, "start");
+		}
+		endAnchor(edge);
+		out.append("</g>\n");
+	}
+
+	private void writeGraphLabel(LayeredGraph graph) throws IOException {
+		String[] lines = LayeredLayout.graphLabelLines(graph);
+		if(lines.length == 0)
+			return;
+		double labelHeight = LayeredLayout.graphLabelHeight(graph);
+		writeText(
+			graph.getAttribute("fontname"), graph.getAttribute("fontsize"), graph.getAttribute("fontcolor"), lines,
+			graph.getWidth() / 2, graph.getHeight() - LayeredLayout.MARGIN - labelHeight / 2, "middle");
+	}
+
+	private void writeNode(Node node, LayeredGraph graph) throws IOException {
+		if(hasStyle(node, "invis"))
+			return;
+		String[] lines = LabelText.lines(node.getAttribute("label"), node.getId(), graph.getId());
+		beginGroup(node, "node", node.getId());
+		StringBuilder text = new StringBuilder();
+		for(String line : lines) {
+			if(text.length() > 0)
+				text.append(' ');
+			text.append(line);
+		}
+		beginAnchor(node, text.toString());
+
+		double x = node.getX();
+		double y = node.getY();
+		double w = node.getWidth();
+		double h = node.getHeight();
+		String fill = hasStyle(node, "filled")
+				? color(node.getAttribute("fillcolor"), color(node.getAttribute("color"), "lightgrey"))
+				: "none";
+		if(isOutlined(node) || !"none".equals(fill)) {
+			if(LayeredLayout.isEllipse(node)) {
+				out.append("<ellipse");
+				attribute("fill", fill);
+				if(isOutlined(node))
+					stroke(node, "black");
+				else
+					attribute("stroke", "none");
+				attribute("cx", format(x));
+				attribute("cy", format(y));
+				attribute("rx", format(w / 2));
+				attribute("ry", format(h / 2));
+			}
+			else {
+				out.append("<rect");
+				attribute("fill", fill);
+				if(isOutlined(node))
+					stroke(node, "black");
+				else
+					attribute("stroke", "none");
+				attribute("x", format(x - w / 2));
+				attribute("y", format(y - h / 2));
+				attribute("width", format(w));
+				attribute("height", format(h));
+				if(hasStyle(node, "rounded")) {
+					attribute("rx", "6");
+					attribute("ry", "6");
+				}
+			}
+			out.append("/>\n");
+		}
+		writeText(node, lines, x, y, "middle");
+		endAnchor(node);
+		out.append("</g>\n");
+	}
+
+	private void writeText(Element element, String[] lines, double x, double y, String anchor) throws IOException {
+		writeText(
+			element.getAttribute("fontname"), element.getAttribute("fontsize"), element.getAttribute("fontcolor"), lines,
+			x, y, anchor);
+	}
+
+	private void writeText(String fontName, String fontSizeValue, String fontColor, String[] lines, double x, double y,
+			String anchor) throws IOException {
+		double fontSize = LayeredLayout.fontSize(fontSizeValue);
+		double lineHeight = fontSize * LayeredLayout.LINE_HEIGHT;
+		// the first baseline, assuming that the ascent is about one font size
+		double baseline = y - lines.length * lineHeight / 2 + fontSize;
+		for(String line : lines) {
+			out.append("<text");
+			attribute("text-anchor", anchor);
+			attribute("x", format(x));
+			attribute("y", format(baseline));
+			attribute("font-family", fontName == null
+					? DEFAULT_FONT
+					: fontName);
+			attribute("font-size", format(fontSize));
+			attribute("fill", color(fontColor, "black"));
+			out.append('>');
+			escape(line);
+			out.append("</text>\n");
+			baseline += lineHeight;
+		}
+	}
+}
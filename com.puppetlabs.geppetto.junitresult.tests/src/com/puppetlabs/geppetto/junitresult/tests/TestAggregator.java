@@ -18,16 +18,21 @@ import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 
 import junit.framework.TestCase;
 
 import com.puppetlabs.geppetto.common.os.FileUtils;
+import com.puppetlabs.geppetto.junitresult.Failure;
 import com.puppetlabs.geppetto.junitresult.JunitResult;
+import com.puppetlabs.geppetto.junitresult.JunitresultFactory;
+import com.puppetlabs.geppetto.junitresult.Testcase;
 import com.puppetlabs.geppetto.junitresult.Testsuite;
 import com.puppetlabs.geppetto.junitresult.Testsuites;
 import com.puppetlabs.geppetto.junitresult.util.JunitresultAggregator;
 import com.puppetlabs.geppetto.junitresult.util.JunitresultDomSerializer;
+import com.puppetlabs.geppetto.junitresult.util.JunitresultLoader;
 import org.eclipse.core.runtime.Path;
 
 /**
@@ -112,6 +117,65 @@ public class TestAggregator extends TestCase {
 		serializer.serialize(result, new FileOutputStream(output));
 	}
 
+	public void test_aggregatorStreamingOutput() throws IOException, XMLStreamException {
+		JunitresultAggregator aggregator = new JunitresultAggregator();
+		File root = TestDataProvider.getTestFile(new Path("testData/allresults/"));
+		JunitResult result = aggregator.aggregate(root, root);
+
+		JunitresultDomSerializer serializer = new JunitresultDomSerializer();
+		File outputDir = TestDataProvider.getTestFile(new Path("output/"));
+		File output = new File(outputDir, "streamed_result.xml");
+		FileOutputStream stream = new FileOutputStream(output);
+		try {
+			serializer.write(result, stream, null);
+		}
+		finally {
+			stream.close();
+		}
+
+		JunitResult reloaded = JunitresultLoader.loadFromXML(output);
+		assertTrue(reloaded instanceof Testsuites);
+		Testsuites testsuite = (Testsuites) reloaded;
+		assertEquals("allresults", testsuite.getName());
+		assertEquals(1, testsuite.getErrors());
+		assertEquals(13, testsuite.getTests());
+		assertEquals(7, testsuite.getFailures());
+		assertEquals(((Testsuites) result).getTestsuites().size(), testsuite.getTestsuites().size());
+	}
+
+	public void test_streamingOutputOfCDATAEnd() throws IOException, XMLStreamException {
+		// the end of a CDATA section in the text must not end the section it is written in
+		Testsuite suite = JunitresultFactory.eINSTANCE.createTestsuite();
+		suite.setName("cdata");
+		suite.setSystem_out("]]>a]]>]]>b]]");
+		Testcase tc = JunitresultFactory.eINSTANCE.createTestcase();
+		tc.setName("tc");
+		Failure failure = JunitresultFactory.eINSTANCE.createFailure();
+		failure.setMessage("failed");
+		failure.setValue("expected <x[y]]> but was <x[z]]>");
+		tc.getFailures().add(failure);
+		tc.getSystem_err().add("]]>");
+		suite.getTestcases().add(tc);
+
+		File outputDir = TestDataProvider.getTestFile(new Path("output/"));
+		File output = new File(outputDir, "cdata_result.xml");
+		FileOutputStream stream = new FileOutputStream(output);
+		try {
+			new JunitresultDomSerializer().write(suite, stream, null);
+		}
+		finally {
+			stream.close();
+		}
+
+		JunitResult reloaded = JunitresultLoader.loadFromXML(output);
+		assertTrue(reloaded instanceof Testsuite);
+		Testsuite reloadedSuite = (Testsuite) reloaded;
+		assertEquals("]]>a]]>]]>b]]", reloadedSuite.getSystem_out());
+		Testcase reloadedTc = reloadedSuite.getTestcases().get(0);
+		assertEquals("expected <x[y]]> but was <x[z]]>", reloadedTc.getFailures().get(0).getValue());
+		assertEquals("]]>", reloadedTc.getSystem_err().get(0));
+	}
+
 	public void test_aggregatorSmokeTest() throws IOException, TransformerException, ParserConfigurationException {
 		JunitresultAggregator aggregator = new JunitresultAggregator();
 		File root = null;
@@ -15,6 +15,12 @@ import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.puppetlabs.geppetto.junitresult.AbstractAggregatedTest;
 import com.puppetlabs.geppetto.junitresult.Error;
@@ -31,12 +37,17 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.emf.common.util.EList;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 /**
  * Aggregates JUnit result output stored in XML files under a given directory into a single testsuite
  * while cleaning up and rearranging the combined content.
- * 
+ * <p>
+ * The files are loaded and rearranged in parallel while the directory structure is walked. The results are then
+ * attached in walk order, and the stats of each directory are merged from the stats of its files and
+ * subdirectories, so the outcome does not depend on the order in which the files happen to be loaded.
+ * </p>
  */
 public class JunitresultAggregator {
 
@@ -86,6 +97,37 @@ public class JunitresultAggregator {
 		}
 	}
 
+	/**
+	 * The suite produced from one file, together with its stats.
+	 */
+	private static class LoadedFile {
+		final Testsuite suite;
+
+		final Stats stats;
+
+		LoadedFile(Testsuite suite, Stats stats) {
+			this.suite = suite;
+			this.stats = stats;
+		}
+	}
+
+	/**
+	 * A walked directory with the pending loads of its files and its walked subdirectories.
+	 */
+	private static class WalkedDirectory {
+		final Testsuite suite;
+
+		final List<File> files = Lists.newArrayList();
+
+		final List<Future<LoadedFile>> loads = Lists.newArrayList();
+
+		final List<WalkedDirectory> directories = Lists.newArrayList();
+
+		WalkedDirectory(Testsuite suite) {
+			this.suite = suite;
+		}
+	}
+
 	private static final FileFilter directoryFilter = new FileFilter() {
 
 		@Override
@@ -214,19 +256,89 @@ public class JunitresultAggregator {
 		this.rootPath = new Path(rootDir.getParentFile().getAbsolutePath());
 
 		this.rootSuite = createRootSuite(reportDir);
-		processFiles(rootSuite, reportDir);
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			Stats s = collect(rootSuite, walk(executor, null, reportDir));
 
-		// fix-up all counts and time
-		aggregateCountAndTime();
+			// fix-up all counts and time
+			if(loadExceptionSuite != null)
+				s = s.add(updateStats(loadExceptionSuite));
+			applyStats(rootSuite, s);
+		}
+		finally {
+			executor.shutdownNow();
+		}
 		return rootSuite;
 	}
 
+	private Stats applyStats(Testsuite testsuite, Stats s) {
+		testsuite.setTests(s.count);
+		testsuite.setErrors(s.errors);
+		testsuite.setFailures(s.failures);
+		testsuite.setSkipped(s.skipped);
+		testsuite.setDisabled(s.disabled);
+		testsuite.setTime(s.time);
+
+		// set the oldest timestamp or current time if no timestamp is available in the whole subtree and not set on the item itself
+		if(s.timestamp != null)
+			testsuite.setTimestamp(s.timestamp);
+		else if(testsuite.getTimestamp() == null)
+			testsuite.setTimestamp(s.timestamp = new Date());
+		else
+			s.timestamp = testsuite.getTimestamp();
+
+		return s;
+	}
+
+	private Stats applyStats(Testsuites testsuites, Stats s) {
+		testsuites.setTests(s.count);
+		testsuites.setErrors(s.errors);
+		testsuites.setFailures(s.failures);
+		// there is only one "disabled" that counts tests that did not run
+		// use that for tests reported as "disabled" or "skipped" (they are never both).
+		testsuites.setDisabled(s.disabled + s.skipped);
+		testsuites.setTime(s.time);
+		return s;
+	}
+
 	/**
-	 * Iterates over the rootSuite and ensures that all counts and times are aggregated.
+	 * Waits for the files of the given walked directory to be loaded and adds the resulting suites, and the suites of
+	 * the subdirectories, to the given parent in walk order. Files that could not be loaded are added as exceptional
+	 * cases.
+	 * 
+	 * @param parent
+	 * @param directory
+	 * @return the merged stats of the added suites
 	 */
-	private void aggregateCountAndTime() {
-		updateStats(rootSuite);
-
+	private Stats collect(AbstractAggregatedTest parent, WalkedDirectory directory) {
+		Stats s = new Stats();
+		int top = directory.files.size();
+		for(int i = 0; i < top; ++i) {
+			File f = directory.files.get(i);
+			try {
+				LoadedFile loaded = directory.loads.get(i).get();
+				parent.getTestsuites().add(loaded.suite);
+				s = s.add(loaded.stats);
+			}
+			catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof IOException || cause instanceof RuntimeException)
+					addExceptionalCase(f, (Exception) cause);
+				else if(cause instanceof java.lang.Error)
+					throw (java.lang.Error) cause;
+				else
+					throw new RuntimeException(cause);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while aggregating junit results", e);
+			}
+		}
+		for(WalkedDirectory d : directory.directories) {
+			parent.getTestsuites().add(d.suite);
+			s = s.add(applyStats(d.suite, collect(d.suite, d)));
+		}
+		return s;
 	}
 
 	private Testsuites createRootSuite(File reportDir) {
@@ -265,30 +377,18 @@ public class JunitresultAggregator {
 		return tsname.equals(tcname);
 	}
 
-	private void processFiles(AbstractAggregatedTest parent, File root) {
-		for(File f : root.listFiles(xmlFileFilter))
-			if(!isSymlink(f))
-				processXMLFile(parent, f);
-		for(File d : root.listFiles(directoryFilter))
-			if(!isSymlink(d)) {
-				Testsuite dirSuite = createSuite(d);
-				parent.getTestsuites().add(dirSuite);
-				processFiles(dirSuite, d);
-			}
-	}
-
 	/**
-	 * Wraps the content of the 'testrun' into a new 'testsuite' named after the file, and
-	 * adds the resulting container to the root suite.
+	 * Wraps the content of the 'testrun' into a new 'testsuite' named after the file.
 	 * 
 	 * @param f
 	 * @param testrun
+	 * @return the resulting container
 	 */
-	private void processTestrun(AbstractAggregatedTest parent, File f, Testrun testrun) {
+	private Testsuite processTestrun(File f, Testrun testrun) {
 		Testsuite containerSuite = JunitresultFactory.eINSTANCE.createTestsuite();
 		containerSuite.setName(suitename(f));
 		containerSuite.getTestsuites().addAll(testrun.getTestsuites());
-		parent.getTestsuites().add(containerSuite);
+		return containerSuite;
 	}
 
 	/**
@@ -296,13 +396,14 @@ public class JunitresultAggregator {
 	 * rewrapped based on the source spec.rb file, and if produced by ci_reporter where each tc is
 	 * wrapped in a testsuite with the same name, the testsuite is renamed after the file.
 	 * 
-	 * The resulting container (or container(s) in case of "rspec extra formatters" style) is/are added
-	 * to the root container.
+	 * In case of "rspec extra formatters" style, the resulting containers are wrapped in a container named
+	 * after the file.
 	 * 
 	 * @param f
 	 * @param testsuite
+	 * @return the resulting container
 	 */
-	private void processTestsuite(final AbstractAggregatedTest parent, final File f, final Testsuite testsuite) {
+	private Testsuite processTestsuite(final File f, final Testsuite testsuite) {
 
 		// get reported timestamp and if missing construct it from the timestamp of the
 		// resultfile.
@@ -344,8 +445,8 @@ public class JunitresultAggregator {
 				suitePerClass.getTestcases().addAll(map.get(key));
 				containerSuite.getTestsuites().add(suitePerClass);
 			}
-			parent.getTestsuites().add(containerSuite);
 			// all work done
+			return containerSuite;
 		}
 		else if(isSuiteWrappingSingleCase(testsuite)) {
 			// this is the ci_reporter style where each individual tc is wrapped in a testsuite
@@ -356,8 +457,8 @@ public class JunitresultAggregator {
 			// Simply rename the wrapping testsuite to reflect the name of the file
 			testsuite.setName(suitename(f));
 			testsuite.setTimestamp(timestamp);
-			parent.getTestsuites().add(testsuite);
 			// all work done
+			return testsuite;
 		}
 		else {
 			// this is some form of testsuite that is not known - simply include it
@@ -371,20 +472,20 @@ public class JunitresultAggregator {
 			if(suitename == null || suitename.length() < 1)
 				testsuite.setName(suitename(f));
 			testsuite.setTimestamp(timestamp);
-			parent.getTestsuites().add(testsuite);
 			// all work done
+			return testsuite;
 		}
 
 	}
 
 	/**
-	 * Wraps the content of the 'testsuites' into a new 'testsuite' named after the file, and
-	 * adds the resulting container to the root suite.
+	 * Wraps the content of the 'testsuites' into a new 'testsuite' named after the file.
 	 * 
 	 * @param f
 	 * @param testsuites
+	 * @return the resulting container
 	 */
-	private void processTestsuites(final AbstractAggregatedTest parent, final File f, final Testsuites testsuites) {
+	private Testsuite processTestsuites(final File f, final Testsuites testsuites) {
 		Date fileTs = new Date(f.lastModified());
 
 		Testsuite containerSuite = JunitresultFactory.eINSTANCE.createTestsuite();
@@ -395,28 +496,29 @@ public class JunitresultAggregator {
 			if(ts.getTimestamp() == null)
 				ts.setTimestamp(fileTs);
 		}
-		parent.getTestsuites().add(containerSuite);
+		return containerSuite;
 	}
 
-	private void processXMLFile(AbstractAggregatedTest parent, File f) {
-		try {
-			JunitResult loaded = JunitresultLoader.loadFromXML(f);
-			if(loaded instanceof Testrun) // a bit strange - this is an eclipse JUnit result
-				processTestrun(parent, f, ((Testrun) loaded));
-			else if(loaded instanceof Testsuite)
-				processTestsuite(parent, f, ((Testsuite) loaded));
-			else if(loaded instanceof Testsuites)
-				processTestsuites(parent, f, ((Testsuites) loaded));
-			else
-				throw new RuntimeException("Internal error: expected testrun, testsuite or testsuites");
-		}
-		catch(IOException e) {
-			addExceptionalCase(f, e);
-		}
-		catch(RuntimeException e) {
-			addExceptionalCase(f, e);
-		}
-
+	/**
+	 * Loads the given file and produces the suite that represents it in the aggregated result. This method is
+	 * called in parallel for different files and must not touch the aggregated result.
+	 * 
+	 * @param f
+	 * @return the suite with its stats
+	 * @throws IOException
+	 */
+	private LoadedFile processXMLFile(File f) throws IOException {
+		JunitResult loaded = JunitresultLoader.loadFromXML(f);
+		Testsuite suite;
+		if(loaded instanceof Testrun) // a bit strange - this is an eclipse JUnit result
+			suite = processTestrun(f, ((Testrun) loaded));
+		else if(loaded instanceof Testsuite)
+			suite = processTestsuite(f, ((Testsuite) loaded));
+		else if(loaded instanceof Testsuites)
+			suite = processTestsuites(f, ((Testsuites) loaded));
+		else
+			throw new RuntimeException("Internal error: expected testrun, testsuite or testsuites");
+		return new LoadedFile(suite, updateStats(suite));
 	}
 
 	/**
@@ -490,38 +592,41 @@ public class JunitresultAggregator {
 			s = s.add(updateStats(tc));
 		for(Testsuite ts : testsuite.getTestsuites())
 			s = s.add(updateStats(ts));
-
-		testsuite.setTests(s.count);
-		testsuite.setErrors(s.errors);
-		testsuite.setFailures(s.failures);
-		testsuite.setSkipped(s.skipped);
-		testsuite.setDisabled(s.disabled);
-		testsuite.setTime(s.time);
-
-		// set the oldest timestamp or current time if no timestamp is available in the whole subtree and not set on the item itself
-		if(s.timestamp != null)
-			testsuite.setTimestamp(s.timestamp);
-		else if(testsuite.getTimestamp() == null)
-			testsuite.setTimestamp(s.timestamp = new Date());
-		else
-			s.timestamp = testsuite.getTimestamp();
-
-		return s;
+		return applyStats(testsuite, s);
 	}
 
 	public Stats updateStats(Testsuites testsuites) {
 		Stats s = new Stats();
 		for(Testsuite ts : testsuites.getTestsuites())
 			s = s.add(updateStats(ts));
-
-		testsuites.setTests(s.count);
-		testsuites.setErrors(s.errors);
-		testsuites.setFailures(s.failures);
-		// there is only one "disabled" that counts tests that did not run
-		// use that for tests reported as "disabled" or "skipped" (they are never both).
-		testsuites.setDisabled(s.disabled + s.skipped);
-		testsuites.setTime(s.time);
-		return s;
+		return applyStats(testsuites, s);
 	}
 
+	/**
+	 * Walks the given directory and submits the loading of each of its files to the given executor. Subdirectories
+	 * are walked recursively while the files are loaded.
+	 * 
+	 * @param executor
+	 * @param suite
+	 *            The suite that represents the directory, <code>null</code> for the report directory
+	 * @param dir
+	 * @return the walked directory
+	 */
+	private WalkedDirectory walk(ExecutorService executor, Testsuite suite, File dir) {
+		WalkedDirectory directory = new WalkedDirectory(suite);
+		for(final File f : dir.listFiles(xmlFileFilter))
+			if(!isSymlink(f)) {
+				directory.files.add(f);
+				directory.loads.add(executor.submit(new Callable<LoadedFile>() {
+					@Override
+					public LoadedFile call() throws IOException {
+						return processXMLFile(f);
+					}
+				}));
+			}
+		for(File d : dir.listFiles(directoryFilter))
+			if(!isSymlink(d))
+				directory.directories.add(walk(executor, createSuite(d), d));
+		return directory;
+	}
 }
@@ -18,6 +18,9 @@ import java.util.Date;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -43,12 +46,30 @@ import com.google.common.base.Strings;
 
 /**
  * Serializes a Junitresult model to XML DOM.
- * 
+ * <p>
+ * The model can also be written directly to a stream (see {@link #write(JunitResult, OutputStream, String)}) which
+ * produces the same document without building a DOM for it first. This should be used for large aggregated results.
+ * </p>
  */
 public class JunitresultDomSerializer {
 
+	private static final String INDENT = "  ";
+
 	private Document doc;
 
+	private XMLStreamWriter writer;
+
+	/**
+	 * Nesting depth of the element being written by the streaming writer.
+	 */
+	private int depth;
+
+	/**
+	 * True when the last thing written by the streaming writer was an end tag, i.e. when the enclosing end tag should
+	 * go on a line of its own.
+	 */
+	private boolean afterEndElement;
+
 	/**
 	 * Format time using as many digits as possible for seconds, and always three digits for ms.
 	 */
@@ -278,4 +299,171 @@ public class JunitresultDomSerializer {
 		return doc;
 	}
 
+	/**
+	 * Writes the result as indented XML text to the given output stream without building a DOM.
+	 * 
+	 * @param r
+	 * @param stream
+	 * @param encoding
+	 *            The encoding to use or <code>null</code> for UTF-8
+	 * @throws XMLStreamException
+	 */
+	public void write(JunitResult r, OutputStream stream, String encoding) throws XMLStreamException {
+		if(encoding == null)
+			encoding = "UTF-8";
+		writer = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, encoding);
+		depth = 0;
+		afterEndElement = false;
+		try {
+			writer.writeStartDocument(encoding, "1.0");
+			switch(r.eClass().getClassifierID()) {
+				case JunitresultPackage.TESTSUITE:
+					writeTestsuite((Testsuite) r);
+					break;
+				case JunitresultPackage.TESTRUN:
+					writeTestrun((Testrun) r);
+					break;
+				case JunitresultPackage.TESTSUITES:
+					writeTestsuites((Testsuites) r);
+					break;
+				default:
+					throw new IllegalArgumentException("given JUnitResult is not one of the expected types.");
+			}
+			writer.writeCharacters("\n");
+			writer.writeEndDocument();
+			writer.flush();
+		}
+		finally {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	private void writeAttribute(String name, String value) throws XMLStreamException {
+		writer.writeAttribute(name, Strings.nullToEmpty(value));
+	}
+
+	/**
+	 * Writes the given text as CDATA. A CDATA section ends with "]]&gt;", so text containing it is split into several
+	 * sections with the "]]" at the end of one section and the "&gt;" at the start of the next. A reader concatenates
+	 * adjacent sections into the original text.
+	 */
+	private void writeCData(String cdata) throws XMLStreamException {
+		int start = 0;
+		for(int end = cdata.indexOf("]]>"); end >= 0; end = cdata.indexOf("]]>", start)) {
+			writer.writeCData(cdata.substring(start, end + 2));
+			start = end + 2;
+		}
+		writer.writeCData(cdata.substring(start));
+	}
+
+	/**
+	 * Writes an element with CDATA content, nothing is written if cdata is null or empty.
+	 */
+	private void writeCDATAElement(String elementName, String cdata) throws XMLStreamException {
+		if(Strings.isNullOrEmpty(cdata))
+			return;
+		writeStartElement(elementName);
+		writeCData(cdata);
+		writeEndElement();
+	}
+
+	private void writeEndElement() throws XMLStreamException {
+		--depth;
+		if(afterEndElement)
+			writeIndent();
+		writer.writeEndElement();
+		afterEndElement = true;
+	}
+
+	private void writeIndent() throws XMLStreamException {
+		writer.writeCharacters("\n");
+		for(int i = 0; i < depth; ++i)
+			writer.writeCharacters(INDENT);
+	}
+
+	private void writeNegativeResult(NegativeResult negativeResult) throws XMLStreamException {
+		if(negativeResult != null) {
+			writeStartElement(negativeResultToTag(negativeResult));
+			writeAttribute("message", negativeResult.getMessage());
+			writeAttribute("type", negativeResult.getType());
+			if(!Strings.isNullOrEmpty(negativeResult.getValue()))
+				writeCData(negativeResult.getValue());
+			writeEndElement();
+		}
+	}
+
+	private void writeStartElement(String name) throws XMLStreamException {
+		writeIndent();
+		writer.writeStartElement(name);
+		++depth;
+		afterEndElement = false;
+	}
+
+	private void writeTestcase(Testcase tc) throws XMLStreamException {
+		writeStartElement("testcase");
+		writeAttribute("name", tc.getName());
+		writeAttribute("time", formatTime(tc.getTime()));
+		if(!Strings.isNullOrEmpty(tc.getClassname()))
+			writeAttribute("classname", tc.getClassname());
+		for(Error error : tc.getErrors())
+			writeNegativeResult(error);
+		for(Failure failure : tc.getFailures())
+			writeNegativeResult(failure);
+		if(tc.getSkipped() != null)
+			writeNegativeResult(tc.getSkipped());
+
+		for(String s : tc.getSystem_out())
+			writeCDATAElement("system-out", s);
+		for(String s : tc.getSystem_err())
+			writeCDATAElement("system-err", s);
+		writeEndElement();
+	}
+
+	private void writeTestrun(Testrun r) throws XMLStreamException {
+		writeStartElement("testrun");
+		writeAttribute("name", r.getName());
+		writeAttribute("tests", Integer.toString(r.getTests()));
+		writeAttribute("errors", Integer.toString(r.getErrors()));
+		writeAttribute("failures", Integer.toString(r.getFailures()));
+		writeAttribute("ignored", Integer.toString(r.getIgnored()));
+		writeAttribute("started", Integer.toString(r.getStarted()));
+		for(Testsuite ts : r.getTestsuites())
+			writeTestsuite(ts);
+		writeEndElement();
+	}
+
+	private void writeTestsuite(Testsuite r) throws XMLStreamException {
+		writeStartElement("testsuite");
+		writeAttribute("name", r.getName());
+		writeAttribute("time", formatTime(r.getTime()));
+		if(r.getTimestamp() != null)
+			writeAttribute("timestamp", dateToString(r.getTimestamp()));
+		writeAttribute("tests", Integer.toString(r.getTests()));
+		writeAttribute("errors", Integer.toString(r.getErrors()));
+		writeAttribute("failures", Integer.toString(r.getFailures()));
+		writeAttribute("skipped", Integer.toString(r.getSkipped()));
+		writeAttribute("disabled", Integer.toString(r.getDisabled()));
+		for(Testcase tc : r.getTestcases())
+			writeTestcase(tc);
+		for(Testsuite ts : r.getTestsuites())
+			writeTestsuite(ts);
+
+		writeCDATAElement("system-out", r.getSystem_out());
+		writeCDATAElement("system-err", r.getSystem_err());
+		writeEndElement();
+	}
+
+	private void writeTestsuites(Testsuites r) throws XMLStreamException {
+		writeStartElement("testsuites");
+		writeAttribute("name", r.getName());
+		writeAttribute("time", formatTime(r.getTime()));
+		writeAttribute("tests", Integer.toString(r.getTests()));
+		writeAttribute("errors", Integer.toString(r.getErrors()));
+		writeAttribute("failures", Integer.toString(r.getFailures()));
+		writeAttribute("disabled", Integer.toString(r.getDisabled()));
+		for(Testsuite ts : r.getTestsuites())
+			writeTestsuite(ts);
+		writeEndElement();
+	}
 }
@@ -4,21 +4,24 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *   Puppet Labs
  */
 package com.puppetlabs.geppetto.junitresult.util;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import com.puppetlabs.geppetto.junitresult.AbstractAggregatedTest;
 import com.puppetlabs.geppetto.junitresult.Error;
@@ -32,17 +35,32 @@ import com.puppetlabs.geppetto.junitresult.Testcase;
 import com.puppetlabs.geppetto.junitresult.Testrun;
 import com.puppetlabs.geppetto.junitresult.Testsuite;
 import com.puppetlabs.geppetto.junitresult.Testsuites;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXNotSupportedException;
 
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
 
+/**
+ * Loads a JUnit result document by streaming over its elements (StAX) and building the model objects directly from
+ * the events. No DOM is created, so the memory used while loading is bounded by the size of the resulting model.
+ * <p>
+ * A loader has no state and can be shared between threads.
+ * </p>
+ */
 public class JunitresultLoader {
+	/**
+	 * XMLInputFactory is expensive to create but is not guaranteed to be thread safe, so there is one per thread.
+	 */
+	private static final ThreadLocal<XMLInputFactory> inputFactory = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+
+			// set coalescing to true to make text and CDATA in nodes concatenated into a single
+			// text string.
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			return factory;
+		}
+	};
+
 	/**
 	 * Loader of so called JUnit result format, as first defined by the ANT junit task. Three main formats
 	 * exists, but these are not formalized so parsing is based on empirical studies. A result document
@@ -53,7 +71,7 @@ public class JunitresultLoader {
 	 * <li>a <code>&lt;testsuites&gt;</code> element with multiple child <code>&lt;testsuite&gt;</code> element, which may be nested. When this format
 	 * is used, the testsuite elements have an extended attribute set ('id' and 'package') which are not present in the other formats.</li>
 	 * </ul>
-	 * 
+	 *
 	 * @param f
 	 * @return a {@link JunitResult} which is one of {@link Testsuite}, {@link Testrun} or {@link Testsuites}
 	 * @throws IOException
@@ -64,65 +82,93 @@ public class JunitresultLoader {
 		try {
 			return new JunitresultLoader().loadFromXMLFile(f);
 		}
-		catch(ParserConfigurationException e) {
-			throw new RuntimeException(e);
-		}
-		catch(SAXException e) {
+		catch(XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	private int getIntAttributeWith0Default(Element element, String attribute) {
-		try {
-			return Integer.valueOf(element.getAttribute(attribute));
-		}
-		catch(NumberFormatException e) {
-			// ignore, will return 0
-		}
-		return 0;
+	/**
+	 * Returns the value of the given attribute of the current element, or an empty string if the attribute is not
+	 * present.
+	 */
+	private static String getAttribute(XMLStreamReader reader, String attribute) {
+		String value = reader.getAttributeValue(null, attribute);
+		return value == null
+				? ""
+				: value;
+	}
+
+	private static boolean isText(int event) {
+		return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+				event == XMLStreamConstants.SPACE;
 	}
 
 	/**
-	 * Returns the node value of a child node of the given element tagged with the given tag.
-	 * If no such child element exists <code>null</code> is returned.
-	 * 
-	 * @param element
-	 * @param tag
-	 * @return
+	 * Advances from the start of an element, or from the end of one of its children, to the start of its next child
+	 * element.
+	 *
+	 * @return <code>true</code> if positioned on the start of a child, <code>false</code> if positioned on the end of
+	 *         the element.
 	 */
-	private String getTagValue(Element element, String tag) {
-		NodeList children = element.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++) {
-			Node n = children.item(i);
-			if(n.getNodeType() == Node.ELEMENT_NODE && tag.equalsIgnoreCase(n.getNodeName())) {
-				NodeList content = n.getChildNodes();
-				Node node = content.item(0);
-				return node == null
-						? null
-						: node.getNodeValue();
+	private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+		for(;;) {
+			switch(reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					return true;
+				case XMLStreamConstants.END_ELEMENT:
+					return false;
 			}
 		}
-		return null;
 	}
 
-	private List<String> getTagValues(Element element, String tag) {
-		List<String> result = Lists.newArrayList();
-		NodeList children = element.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++) {
-			Node n = children.item(i);
-			if(n.getNodeType() == Node.ELEMENT_NODE && tag.equalsIgnoreCase(n.getNodeName())) {
-				NodeList content = n.getChildNodes();
-				Node node = content.item(0);
-				if(node != null)
-					result.add(node.getNodeValue());
-			}
+	/**
+	 * Reads the content of the current element and returns the text that precedes its first non text child. When the
+	 * element does not start with text, <code>null</code> is returned. The reader is left on the end of the element.
+	 */
+	private static String readLeadingText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder text = null;
+		int event;
+		while(isText(event = reader.next())) {
+			if(text == null)
+				text = new StringBuilder();
+			text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
 		}
-		return result;
+		if(event == XMLStreamConstants.START_ELEMENT)
+			skipElement(reader);
+		if(event != XMLStreamConstants.END_ELEMENT)
+			skipContent(reader);
+		return text == null
+				? null
+				: text.toString();
+	}
+
+	/**
+	 * Skips the remaining content of the current element, the reader is left on the end of the element.
+	 */
+	private static void skipContent(XMLStreamReader reader) throws XMLStreamException {
+		while(nextChild(reader))
+			skipElement(reader);
+	}
+
+	/**
+	 * Skips the element that the reader is positioned on, the reader is left on the end of the element.
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		skipContent(reader);
+	}
 
+	private int getIntAttributeWith0Default(XMLStreamReader reader, String attribute) {
+		try {
+			return Integer.valueOf(getAttribute(reader, attribute));
+		}
+		catch(NumberFormatException e) {
+			// ignore, will return 0
+		}
+		return 0;
 	}
 
-	private double getTime(Element element, String attribute) {
-		String t = element.getAttribute(attribute);
+	private double getTime(XMLStreamReader reader, String attribute) {
+		String t = getAttribute(reader, attribute);
 		if(Strings.isNullOrEmpty(t))
 			return 0.0;
 		try {
@@ -133,10 +179,10 @@ public class JunitresultLoader {
 		}
 	}
 
-	private Date getTimestamp(Element element, String attribute) {
+	private Date getTimestamp(XMLStreamReader reader, String attribute) {
 		try {
 			// jaxb parser has a useful method for parsing a timestamp in ISO8601 format
-			Calendar calendar = javax.xml.bind.DatatypeConverter.parseDateTime(element.getAttribute(attribute));
+			Calendar calendar = javax.xml.bind.DatatypeConverter.parseDateTime(getAttribute(reader, attribute));
 			return calendar.getTime();
 
 		}
@@ -148,193 +194,197 @@ public class JunitresultLoader {
 		}
 	}
 
-	private void loadAbstractAggregatedPart(AbstractAggregatedTest o, Element element) {
-		o.setName(element.getAttribute("name"));
-		o.setTests(getIntAttributeWith0Default(element, "tests"));
-		o.setFailures(getIntAttributeWith0Default(element, "failures"));
-		o.setErrors(getIntAttributeWith0Default(element, "errors"));
+	private void loadAbstractAggregatedPart(AbstractAggregatedTest o, XMLStreamReader reader) {
+		o.setName(getAttribute(reader, "name"));
+		o.setTests(getIntAttributeWith0Default(reader, "tests"));
+		o.setFailures(getIntAttributeWith0Default(reader, "failures"));
+		o.setErrors(getIntAttributeWith0Default(reader, "errors"));
 	}
 
-	public JunitResult loadFromXMLFile(File f) throws ParserConfigurationException, SAXException, IOException {
-		DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-
-		// set coalescing to true to make text and CDATA in nodes using concatenated into a single
-		// text string.
-		dbFactory.setCoalescing(true);
-
-		DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-		Document doc = dBuilder.parse(f);
+	public JunitResult loadFromXMLFile(File f) throws XMLStreamException, IOException {
+		InputStream input = new BufferedInputStream(new FileInputStream(f));
+		try {
+			XMLStreamReader reader = inputFactory.get().createXMLStreamReader(f.toURI().toString(), input);
+			try {
+				return loadFromXMLStream(reader);
+			}
+			finally {
+				reader.close();
+			}
+		}
+		finally {
+			input.close();
+		}
+	}
 
-		Element docElement = doc.getDocumentElement();
+	/**
+	 * Loads the document read by the given reader, which must be positioned before the document element.
+	 *
+	 * @param reader
+	 * @return a {@link JunitResult} which is one of {@link Testsuite}, {@link Testrun} or {@link Testsuites}
+	 * @throws XMLStreamException
+	 */
+	public JunitResult loadFromXMLStream(XMLStreamReader reader) throws XMLStreamException {
+		while(reader.getEventType() != XMLStreamConstants.START_ELEMENT)
+			reader.next();
 
 		// There are three types of document elements possible:
-		final String rootName = docElement.getNodeName();
+		final String rootName = reader.getLocalName();
 		if("testrun".equalsIgnoreCase(rootName)) {
-			return loadTestrun(docElement);
+			return loadTestrun(reader);
 		}
 		else if("testsuites".equalsIgnoreCase(rootName)) {
-			return loadTestSuites(docElement);
+			return loadTestSuites(reader);
 
 		}
 		else if("testsuite".equalsIgnoreCase(rootName)) {
-			return loadTestSuite(docElement);
+			return loadTestSuite(reader, false);
 		}
 		else {
-			throw new SAXNotSupportedException("Can only load 'testrun', 'testsuites' or 'testsuite', but got: " +
-					rootName);
+			throw new XMLStreamException("Can only load 'testrun', 'testsuites' or 'testsuite', but got: " + rootName,
+				reader.getLocation());
 		}
 	}
 
-	private void loadNegativeResult(NegativeResult o, NodeList negativeList) {
-		Node negativeNode = negativeList.item(0);
-		if(negativeNode != null) {
-			Element errorElement = (Element) negativeNode;
-			o.setMessage(errorElement.getAttribute("message"));
-			o.setType(errorElement.getAttribute("type"));
-			// value (if any) is in a child node
-			NodeList children = errorElement.getChildNodes();
-			Node n = children.item(0);
-			if(n != null)
-				o.setValue(n.getNodeValue());
+	private void loadNegativeResult(NegativeResult o, XMLStreamReader reader) throws XMLStreamException {
+		o.setMessage(getAttribute(reader, "message"));
+		o.setType(getAttribute(reader, "type"));
+		// value (if any) is in a child node
+		String value = readLeadingText(reader);
+		if(value != null)
+			o.setValue(value);
+	}
+
+	private void loadProperties(Testsuite o, XMLStreamReader reader) throws XMLStreamException {
+		while(nextChild(reader)) {
+			if("property".equalsIgnoreCase(reader.getLocalName())) {
+				Property p = JunitresultFactory.eINSTANCE.createProperty();
+				p.setName(getAttribute(reader, "name"));
+				p.setValue(getAttribute(reader, "value"));
+				o.getProperties().add(p);
+			}
+			skipElement(reader);
 		}
 	}
 
-	private Testcase loadTestCase(Element element) {
-		if(!"testcase".equalsIgnoreCase(element.getNodeName()))
-			throw new IllegalArgumentException("Non 'testcase' element passed to #loadTestCase");
+	private Testcase loadTestCase(XMLStreamReader reader) throws XMLStreamException {
 		Testcase o = JunitresultFactory.eINSTANCE.createTestcase();
 
-		o.setClassname(element.getAttribute("classname"));
-		o.setName(element.getAttribute("name"));
-		o.setTime(getTime(element, "time"));
-
-		// Only one of these are allowed - error, failure, skipped
-		// let the last win
-
-		// Error element
-		NodeList errors = element.getElementsByTagName("error");
-		for(int i = 0; i < errors.getLength(); i++) {
-			Error error = JunitresultFactory.eINSTANCE.createError();
-			loadNegativeResult(error, errors);
-			o.getErrors().add(error);
-		}
-
-		// Failure element
-		NodeList failures = element.getElementsByTagName("failure");
-		for(int i = 0; i < failures.getLength(); i++) {
-			Failure failure = JunitresultFactory.eINSTANCE.createFailure();
-			loadNegativeResult(failure, failures);
-			o.getFailures().add(failure);
-		}
+		o.setClassname(getAttribute(reader, "classname"));
+		o.setName(getAttribute(reader, "name"));
+		o.setTime(getTime(reader, "time"));
 
-		// Skipped element
-		NodeList skipps = element.getElementsByTagName("skipped");
-		if(skipps.getLength() > 0) {
-			Skipped skipped = JunitresultFactory.eINSTANCE.createSkipped();
-			loadNegativeResult(skipped, skipps);
-			o.setSkipped(skipped);
+		while(nextChild(reader)) {
+			String name = reader.getLocalName();
+			if("error".equalsIgnoreCase(name)) {
+				Error error = JunitresultFactory.eINSTANCE.createError();
+				loadNegativeResult(error, reader);
+				o.getErrors().add(error);
+			}
+			else if("failure".equalsIgnoreCase(name)) {
+				Failure failure = JunitresultFactory.eINSTANCE.createFailure();
+				loadNegativeResult(failure, reader);
+				o.getFailures().add(failure);
+			}
+			else if("skipped".equalsIgnoreCase(name)) {
+				// only one skipped is kept, let the first win
+				Skipped skipped = JunitresultFactory.eINSTANCE.createSkipped();
+				loadNegativeResult(skipped, reader);
+				if(o.getSkipped() == null)
+					o.setSkipped(skipped);
+			}
+			else if("system-err".equalsIgnoreCase(name)) {
+				String value = readLeadingText(reader);
+				if(value != null)
+					o.getSystem_err().add(value);
+			}
+			else if("system-out".equalsIgnoreCase(name)) {
+				String value = readLeadingText(reader);
+				if(value != null)
+					o.getSystem_out().add(value);
+			}
+			else
+				skipElement(reader);
 		}
-
-		o.getSystem_err().addAll(getTagValues(element, "system-err"));
-		o.getSystem_out().addAll(getTagValues(element, "system-out"));
 		return o;
-
 	}
 
 	/**
 	 * Loads a &lt;testrun&gt; element which is the format used by Eclipse JUnit result export.
-	 * 
-	 * @param element
+	 *
+	 * @param reader
 	 * @return
 	 */
-	private Testrun loadTestrun(Element element) {
-		if(!"testrun".equalsIgnoreCase(element.getNodeName())) {
-			throw new IllegalArgumentException("Non 'testrun' element passed to #loadTestrun");
-		}
+	private Testrun loadTestrun(XMLStreamReader reader) throws XMLStreamException {
 		Testrun o = JunitresultFactory.eINSTANCE.createTestrun();
-		loadAbstractAggregatedPart(o, element);
-		o.setProject(element.getAttribute("project"));
-		o.setStarted(getIntAttributeWith0Default(element, "started"));
-		o.setIgnored(getIntAttributeWith0Default(element, "ignored"));
+		loadAbstractAggregatedPart(o, reader);
+		o.setProject(getAttribute(reader, "project"));
+		o.setStarted(getIntAttributeWith0Default(reader, "started"));
+		o.setIgnored(getIntAttributeWith0Default(reader, "ignored"));
 
 		// nested test suite(s)
-		NodeList children = element.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++) {
-			Node n = children.item(i);
-			if(n.getNodeType() == Node.ELEMENT_NODE && "testsuite".equalsIgnoreCase(n.getNodeName()))
-				o.getTestsuites().add(loadTestSuite((Element) n, false));
-		}
+		while(nextChild(reader))
+			if("testsuite".equalsIgnoreCase(reader.getLocalName()))
+				o.getTestsuites().add(loadTestSuite(reader, false));
+			else
+				skipElement(reader);
 
 		return o;
 	}
 
-	/**
-	 * Loads a &lt;testsuite&gt; element in the form used by Eclipse testrun format, and when a testsuite is
-	 * the document root. (This implies that the extended attributes found in testsuite elements embedded in the
-	 * junitreport format are not parsed).
-	 * 
-	 * @param element
-	 * @return
-	 */
-	private Testsuite loadTestSuite(Element element) {
-		return loadTestSuite(element, false);
-	}
-
 	/**
 	 * Loads a &lt;testsuite&gt; element in one of two alternate forms as directed by the parameter <code>extendedForm</code>.
 	 * The extended form should be used when the element is part of a &lt;testsuites&gt; element as
-	 * generated by junitreport.
-	 * 
-	 * @param element
+	 * generated by junitreport. The plain form is used by Eclipse testrun format, and when a testsuite is
+	 * the document root.
+	 *
+	 * @param reader
 	 * @param extendedForm
 	 * @return
 	 */
-	private Testsuite loadTestSuite(Element element, boolean extendedForm) {
+	private Testsuite loadTestSuite(XMLStreamReader reader, boolean extendedForm) throws XMLStreamException {
 		Testsuite o = JunitresultFactory.eINSTANCE.createTestsuite();
 		// super class part
-		loadAbstractAggregatedPart(o, element);
+		loadAbstractAggregatedPart(o, reader);
 
 		// attributes
-		o.setSystem_err(getTagValue(element, "system-err"));
-		o.setSystem_out(getTagValue(element, "system-out"));
-		o.setHostname(element.getAttribute("hostname"));
-		o.setTime(getTime(element, "time"));
-		o.setTimestamp(getTimestamp(element, "timestamp"));
+		o.setHostname(getAttribute(reader, "hostname"));
+		o.setTime(getTime(reader, "time"));
+		o.setTimestamp(getTimestamp(reader, "timestamp"));
 
 		// JUnit 4 - (?)
-		o.setDisabled(getIntAttributeWith0Default(element, "disabled"));
-		o.setSkipped(getIntAttributeWith0Default(element, "skipped"));
+		o.setDisabled(getIntAttributeWith0Default(reader, "disabled"));
+		o.setSkipped(getIntAttributeWith0Default(reader, "skipped"));
 
 		// when embedded in a junitreport result where <testsuites> is the document root these two
 		// attributes are present in each nested testsuite.
 		//
 		if(extendedForm) {
-			o.setId(getIntAttributeWith0Default(element, "id"));
-			o.setPackage(element.getAttribute("package"));
+			o.setId(getIntAttributeWith0Default(reader, "id"));
+			o.setPackage(getAttribute(reader, "package"));
 		}
 
-		// child test suites (nested) & test cases
-		NodeList children = element.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++) {
-			Node n = children.item(i);
-			if(n.getNodeType() == Node.ELEMENT_NODE)
-				if("testsuite".equalsIgnoreCase(n.getNodeName()))
-					o.getTestsuites().add(loadTestSuite((Element) n, extendedForm));
-				else if("testcase".equalsIgnoreCase(n.getNodeName()))
-					o.getTestcases().add(loadTestCase((Element) n));
-				else if("properties".equalsIgnoreCase(n.getNodeName())) {
-					NodeList properties = ((Element) n).getElementsByTagName("property");
-					for(int j = 0; j < properties.getLength(); j++) {
-						Node pn = properties.item(j);
-						if(pn.getNodeType() == Node.ELEMENT_NODE) {
-							Element propertyElement = (Element) pn;
-							Property p = JunitresultFactory.eINSTANCE.createProperty();
-							p.setName(propertyElement.getAttribute("name"));
-							p.setValue(propertyElement.getAttribute("value"));
-							o.getProperties().add(p);
-						}
-					}
-				}
+		// child test suites (nested) & test cases, only the first system-err and system-out are used
+		boolean systemErrSeen = false;
+		boolean systemOutSeen = false;
+		while(nextChild(reader)) {
+			String name = reader.getLocalName();
+			if("testsuite".equalsIgnoreCase(name))
+				o.getTestsuites().add(loadTestSuite(reader, extendedForm));
+			else if("testcase".equalsIgnoreCase(name))
+				o.getTestcases().add(loadTestCase(reader));
+			else if("properties".equalsIgnoreCase(name))
+				loadProperties(o, reader);
+			else if(!systemErrSeen && "system-err".equalsIgnoreCase(name)) {
+				systemErrSeen = true;
+				o.setSystem_err(readLeadingText(reader));
+			}
+			else if(!systemOutSeen && "system-out".equalsIgnoreCase(name)) {
+				systemOutSeen = true;
+				o.setSystem_out(readLeadingText(reader));
+			}
+			else
+				skipElement(reader);
 		}
 
 		return o;
@@ -343,22 +393,21 @@ public class JunitresultLoader {
 	/**
 	 * Loads a &lt;testsuites&gt; element as found in the result from a junitreport. All nested
 	 * &lt;testsuite&gt; elements have extended attributes.
-	 * 
-	 * @param element
+	 *
+	 * @param reader
 	 * @return
 	 */
-	private Testsuites loadTestSuites(Element element) {
+	private Testsuites loadTestSuites(XMLStreamReader reader) throws XMLStreamException {
 		Testsuites o = JunitresultFactory.eINSTANCE.createTestsuites();
-		loadAbstractAggregatedPart(o, element);
-		o.setTime(getTime(element, "time"));
-		o.setDisabled(getIntAttributeWith0Default(element, "disabled"));
-
-		NodeList children = element.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++) {
-			Node n = children.item(i);
-			if(n.getNodeType() == Node.ELEMENT_NODE && "testsuite".equalsIgnoreCase(n.getNodeName()))
-				o.getTestsuites().add(loadTestSuite((Element) n, true));
-		}
+		loadAbstractAggregatedPart(o, reader);
+		o.setTime(getTime(reader, "time"));
+		o.setDisabled(getIntAttributeWith0Default(reader, "disabled"));
+
+		while(nextChild(reader))
+			if("testsuite".equalsIgnoreCase(reader.getLocalName()))
+				o.getTestsuites().add(loadTestSuite(reader, true));
+			else
+				skipElement(reader);
 		return o;
 	}
 }
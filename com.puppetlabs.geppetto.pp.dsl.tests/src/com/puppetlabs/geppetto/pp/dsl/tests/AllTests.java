@@ -30,11 +30,21 @@ import org.junit.runners.Suite.SuiteClasses;
 	TestIssues.class,
 	TestIssues3_0.class,
 	TestLinking.class,
+	TestExportedContainerIndex.class,
+	TestReferenceIndex.class,
+	TestResourceDescriptionManager.class,
+	TestCompletionIndex.class,
+	TestSuggestionIndex.class,
 	TestSemanticOneSpaceFormatter.class,
 	TestSemanticCssFormatter.class,
 	TestPPFormatting.class,
+	TestPPFormattingRememberedWidths.class,
 	TestPPFormattingFailing.class,
+	TestRuleIndex.class,
 	TestFormatterUtils.class,
+	TestTaskTagMatcher.class,
+	TestTopLevelNodeAdapter.class,
+	TestUnitLinker.class,
 	TestPptpResourceAsFile.class
 // @fmtOn
 })
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.puppetlabs.geppetto.pp.PPPackage;
+import com.puppetlabs.geppetto.pp.dsl.contentassist.PPCompletionIndex;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath;
+import com.puppetlabs.geppetto.pp.dsl.tests.TestReferenceIndex.ListenableResourceDescriptions;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.naming.IQualifiedNameConverter;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.impl.DefaultResourceDescriptionDelta;
+import org.eclipse.xtext.resource.impl.ResourceSetBasedResourceDescriptions;
+import org.junit.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests the prefix search, the ranking and the maintenance of the {@link PPCompletionIndex}.
+ */
+public class TestCompletionIndex extends AbstractPuppetTests {
+	/**
+	 * Ranks the objects on the file they are in, file2 before file1 before file4. Other files are not on the path.
+	 */
+	private static class FileSearchPath extends PPSearchPath {
+		private static final List<String> FILES = Arrays.asList("file2.pp", "file1.pp", "file4.pp");
+
+		FileSearchPath() {
+			super(null);
+		}
+
+		@Override
+		public int searchIndexOf(IEObjectDescription d) {
+			int idx = FILES.indexOf(d.getEObjectURI().lastSegment());
+			return idx < 0
+					? -1
+					: idx + 1;
+		}
+	}
+
+	private static final EClass[] CLASS_AND_DEFINITION = {
+			PPPackage.Literals.HOST_CLASS_DEFINITION, PPPackage.Literals.DEFINITION };
+
+	private static final String FILE1 = "class apache {\n}\nclass apache::vhost {\n}\n" + //
+			"define apache::mod($x) {\n}\nclass mysql {\n}\n";
+
+	private static final String FILE2 = "class apache {\n}\ndefine apache::site {\n}\n";
+
+	private static final String FILE3 = "class apache::hidden {\n}\n";
+
+	private final PPSearchPath searchPath = new FileSearchPath();
+
+	private List<Resource> resources;
+
+	private PPCompletionIndex createIndex(IResourceDescriptions descriptions) {
+		PPCompletionIndex completionIndex = new PPCompletionIndex(descriptions);
+		getInjector().injectMembers(completionIndex);
+		return completionIndex;
+	}
+
+	private List<String> find(PPCompletionIndex completionIndex, String prefix, EClass[] eClasses,
+			Predicate<IEObjectDescription> filter, int limit) {
+		IQualifiedNameConverter converter = get(IQualifiedNameConverter.class);
+		List<String> result = Lists.newArrayList();
+		for(IEObjectDescription d : completionIndex.findPrefixed(prefix, eClasses, searchPath, filter, limit)) {
+			String file = d.getEObjectURI().lastSegment();
+			result.add(converter.toString(d.getQualifiedName()) + "@" + file.substring(0, file.length() - 3));
+		}
+		return result;
+	}
+
+	private List<String> find(PPCompletionIndex completionIndex, String prefix, int limit) {
+		return find(completionIndex, prefix, CLASS_AND_DEFINITION, limit);
+	}
+
+	private List<String> find(PPCompletionIndex completionIndex, String prefix, EClass[] eClasses, int limit) {
+		return find(completionIndex, prefix, eClasses, Predicates.<IEObjectDescription> alwaysTrue(), limit);
+	}
+
+	private ListenableResourceDescriptions loadDescriptions() throws Exception {
+		resources = loadAndLinkResources(FILE1, FILE2, FILE3);
+		ListenableResourceDescriptions descriptions = get(ListenableResourceDescriptions.class);
+		descriptions.setContext(resources.get(0).getResourceSet());
+		return descriptions;
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_Filter() throws Exception {
+		PPCompletionIndex completionIndex = createIndex(loadDescriptions());
+		Predicate<IEObjectDescription> notInFile2 = new Predicate<IEObjectDescription>() {
+			@Override
+			public boolean apply(IEObjectDescription d) {
+				return !"file2.pp".equals(d.getEObjectURI().lastSegment());
+			}
+		};
+		assertEquals(
+			Arrays.asList("apache@file1", "apache::vhost@file1", "apache::mod@file1"),
+			find(completionIndex, "apache", CLASS_AND_DEFINITION, notInFile2, 200));
+	}
+
+	@Test
+	public void test_Limit() throws Exception {
+		PPCompletionIndex completionIndex = createIndex(loadDescriptions());
+		assertEquals(Arrays.asList("apache@file2", "apache::site@file2"), find(completionIndex, "apache", 2));
+		assertEquals(
+			Arrays.asList("apache@file2", "apache::site@file2", "apache@file1"), find(completionIndex, "apache", 3));
+		assertTrue("Nothing is returned without a limit", find(completionIndex, "apache", 0).isEmpty());
+	}
+
+	@Test
+	public void test_Maintained() throws Exception {
+		ListenableResourceDescriptions descriptions = loadDescriptions();
+		PPCompletionIndex completionIndex = createIndex(descriptions);
+		assertEquals(Arrays.asList("apache@file2", "apache::site@file2"), find(completionIndex, "apache", 2));
+		long count = completionIndex.getModificationCount();
+		assertEquals("The count only changes with the descriptions", count, completionIndex.getModificationCount());
+
+		// remove file1
+		Resource removed = resources.get(0);
+		IResourceDescription removedDescription = descriptions.getResourceDescription(removed.getURI());
+		removed.getResourceSet().getResources().remove(removed);
+		descriptions.fireChanged(new DefaultResourceDescriptionDelta(removedDescription, null));
+		assertTrue("The count changes with the descriptions", completionIndex.getModificationCount() != count);
+		assertEquals(Arrays.asList("apache@file2", "apache::site@file2"), find(completionIndex, "apache", 200));
+
+		// add file4
+		Resource added = loadResource("class apache::vhost {\n}\n", makeManifestURI(4));
+		resolveCrossReferences(added);
+		descriptions.fireChanged(new DefaultResourceDescriptionDelta(
+			null, descriptions.getResourceDescription(added.getURI())));
+		assertEquals(
+			Arrays.asList("apache@file2", "apache::site@file2", "apache::vhost@file4"),
+			find(completionIndex, "apache", 200));
+	}
+
+	@Test
+	public void test_NotMaintained() throws Exception {
+		resources = loadAndLinkResources(FILE1, FILE2, FILE3);
+		ResourceSetBasedResourceDescriptions descriptions = get(ResourceSetBasedResourceDescriptions.class);
+		descriptions.setContext(resources.get(0).getResourceSet());
+		PPCompletionIndex completionIndex = createIndex(descriptions);
+		assertEquals(Arrays.asList("apache::vhost@file1"), find(completionIndex, "apache::v", 200));
+		long count = completionIndex.getModificationCount();
+		assertTrue(
+			"The count changes every time when changes are not reported",
+			completionIndex.getModificationCount() != count);
+
+		// changes are seen without events since the index is rebuilt
+		Resource added = loadResource("class apache::vhost {\n}\n", makeManifestURI(4));
+		resolveCrossReferences(added);
+		assertEquals(
+			Arrays.asList("apache::vhost@file1", "apache::vhost@file4"), find(completionIndex, "apache::v", 200));
+	}
+
+	@Test
+	public void test_Prefix() throws Exception {
+		PPCompletionIndex completionIndex = createIndex(loadDescriptions());
+
+		// ranked on search path, then classes before definitions, then on name, file3 is not on the search path
+		assertEquals(Arrays.asList(
+			"apache@file2", "apache::site@file2", "apache@file1", "apache::vhost@file1", "apache::mod@file1"), //
+			find(completionIndex, "apache", 200));
+		assertEquals(Arrays.asList("apache::vhost@file1"), find(completionIndex, "APACHE::V", 200));
+		assertEquals(Arrays.asList("mysql@file1"), find(completionIndex, "m", 200));
+		assertTrue("Nothing starts with the prefix", find(completionIndex, "nginx", 200).isEmpty());
+
+		// the empty prefix matches all names, definitions include the classes and are merged in name order
+		assertEquals(Arrays.asList(
+			"apache@file2", "apache::site@file2", "apache@file1", "apache::mod@file1", "apache::vhost@file1",
+			"mysql@file1"), //
+			find(completionIndex, "", new EClass[] { PPPackage.Literals.DEFINITION }, 200));
+		assertEquals(
+			Arrays.asList("apache@file2", "apache@file1", "apache::vhost@file1", "mysql@file1"),
+			find(completionIndex, "", new EClass[] { PPPackage.Literals.HOST_CLASS_DEFINITION }, 200));
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.List;
+
+import com.puppetlabs.geppetto.pp.PPFactory;
+import com.puppetlabs.geppetto.pp.PPPackage;
+import com.puppetlabs.geppetto.pp.dsl.linking.ExportedContainerIndex;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.EcoreUtil2;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.EObjectDescription;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.XtextResource;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests that the {@link ExportedContainerIndex} finds the same closest container as a scan of all exported
+ * descriptions.
+ */
+public class TestExportedContainerIndex extends AbstractPuppetTests {
+	private static final String FILE = "file:/fixture/manifests/init.pp";
+
+	private static final String OTHER_FILE = "file:/fixture/manifests/other.pp";
+
+	private static IEObjectDescription description(String name, String uri) {
+		InternalEObject proxy = (InternalEObject) PPFactory.eINSTANCE.create(PPPackage.Literals.HOST_CLASS_DEFINITION);
+		proxy.eSetProxyURI(URI.createURI(uri));
+		return EObjectDescription.create(QualifiedName.create(name), proxy);
+	}
+
+	/**
+	 * The scan that the index replaces: the longest fragment in the same resource that is a prefix of the contained
+	 * fragment wins, the first description wins on equal fragments.
+	 */
+	private static IEObjectDescription scan(URI containedURI, Iterable<IEObjectDescription> exportedElements) {
+		IEObjectDescription closest = null;
+		int maxSpecificity = 0;
+		for(IEObjectDescription containerCandidate : exportedElements) {
+			URI containerURI = containerCandidate.getEObjectURI();
+			if(!containedURI.path().equals(containerURI.path()) || containedURI.fragment() == null)
+				continue;
+			if(containedURI.fragment().startsWith(containerURI.fragment())) {
+				int specificity = containerURI.fragment().length();
+				if(specificity > maxSpecificity) {
+					maxSpecificity = specificity;
+					closest = containerCandidate;
+				}
+			}
+		}
+		return closest;
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_SameAsScan_Descriptions() throws Exception {
+		List<IEObjectDescription> exported = Lists.newArrayList( //
+			description("a", FILE + "#/0/@statements.1"), //
+			description("b", FILE + "#/0/@statements.10"), //
+			description("a::x", FILE + "#/0/@statements.1/@statements.0"), //
+			description("a::y", FILE + "#/0/@statements.1/@statements.0"), //
+			description("c", FILE + "#/0/@statements.2"), //
+			description("d", OTHER_FILE + "#/0/@statements.1"));
+		ExportedContainerIndex containers = new ExportedContainerIndex(exported);
+
+		String[] fragments = {
+				"/0", "/0/@statements.0", "/0/@statements.1", "/0/@statements.1/@statements.0/@value",
+				"/0/@statements.1/@statements.1", "/0/@statements.10/@statements.3", "/0/@statements.11",
+				"/0/@statements.2/@statements.0", "/0/@statements.3" };
+		for(String fragment : fragments)
+			for(String file : new String[] { FILE, OTHER_FILE, "file:/fixture/manifests/none.pp" }) {
+				URI uri = URI.createURI(file + "#" + fragment);
+				assertSame("Wrong container of " + uri, scan(uri, exported), containers.findClosestContainer(uri));
+			}
+
+		// equal fragments, the first one given to the index is used
+		assertEquals(
+			"a::x",
+			containers.findClosestContainer(URI.createURI(FILE + "#/0/@statements.1/@statements.0/@value")).getName().toString());
+		assertNull("No container without a fragment", containers.findClosestContainer(URI.createURI(FILE)));
+	}
+
+	@Test
+	public void test_SameAsScan_Manifest() throws Exception {
+		String code = "class a {\n" + //
+				"  class b {\n" + //
+				"    define c($x) {\n" + //
+				"      notice($x)\n" + //
+				"    }\n" + //
+				"  }\n" + //
+				"  $v = 1\n" + //
+				"}\n" + //
+				"define d {\n" + //
+				"  file { 'x': }\n" + //
+				"}\n" + //
+				"node default {\n" + //
+				"  include a\n" + //
+				"}\n" + //
+				"$w = 2\n";
+		Resource resource = loadAndLinkResources(code).get(0);
+		IResourceDescription.Manager manager = get(IResourceDescription.Manager.class);
+		Iterable<IEObjectDescription> exported = manager.getResourceDescription(resource).getExportedObjects();
+		ExportedContainerIndex containers = new ExportedContainerIndex(exported);
+
+		int found = 0;
+		for(TreeIterator<EObject> contents = EcoreUtil.getAllProperContents(resource, false); contents.hasNext();) {
+			URI uri = EcoreUtil2.getNormalizedURI(contents.next());
+			IEObjectDescription expected = scan(uri, exported);
+			assertSame("Wrong container of " + uri, expected, containers.findClosestContainer(uri));
+			if(expected != null)
+				++found;
+		}
+		assertTrue("The fixture should have contained objects", found > 0);
+	}
+}
@@ -603,6 +603,19 @@ public class TestExpressions extends AbstractPuppetTests implements AbstractPupp
 		tester.validate(pp).assertOK();
 	}
 
+	@Test
+	public void test_Validate_CaseExpression_Duplicates() throws Exception {
+		String code = "case $x {\n'a': {}\nb: {}\na: {}\nc, b: {}\n/x/: {}\n/x/: {}\ndefault: {}\n}\n";
+		XtextResource r = getResourceFromString(code);
+		tester.validate(r.getContents().get(0)).assertAll(
+			AssertableDiagnostics.errorCode(IPPDiagnostics.ISSUE__DUPLICATE_CASE),
+			AssertableDiagnostics.errorCode(IPPDiagnostics.ISSUE__DUPLICATE_CASE),
+			AssertableDiagnostics.errorCode(IPPDiagnostics.ISSUE__DUPLICATE_CASE),
+			AssertableDiagnostics.errorCode(IPPDiagnostics.ISSUE__DUPLICATE_CASE),
+			AssertableDiagnostics.errorCode(IPPDiagnostics.ISSUE__DUPLICATE_CASE),
+			AssertableDiagnostics.errorCode(IPPDiagnostics.ISSUE__DUPLICATE_CASE));
+	}
+
 	@Test
 	public void test_Validate_ImportExpression_NotOk() {
 		PuppetManifest pp = pf.createPuppetManifest();
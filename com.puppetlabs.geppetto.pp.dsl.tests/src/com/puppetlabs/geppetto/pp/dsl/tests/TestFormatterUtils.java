@@ -80,4 +80,19 @@ public class TestFormatterUtils {
 				"Expecte max of cluster is not correct for: " + i, expectedClusterMax[i], cluster.clusterMax(values[i]));
 
 	}
+
+	@Test
+	public void test_ClusterTiesMergeLeftmost() {
+		IntegerCluster cluster = new IntegerCluster(10);
+		int[] values = new int[] { 20, 0, 10, 40, 30, 50 };
+		int[] expectedClusterMax = new int[] { 30, 10, 10, 50, 30, 50 };
+		for(int i = 0; i < values.length; i++)
+			cluster.add(values[i]);
+
+		assertEquals("Expected number of clusters", 3, cluster.getClusterCount());
+		for(int i = 0; i < values.length; i++)
+			assertEquals(
+				"Expecte max of cluster is not correct for: " + i, expectedClusterMax[i], cluster.clusterMax(values[i]));
+
+	}
 }
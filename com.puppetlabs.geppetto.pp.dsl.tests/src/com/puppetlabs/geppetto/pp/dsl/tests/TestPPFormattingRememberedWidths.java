@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import static com.google.inject.util.Modules.override;
+import static com.puppetlabs.geppetto.injectable.CommonModuleProvider.getCommonModule;
+
+import com.puppetlabs.geppetto.pp.dsl.PPRuntimeModule;
+import com.puppetlabs.xtext.dommodel.formatter.LayoutUtils;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.ISetup;
+import org.eclipse.xtext.util.ITextRegion;
+
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Runs all {@link TestPPFormatting} tests, and asserts that each formatting produces the same result when the
+ * {@link LayoutUtils} do not remember the widths of the nodes that they have measured.
+ */
+public class TestPPFormattingRememberedWidths extends TestPPFormatting {
+	/**
+	 * Layout utilities where remembering widths can be turned off.
+	 */
+	public static class SwitchableLayoutUtils extends LayoutUtils {
+		static boolean rememberingWidths = true;
+
+		@Override
+		protected boolean isRememberingWidths() {
+			return rememberingWidths;
+		}
+	}
+
+	public static class TestSetup extends PPTestSetup {
+		public static class TestModule extends PPTestModule {
+
+			@Override
+			public void configure(Binder binder) {
+				super.configure(binder);
+				binder.bind(LayoutUtils.class).to(SwitchableLayoutUtils.class);
+			}
+		}
+
+		@Override
+		public Injector createInjector() {
+			return Guice.createInjector(override(getCommonModule(), new PPRuntimeModule()).with(new TestModule()));
+		}
+	}
+
+	@Override
+	protected Class<? extends ISetup> getSetupClass() {
+		return TestSetup.class;
+	}
+
+	@Override
+	public String serializeFormatted(EObject obj) {
+		SwitchableLayoutUtils.rememberingWidths = false;
+		try {
+			String expected = super.serializeFormatted(obj);
+			SwitchableLayoutUtils.rememberingWidths = true;
+			assertEquals("Remembered widths should not change the result", expected, super.serializeFormatted(obj));
+			return expected;
+		}
+		finally {
+			SwitchableLayoutUtils.rememberingWidths = true;
+		}
+	}
+
+	@Override
+	public String serializeFormatted(EObject obj, ITextRegion regionToFormat) {
+		SwitchableLayoutUtils.rememberingWidths = false;
+		try {
+			String expected = super.serializeFormatted(obj, regionToFormat);
+			SwitchableLayoutUtils.rememberingWidths = true;
+			assertEquals(
+				"Remembered widths should not change the result", expected,
+				super.serializeFormatted(obj, regionToFormat));
+			return expected;
+		}
+		finally {
+			SwitchableLayoutUtils.rememberingWidths = true;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.puppetlabs.geppetto.pp.dsl.linking.PPReferenceIndex;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IReferenceDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescription.Delta;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.impl.DefaultResourceDescriptionDelta;
+import org.eclipse.xtext.resource.impl.ResourceDescriptionChangeEvent;
+import org.eclipse.xtext.resource.impl.ResourceSetBasedResourceDescriptions;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests that the {@link PPReferenceIndex} finds the same references as a scan of all reference descriptions, both
+ * when it is first built and after it has been updated from change events.
+ */
+public class TestReferenceIndex extends AbstractPuppetTests {
+	/**
+	 * Resource descriptions of a resource set that can tell listeners about changes.
+	 */
+	public static class ListenableResourceDescriptions extends ResourceSetBasedResourceDescriptions implements
+			IResourceDescription.Event.Source {
+		private final List<IResourceDescription.Event.Listener> listeners = Lists.newArrayList();
+
+		@Override
+		public void addListener(IResourceDescription.Event.Listener listener) {
+			listeners.add(listener);
+		}
+
+		public void fireChanged(Delta... deltas) {
+			ResourceDescriptionChangeEvent event = new ResourceDescriptionChangeEvent(Lists.newArrayList(deltas));
+			for(IResourceDescription.Event.Listener listener : listeners)
+				listener.descriptionsChanged(event);
+		}
+
+		@Override
+		public void removeListener(IResourceDescription.Event.Listener listener) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Asserts that the index finds the same references as a scan for each of the exported objects, and for all of
+	 * them at once.
+	 */
+	private void assertSameAsScan(PPReferenceIndex referenceIndex, ListenableResourceDescriptions descriptions) {
+		Set<URI> allTargets = Sets.newLinkedHashSet();
+		for(IResourceDescription description : descriptions.getAllResourceDescriptions())
+			for(IEObjectDescription exported : description.getExportedObjects())
+				allTargets.add(exported.getEObjectURI());
+
+		for(URI target : allTargets)
+			assertSameAsScan(referenceIndex, descriptions, Collections.singleton(target));
+		assertSameAsScan(referenceIndex, descriptions, allTargets);
+	}
+
+	private void assertSameAsScan(PPReferenceIndex referenceIndex, ListenableResourceDescriptions descriptions,
+			Set<URI> targetURIs) {
+		Set<URI> targetResourceURIs = Sets.newHashSet();
+		for(URI targetURI : targetURIs)
+			targetResourceURIs.add(targetURI.trimFragment());
+
+		List<String> expected = toStrings(scan(descriptions, targetURIs, targetResourceURIs));
+		List<String> actual = toStrings(referenceIndex.getReferences(targetURIs, targetResourceURIs));
+		assertEquals("References to " + targetURIs, expected, actual);
+	}
+
+	private ListenableResourceDescriptions createDescriptions(Resource resource) {
+		ListenableResourceDescriptions descriptions = get(ListenableResourceDescriptions.class);
+		descriptions.setContext(resource.getResourceSet());
+		return descriptions;
+	}
+
+	/**
+	 * The way references were found before there was an index; scan all references of all resources that are not
+	 * target resources.
+	 */
+	private List<IReferenceDescription> scan(ListenableResourceDescriptions descriptions, Set<URI> targetURIs,
+			Set<URI> targetResourceURIs) {
+		List<IReferenceDescription> result = Lists.newArrayList();
+		for(IResourceDescription description : descriptions.getAllResourceDescriptions())
+			if(description != null && !targetResourceURIs.contains(description.getURI()))
+				for(IReferenceDescription reference : description.getReferenceDescriptions())
+					if(targetURIs.contains(reference.getTargetEObjectUri()))
+						result.add(reference);
+		return result;
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_IndexMatchesScan() throws Exception {
+		List<Resource> resources = loadAndLinkResources(
+			"class a {\n}\nclass b {\n  include a\n}\n", //
+			"include a\ninclude b\nclass c inherits a {\n  $x = $a::y\n}\n", //
+			"include c\ninclude a\n");
+		ListenableResourceDescriptions descriptions = createDescriptions(resources.get(0));
+		PPReferenceIndex referenceIndex = new PPReferenceIndex(descriptions);
+		assertTrue("Index should be maintained", referenceIndex.isAvailable());
+
+		int count = 0;
+		for(IResourceDescription description : descriptions.getAllResourceDescriptions())
+			count += Lists.newArrayList(description.getReferenceDescriptions()).size();
+		assertTrue("The sources should contain references", count > 0);
+
+		assertSameAsScan(referenceIndex, descriptions);
+	}
+
+	@Test
+	public void test_IndexMatchesScanAfterChanges() throws Exception {
+		List<Resource> resources = loadAndLinkResources(
+			"class a {\n}\nclass b {\n  include a\n}\n", //
+			"include a\ninclude b\nclass c inherits a {\n}\n", //
+			"include c\ninclude a\n");
+		ListenableResourceDescriptions descriptions = createDescriptions(resources.get(0));
+		PPReferenceIndex referenceIndex = new PPReferenceIndex(descriptions);
+
+		// build the index before anything changes
+		assertSameAsScan(referenceIndex, descriptions);
+
+		// remove a resource
+		Resource removed = resources.get(2);
+		IResourceDescription removedDescription = descriptions.getResourceDescription(removed.getURI());
+		removed.getResourceSet().getResources().remove(removed);
+		descriptions.fireChanged(new DefaultResourceDescriptionDelta(removedDescription, null));
+		assertSameAsScan(referenceIndex, descriptions);
+
+		// add a resource
+		Resource added = loadResource("include b\ninclude c\n", makeManifestURI(4));
+		resolveCrossReferences(added);
+		descriptions.fireChanged(new DefaultResourceDescriptionDelta(
+			null, descriptions.getResourceDescription(added.getURI())));
+		assertSameAsScan(referenceIndex, descriptions);
+	}
+
+	private List<String> toStrings(List<IReferenceDescription> references) {
+		List<String> result = Lists.newArrayList();
+		for(IReferenceDescription reference : references)
+			result.add(reference.getSourceEObjectUri() + " -> " + reference.getTargetEObjectUri());
+		Collections.sort(result);
+		return result;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.puppetlabs.geppetto.pp.dsl.linking.PPResourceDescriptionManager;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescription.Delta;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.impl.CopiedResourceDescription;
+import org.eclipse.xtext.resource.impl.DefaultResourceDescriptionDelta;
+import org.junit.Test;
+
+/**
+ * Tests that the {@link PPResourceDescriptionManager} marks a resource as affected by a change when, and only when,
+ * the change concerns a name that the resource imports.
+ */
+public class TestResourceDescriptionManager extends AbstractPuppetTests {
+	/**
+	 * Exports the classes b and a, a is last so that removing it does not move b
+	 */
+	private static final String LIBRARY = "class b {\n}\nclass a {\n}\n";
+
+	/**
+	 * Imports a, and c that is not yet exported
+	 */
+	private static final String DEPENDENT = "include a\ninclude c\n";
+
+	/**
+	 * Only imports b
+	 */
+	private static final String UNRELATED = "include b\n";
+
+	private List<Resource> resources;
+
+	/**
+	 * Changes the library to the given source and returns the delta of the change.
+	 */
+	private Delta changeLibrary(String source) {
+		XtextResource library = (XtextResource) resources.get(0);
+		IResourceDescription.Manager manager = getManager();
+		IResourceDescription before = new CopiedResourceDescription(manager.getResourceDescription(library));
+		library.reparse(source);
+		resolveCrossReferences(library);
+		IResourceDescription after = new CopiedResourceDescription(manager.getResourceDescription(library));
+		return new DefaultResourceDescriptionDelta(before, after);
+	}
+
+	private IResourceDescription.Manager getManager() {
+		IResourceDescription.Manager manager = get(IResourceDescription.Manager.class);
+		assertInstanceOf("Unexpected manager", PPResourceDescriptionManager.class, manager);
+		return manager;
+	}
+
+	private boolean isAffected(Delta delta, int resourceIndex) {
+		IResourceDescription.Manager manager = getManager();
+		IResourceDescription candidate = manager.getResourceDescription(resources.get(resourceIndex));
+		return manager.isAffected(Collections.singletonList(delta), candidate, null);
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		resources = loadAndLinkResources(LIBRARY, DEPENDENT, UNRELATED);
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_AddedName() throws Exception {
+		Delta delta = changeLibrary(LIBRARY + "class c {\n}\n");
+		assertTrue("The exported descriptions should change", delta.haveEObjectDescriptionsChanged());
+		assertTrue("The dependent imports the added name", isAffected(delta, 1));
+		assertFalse("The unrelated resource does not import the added name", isAffected(delta, 2));
+	}
+
+	@Test
+	public void test_ChangedName() throws Exception {
+		// the number of class arguments is part of the exported description
+		Delta delta = changeLibrary("class b {\n}\nclass a($x = 1) {\n}\n");
+		assertTrue("The exported descriptions should change", delta.haveEObjectDescriptionsChanged());
+		assertTrue("The dependent resolved the changed name", isAffected(delta, 1));
+		assertFalse("The unrelated resource does not import the changed name", isAffected(delta, 2));
+	}
+
+	@Test
+	public void test_ChangeOfTheCandidateItself() throws Exception {
+		Delta delta = changeLibrary(LIBRARY + "class c {\n}\n");
+		assertFalse("A resource is not affected by its own change", isAffected(delta, 0));
+	}
+
+	@Test
+	public void test_RemovedName() throws Exception {
+		Delta delta = changeLibrary("class b {\n}\n");
+		assertTrue("The exported descriptions should change", delta.haveEObjectDescriptionsChanged());
+		assertTrue("The dependent resolved the removed name", isAffected(delta, 1));
+		assertFalse("The unrelated resource does not import the removed name", isAffected(delta, 2));
+	}
+
+	@Test
+	public void test_UnchangedExports() throws Exception {
+		Delta delta = changeLibrary("class b {\n}\nclass a {\n  notice('changed')\n}\n");
+		assertFalse("The dependent is not affected by a change in a body", isAffected(delta, 1));
+		assertFalse("The unrelated resource is not affected by a change in a body", isAffected(delta, 2));
+	}
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import static com.google.inject.util.Modules.override;
+import static com.puppetlabs.geppetto.injectable.CommonModuleProvider.getCommonModule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.puppetlabs.geppetto.pp.dsl.PPRuntimeModule;
+import com.puppetlabs.geppetto.pp.dsl.formatting.PPSemanticLayout;
+import com.puppetlabs.geppetto.pp.dsl.formatting.PPStylesheetProvider;
+import com.puppetlabs.geppetto.pp.dsl.ppformatting.PPIndentationInformation;
+import com.puppetlabs.xtext.dommodel.IDomNode;
+import com.puppetlabs.xtext.dommodel.formatter.CSSDomFormatter;
+import com.puppetlabs.xtext.dommodel.formatter.DomNodeLayoutFeeder;
+import com.puppetlabs.xtext.dommodel.formatter.IDomModelFormatter;
+import com.puppetlabs.xtext.dommodel.formatter.ILayoutManager;
+import com.puppetlabs.xtext.dommodel.formatter.context.IFormattingContext;
+import com.puppetlabs.xtext.dommodel.formatter.css.DomCSS;
+import com.puppetlabs.xtext.dommodel.formatter.css.IStyle;
+import com.puppetlabs.xtext.dommodel.formatter.css.Rule;
+import com.puppetlabs.xtext.dommodel.formatter.css.Select;
+import com.puppetlabs.xtext.dommodel.formatter.css.StyleFactory.StyleNameStyle;
+import com.puppetlabs.xtext.dommodel.formatter.css.StyleSet;
+import com.puppetlabs.xtext.dommodel.formatter.css.StyleSetWithTracking;
+import com.puppetlabs.xtext.serializer.DomBasedSerializer;
+import org.eclipse.xtext.formatting.IIndentationInformation;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.serializer.ISerializer;
+import org.eclipse.xtext.serializer.diagnostic.ISerializationDiagnostic.Acceptor;
+import org.eclipse.xtext.serializer.sequencer.IHiddenTokenSequencer;
+import org.eclipse.xtext.util.ITextRegion;
+import org.eclipse.xtext.util.ReplaceRegion;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Names;
+
+/**
+ * Tests that the rules and styles that {@link DomCSS} collects using its rule index are the same as those found by
+ * testing every rule of the PP style sheet against every node of a formatted DOM.
+ */
+public class TestRuleIndex extends AbstractPuppetTests {
+	/**
+	 * Formatter that remembers the last DOM that it formatted.
+	 */
+	@Singleton
+	public static class CapturingFormatter extends CSSDomFormatter {
+		private IDomNode lastDom;
+
+		@Inject
+		public CapturingFormatter(Provider<DomCSS> domProvider, DomNodeLayoutFeeder feeder) {
+			super(domProvider, feeder);
+		}
+
+		@Override
+		public ReplaceRegion format(IDomNode dom, ITextRegion regionToFormat, IFormattingContext formattingContext,
+				Acceptor errors) {
+			ReplaceRegion result = super.format(dom, regionToFormat, formattingContext, errors);
+			lastDom = dom;
+			return result;
+		}
+
+		public IDomNode getLastDom() {
+			return lastDom;
+		}
+	}
+
+	/**
+	 * A style sheet that remembers its rules in the order they were added.
+	 */
+	public static class RecordingDomCSS extends DomCSS {
+		private final List<Rule> rules = new ArrayList<Rule>();
+
+		@Override
+		public void addRule(Rule rule) {
+			if(rule == Rule.NULL_RULE)
+				return;
+			// add a detached copy so that the recorded rule is the one that ends up in the style sheet
+			Rule copy = (Rule) rule.clone();
+			copy.setDomCSS(null);
+			super.addRule(copy);
+			rules.add(copy);
+		}
+
+		public List<Rule> getRules() {
+			return rules;
+		}
+	}
+
+	public static class TestSetup extends PPTestSetup {
+		public static class TestModule extends PPTestModule {
+
+			@Override
+			public void configure(Binder binder) {
+				super.configure(binder);
+				binder.bind(ISerializer.class).to(DomBasedSerializer.class);
+				binder.bind(IDomModelFormatter.class).to(CapturingFormatter.class);
+				// Want serializer to insert empty WS even if there is no node model
+				binder.bind(IHiddenTokenSequencer.class).to(
+					com.puppetlabs.xtext.serializer.acceptor.HiddenTokenSequencer.class);
+
+				binder.bind(DomCSS.class).toProvider(PPStylesheetProvider.class);
+				binder.bind(IIndentationInformation.class).to(PPIndentationInformation.class);
+				binder.bind(ILayoutManager.class).annotatedWith(Names.named("Default")).to(PPSemanticLayout.class);
+			}
+		}
+
+		@Override
+		public Injector createInjector() {
+			return Guice.createInjector(override(getCommonModule(), new PPRuntimeModule()).with(new TestModule()));
+		}
+	}
+
+	private static final String[] SOURCES = {
+			// @fmtOff
+			"# a comment\n" + //
+			"class foo($a = 1, $b = [1, 2, 3]) inherits bar {\n" + //
+			"  /* ML comment */\n" + //
+			"  file { '/tmp/x': owner => 'root', mode => '0644', ensure => present; '/tmp/y': ensure => absent }\n" + //
+			"  $h = { 'a' => 10, 'bb' => 20, 'ccc' => [1, 2] }\n" + //
+			"  if $a == 1 { notice(\"a is ${a}\") } elsif $b { notice('b') } else { fail('no') }\n" + //
+			"  case $::osfamily { 'RedHat', 'Fedora': { include redhat } default: { } }\n" + //
+			"  $x = $a ? { 1 => 'one', default => 'other' }\n" + //
+			"}\n",
+			"define foo::bar($title_param = undef) {\n" + //
+			"  exec { \"echo ${title_param}\": path => ['/bin', '/usr/bin'], unless => 'true' }\n" + //
+			"  Exec['a'] -> Exec['b'] ~> Service['c']\n" + //
+			"  User <| title == 'x' |>\n" + //
+			"  @@host { 'h': ip => '127.0.0.1' }\n" + //
+			"}\n" + //
+			"node 'a.example.com', default {\n" + //
+			"  include foo\n" + //
+			"  class { 'foo': a => 2 }\n" + //
+			"  File { owner => 777, ensure => present }\n" + //
+			"}\n",
+			"$a=[\"10\",'20']\n" + //
+			"/*1*/$b/*2*/=/*3*/[/*4*/'10'/*5*/,/*6*/'20'/*7*/]/*8*/\n" + //
+			"$c = 1 + /* x */2 * (3 - 4) / -5\n" + //
+			"$d = 'x' in ['x', 'y'] and !$a or $b =~ /^a.*$/\n" + //
+			"unless $d { $e = $d[0] }\n"
+			// @fmtOn
+	};
+
+	/**
+	 * Asserts that the rules and styles collected for the node are the same as those found by testing all rules.
+	 */
+	private void assertSameAsLinearScan(RecordingDomCSS css, IDomNode node) {
+		String label = describe(node);
+
+		// the old way; test every rule and sort on specificity, then on the order in the style sheet
+		List<Rule> expected = new ArrayList<Rule>();
+		for(Rule r : css.getRules())
+			if(r.matches(node))
+				expected.add(r);
+		Collections.sort(expected, DomCSS.RULE_COMPARATOR);
+
+		List<Rule> actual = css.collectRules(node);
+		int instanceRules = node.getStyles() == null
+				? 0
+				: 1;
+		assertEquals("Number of rules for " + label, expected.size() + instanceRules, actual.size());
+		for(int idx = 0; idx < expected.size(); ++idx)
+			assertSame("Rule " + idx + " for " + label, expected.get(idx), actual.get(idx));
+
+		StyleSetWithTracking expectedStyles = new StyleSetWithTracking();
+		for(Rule r : expected) {
+			expectedStyles.setSource(r);
+			r.collectStyles(expectedStyles);
+		}
+		if(node.getStyles() != null)
+			expectedStyles.add(node.getStyles());
+
+		StyleSet styles = css.collectStyles(node);
+		assertEquals("Number of styles for " + label, expectedStyles.getStyles().size(), styles.getStyles().size());
+		for(IStyle<?> style : expectedStyles.getStyles())
+			assertSame(
+				style.getClass().getSimpleName() + " for " + label, style, styles.getStyle(style.getClass(), node));
+	}
+
+	private String describe(IDomNode node) {
+		return node.getNodeType() + " '" + node.getText() + "' " + node.getStyleClassifiers();
+	}
+
+	/**
+	 * Formats the given source and returns the formatted DOM.
+	 */
+	private IDomNode formatToDom(String code) throws Exception {
+		XtextResource r = getResourceFromString(code);
+		serializeFormatted(r.getContents().get(0));
+		IDomNode dom = ((CapturingFormatter) get(IDomModelFormatter.class)).getLastDom();
+		assertNotNull("Formatter should have been called", dom);
+		return dom;
+	}
+
+	private RecordingDomCSS getRecordingCSS() {
+		RecordingDomCSS css = new RecordingDomCSS();
+		css.addAll(get(DomCSS.class));
+		assertFalse("The PP style sheet should have rules", css.getRules().isEmpty());
+		return css;
+	}
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		with(TestSetup.class);
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_IndexMatchesLinearScan() throws Exception {
+		RecordingDomCSS css = getRecordingCSS();
+		for(String code : SOURCES) {
+			IDomNode dom = formatToDom(code);
+			assertSameAsLinearScan(css, dom);
+			for(Iterator<IDomNode> nodes = dom.treeIterator(); nodes.hasNext();)
+				assertSameAsLinearScan(css, nodes.next());
+		}
+	}
+
+	@Test
+	public void test_IndexMatchesLinearScan_Ties() throws Exception {
+		// rules with the same selector, or with the same specificity as rules of the PP style sheet, are added last
+		// and must win over earlier rules with equal specificity
+		RecordingDomCSS css = getRecordingCSS();
+		css.addRules(
+			new Rule(Select.any(), StyleSet.withStyle(new StyleNameStyle("any1"))),
+			new Rule(Select.any(), StyleSet.withStyle(new StyleNameStyle("any2"))),
+			new Rule(Select.keyword("=>"), StyleSet.withStyle(new StyleNameStyle("arrow1"))),
+			new Rule(Select.keyword("=>"), StyleSet.withStyle(new StyleNameStyle("arrow2"))),
+			new Rule(Select.keyword(","), StyleSet.withStyle(new StyleNameStyle("comma"))));
+
+		for(String code : SOURCES) {
+			IDomNode dom = formatToDom(code);
+			for(Iterator<IDomNode> nodes = dom.treeIterator(); nodes.hasNext();) {
+				IDomNode node = nodes.next();
+				assertSameAsLinearScan(css, node);
+				if(node.getStyles() == null && "=>".equals(node.getText()))
+					assertEquals(
+						"Last added rule should win", "arrow2",
+						css.collectStyles(node).getStyleValue(StyleNameStyle.class, node));
+			}
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.puppetlabs.geppetto.pp.PPFactory;
+import com.puppetlabs.geppetto.pp.PPPackage;
+import com.puppetlabs.geppetto.pp.dsl.contentassist.PPProposalsGenerator;
+import com.puppetlabs.geppetto.pp.dsl.contentassist.PPSuggestionIndex;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath;
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.xtext.naming.IQualifiedNameConverter;
+import org.eclipse.xtext.resource.EObjectDescription;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.XtextResource;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests that the proposals found using a {@link PPSuggestionIndex} are the same as those found by the
+ * {@link PPProposalsGenerator#computeProposals(String, java.util.Collection, PPSearchPath, EClass...)} that scores
+ * every description.
+ */
+public class TestSuggestionIndex extends AbstractPuppetTests {
+	private static class Scored {
+		final IEObjectDescription description;
+
+		final String name;
+
+		final int score;
+
+		Scored(IEObjectDescription description, String name, int score) {
+			this.description = description;
+			this.name = name;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * The names of the fixture, a name that occurs more than once is exported from more than one file.
+	 */
+	private static final String[] CLASS_NAMES = {
+			"apache", "apache::mod", "apache::mod::ssl", "apache::vhost", "mysql", "mysql::server", "mysql::client",
+			"mysql::db", "ntp", "ntp", "ntp::config", "ntp::service", "ntp::install", "stdlib", "concat",
+			"firewall", "foo", "fob", "foe", "fox", "fog", "fop", "bar", "baz", "bat", "bag", "bar" };
+
+	private static final String[] DEFINITION_NAMES = {
+			"concat::fragment", "apache::mod::ssl", "mysql::user", "firewall::rule", "fo", "foo", "fob", "bat" };
+
+	private static final String[] QUERIES = {
+			"fo", "fooo", "ba", "bar", "apahce", "apache::mod::sl", "mysq::server", "mysql::dbb", "ntp::confg", "ntpp",
+			"concat::fragmnt", "firewal", "firewall::rul", "stdlb", "x", "nothing::like::it" };
+
+	private static final int COUNT = 5;
+
+	private static final int CAP = 5;
+
+	private static final Comparator<Scored> RANKING = new Comparator<Scored>() {
+		@Override
+		public int compare(Scored a, Scored b) {
+			if(a.score != b.score)
+				return a.score < b.score
+						? -1
+						: 1;
+			int cmp = a.name.compareTo(b.name);
+			if(cmp == 0)
+				cmp = a.description.getEObjectURI().toString().compareTo(b.description.getEObjectURI().toString());
+			return cmp;
+		}
+	};
+
+	private final DoubleMetaphone encoder = new DoubleMetaphone();
+
+	private void addDescriptions(List<IEObjectDescription> descriptions, EClass eClass, String[] names) {
+		for(String name : names) {
+			int file = descriptions.size();
+			descriptions.add(createDescription(eClass, name, "file:/fixture/manifests/m" + file + ".pp#/" + file));
+		}
+	}
+
+	/**
+	 * Asserts that the index and the old scoring of all descriptions agree for the given query.
+	 */
+	private void assertSameProposals(List<IEObjectDescription> descriptions, PPSuggestionIndex index,
+			PPSearchPath searchPath, String query, EClass... types) {
+		String label = "Proposals for '" + query + "' " + Arrays.toString(types);
+		List<Scored> expected = scoreAll(descriptions, query, types);
+
+		// the index returns the best candidates ranked on score, name, and URI
+		List<String> expectedNames = Lists.newArrayList();
+		for(Scored s : expected.subList(0, Math.min(COUNT, expected.size())))
+			expectedNames.add(s.name);
+		List<String> closestNames = Lists.newArrayList();
+		for(IEObjectDescription d : index.findClosest(query, searchPath, COUNT, CAP, types))
+			closestNames.add(d.getName().toString("::"));
+		assertEquals(label, expectedNames, closestNames);
+
+		PPProposalsGenerator generator = get(PPProposalsGenerator.class);
+		List<String> fromIndex = sorted(generator.computeProposals(query, index, searchPath, types));
+		List<String> fromScan = sorted(generator.computeProposals(query, descriptions, searchPath, types));
+		if(!isTieAtCutoff(expected)) {
+			assertEquals(label, fromScan, fromIndex);
+			return;
+		}
+
+		// the scan keeps the tied candidates that it happens to see first, the index keeps those that sort first on
+		// name, both agree on the candidates that score better than the tie
+		assertEquals(label, fromScan.size(), fromIndex.size());
+		int cutoff = expected.get(COUNT - 1).score;
+		List<String> better = Lists.newArrayList();
+		List<String> tied = Lists.newArrayList();
+		for(Scored s : expected)
+			if(s.score < cutoff)
+				better.add(s.name);
+			else if(s.score == cutoff)
+				tied.add(s.name);
+		for(String name : better) {
+			assertTrue(label + " should contain " + name, fromScan.remove(name));
+			assertTrue(label + " should contain " + name, fromIndex.remove(name));
+		}
+		assertTrue(label + " tied proposals from scan", tied.containsAll(fromScan));
+		assertEquals(label + " tied proposals from index", sorted(tied).subList(0, fromIndex.size()), fromIndex);
+	}
+
+	private IEObjectDescription createDescription(EClass eClass, String name, String uri) {
+		InternalEObject proxy = (InternalEObject) PPFactory.eINSTANCE.create(eClass);
+		proxy.eSetProxyURI(URI.createURI(uri));
+		return EObjectDescription.create(get(IQualifiedNameConverter.class).toQualifiedName(name), proxy);
+	}
+
+	private boolean isWanted(EClass c, EClass[] types) {
+		if(types.length == 0)
+			return true;
+		for(EClass wanted : types)
+			if(wanted == c || wanted.isSuperTypeOf(c))
+				return true;
+		return false;
+	}
+
+	private boolean isTieAtCutoff(List<Scored> expected) {
+		return expected.size() > COUNT && expected.get(COUNT - 1).score == expected.get(COUNT).score;
+	}
+
+	/**
+	 * Scores all descriptions the way the proposals generator does, keeping the best score of each description.
+	 */
+	private List<Scored> scoreAll(List<IEObjectDescription> descriptions, String query, EClass... types) {
+		String metaphone = encoder.encode(query);
+		List<Scored> result = Lists.newArrayList();
+		for(IEObjectDescription d : descriptions) {
+			if(!isWanted(d.getEClass(), types))
+				continue;
+			String name = d.getName().toString("::");
+			int score = StringUtils.getLevenshteinDistance(query, name);
+			String candidateMetaphone = encoder.encode(name);
+			if(candidateMetaphone.startsWith(metaphone) || candidateMetaphone.endsWith(metaphone))
+				score = Math.min(score, candidateMetaphone.length() - metaphone.length());
+			if(score <= CAP)
+				result.add(new Scored(d, name, score));
+		}
+		Collections.sort(result, RANKING);
+		return result;
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	private List<String> sorted(List<String> names) {
+		List<String> result = Lists.newArrayList(names);
+		Collections.sort(result);
+		return result;
+	}
+
+	private List<String> sorted(String[] names) {
+		return sorted(Arrays.asList(names));
+	}
+
+	@Test
+	public void test_IndexMatchesScan() throws Exception {
+		List<IEObjectDescription> descriptions = Lists.newArrayList();
+		addDescriptions(descriptions, PPPackage.Literals.HOST_CLASS_DEFINITION, CLASS_NAMES);
+		addDescriptions(descriptions, PPPackage.Literals.DEFINITION, DEFINITION_NAMES);
+		PPSuggestionIndex index = new PPSuggestionIndex(descriptions, get(IQualifiedNameConverter.class));
+		PPSearchPath searchPath = PPSearchPath.fromString("*", null);
+
+		for(String query : QUERIES) {
+			assertSameProposals(descriptions, index, searchPath, query);
+			assertSameProposals(descriptions, index, searchPath, query, PPPackage.Literals.HOST_CLASS_DEFINITION);
+			assertSameProposals(descriptions, index, searchPath, query, PPPackage.Literals.DEFINITION);
+		}
+	}
+
+	@Test
+	public void test_IndexMatchesScan_Ties() throws Exception {
+		List<IEObjectDescription> descriptions = Lists.newArrayList();
+		addDescriptions(descriptions, PPPackage.Literals.HOST_CLASS_DEFINITION, CLASS_NAMES);
+		PPSuggestionIndex index = new PPSuggestionIndex(descriptions, get(IQualifiedNameConverter.class));
+		PPSearchPath searchPath = PPSearchPath.fromString("*", null);
+
+		// foo, fob, foe, fox, fog, and fop are all one edit away
+		assertTrue("The fixture should have a tie", isTieAtCutoff(scoreAll(descriptions, "fo")));
+		assertEquals(
+			"Tied candidates are ranked on name", Arrays.asList("fob", "foe", "fog", "foo", "fop"),
+			sorted(get(PPProposalsGenerator.class).computeProposals("fo", index, searchPath)));
+		assertSameProposals(descriptions, index, searchPath, "fo");
+
+		// the same ranking regardless of the order in which the descriptions were indexed
+		List<IEObjectDescription> reversed = Lists.reverse(descriptions);
+		PPSuggestionIndex reversedIndex = new PPSuggestionIndex(reversed, get(IQualifiedNameConverter.class));
+		for(String query : QUERIES)
+			assertEquals(
+				"Proposals for '" + query + "'", index.findClosest(query, searchPath, COUNT, CAP),
+				reversedIndex.findClosest(query, searchPath, COUNT, CAP));
+	}
+
+	@Test
+	public void test_OverlayMatchesScan() throws Exception {
+		List<IEObjectDescription> descriptions = Lists.newArrayList();
+		addDescriptions(descriptions, PPPackage.Literals.HOST_CLASS_DEFINITION, CLASS_NAMES);
+		addDescriptions(descriptions, PPPackage.Literals.DEFINITION, DEFINITION_NAMES);
+		PPSuggestionIndex index = new PPSuggestionIndex(descriptions, get(IQualifiedNameConverter.class));
+		PPSearchPath searchPath = PPSearchPath.fromString("*", null);
+
+		// the dirty exports of m8.pp, where the indexed ntp is, replace what the index has for that file
+		String hiddenPath = "/fixture/manifests/m8.pp";
+		IEObjectDescription hidden = descriptions.get(8);
+		assertEquals("The fixture should have ntp in the hidden file", hiddenPath, hidden.getEObjectURI().path());
+		List<IEObjectDescription> dirty = Lists.newArrayList();
+		dirty.add(createDescription(PPPackage.Literals.HOST_CLASS_DEFINITION, "ntpd", "file:" + hiddenPath + "#/d0"));
+		dirty.add(createDescription(
+			PPPackage.Literals.HOST_CLASS_DEFINITION, "apache::vhost", "file:" + hiddenPath + "#/d1"));
+		dirty.add(createDescription(PPPackage.Literals.DEFINITION, "fo", "file:" + hiddenPath + "#/d2"));
+		PPSuggestionIndex overlay = index.overlay(dirty, hiddenPath);
+
+		List<IEObjectDescription> visible = Lists.newArrayList();
+		for(IEObjectDescription d : descriptions)
+			if(!hiddenPath.equals(d.getEObjectURI().path()))
+				visible.add(d);
+		visible.addAll(dirty);
+		for(String query : QUERIES) {
+			assertSameProposals(visible, overlay, searchPath, query);
+			assertSameProposals(visible, overlay, searchPath, query, PPPackage.Literals.HOST_CLASS_DEFINITION);
+			assertSameProposals(visible, overlay, searchPath, query, PPPackage.Literals.DEFINITION);
+		}
+
+		// the ntp in the other file and the dirty ntpd are found, the indexed ntp in the hidden file is not
+		List<String> found = Lists.newArrayList();
+		for(IEObjectDescription d : overlay.findClosest("ntp", searchPath, 2, CAP))
+			found.add(d.getName().toString("::") + " " + d.getEObjectURI());
+		assertEquals(Arrays.asList(
+			"ntp file:/fixture/manifests/m9.pp#/9", "ntpd file:" + hiddenPath + "#/d0"), found);
+
+		// the base index is not changed by the overlay
+		assertTrue(
+			"The base index should still have the hidden ntp",
+			index.findClosest("ntp", searchPath, 2, CAP).contains(hidden));
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import com.puppetlabs.geppetto.pp.dsl.ppdoc.TaskTagMatcher;
+import org.junit.Test;
+
+/**
+ * Tests that the {@link TaskTagMatcher} finds the same tags as the search it replaced, which lowered the text and
+ * called indexOf once per tag.
+ */
+public class TestTaskTagMatcher {
+	/**
+	 * The search that the matcher replaced. Returns the start and the length of the tag that starts first, the tag
+	 * listed first when several start at the same index, or <code>null</code> if no tag is found.
+	 */
+	private static int[] indexOfSearch(String[] tags, String text, int from) {
+		String loweredText = text.toLowerCase();
+		int firstTagIndex = text.length();
+		int firstTagLength = 0;
+		for(String tag : tags) {
+			int idx = loweredText.indexOf(tag.toLowerCase(), from);
+			if(idx >= 0 && idx < firstTagIndex) {
+				firstTagIndex = idx;
+				firstTagLength = tag.length();
+			}
+		}
+		return firstTagIndex == text.length()
+				? null
+				: new int[] { firstTagIndex, firstTagLength };
+	}
+
+	private static void assertFound(String[] tags, String text, int from) {
+		int[] expected = indexOfSearch(tags, text, from);
+		TaskTagMatcher.Match match = new TaskTagMatcher(tags).find(text, from);
+		String message = "Wrong match in '" + text + "' from " + from;
+		if(expected == null) {
+			assertNull(message, match);
+			return;
+		}
+		assertEquals(message, expected[0], match.getStart());
+		assertEquals(message, expected[1], match.getLength());
+	}
+
+	private static void assertMatch(int start, int length, TaskTagMatcher.Match match) {
+		assertEquals("Wrong start", start, match.getStart());
+		assertEquals("Wrong length", length, match.getLength());
+	}
+
+	@Test
+	public void test_CaseInsensitive() {
+		TaskTagMatcher matcher = new TaskTagMatcher(new String[] { "todo", "FixMe" });
+		assertMatch(2, 4, matcher.find("# ToDo: something", 0));
+		assertMatch(2, 5, matcher.find("# FIXME: something", 0));
+		assertMatch(2, 5, matcher.find("# fixme: something", 0));
+		assertNull(matcher.find("# nothing to do", 0));
+	}
+
+	@Test
+	public void test_From() {
+		TaskTagMatcher matcher = new TaskTagMatcher(new String[] { "todo", "fixme" });
+		String text = "# todo: first\n# fixme: second";
+		assertMatch(2, 4, matcher.find(text, 0));
+		assertMatch(16, 5, matcher.find(text, 3));
+		assertNull(matcher.find(text, 17));
+		assertNull(matcher.find(text, text.length()));
+	}
+
+	@Test
+	public void test_Overlapping() {
+		// the tag that starts first wins, also when it ends after a tag that starts later
+		TaskTagMatcher matcher = new TaskTagMatcher(new String[] { "bc", "abcd" });
+		assertMatch(1, 4, matcher.find("xabcdx", 0));
+		assertMatch(2, 2, matcher.find("xabcx", 0));
+
+		matcher = new TaskTagMatcher(new String[] { "cde", "abcd" });
+		assertMatch(0, 4, matcher.find("abcde", 0));
+		assertMatch(2, 3, matcher.find("abcde", 1));
+
+		// overlapping occurrences of the same tag
+		matcher = new TaskTagMatcher(new String[] { "aba" });
+		assertMatch(0, 3, matcher.find("ababa", 0));
+		assertMatch(2, 3, matcher.find("ababa", 1));
+	}
+
+	@Test
+	public void test_PrefixTag() {
+		// tags that start at the same index, the one listed first wins
+		assertMatch(2, 4, new TaskTagMatcher(new String[] { "todo", "to" }).find("# todo", 0));
+		assertMatch(2, 2, new TaskTagMatcher(new String[] { "to", "todo" }).find("# todo", 0));
+
+		// the longer tag is not complete, the prefix is found
+		assertMatch(2, 2, new TaskTagMatcher(new String[] { "todo", "to" }).find("# tod", 0));
+		// a tag inside the longer tag is found when the longer tag fails
+		assertMatch(3, 2, new TaskTagMatcher(new String[] { "todo", "od" }).find("# todx", 0));
+	}
+
+	@Test
+	public void test_SameAsIndexOfSearch() {
+		String[][] tagSets = {
+				{ "todo", "fixme" }, { "todo", "to", "do", "odo" }, { "odo", "todo", "o" }, { "TODO", "xxx", "x" } };
+		char[] alphabet = { 't', 'o', 'd', 'T', 'O', 'D', 'f', 'i', 'x', 'm', 'e', 'X', ' ', '\n' };
+		Random random = new Random(4711);
+		for(int i = 0; i < 2000; ++i) {
+			String[] tags = tagSets[i % tagSets.length];
+			StringBuilder builder = new StringBuilder();
+			int length = random.nextInt(30);
+			for(int c = 0; c < length; ++c)
+				builder.append(alphabet[random.nextInt(alphabet.length)]);
+			String text = builder.toString();
+			for(int from = 0; from <= text.length(); ++from)
+				assertFound(tags, text, from);
+		}
+	}
+
+	@Test
+	public void test_WordBoundaries() {
+		// tags are found inside words, just like the indexOf search did
+		TaskTagMatcher matcher = new TaskTagMatcher(new String[] { "todo", "fixme" });
+		assertMatch(3, 4, matcher.find("mastodon", 0));
+		assertMatch(0, 4, matcher.find("todos", 0));
+		assertMatch(4, 5, matcher.find("xxx_fixme", 0));
+		assertMatch(0, 4, matcher.find("todo", 0));
+		assertFound(new String[] { "todo", "fixme" }, "mastodon todo", 0);
+		assertFound(new String[] { "todo", "fixme" }, "prefixmes", 0);
+	}
+}
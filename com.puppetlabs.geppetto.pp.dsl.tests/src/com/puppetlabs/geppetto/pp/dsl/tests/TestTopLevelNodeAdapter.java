@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.List;
+
+import com.puppetlabs.geppetto.pp.dsl.adapters.TopLevelNodeAdapter;
+import com.puppetlabs.geppetto.pp.dsl.adapters.TopLevelNodeAdapterFactory;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.ILeafNode;
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.resource.XtextResource;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests that the values kept by a {@link TopLevelNodeAdapter} after edits of a resource are the same as the values
+ * computed from scratch. The values are computed like the semantic highlighting is: one traversal of each top level
+ * node, with offsets relative to the node.
+ */
+public class TestTopLevelNodeAdapter extends AbstractPuppetTests {
+	/**
+	 * The leaves and semantic objects of a node with offsets relative to the node.
+	 */
+	private static class Positions {
+		final List<String> entries = Lists.newArrayList();
+
+		@Override
+		public String toString() {
+			return entries.toString();
+		}
+	}
+
+	private static class PositionsComputer implements TopLevelNodeAdapter.Computer<Positions> {
+		int count;
+
+		public Positions compute(INode topLevelNode) {
+			++count;
+			Positions result = new Positions();
+			int base = topLevelNode.getTotalOffset();
+			for(INode n : topLevelNode.getAsTreeIterable()) {
+				if(n instanceof ILeafNode)
+					result.entries.add((n.getTotalOffset() - base) + ":" + n.getText());
+				else if(n.hasDirectSemanticElement())
+					result.entries.add((n.getTotalOffset() - base) + ":" + n.getSemanticElement().eClass().getName());
+			}
+			return result;
+		}
+	}
+
+	private static final String SOURCE = "class a {\n  $x = 1\n}\n\n" + //
+			"class b {\n  notice('b')\n}\n\n" + //
+			"file { '/tmp/c':\n  ensure => present,\n}\n";
+
+	/**
+	 * Asserts that the values of the adapter are the same as those computed from scratch for the current node model.
+	 */
+	private void assertSameAsFullComputation(XtextResource resource, PositionsComputer computer) {
+		ICompositeNode root = resource.getParseResult().getRootNode();
+		List<Positions> values = TopLevelNodeAdapterFactory.eINSTANCE.adapt(resource).getValues(
+			root, TestTopLevelNodeAdapter.class, Positions.class, computer);
+
+		PositionsComputer fullComputer = new PositionsComputer();
+		List<String> expected = Lists.newArrayList();
+		for(INode child : root.getChildren())
+			expected.add(fullComputer.compute(child).toString());
+		List<String> actual = Lists.newArrayList();
+		for(Positions p : values)
+			actual.add(p.toString());
+		assertEquals("Values after editing to:\n" + root.getText(), expected, actual);
+	}
+
+	private void edit(XtextResource resource, String oldText, String newText) {
+		String text = resource.getParseResult().getRootNode().getText();
+		int offset = text.indexOf(oldText);
+		assertTrue("The text should contain " + oldText, offset >= 0);
+		resource.update(offset, oldText.length(), newText);
+		assertEquals(
+			"Text after edit", text.substring(0, offset) + newText + text.substring(offset + oldText.length()),
+			resource.getParseResult().getRootNode().getText());
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_EditsAreSameAsFullComputation() throws Exception {
+		XtextResource resource = (XtextResource) loadAndLinkResources(SOURCE).get(0);
+		PositionsComputer computer = new PositionsComputer();
+		assertSameAsFullComputation(resource, computer);
+
+		// change inside the first node, moves the other nodes
+		edit(resource, "$x = 1", "$x = 100");
+		assertSameAsFullComputation(resource, computer);
+
+		// add a node between two nodes
+		edit(resource, "}\n\nclass b", "}\n\nclass between {\n}\n\nclass b");
+		assertSameAsFullComputation(resource, computer);
+
+		// change inside the last node
+		edit(resource, "present", "absent");
+		assertSameAsFullComputation(resource, computer);
+
+		// remove a node
+		edit(resource, "class b {\n  notice('b')\n}\n\n", "");
+		assertSameAsFullComputation(resource, computer);
+
+		// replace the text of a node with the same amount of text
+		edit(resource, "class between", "class betweem");
+		assertSameAsFullComputation(resource, computer);
+
+		// parse everything again, no node is the same
+		resource.reparse(SOURCE);
+		assertSameAsFullComputation(resource, computer);
+	}
+
+	@Test
+	public void test_KeptByTheResource() throws Exception {
+		XtextResource resource = (XtextResource) loadAndLinkResources(SOURCE).get(0);
+		TopLevelNodeAdapter adapter = TopLevelNodeAdapterFactory.eINSTANCE.adapt(resource);
+		assertTrue("The adapter should be attached to the resource", resource.eAdapters().contains(adapter));
+		assertSame("The resource has one adapter", adapter, TopLevelNodeAdapterFactory.eINSTANCE.adapt(resource));
+	}
+
+	@Test
+	public void test_UnchangedTextIsNotComputedAgain() throws Exception {
+		XtextResource resource = (XtextResource) loadAndLinkResources(SOURCE).get(0);
+		ICompositeNode root = resource.getParseResult().getRootNode();
+		TopLevelNodeAdapter adapter = TopLevelNodeAdapterFactory.eINSTANCE.adapt(resource);
+		PositionsComputer computer = new PositionsComputer();
+		List<INode> children = Lists.newArrayList(root.getChildren());
+		List<Positions> first = adapter.getValues(root, TestTopLevelNodeAdapter.class, Positions.class, computer);
+		int count = computer.count;
+		assertEquals("All values should be computed", children.size(), count);
+
+		List<Positions> second = adapter.getValues(root, TestTopLevelNodeAdapter.class, Positions.class, computer);
+		int composites = 0;
+		for(int i = 0; i < children.size(); i++)
+			if(children.get(i) instanceof ICompositeNode) {
+				assertSame("The value should be reused", first.get(i), second.get(i));
+				++composites;
+			}
+		assertTrue("The fixture should have composite top level nodes", composites > 0);
+		assertEquals(
+			"Only the values of leaf nodes at the top level are computed again", count + children.size() - composites,
+			computer.count);
+
+		// values of another kind are kept apart
+		PositionsComputer other = new PositionsComputer();
+		adapter.getValues(root, String.class, Positions.class, other);
+		assertEquals("Values of another kind are computed", count, other.count);
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.tests;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapter;
+import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapter.Location;
+import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapterFactory;
+import com.puppetlabs.geppetto.pp.dsl.linking.DiagnosticConsumerBasedMessageAcceptor;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPResourceLinker;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPUnitLinker;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.diagnostics.Severity;
+import org.eclipse.xtext.naming.QualifiedName;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.impl.ListBasedDiagnosticConsumer;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests that linking with the {@link PPUnitLinker} after edits of a resource gives the same imported names and
+ * diagnostics as linking the whole resource with the {@link PPResourceLinker}.
+ */
+public class TestUnitLinker extends AbstractPuppetTests {
+	private static final String SOURCE = "class a {\n  $x = 1\n}\n\n" + //
+			"define d($p) {\n}\n\n" + //
+			"d { 'one':\n  p => 1,\n}\n\n" + //
+			"class b inherits a {\n  $y = $x\n}\n\n" + //
+			"node 'n' {\n  include a\n  d { 'two': q => 2 }\n}\n\n" + //
+			"class c inherits missing {\n}\n\n" + //
+			"e { 'three': }\n";
+
+	private static boolean contains(List<String> description, String prefix) {
+		for(String s : description)
+			if(s.startsWith(prefix))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Describes the outcome of linking, the descriptions are sorted since the order of the units may differ from the
+	 * order of the objects.
+	 */
+	private static List<String> describe(PPImportedNamesAdapter importedNames,
+			ListBasedDiagnosticConsumer diagnostics) {
+		List<String> result = Lists.newArrayList();
+		for(QualifiedName name : importedNames.getNames())
+			result.add("name " + name);
+		for(IEObjectDescription d : importedNames.getResolvedDescriptions())
+			result.add("resolved " + d.getQualifiedName() + " " + d.getEObjectURI());
+		for(IEObjectDescription d : importedNames.getAmbiguousDescriptions())
+			result.add("ambiguous " + d.getQualifiedName() + " " + d.getEObjectURI());
+		for(Map.Entry<QualifiedName, List<Location>> entry : importedNames.getUnresolved().entrySet())
+			for(Location location : entry.getValue())
+				result.add("unresolved " + entry.getKey() + " at " + location.getLine() + ":" + location.getOffset() +
+						":" + location.getLength());
+		for(Resource.Diagnostic d : diagnostics.getResult(Severity.ERROR))
+			result.add("error at " + d.getLine() + ": " + d.getMessage());
+		for(Resource.Diagnostic d : diagnostics.getResult(Severity.WARNING))
+			result.add("warning at " + d.getLine() + ": " + d.getMessage());
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Asserts that linking with the unit linker gives the same outcome as linking the whole resource.
+	 */
+	private List<String> assertSameAsFullLinking(XtextResource resource, PPUnitLinker unitLinker) {
+		EObject model = resource.getParseResult().getRootASTElement();
+		PPImportedNamesAdapter importedNames = new PPImportedNamesAdapter();
+		ListBasedDiagnosticConsumer diagnostics = new ListBasedDiagnosticConsumer();
+		unitLinker.link(model, importedNames, diagnostics);
+		List<String> actual = describe(importedNames, diagnostics);
+
+		ListBasedDiagnosticConsumer fullDiagnostics = new ListBasedDiagnosticConsumer();
+		get(PPResourceLinker.class).link(model, new DiagnosticConsumerBasedMessageAcceptor(fullDiagnostics), false);
+		List<String> expected = describe(PPImportedNamesAdapterFactory.eINSTANCE.adapt(resource), fullDiagnostics);
+		assertEquals(
+			"Linking after editing to:\n" + resource.getParseResult().getRootNode().getText(), expected, actual);
+		return actual;
+	}
+
+	private void edit(XtextResource resource, String oldText, String newText) {
+		String text = resource.getParseResult().getRootNode().getText();
+		int offset = text.indexOf(oldText);
+		assertTrue("The text should contain " + oldText, offset >= 0);
+		resource.update(offset, oldText.length(), newText);
+		assertEquals(
+			"Text after edit", text.substring(0, offset) + newText + text.substring(offset + oldText.length()),
+			resource.getParseResult().getRootNode().getText());
+	}
+
+	@Override
+	protected boolean shouldTestSerializer(XtextResource resource) {
+		return false;
+	}
+
+	@Test
+	public void test_EditsAreSameAsFullLinking() throws Exception {
+		XtextResource resource = (XtextResource) loadAndLinkResources(SOURCE).get(0);
+		PPUnitLinker unitLinker = get(PPUnitLinker.class);
+		List<String> description = assertSameAsFullLinking(resource, unitLinker);
+		assertTrue("The fixture should have unresolved names", contains(description, "unresolved missing"));
+		assertTrue("The fixture should have errors", contains(description, "error"));
+		assertTrue("The fixture should have resolved names", contains(description, "resolved"));
+
+		// nothing changed
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// change inside one unit, moves the text of the units after it
+		edit(resource, "p => 1,", "p => 100,");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// add lines inside one unit, moves the lines of the units after it
+		edit(resource, "p => 100,", "p =>\n\n    100,");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// change a unit inside a node definition, the error is gone
+		edit(resource, "q => 2", "p => 2");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// introduce an error in a unit inside a class
+		edit(resource, "$y = $x", "$y = $a::nothing");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// resolve an unresolved name
+		edit(resource, "inherits missing", "inherits b");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// change the exported objects, everything is linked again
+		edit(resource, "$x = 1", "$x = 1\n  $z = 2");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// remove a unit
+		edit(resource, "e { 'three': }\n", "");
+		assertSameAsFullLinking(resource, unitLinker);
+
+		// parse everything again, no object is the same
+		resource.reparse(SOURCE);
+		assertSameAsFullLinking(resource, unitLinker);
+	}
+}
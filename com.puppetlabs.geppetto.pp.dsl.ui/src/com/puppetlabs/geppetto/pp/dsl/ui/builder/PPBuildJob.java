@@ -10,7 +10,10 @@
  */
 package com.puppetlabs.geppetto.pp.dsl.ui.builder;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import com.puppetlabs.geppetto.pp.dsl.ui.PPUiConstants;
@@ -21,23 +24,33 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.xtext.ui.editor.preferences.AbstractPreferencePage;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.puppetlabs.geppetto.forge.model.Dependency;
+import com.puppetlabs.geppetto.pp.dsl.ui.internal.PPDSLActivator;
 
 /**
  * The PPBuildJob is used when there is a need to rebuild projects (such as after preference changes).
+ * After cleaning, the Puppet projects of the workspace are built in the order given by the dependencies of their module
+ * metadata. When the job is created for given projects, those projects are cleaned and then the whole workspace is
+ * built, so that the projects that depend on them are built as well.
  * 
  */
 public class PPBuildJob extends Job {
-
 	final private IProject[] projects;
 
 	final private boolean cleanOnly;
 
+	final private boolean workspaceBuild;
+
 	private static final Logger log = Logger.getLogger(AbstractPreferencePage.class);
 
 	public PPBuildJob(IProject... projects) {
@@ -45,6 +58,7 @@ public class PPBuildJob extends Job {
 		this.projects = projects;
 		setPriority(Job.BUILD);
 		this.cleanOnly = false;
+		this.workspaceBuild = true;
 	}
 
 	public PPBuildJob(IWorkspace workspace) {
@@ -54,6 +68,7 @@ public class PPBuildJob extends Job {
 	public PPBuildJob(IWorkspace workspace, boolean cleanOnly) {
 		super("Building Puppet Projects");
 		this.cleanOnly = cleanOnly;
+		this.workspaceBuild = false;
 		List<IProject> puppetProjects = Lists.newArrayList();
 		for(IProject p : workspace.getRoot().getProjects())
 			try {
@@ -69,6 +84,86 @@ public class PPBuildJob extends Job {
 		setPriority(Job.BUILD);
 	}
 
+	private IStatus buildInDependencyOrder(IProgressMonitor monitor) {
+		SubMonitor ticker = SubMonitor.convert(monitor, projects.length);
+		MultiStatus result = new MultiStatus(
+			PPUiConstants.PLUGIN_ID, 0, "Problems occurred when building Puppet projects", null);
+		for(List<IProject> level : computeBuildLevels()) {
+			for(IProject p : level) {
+				if(ticker.isCanceled())
+					return Status.CANCEL_STATUS;
+				if(!p.isAccessible()) {
+					ticker.worked(1);
+					continue;
+				}
+				ticker.setTaskName("Building project " + p.getName());
+				try {
+					p.build(IncrementalProjectBuilder.FULL_BUILD, ticker.newChild(1));
+				}
+				catch(CoreException e) {
+					result.add(e.getStatus());
+				}
+				catch(OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the dependencies between the projects of this job and returns them grouped in levels such that the
+	 * projects of a level only depend on projects in preceding levels. The dependencies are the projects that the
+	 * module metadata resolves to and the projects that are already referenced. Projects that are part of a cycle
+	 * end up in a last level of their own.
+	 *
+	 * @return The projects of this job grouped in build order
+	 */
+	private List<List<IProject>> computeBuildLevels() {
+		PPModuleRegistry registry = ((PPDSLActivator) PPDSLActivator.getInstance()).getPPInjector().getInstance(
+			PPModuleRegistry.class);
+		Set<IProject> members = Sets.newHashSet(projects);
+		Map<IProject, Set<IProject>> dependencies = Maps.newHashMap();
+		for(IProject p : projects) {
+			Set<IProject> deps = Sets.newHashSet();
+			if(p.isAccessible()) {
+				for(Dependency d : registry.getDependencies(p)) {
+					IProject best = registry.getBestMatchingProject(d.getName(), d.getVersionRequirement());
+					if(best != null)
+						deps.add(best);
+				}
+				try {
+					deps.addAll(Arrays.asList(p.getReferencedProjects()));
+				}
+				catch(CoreException e) {
+					log.error("Failed to get referenced projects from project", e);
+				}
+			}
+			deps.retainAll(members);
+			deps.remove(p);
+			dependencies.put(p, deps);
+		}
+
+		List<List<IProject>> levels = Lists.newArrayList();
+		Set<IProject> built = Sets.newHashSet();
+		List<IProject> remaining = Lists.newArrayList(projects);
+		while(!remaining.isEmpty()) {
+			List<IProject> level = Lists.newArrayList();
+			for(IProject p : remaining)
+				if(built.containsAll(dependencies.get(p)))
+					level.add(p);
+			if(level.isEmpty()) {
+				// circular dependencies, build what is left in the original order
+				levels.add(remaining);
+				break;
+			}
+			built.addAll(level);
+			remaining.removeAll(level);
+			levels.add(level);
+		}
+		return levels;
+	}
+
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
 		final SubMonitor ticker = SubMonitor.convert(monitor, projects.length * 100 * 2);
@@ -84,17 +179,23 @@ public class PPBuildJob extends Job {
 				return e.getStatus();
 			}
 		}
-		if(!cleanOnly)
+		if(cleanOnly)
+			return Status.OK_STATUS;
+
+		if(workspaceBuild)
 			// do a full build
 			try {
 				ticker.setTaskName("Building projects");
 				ResourcesPlugin.getWorkspace().build(
 					IncrementalProjectBuilder.FULL_BUILD, ticker.newChild(projects.length * 100));
+				return Status.OK_STATUS;
 			}
 			catch(CoreException e) {
 				return e.getStatus();
 			}
 
-		return Status.OK_STATUS;
+		// do a full build of the projects, dependencies first
+		ticker.setTaskName("Building projects");
+		return buildInDependencyOrder(ticker.newChild(projects.length * 100));
 	}
 }
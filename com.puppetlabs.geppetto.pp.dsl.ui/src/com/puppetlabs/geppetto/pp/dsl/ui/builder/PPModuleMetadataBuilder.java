@@ -38,14 +38,11 @@ import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.xtext.ui.XtextProjectHelper;
 import org.eclipse.xtext.util.Wrapper;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Lists;
 import com.google.inject.Injector;
 import com.google.inject.Provider;
 import com.puppetlabs.geppetto.common.tracer.DefaultTracer;
 import com.puppetlabs.geppetto.common.tracer.ITracer;
-import com.puppetlabs.geppetto.common.tracer.NullTracer;
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
 import com.puppetlabs.geppetto.diagnostic.FileDiagnostic;
 import com.puppetlabs.geppetto.forge.FilePosition;
@@ -84,7 +81,7 @@ public class PPModuleMetadataBuilder extends IncrementalProjectBuilder implement
 	 * @return The matching project or <code>null</code>.
 	 */
 	public static IProject getBestMatchingProject(ModuleName requiredName, VersionRange versionRequirement) {
-		return getBestMatchingProject(requiredName, versionRequirement, NullTracer.INSTANCE);
+		return getModuleRegistry().getBestMatchingProject(requiredName, versionRequirement);
 	}
 
 	private static IProject getBestMatchingProject(ModuleName name, VersionRange vr, ITracer tracer) {
@@ -97,74 +94,14 @@ public class PPModuleMetadataBuilder extends IncrementalProjectBuilder implement
 
 		if(tracer.isTracing())
 			tracer.trace("Resolving required name: ", name);
-		BiMap<IProject, Version> candidates = HashBiMap.create();
-
-		if(tracer.isTracing())
-			tracer.trace("Checking against all projects...");
-		for(IProject p : getWorkspaceRoot().getProjects()) {
-			if(!isAccessiblePuppetProject(p)) {
-				if(tracer.isTracing())
-					tracer.trace("Project not accessible: ", p.getName());
-				continue;
-			}
-
-			Version version = null;
-			ModuleName moduleName = null;
-			try {
-				String mn = p.getPersistentProperty(PROJECT_PROPERTY_MODULENAME);
-				moduleName = mn == null
-						? null
-						: ModuleName.fromString(mn);
-			}
-			catch(CoreException e) {
-				log.error("Could not read project Modulename property", e);
-			}
-			if(tracer.isTracing())
-				tracer.trace("Project: ", p.getName(), " has persisted name: ", moduleName);
-			boolean matched = false;
-			if(name.equals(moduleName))
-				matched = true;
-
-			if(tracer.isTracing()) {
-				if(!matched)
-					tracer.trace("== not matched on name");
-			}
-			// get the version from the persisted property
-			if(matched) {
-				try {
-					version = Version.fromString(p.getPersistentProperty(PROJECT_PROPERTY_MODULEVERSION));
-				}
-				catch(Exception e) {
-					log.error("Error while getting version from project", e);
-				}
-				if(version == null)
-					version = Version.MIN;
-				if(tracer.isTracing())
-					tracer.trace("Candidate with version; ", version.toString(), " added as candidate");
-				candidates.put(p, version);
-			}
-		}
-		if(candidates.isEmpty()) {
-			if(tracer.isTracing())
-				tracer.trace("No candidates found");
-			return null;
-		}
+		IProject best = getModuleRegistry().getBestMatchingProject(name, vr);
 		if(tracer.isTracing()) {
-			tracer.trace("Getting best version");
-		}
-		// find best version and do a lookup of project
-		if(vr == null)
-			vr = VersionRange.ALL_INCLUSIVE;
-		Version best = vr.findBestMatch(candidates.values());
-		if(best == null) {
-			if(tracer.isTracing())
+			if(best == null)
 				tracer.trace("No best match found");
-			return null;
-		}
-		if(tracer.isTracing()) {
-			tracer.trace("Found best project: ", candidates.inverse().get(best).getName(), "having version:", best);
+			else
+				tracer.trace("Found best project: ", best.getName());
 		}
-		return candidates.inverse().get(best);
+		return best;
 	}
 
 	private static int getMarkerSeverity(Diagnostic diagnostic) {
@@ -183,6 +120,10 @@ public class PPModuleMetadataBuilder extends IncrementalProjectBuilder implement
 		return markerSeverity;
 	}
 
+	private static PPModuleRegistry getModuleRegistry() {
+		return ((PPDSLActivator) PPDSLActivator.getInstance()).getPPInjector().getInstance(PPModuleRegistry.class);
+	}
+
 	private static IWorkspaceRoot getWorkspaceRoot() {
 		return ResourcesPlugin.getWorkspace().getRoot();
 	}
@@ -568,27 +509,39 @@ public class PPModuleMetadataBuilder extends IncrementalProjectBuilder implement
 							moduleName + "'", null);
 			}
 
+			boolean identityChanged = false;
 			try {
 				IProject p = getProject();
 				String storedVersion = p.getPersistentProperty(PROJECT_PROPERTY_MODULEVERSION);
 				String vstr = version.toString();
-				if(!vstr.equals(storedVersion))
+				if(!vstr.equals(storedVersion)) {
+					identityChanged = true;
 					p.setPersistentProperty(PROJECT_PROPERTY_MODULEVERSION, vstr);
+				}
 
 				String storedName = p.getPersistentProperty(PROJECT_PROPERTY_MODULENAME);
 				if(moduleName == null) {
-					if(storedName != null)
+					if(storedName != null) {
+						identityChanged = true;
 						p.setPersistentProperty(PROJECT_PROPERTY_MODULENAME, null);
+					}
 				}
 				else {
 					String mstr = moduleName.toString();
-					if(!mstr.equals(storedName))
+					if(!mstr.equals(storedName)) {
+						identityChanged = true;
 						p.setPersistentProperty(PROJECT_PROPERTY_MODULENAME, mstr.toString());
+					}
 				}
 			}
 			catch(CoreException e1) {
 				log.error("Could not set version or symbolic module name of project", e1);
 			}
+			finally {
+				// changes to persistent properties are not reported as resource deltas
+				if(identityChanged)
+					getModuleRegistry().moduleIdentityChanged();
+			}
 
 			checkCancel(subMon);
 			List<IProject> resolutions = resolveDependencies(metadata, moduleFile);
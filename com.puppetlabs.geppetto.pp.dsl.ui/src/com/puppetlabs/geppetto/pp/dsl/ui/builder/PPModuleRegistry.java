@@ -0,0 +1,342 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.ui.builder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.xtext.ui.XtextProjectHelper;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.forge.Forge;
+import com.puppetlabs.geppetto.forge.model.Dependency;
+import com.puppetlabs.geppetto.forge.model.Metadata;
+import com.puppetlabs.geppetto.forge.model.ModuleName;
+import com.puppetlabs.geppetto.forge.model.ModuleVersionIndex;
+import com.puppetlabs.geppetto.pp.dsl.ui.PPUiConstants;
+import com.puppetlabs.geppetto.semver.Version;
+import com.puppetlabs.geppetto.semver.VersionRange;
+
+/**
+ * A workspace wide registry of the modules that are provided by the Puppet projects in the workspace. The registry
+ * maintains two indexes, both mapping a module name to the projects that provide it sorted on version:
+ * <ul>
+ * <li>the module name and version persisted on each project by the {@link PPModuleMetadataBuilder}</li>
+ * <li>the module name and version encoded in the project name, i.e. &quot;&lt;module name&gt;-&lt;version&gt;&quot;</li>
+ * </ul>
+ * It also caches the dependencies parsed from the Modulefile/metadata.json of each project.
+ * <p>
+ * The indexes are built on first use and dropped when projects are added, removed, opened, closed or have their
+ * description changed. The cached dependencies of a project are dropped when its Modulefile or metadata.json changes.
+ * Since changes to persistent properties are not reported as resource deltas, whoever changes the persisted module
+ * name or version must call {@link #moduleIdentityChanged()}.
+ * </p>
+ * When two projects provide the same module with the same version, the first project in workspace order wins.
+ */
+@Singleton
+public class PPModuleRegistry implements IResourceChangeListener, PPUiConstants {
+	private final static Logger log = Logger.getLogger(PPModuleRegistry.class);
+
+	/**
+	 * The registries that have been created and not yet disposed
+	 */
+	private static final List<PPModuleRegistry> registries = Lists.newArrayList();
+
+	private static void addCandidate(Map<String, NavigableMap<Version, IProject>> index, String key, Version version,
+			IProject project) {
+		NavigableMap<Version, IProject> versions = index.get(key);
+		if(versions == null) {
+			versions = new TreeMap<Version, IProject>();
+			index.put(key, versions);
+		}
+		if(!versions.containsKey(version))
+			versions.put(version, project);
+	}
+
+	private static IProject findBestMatch(NavigableMap<Version, IProject> versions, VersionRange vr) {
+		if(versions == null)
+			return null;
+		if(vr == null)
+			vr = VersionRange.ALL_INCLUSIVE;
+		// highest version first, i.e. the same match as VersionRange#findBestMatch
+		for(Map.Entry<Version, IProject> entry : versions.descendingMap().entrySet())
+			if(vr.isIncluded(entry.getKey()))
+				return entry.getValue();
+		return null;
+	}
+
+	/**
+	 * Disposes all registries that have been created. Nothing is created by this call.
+	 */
+	public static void disposeAll() {
+		List<PPModuleRegistry> created;
+		synchronized(registries) {
+			created = Lists.newArrayList(registries);
+		}
+		for(PPModuleRegistry registry : created)
+			registry.dispose();
+	}
+
+	/**
+	 * The same test as the {@link PPModuleMetadataBuilder} uses when it persists the module name and version.
+	 */
+	private static boolean isAccessiblePuppetProject(IProject p) {
+		return p != null && XtextProjectHelper.hasNature(p);
+	}
+
+	private final IWorkspace workspace;
+
+	@Inject
+	private Forge forge;
+
+	/**
+	 * Projects keyed on the persisted module name. Names are compared like {@link ModuleName#equals(Object)} does, so
+	 * a dependency on &quot;PuppetLabs/StdLib&quot; is satisfied by a project with the module name
+	 * &quot;puppetlabs-stdlib&quot;.
+	 */
+	private ModuleVersionIndex<IProject> byModuleName;
+
+	/**
+	 * Projects keyed on the module name part of the project name
+	 */
+	private Map<String, NavigableMap<Version, IProject>> byProjectName;
+
+	private final Map<IProject, List<Dependency>> dependencies = Maps.newHashMap();
+
+	/**
+	 * Increased each time cached dependencies are dropped, so that a parse that was started before can tell that its
+	 * result may be stale
+	 */
+	private long dependenciesGeneration;
+
+	@Inject
+	public PPModuleRegistry(IWorkspace workspace) {
+		this.workspace = workspace;
+		workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+		synchronized(registries) {
+			registries.add(this);
+		}
+	}
+
+	private ModuleVersionIndex<IProject> buildModuleNameIndex() {
+		ModuleVersionIndex<IProject> index = new ModuleVersionIndex<IProject>();
+		for(IProject p : workspace.getRoot().getProjects()) {
+			if(!isAccessiblePuppetProject(p))
+				continue;
+
+			ModuleName moduleName = null;
+			try {
+				String mn = p.getPersistentProperty(PROJECT_PROPERTY_MODULENAME);
+				moduleName = mn == null
+						? null
+						: ModuleName.fromString(mn);
+			}
+			catch(CoreException e) {
+				log.error("Could not read project Modulename property", e);
+			}
+			catch(IllegalArgumentException e) {
+				log.error("Invalid Modulename property on project " + p.getName(), e);
+			}
+			if(moduleName == null)
+				continue;
+
+			Version version = null;
+			try {
+				version = Version.fromString(p.getPersistentProperty(PROJECT_PROPERTY_MODULEVERSION));
+			}
+			catch(Exception e) {
+				log.error("Error while getting version from project", e);
+			}
+			if(version == null)
+				version = Version.MIN;
+			index.add(moduleName, version, p);
+		}
+		return index;
+	}
+
+	private Map<String, NavigableMap<Version, IProject>> buildProjectNameIndex() {
+		Map<String, NavigableMap<Version, IProject>> index = Maps.newHashMap();
+		for(IProject p : workspace.getRoot().getProjects()) {
+			if(!isAccessiblePuppetProject(p))
+				continue;
+
+			// Both the module name and the version may contain '-' so every split point must be considered
+			String n = p.getName();
+			for(int dash = n.indexOf('-'); dash > 0 && dash < n.length() - 1; dash = n.indexOf('-', dash + 1)) {
+				try {
+					addCandidate(index, n.substring(0, dash), Version.fromString(n.substring(dash + 1)), p);
+				}
+				catch(IllegalArgumentException e) {
+					// Remainder of the project name is not a valid version. Just skip it
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Stops listening to workspace changes and drops all cached information.
+	 */
+	public synchronized void dispose() {
+		workspace.removeResourceChangeListener(this);
+		invalidate();
+		synchronized(registries) {
+			registries.remove(this);
+		}
+	}
+
+	/**
+	 * Returns the best matching project (or <code>null</code> if there is no match) among the projects in the
+	 * workspace that have the given module name persisted.
+	 *
+	 * @param name
+	 *            The name of the module to match
+	 * @param vr
+	 *            The version requirement. Can be <code>null</code>.
+	 * @return The matching project or <code>null</code>.
+	 */
+	public synchronized IProject getBestMatchingProject(ModuleName name, VersionRange vr) {
+		if(name == null)
+			return null;
+		if(byModuleName == null)
+			byModuleName = buildModuleNameIndex();
+		return byModuleName.findBestMatch(name, vr);
+	}
+
+	/**
+	 * Returns the best matching project (or <code>null</code> if there is no match) among the projects in the
+	 * workspace that are named &quot;&lt;module name&gt;-&lt;version&gt;&quot;.
+	 *
+	 * @param name
+	 *            The name of the module to match
+	 * @param vr
+	 *            The version requirement. Can be <code>null</code>.
+	 * @return The matching project or <code>null</code>.
+	 */
+	public synchronized IProject getBestMatchingProjectByProjectName(ModuleName name, VersionRange vr) {
+		if(name == null)
+			return null;
+		if(byProjectName == null)
+			byProjectName = buildProjectNameIndex();
+		return findBestMatch(byProjectName.get(name.toString()), vr);
+	}
+
+	/**
+	 * Returns the dependencies declared in the Modulefile/metadata.json of the given project. The result is parsed once
+	 * and then cached until the metadata of the project changes. A result that was parsed while cached dependencies
+	 * were dropped is returned but not cached, since the metadata may have changed during the parse.
+	 *
+	 * @param project
+	 *            The project
+	 * @return The dependencies, empty if the project has no metadata or if it could not be parsed
+	 */
+	public List<Dependency> getDependencies(IProject project) {
+		long generation;
+		synchronized(this) {
+			List<Dependency> result = dependencies.get(project);
+			if(result != null)
+				return result;
+			generation = dependenciesGeneration;
+		}
+
+		// parse outside of the lock, a concurrent parse of the same project yields the same result
+		List<Dependency> result = Collections.emptyList();
+		File moduleDir = project.getLocation().toFile();
+		try {
+			Diagnostic diag = new Diagnostic();
+			Metadata metadata = forge.createFromModuleDirectory(moduleDir, false, null, null, diag);
+			if(metadata != null)
+				result = Collections.unmodifiableList(Lists.newArrayList(metadata.getDependencies()));
+		}
+		catch(Exception e) {
+			if(log.isDebugEnabled())
+				log.debug("Could not parse any metadata from project: '" + project.getName() + "'", e);
+		}
+		synchronized(this) {
+			if(generation == dependenciesGeneration)
+				dependencies.put(project, result);
+		}
+		return result;
+	}
+
+	private synchronized void invalidate() {
+		byModuleName = null;
+		byProjectName = null;
+		dependencies.clear();
+		++dependenciesGeneration;
+	}
+
+	private synchronized void invalidateDependencies(IProject project) {
+		dependencies.remove(project);
+		++dependenciesGeneration;
+	}
+
+	/**
+	 * Must be called when the persisted module name or version of a project has changed.
+	 */
+	public synchronized void moduleIdentityChanged() {
+		byModuleName = null;
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResourceDelta delta = event.getDelta();
+		if(delta == null)
+			return;
+		try {
+			delta.accept(new IResourceDeltaVisitor() {
+				@Override
+				public boolean visit(IResourceDelta delta) throws CoreException {
+					IResource resource = delta.getResource();
+					if(resource instanceof IProject) {
+						if(delta.getKind() != IResourceDelta.CHANGED ||
+								(delta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0) {
+							invalidate();
+							return false;
+						}
+						return true;
+					}
+					if(resource instanceof IFile) {
+						IPath relPath = resource.getProjectRelativePath();
+						if(MODULEFILE_PATH.equals(relPath) || METADATA_JSON_PATH.equals(relPath))
+							invalidateDependencies(resource.getProject());
+						return false;
+					}
+					// only the metadata in the project root is of interest
+					return resource.getType() == IResource.ROOT;
+				}
+			});
+		}
+		catch(CoreException e) {
+			log.error("Unable to process resource delta", e);
+			invalidate();
+		}
+	}
+}
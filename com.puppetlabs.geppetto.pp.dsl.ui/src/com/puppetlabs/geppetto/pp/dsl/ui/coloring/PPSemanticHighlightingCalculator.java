@@ -30,21 +30,24 @@ import com.puppetlabs.geppetto.pp.dsl.adapters.ResourceDocumentationAdapter;
 import com.puppetlabs.geppetto.pp.dsl.adapters.ResourceDocumentationAdapterFactory;
 import com.puppetlabs.geppetto.pp.dsl.adapters.ResourcePropertiesAdapter;
 import com.puppetlabs.geppetto.pp.dsl.adapters.ResourcePropertiesAdapterFactory;
+import com.puppetlabs.geppetto.pp.dsl.adapters.TopLevelNodeAdapter;
+import com.puppetlabs.geppetto.pp.dsl.adapters.TopLevelNodeAdapter.Computer;
+import com.puppetlabs.geppetto.pp.dsl.adapters.TopLevelNodeAdapterFactory;
 import com.puppetlabs.geppetto.pp.dsl.linking.PPTask;
 import com.puppetlabs.geppetto.pp.dsl.ppdoc.PPDocumentationParser;
 import com.puppetlabs.geppetto.pp.dsl.ppdoc.PPDocumentationParser.DocNode;
 import com.puppetlabs.geppetto.pp.dsl.services.PPGrammarAccess;
-import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.AbstractRule;
 import org.eclipse.xtext.IGrammarAccess;
 import org.eclipse.xtext.Keyword;
 import org.eclipse.xtext.RuleCall;
-import org.eclipse.xtext.nodemodel.BidiTreeIterable;
 import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.ILeafNode;
 import org.eclipse.xtext.nodemodel.INode;
 import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.eclipse.xtext.parser.IParseResult;
 import org.eclipse.xtext.resource.XtextResource;
 import org.eclipse.xtext.ui.editor.syntaxcoloring.DefaultHighlightingConfiguration;
 import org.eclipse.xtext.ui.editor.syntaxcoloring.IHighlightedPositionAcceptor;
@@ -52,11 +55,17 @@ import org.eclipse.xtext.ui.editor.syntaxcoloring.ISemanticHighlightingCalculato
 import org.eclipse.xtext.util.Exceptions;
 import org.eclipse.xtext.util.PolymorphicDispatcher;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 /**
  * Highlighting for puppet.
- * 
+ * <p>
+ * The highlighting based on parser nodes, on the semantic model and on the text itself is computed in one traversal of
+ * the node model. The result is kept per top level node (i.e. each child of the root node) with offsets relative to the
+ * node, in the {@link TopLevelNodeAdapter} of the resource. When the document changes, only the top level nodes that
+ * touch the changed region, or that were replaced by the parser, are traversed again.
+ * </p>
  */
 public class PPSemanticHighlightingCalculator implements ISemanticHighlightingCalculator {
 	private static class ZeroLengthFilteredAcceptorWrapper implements IHighlightedPositionAcceptor {
@@ -86,9 +95,62 @@ public class PPSemanticHighlightingCalculator implements ISemanticHighlightingCa
 
 	}
 
+	/**
+	 * Positions computed for a node, relative to the total offset of the node.
+	 */
+	private static class RelativePositions implements IHighlightedPositionAcceptor {
+		private final int base;
+
+		private final List<Integer> offsetsAndLengths = Lists.newArrayList();
+
+		private final List<String[]> ids = Lists.newArrayList();
+
+		RelativePositions(int base) {
+			this.base = base;
+		}
+
+		// @Override
+		public void addPosition(int offset, int length, String... id) {
+			offsetsAndLengths.add(offset - base);
+			offsetsAndLengths.add(length);
+			ids.add(id);
+		}
+
+		void replay(int newBase, IHighlightedPositionAcceptor acceptor) {
+			for(int i = 0; i < ids.size(); i++)
+				acceptor.addPosition(
+					offsetsAndLengths.get(2 * i) + newBase, offsetsAndLengths.get(2 * i + 1), ids.get(i));
+		}
+	}
+
+	/**
+	 * The highlighting of one top level node, one set of positions per kind of highlighting.
+	 */
+	private static class NodeHighlighting {
+		final RelativePositions nodeBased;
+
+		final RelativePositions semantic;
+
+		final RelativePositions textual;
+
+		NodeHighlighting(int base) {
+			nodeBased = new RelativePositions(base);
+			semantic = new RelativePositions(base);
+			textual = new RelativePositions(base);
+		}
+	}
+
 	@Inject
 	private PPDocumentationParser docParser;
 
+	private final Computer<NodeHighlighting> nodeHighlighter = new Computer<NodeHighlighting>() {
+		public NodeHighlighting compute(INode topLevelNode) {
+			NodeHighlighting result = new NodeHighlighting(topLevelNode.getTotalOffset());
+			provideNodeHighlighting(topLevelNode, result);
+			return result;
+		}
+	};
+
 	private PPGrammarAccess grammarAccess;
 
 	private AbstractRule ruleVariable;
@@ -299,34 +361,52 @@ public class PPSemanticHighlightingCalculator implements ISemanticHighlightingCa
 	public void provideHighlightingFor(XtextResource resource, IHighlightedPositionAcceptor acceptor) {
 		if(resource == null)
 			return;
+		IParseResult parseResult = resource.getParseResult();
+		if(parseResult == null || parseResult.getRootNode() == null)
+			return;
 		acceptor = new ZeroLengthFilteredAcceptorWrapper(acceptor);
-		// highligting based on inspection of parser nodes
-		provideNodeBasedHighlighting(resource, acceptor);
 
-		// highlighting based on created model
-		provideSemanticHighlighting(resource, acceptor);
+		ICompositeNode root = parseResult.getRootNode();
+		List<INode> children = Lists.newArrayList(root.getChildren());
+		List<NodeHighlighting> highlightings = TopLevelNodeAdapterFactory.eINSTANCE.adapt(resource).getValues(
+			root, PPSemanticHighlightingCalculator.class, NodeHighlighting.class, nodeHighlighter);
 
-		// highligting based on the text itself
-		provideTextualHighlighting(resource, acceptor);
+		// emit node based, semantic, and textual highlighting in that order
+		for(int i = 0; i < children.size(); i++)
+			highlightings.get(i).nodeBased.replay(children.get(i).getTotalOffset(), acceptor);
+		for(int i = 0; i < children.size(); i++)
+			highlightings.get(i).semantic.replay(children.get(i).getTotalOffset(), acceptor);
+		for(int i = 0; i < children.size(); i++)
+			highlightings.get(i).textual.replay(children.get(i).getTotalOffset(), acceptor);
 
 		provideResourceLevelHighlighting(resource, acceptor);
 	}
 
 	/**
-	 * Iterate over parser nodes and provide highlighting based on rule calls.
-	 * 
-	 * @param resource
-	 * @param acceptor
+	 * Computes the highlighting of a subtree of the node model in one traversal.
+	 *
+	 * @param node
+	 *            The root of the subtree
+	 * @param result
+	 *            Receives the positions
 	 */
-	protected void provideNodeBasedHighlighting(XtextResource resource, IHighlightedPositionAcceptor acceptor) {
-		BidiTreeIterable<INode> allNodes = resource.getParseResult().getRootNode().getAsTreeIterable();
-		for(INode node : allNodes) {
-			EObject gElem = node.getGrammarElement();
-			if(gElem instanceof RuleCall) {
-				highlight(node, acceptor);
+	private void provideNodeHighlighting(INode node, NodeHighlighting result) {
+		for(INode n : node.getAsTreeIterable()) {
+			// highligting based on inspection of parser nodes
+			EObject gElem = n.getGrammarElement();
+			if(gElem instanceof RuleCall || gElem instanceof Keyword)
+				highlight(n, result.nodeBased);
+
+			if(n instanceof ILeafNode) {
+				// highligting based on the text itself
+				provideTextualHighlighting((ILeafNode) n, result.textual);
 			}
-			else if(gElem instanceof Keyword) {
-				highlight(node, acceptor);
+			else if(n.hasDirectSemanticElement()) {
+				// highlighting based on created model, each semantic object is highlighted once, from its own node
+				// (the manifest itself is highlighted by the traversal)
+				EObject semantic = n.getSemanticElement();
+				if(!(semantic instanceof PuppetManifest) && NodeModelUtils.getNode(semantic) == n)
+					doHighlight(semantic, result.semantic);
 			}
 		}
 	}
@@ -354,27 +434,13 @@ public class PPSemanticHighlightingCalculator implements ISemanticHighlightingCa
 		}
 	}
 
-	/**
-	 * Iterate over the generated model and provide highlighting
-	 * 
-	 * @param resource
-	 * @param acceptor
-	 */
-	private void provideSemanticHighlighting(XtextResource resource, IHighlightedPositionAcceptor acceptor) {
-		EList<EObject> contents = resource.getContents();
-		if(contents == null || contents.size() == 0)
-			return; // nothing there at all - probably an empty file
-		PuppetManifest model = (PuppetManifest) contents.get(0);
-		doHighlight(model, acceptor);
-	}
-
-	public void provideTextualHighlighting(XtextResource resource, IHighlightedPositionAcceptor acceptor) {
-		ICompositeNode root = resource.getParseResult().getRootNode();
-		String text = root.getText();
+	public void provideTextualHighlighting(ILeafNode leaf, IHighlightedPositionAcceptor acceptor) {
+		String text = leaf.getText();
+		int offset = leaf.getTotalOffset();
 		int limit = text.length();
 		for(int i = 0; i < limit; i++)
 			if(isSpecialSpace(text.charAt(i)))
-				acceptor.addPosition(i, 1, PPHighlightConfiguration.SPECIAL_SPACE_ID);
+				acceptor.addPosition(offset + i, 1, PPHighlightConfiguration.SPECIAL_SPACE_ID);
 	}
 
 	/**
@@ -13,8 +13,11 @@ package com.puppetlabs.geppetto.pp.dsl.ui.contentassist;
 import static com.puppetlabs.geppetto.pp.adapters.ClassifierAdapter.RESOURCE_IS_CLASSPARAMS;
 import static com.puppetlabs.geppetto.pp.adapters.ClassifierAdapter.RESOURCE_IS_OVERRIDE;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import com.puppetlabs.geppetto.pp.AssignmentExpression;
 import com.puppetlabs.geppetto.pp.AttributeOperation;
@@ -24,16 +27,23 @@ import com.puppetlabs.geppetto.pp.ResourceExpression;
 import com.puppetlabs.geppetto.pp.StringExpression;
 import com.puppetlabs.geppetto.pp.adapters.ClassifierAdapter;
 import com.puppetlabs.geppetto.pp.adapters.ClassifierAdapterFactory;
+import com.puppetlabs.geppetto.pp.dsl.contentassist.PPCompletionIndex;
 import com.puppetlabs.geppetto.pp.dsl.eval.PPStringConstantEvaluator;
 import com.puppetlabs.geppetto.pp.dsl.linking.PPFinder;
 import com.puppetlabs.geppetto.pp.dsl.linking.PPFinder.SearchResult;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath.ISearchPathProvider;
 import com.puppetlabs.geppetto.pp.dsl.ui.labeling.IIconNames;
 import com.puppetlabs.geppetto.pp.dsl.ui.labeling.PPDescriptionLabelProvider;
 import com.puppetlabs.geppetto.pp.pptp.PPTPPackage;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.viewers.StyledString;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.xtext.Assignment;
@@ -43,18 +53,32 @@ import org.eclipse.xtext.naming.IQualifiedNameConverter;
 import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.nodemodel.INode;
 import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.eclipse.xtext.resource.IContainer;
 import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+import org.eclipse.xtext.resource.impl.ResourceDescriptionsProvider;
 import org.eclipse.xtext.ui.IImageHelper;
 import org.eclipse.xtext.ui.editor.contentassist.ConfigurableCompletionProposal;
 import org.eclipse.xtext.ui.editor.contentassist.ContentAssistContext;
 import org.eclipse.xtext.ui.editor.contentassist.ICompletionProposalAcceptor;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 /**
  * see http://www.eclipse.org/Xtext/documentation/latest/xtext.html#contentAssist on how to customize content assistant
  */
 public class PPProposalProvider extends AbstractPPProposalProvider {
+	// Note that order is important, types are ranked before definitions on the same search path position
+	private final static EClass[] DEF_AND_TYPE = { PPTPPackage.Literals.TYPE, PPPackage.Literals.DEFINITION };
+
+	/**
+	 * The maximum number of definitions and types proposed for a statement.
+	 */
+	private final static int MAX_DEFINITION_PROPOSALS = 200;
+
 	@Inject
 	private PPStringConstantEvaluator stringConstantEvaluator;
 
@@ -64,6 +88,33 @@ public class PPProposalProvider extends AbstractPPProposalProvider {
 	@Inject
 	private PPFinder ppFinder;
 
+	@Inject
+	private PPCompletionIndex completionIndex;
+
+	@Inject
+	private ISearchPathProvider searchPathProvider;
+
+	@Inject
+	private IContainer.Manager containerManager;
+
+	@Inject
+	private IResourceDescription.Manager descriptionManager;
+
+	@Inject
+	private ResourceDescriptionsProvider indexProvider;
+
+	/**
+	 * The state the ppFinder was last configured for, see {@link #configureFinder(Resource, ContentAssistContext)}.
+	 * The resource and the document are only weakly referenced so that a closed editor's model can be collected.
+	 */
+	private WeakReference<Resource> configuredResource;
+
+	private WeakReference<IDocument> configuredDocument;
+
+	private long configuredDocumentStamp;
+
+	private long configuredIndexCount;
+
 	// @Inject
 	// private IGrammarAccess grammarAccess;
 	@Inject
@@ -208,7 +259,7 @@ public class PPProposalProvider extends AbstractPPProposalProvider {
 				if(className == null)
 					return; // not a static expression
 				// Need the class to get its full name
-				ppFinder.configure(model.eResource());
+				configureFinder(model.eResource(), context);
 				List<IEObjectDescription> descs = ppFinder.findHostClasses(resourceBody, className, null).getAdjusted();
 				if(descs.size() < 1)
 					return; // can't find class, no proposals
@@ -227,7 +278,7 @@ public class PPProposalProvider extends AbstractPPProposalProvider {
 			}
 			else {
 				// Normal Resource
-				ppFinder.configure(model.eResource());
+				configureFinder(model.eResource(), context);
 
 				// Either a default setting Type { } or instance type { }, in both cases propose all properties and parameters
 				// including meta
@@ -324,9 +375,7 @@ public class PPProposalProvider extends AbstractPPProposalProvider {
 			ICompletionProposalAcceptor acceptor) {
 		super.completePuppetManifest_Statements(model, assignment, context, acceptor);
 
-		ppFinder.configure(model.eResource());
-
-		for(IEObjectDescription d : ppFinder.findDefinitions(model, null).getAdjusted()) {
+		for(IEObjectDescription d : findDefinitionsPrefixed(model.eResource(), context.getPrefix())) {
 			String name = converter.toString(d.getQualifiedName());
 			StyledString styledDescription = new StyledString(name);
 			styledDescription.append(typeSuffix(d));
@@ -439,7 +488,7 @@ public class PPProposalProvider extends AbstractPPProposalProvider {
 				// if inside ${ }, literal names should be proposed, but not if there is a $expr inside - e.g. ${$|, ${...$|, etc.
 
 				// create indexed finder from the perspective of the current resource
-				ppFinder.configure(model.eResource());
+				configureFinder(model.eResource(), context);
 
 				// get the fqn (skip the '$') of the name to complete
 				QualifiedName fqn = converter.toQualifiedName(prefix.substring(bracedInput
@@ -525,6 +574,78 @@ public class PPProposalProvider extends AbstractPPProposalProvider {
 		}
 	}
 
+	/**
+	 * Configures the ppFinder from the perspective of the given resource unless it is already configured for the same
+	 * resource, document content and index state. This avoids rebuilding the finder's index of exported objects for
+	 * each of the completions computed for one content assist request.
+	 */
+	private void configureFinder(Resource resource, ContentAssistContext context) {
+		IDocument document = context.getDocument();
+		long documentStamp = document instanceof IDocumentExtension4
+				? ((IDocumentExtension4) document).getModificationStamp()
+				: IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		long indexCount = completionIndex.getModificationCount();
+		if(configuredResource != null && resource == configuredResource.get() &&
+				document == configuredDocument.get() &&
+				documentStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP &&
+				documentStamp == configuredDocumentStamp && indexCount == configuredIndexCount)
+			return;
+		ppFinder.configure(resource);
+		configuredResource = new WeakReference<Resource>(resource);
+		configuredDocument = new WeakReference<IDocument>(document);
+		configuredDocumentStamp = documentStamp;
+		configuredIndexCount = indexCount;
+	}
+
+	/**
+	 * Finds the definitions and types visible from the given resource with a name starting with the given prefix.
+	 * Objects in other resources are found using the completion index and are ranked on search path position, only the
+	 * best {@link #MAX_DEFINITION_PROPOSALS} are returned. Objects in the given resource are all included.
+	 */
+	private List<IEObjectDescription> findDefinitionsPrefixed(Resource resource, String prefix) {
+		IResourceDescriptions descriptionIndex = indexProvider.getResourceDescriptions(resource);
+		IResourceDescription descr = descriptionIndex.getResourceDescription(resource.getURI());
+		if(descr == null)
+			return Collections.emptyList(); // some sort of clean build
+		final List<IContainer> containers = containerManager.getVisibleContainers(descr, descriptionIndex);
+		final String pathToCurrent = resource.getURI().path();
+		Predicate<IEObjectDescription> visible = new Predicate<IEObjectDescription>() {
+			private final Map<URI, Boolean> visibleResources = Maps.newHashMap();
+
+			@Override
+			public boolean apply(IEObjectDescription d) {
+				URI resourceURI = d.getEObjectURI().trimFragment();
+				if(pathToCurrent.equals(resourceURI.path()))
+					return false; // the current (possibly dirty) resource is added separately
+				Boolean result = visibleResources.get(resourceURI);
+				if(result == null) {
+					result = Boolean.FALSE;
+					for(IContainer container : containers)
+						if(container.hasResourceDescription(resourceURI)) {
+							result = Boolean.TRUE;
+							break;
+						}
+					visibleResources.put(resourceURI, result);
+				}
+				return result.booleanValue();
+			}
+		};
+		PPSearchPath searchPath = searchPathProvider.get(resource);
+		List<IEObjectDescription> result = completionIndex.findPrefixed(
+			prefix, DEF_AND_TYPE, searchPath, visible, MAX_DEFINITION_PROPOSALS);
+
+		String lowerCasePrefix = prefix.toLowerCase();
+		for(IEObjectDescription d : descriptionManager.getResourceDescription(resource).getExportedObjects()) {
+			if(d.getQualifiedName().getSegmentCount() < 1)
+				continue;
+			EClass eClass = d.getEClass();
+			if((DEF_AND_TYPE[0].isSuperTypeOf(eClass) || DEF_AND_TYPE[1].isSuperTypeOf(eClass)) &&
+					converter.toString(d.getQualifiedName()).toLowerCase().startsWith(lowerCasePrefix))
+				result.add(d);
+		}
+		return result;
+	}
+
 	protected Image getImage(String imageName) {
 		return imageHelper.getImage(imageName);
 	}
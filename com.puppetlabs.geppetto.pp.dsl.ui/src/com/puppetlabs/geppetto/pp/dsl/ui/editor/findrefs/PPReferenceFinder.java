@@ -21,7 +21,9 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import com.puppetlabs.geppetto.pp.dsl.adapters.CrossReferenceAdapterFactory;
+import com.puppetlabs.geppetto.pp.dsl.linking.ExportedContainerIndex;
 import com.puppetlabs.geppetto.pp.dsl.linking.PPReferenceDescription;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPReferenceIndex;
 import com.puppetlabs.geppetto.pp.dsl.ui.internal.util.CancelablePredicate;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -122,6 +124,9 @@ public class PPReferenceFinder {
 
 	private IResourceDescriptions index;
 
+	@Inject
+	private PPReferenceIndex referenceIndex;
+
 	private static Function<EObject, Resource> eobj2Resource = new Function<EObject, Resource>() {
 		@Override
 		public Resource apply(EObject from) {
@@ -161,22 +166,6 @@ public class PPReferenceFinder {
 			throw new OperationCanceledException("Puppet reference search canceled");
 	}
 
-	/**
-	 * Returns the length of a containing URI's fragment or 0 if the candidate is not a container.
-	 * 
-	 * @param contained
-	 * @param containerCandidate
-	 * @return
-	 */
-	private int containerSpecificity(URI containedURI, URI containerURI) {
-		if(!containedURI.path().equals(containerURI.path()))
-			return 0;
-		// same resource, if desc's fragment is in at the start of the path, then contained is contained by containerCandidate
-		if(containedURI.fragment() != null && containedURI.fragment().startsWith(containerURI.fragment()))
-			return containerURI.fragment().length();
-		return 0;
-	}
-
 	public void findAllReferences(IPPQueryData queryData, ILocalResourceAccess localResourceAccess,
 			final IAcceptor<IReferenceDescription> acceptor, IProgressMonitor monitor) {
 		final SubMonitor subMonitor = SubMonitor.convert(monitor, 2);
@@ -187,18 +176,8 @@ public class PPReferenceFinder {
 	}
 
 	protected IEObjectDescription findClosestExportedContainerDescriptor(EObject element,
-			Iterable<IEObjectDescription> exportedElements) {
-		IEObjectDescription closest = null;
-		int maxSpecificity = 0;
-		for(IEObjectDescription containerCandidate : exportedElements) {
-			int specificity = containerSpecificity(
-				EcoreUtil2.getNormalizedURI(element), containerCandidate.getEObjectURI());
-			if(specificity > maxSpecificity) {
-				maxSpecificity = specificity;
-				closest = containerCandidate;
-			}
-		}
-		return closest;
+			ExportedContainerIndex exportedContainers) {
+		return exportedContainers.findClosestContainer(EcoreUtil2.getNormalizedURI(element));
 	}
 
 	/**
@@ -221,6 +200,20 @@ public class PPReferenceFinder {
 			}
 		}));
 
+		// Look up the references in the reverse index when it is maintained, there is no need to scan the index
+		if(referenceIndex != null && referenceIndex.isAvailable()) {
+			List<IReferenceDescription> references = referenceIndex.getReferences(targetURIs, targetResourceURIs);
+			SubMonitor subMonitor = SubMonitor.convert(monitor, "Find puppet references", references.size());
+			for(IReferenceDescription referenceDescription : references) {
+				if(subMonitor.isCanceled())
+					return;
+				if(filter == null || filter.apply(referenceDescription))
+					acceptor.accept(referenceDescription);
+				subMonitor.worked(1);
+			}
+			return;
+		}
+
 		// All resources that may have one of the targets as source
 		final Iterable<IResourceDescription> allResourceDescriptions = index.getAllResourceDescriptions();
 		int numResources = Iterables.size(allResourceDescriptions); // NOTE: the Iterables.size is optimized for Collection<?>
@@ -286,22 +279,25 @@ public class PPReferenceFinder {
 			Map<EObject, Collection<IEObjectDescription>> objectsWithXRef = PPCrossReferencer.find(targetResources);
 
 			SubMonitor subMonitor = SubMonitor.convert(monitor, "Find local puppet references", targets.size());
+			// the exported containers of a resource are the same for all targets
+			Map<Resource, ExportedContainerIndex> containerIndexByResourceCache = Maps.newHashMap();
 			for(EObject target : targets) {
 
 				Predicate<IEObjectDescription> p = new DescriptionURIPredicate(
 					target, subMonitor.newChild(sizeFunction.apply(objectsWithXRef)));
 
-				Map<Resource, Iterable<IEObjectDescription>> exportedObjectsByResourceCache = Maps.newHashMap();
 				for(Entry<EObject, Collection<IEObjectDescription>> entry : objectsWithXRef.entrySet()) {
 					for(IEObjectDescription targetCandidate : entry.getValue())
 						if(p.apply(targetCandidate)) {
 							EObject eObj = entry.getKey();
 							Resource r = eObj.eResource();
-							Iterable<IEObjectDescription> exported = exportedObjectsByResourceCache.get(r);
-							if(exported == null)
-								exportedObjectsByResourceCache.put(r, exported = getExportedElements(r));
+							ExportedContainerIndex containers = containerIndexByResourceCache.get(r);
+							if(containers == null)
+								containerIndexByResourceCache.put(
+									r, containers = new ExportedContainerIndex(getExportedElements(r)));
 							// find the exported container closest to the source referencing the target
-							IEObjectDescription closestExported = findClosestExportedContainerDescriptor(eObj, exported);
+							IEObjectDescription closestExported = findClosestExportedContainerDescriptor(
+								eObj, containers);
 							IReferenceDescription refDesc = PPReferenceDescription.create(
 								EcoreUtil2.getNormalizedURI(eObj), closestExported, targetCandidate);
 							if(filter == null || filter.apply(refDesc))
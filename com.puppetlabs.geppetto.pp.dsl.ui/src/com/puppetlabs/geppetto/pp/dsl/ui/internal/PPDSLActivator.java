@@ -22,6 +22,7 @@ import com.puppetlabs.geppetto.injectable.CommonModuleProvider;
 import com.puppetlabs.geppetto.pp.dsl.PPDSLConstants;
 import com.puppetlabs.geppetto.pp.dsl.pptp.PptpRubyRuntimeModule;
 import com.puppetlabs.geppetto.pp.dsl.ui.builder.PPBuildJob;
+import com.puppetlabs.geppetto.pp.dsl.ui.builder.PPModuleRegistry;
 import com.puppetlabs.geppetto.pp.dsl.ui.jdt_ersatz.ImagesOnFileSystemRegistry;
 import com.puppetlabs.geppetto.pp.dsl.ui.preferences.PPPreferencesHelper;
 import com.puppetlabs.geppetto.ruby.RubyHelper;
@@ -253,6 +254,7 @@ public class PPDSLActivator extends PPActivator {
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(projectRemovedListener);
 		PPPreferencesHelper preferenceHelper = getInjector(PP_LANGUAGE_NAME).getInstance(PPPreferencesHelper.class);
 		preferenceHelper.stop();
+		PPModuleRegistry.disposeAll();
 		slaActivatorContext = null;
 		imagesOnFileSystemRegistry.dispose();
 		super.stop(context);
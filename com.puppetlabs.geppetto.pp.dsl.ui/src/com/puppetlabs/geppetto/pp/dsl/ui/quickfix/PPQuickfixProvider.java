@@ -563,7 +563,7 @@ public class PPQuickfixProvider extends DefaultQuickfixProvider {
 				if(fqn.getSegmentCount() > 1) {
 					ppFinder.configure(varExpr);
 					String[] proposals = proposer.computeProposals(issueString, //
-						ppFinder.getExportedDescriptions(), //
+						ppFinder.getSuggestionIndex(), //
 						searchPathProvider.get(varExpr.eResource()), PARAMS_AND_VARIABLES);
 					for(String s : proposals)
 						acceptor.accept(issue, "Change to '$" + s + "'", "Did you mean '$" + s + "'", null, //
@@ -10,9 +10,11 @@
  */
 package com.puppetlabs.geppetto.pp.dsl.ui.resource;
 
+import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapter;
+import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapterFactory;
 import com.puppetlabs.geppetto.pp.dsl.linking.DiagnosticConsumerBasedMessageAcceptor;
 import com.puppetlabs.geppetto.pp.dsl.linking.IMessageAcceptor;
-import com.puppetlabs.geppetto.pp.dsl.linking.PPResourceLinker;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPUnitLinker;
 import com.puppetlabs.geppetto.pp.dsl.ppdoc.DocumentationAssociator;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.diagnostics.Severity;
@@ -30,14 +32,17 @@ import com.google.inject.Inject;
  * when the parse result is updated.
  * Note that this is UI specific, in headless runtime, the same functionality is triggered by the @link {@link PPLinker}
  * .
- * 
+ * <p>
+ * Linking is incremental, only the parts of the model that changed since the last linking are linked again, see
+ * {@link PPUnitLinker}.
+ * </p>
  */
 public class PPResource extends LazyLinkingResource {
 	@Inject
 	private DocumentationAssociator documentationAssociator;
 
 	@Inject
-	PPResourceLinker resourceLinker;
+	private PPUnitLinker unitLinker;
 
 	/**
 	 * True if the pp linking has been performed.
@@ -61,6 +66,19 @@ public class PPResource extends LazyLinkingResource {
 		}
 	}
 
+	/**
+	 * Forgets the outcome of previous linking, the next linking will link the whole model.
+	 */
+	protected void discardUnitLinking() {
+		unitLinker.discard();
+	}
+
+	@Override
+	protected void doUnload() {
+		discardUnitLinking();
+		super.doUnload();
+	}
+
 	protected void ensureLinkedState(CancelIndicator mon) {
 		if(isLoaded && !isLoading && !isLinking && !isUpdating && !fullyLinked) {
 			try {
@@ -102,7 +120,10 @@ public class PPResource extends LazyLinkingResource {
 		IMessageAcceptor acceptor = new DiagnosticConsumerBasedMessageAcceptor(diagnosticsConsumer);
 		EObject model = this.getParseResult().getRootASTElement();
 		documentationAssociator.validateDocumentation(model, acceptor);
-		resourceLinker.link(model, acceptor, false);
+
+		PPImportedNamesAdapter importedNames = PPImportedNamesAdapterFactory.eINSTANCE.adapt(this);
+		importedNames.clear();
+		unitLinker.link(model, importedNames, diagnosticsConsumer);
 
 		if(!isValidationDisabled()) {
 			getErrors().addAll(diagnosticsConsumer.getResult(Severity.ERROR));
@@ -148,6 +148,8 @@ public class PPRuntimeModule extends com.puppetlabs.geppetto.pp.dsl.AbstractPPRu
 		binder.bind(IStringProvider.class).to(DefaultStringProvider.class);
 		binder.bind(ITracer.class).annotatedWith(Names.named(PPDSLConstants.PP_DEBUG_LINKER)).toInstance(
 			new DefaultTracer(PPDSLConstants.PP_DEBUG_LINKER));
+		binder.bind(ITracer.class).annotatedWith(Names.named(PPDSLConstants.PP_DEBUG_VALIDATOR)).toInstance(
+			new DefaultTracer(PPDSLConstants.PP_DEBUG_VALIDATOR));
 		binder.bind(ITracer.class).annotatedWith(Names.named(FormattingTracer.DEBUG_FORMATTER)).toInstance(
 			new DefaultTracer(FormattingTracer.DEBUG_FORMATTER));
 		binder.bind(FormattingTracer.class).asEagerSingleton();
@@ -169,9 +171,6 @@ public class PPRuntimeModule extends com.puppetlabs.geppetto.pp.dsl.AbstractPPRu
 		// Want serializer to insert empty WS even if there is no node model
 		binder.bind(IHiddenTokenSequencer.class).to(com.puppetlabs.xtext.serializer.acceptor.HiddenTokenSequencer.class);
 
-		// Bind the default style sheet (TODO: Not a nice way to bind impl class - use names)
-		binder.bind(DomCSS.class).toProvider(PPStylesheetProvider.class);
-
 		// binder.bind(IIndentationInformation.class).to(IIndentationInformation.Default.class);
 		binder.bind(IIndentationInformation.class).to(PPIndentationInformation.class);
 
@@ -217,6 +216,14 @@ public class PPRuntimeModule extends com.puppetlabs.geppetto.pp.dsl.AbstractPPRu
 			PPOverridingLexer.class);
 	}
 
+	/**
+	 * Binds the default style sheet. The stylesheet is created anew each time it is requested.
+	 */
+	public void configureStylesheet(com.google.inject.Binder binder) {
+		// (TODO: Not a nice way to bind impl class - use names)
+		binder.bind(DomCSS.class).toProvider(PPStylesheetProvider.class);
+	}
+
 	// contributed by org.eclipse.xtext.generator.parser.antlr.ex.rt.AntlrGeneratorFragment
 	public com.google.inject.Provider<PPOverridingLexer> providePPOverridingLexer() {
 		return org.eclipse.xtext.parser.antlr.LexerProvider.create(PPOverridingLexer.class);
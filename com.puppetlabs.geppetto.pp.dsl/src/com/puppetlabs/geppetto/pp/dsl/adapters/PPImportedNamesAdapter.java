@@ -100,6 +100,39 @@ public class PPImportedNamesAdapter extends AdapterImpl {
 		importedNames.add(name);
 	}
 
+	/**
+	 * Adds everything recorded in the given adapter to this adapter.
+	 * 
+	 * @param other
+	 */
+	public void addAll(PPImportedNamesAdapter other) {
+		addAll(other, 0, 0);
+	}
+
+	/**
+	 * Adds everything recorded in the given adapter to this adapter, with the locations of the unresolved names moved
+	 * by the given number of lines and characters. This is used when the text that the names were recorded for has
+	 * moved.
+	 * 
+	 * @param other
+	 * @param lineDelta
+	 * @param offsetDelta
+	 */
+	public void addAll(PPImportedNamesAdapter other, int lineDelta, int offsetDelta) {
+		for(QualifiedName name : other.getNames())
+			add(name);
+		if(other.ambigousDescriptions != null)
+			addAmbiguous(other.ambigousDescriptions);
+		if(other.resolvedDescriptions != null)
+			addResolved(other.resolvedDescriptions);
+		if(other.unresolvedNames != null)
+			for(Map.Entry<QualifiedName, List<Location>> entry : other.unresolvedNames.entrySet())
+				for(Location location : entry.getValue())
+					addUnresolved(
+						entry.getKey(), location.getLine() + lineDelta, location.getOffset() + offsetDelta,
+						location.getLength());
+	}
+
 	/**
 	 * Adds a collection of ambiguous references to the set of x-references found to be ambiguous.
 	 * 
@@ -176,6 +209,7 @@ public class PPImportedNamesAdapter extends AdapterImpl {
 		importedNames = null;
 		unresolvedNames = null;
 		resolvedDescriptions = null;
+		ambigousDescriptions = null;
 	}
 
 	/**
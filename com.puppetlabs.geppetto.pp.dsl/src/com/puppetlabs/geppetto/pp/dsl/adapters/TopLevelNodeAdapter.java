@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.adapters;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.xtext.nodemodel.ICompositeNode;
+import org.eclipse.xtext.nodemodel.INode;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The TopLevelNodeAdapter associates values computed per top level node (i.e. each child of the root node) with a
+ * Resource, so that the values of the nodes that did not change can be reused when the resource has been parsed
+ * again. Since the values are kept by the resource, they are garbage collected with it.
+ * <p>
+ * A value must only depend on the text and the model of its node, and any offsets in it must be relative to the total
+ * offset of the node since unchanged nodes move when text before them changes.
+ * </p>
+ */
+public class TopLevelNodeAdapter extends AdapterImpl {
+	/**
+	 * Computes the value of a top level node.
+	 */
+	public interface Computer<T> {
+		T compute(INode topLevelNode);
+	}
+
+	/**
+	 * The text and the values of the composite top level nodes computed the last time.
+	 */
+	private static class Computed {
+		final String text;
+
+		final Map<INode, Object> values;
+
+		Computed(String text, Map<INode, Object> values) {
+			this.text = text;
+			this.values = values;
+		}
+	}
+
+	private static boolean touches(INode node, int start, int end) {
+		int nodeStart = node.getTotalOffset();
+		return nodeStart <= end && nodeStart + node.getTotalLength() >= start;
+	}
+
+	private final Map<Object, Computed> computed = Maps.newHashMap();
+
+	public synchronized void clear() {
+		computed.clear();
+	}
+
+	/**
+	 * Returns the values of the top level nodes of the given root node, in node order. A value computed by an earlier
+	 * call with the same key is reused when its node is still in the node model and does not touch the region of the
+	 * text that changed since that call. All other values are computed.
+	 *
+	 * @param root
+	 *            The root node of the resource
+	 * @param key
+	 *            Identifies the kind of values, values of different kinds are kept apart
+	 * @param type
+	 *            The type of the values
+	 * @param computer
+	 *            Computes the value of a node
+	 * @return The values, one per child of the root node
+	 */
+	public synchronized <T> List<T> getValues(ICompositeNode root, Object key, Class<T> type, Computer<T> computer) {
+		String text = root.getText();
+
+		// find the region of the text that changed since last time
+		Computed previous = computed.get(key);
+		int damageStart = 0;
+		int damageEnd = text.length();
+		if(previous != null) {
+			String previousText = previous.text;
+			int max = Math.min(text.length(), previousText.length());
+			while(damageStart < max && text.charAt(damageStart) == previousText.charAt(damageStart))
+				++damageStart;
+			int suffix = 0;
+			max -= damageStart;
+			while(suffix < max &&
+					text.charAt(text.length() - 1 - suffix) == previousText.charAt(previousText.length() - 1 - suffix))
+				++suffix;
+			damageEnd = text.length() - suffix;
+		}
+
+		// top level nodes that are the same as last time and that do not touch the damaged region are unchanged
+		Map<INode, Object> values = new IdentityHashMap<INode, Object>();
+		List<T> result = Lists.newArrayList();
+		for(INode child : root.getChildren()) {
+			T value = null;
+			if(child instanceof ICompositeNode) {
+				if(previous != null && !touches(child, damageStart, damageEnd))
+					value = type.cast(previous.values.get(child));
+				if(value == null)
+					value = computer.compute(child);
+				values.put(child, value);
+			}
+			else
+				value = computer.compute(child);
+			result.add(value);
+		}
+		computed.put(key, new Computed(text, values));
+		return result;
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type) {
+		return type == TopLevelNodeAdapter.class;
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.adapters;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.notify.impl.AdapterFactoryImpl;
+import org.eclipse.emf.ecore.resource.Resource;
+
+public class TopLevelNodeAdapterFactory extends AdapterFactoryImpl {
+	public static TopLevelNodeAdapterFactory eINSTANCE = new TopLevelNodeAdapterFactory();
+
+	/**
+	 * Returns the adapter of the given resource, the adapter is created if the resource does not have one.
+	 */
+	public synchronized TopLevelNodeAdapter adapt(Resource target) {
+		return TopLevelNodeAdapter.class.cast(super.adapt(target, TopLevelNodeAdapter.class));
+	}
+
+	@Override
+	protected Adapter createAdapter(Notifier target, Object type) {
+		return new TopLevelNodeAdapter();
+	}
+
+	@Override
+	public boolean isFactoryForType(Object type) {
+		return type == TopLevelNodeAdapter.class;
+	}
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.contentassist;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.xtext.naming.IQualifiedNameConverter;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescription.Delta;
+import org.eclipse.xtext.resource.IResourceDescription.Event;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath;
+
+/**
+ * An index of the exported objects of an {@link IResourceDescriptions} for content assist. The objects are kept per
+ * EClass, sorted on their lower case PP name (e.g. &quot;apache::vhost&quot;), which makes it possible to find all
+ * objects with a given name prefix without visiting the rest. The index is built on first use and is then kept up to
+ * date using the deltas of the events fired by the resource descriptions.
+ * <p>
+ * The index can only be maintained when the resource descriptions is an {@link IResourceDescription.Event.Source}. If
+ * it is not, the index is rebuilt every time it is used and the {@link #getModificationCount() modification count}
+ * changes every time it is read, since there is no way to tell if anything has changed.
+ * </p>
+ */
+@Singleton
+public class PPCompletionIndex implements IResourceDescription.Event.Listener {
+	private static class Candidate {
+		final IEObjectDescription description;
+
+		final int rank;
+
+		final int order;
+
+		Candidate(IEObjectDescription description, int rank, int order) {
+			this.description = description;
+			this.rank = rank;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * Iterates over the names of one EClass when the names of several EClasses are merged.
+	 */
+	private static class NameCursor {
+		final EClass eClass;
+
+		final Iterator<Map.Entry<String, List<IEObjectDescription>>> entries;
+
+		Map.Entry<String, List<IEObjectDescription>> current;
+
+		NameCursor(EClass eClass, Iterator<Map.Entry<String, List<IEObjectDescription>>> entries) {
+			this.eClass = eClass;
+			this.entries = entries;
+		}
+
+		boolean advance() {
+			if(!entries.hasNext())
+				return false;
+			current = entries.next();
+			return true;
+		}
+	}
+
+	/**
+	 * Orders candidates on search path position first, and then on name (i.e. the order in which they are visited).
+	 */
+	private static final Comparator<Candidate> RANKING = new Comparator<Candidate>() {
+		@Override
+		public int compare(Candidate a, Candidate b) {
+			if(a.rank != b.rank)
+				return a.rank < b.rank
+						? -1
+						: 1;
+			return a.order < b.order
+					? -1
+					: a.order == b.order
+							? 0
+							: 1;
+		}
+	};
+
+	private static final Comparator<Candidate> REVERSED_RANKING = Collections.reverseOrder(RANKING);
+
+	/**
+	 * Orders cursors on the name of their current entry, and then on the name of their EClass.
+	 */
+	private static final Comparator<NameCursor> NAME_ORDER = new Comparator<NameCursor>() {
+		@Override
+		public int compare(NameCursor a, NameCursor b) {
+			int cmp = a.current.getKey().compareTo(b.current.getKey());
+			if(cmp == 0)
+				cmp = a.eClass.getName().compareTo(b.eClass.getName());
+			return cmp;
+		}
+	};
+
+	private final IResourceDescriptions index;
+
+	private final boolean maintained;
+
+	@Inject
+	private IQualifiedNameConverter converter;
+
+	/**
+	 * The exported objects of each resource, keyed on the resource URI.
+	 */
+	private Map<URI, List<IEObjectDescription>> bySource;
+
+	/**
+	 * The exported objects per EClass, keyed on lower case name.
+	 */
+	private Map<EClass, NavigableMap<String, List<IEObjectDescription>>> byEClass;
+
+	private long modificationCount;
+
+	@Inject
+	public PPCompletionIndex(IResourceDescriptions index) {
+		this.index = index;
+		maintained = index instanceof IResourceDescription.Event.Source;
+		if(maintained)
+			((IResourceDescription.Event.Source) index).addListener(this);
+	}
+
+	private void add(URI sourceURI, IResourceDescription description) {
+		List<IEObjectDescription> exported = Lists.newArrayList();
+		for(IEObjectDescription d : description.getExportedObjects()) {
+			if(d.getQualifiedName().getSegmentCount() < 1)
+				continue;
+			exported.add(d);
+			NavigableMap<String, List<IEObjectDescription>> names = byEClass.get(d.getEClass());
+			if(names == null) {
+				names = new TreeMap<String, List<IEObjectDescription>>();
+				byEClass.put(d.getEClass(), names);
+			}
+			String key = keyOf(d);
+			List<IEObjectDescription> sameName = names.get(key);
+			if(sameName == null) {
+				sameName = Lists.newArrayListWithCapacity(1);
+				names.put(key, sameName);
+			}
+			sameName.add(d);
+		}
+		if(!exported.isEmpty())
+			bySource.put(sourceURI, exported);
+	}
+
+	@Override
+	public synchronized void descriptionsChanged(Event event) {
+		++modificationCount;
+		// nothing to maintain until the index has been used
+		if(bySource == null)
+			return;
+		for(Delta delta : event.getDeltas()) {
+			URI sourceURI = delta.getUri();
+			remove(sourceURI);
+			IResourceDescription description = delta.getNew();
+			if(description != null)
+				add(sourceURI, description);
+		}
+	}
+
+	private void ensureBuilt() {
+		if(bySource != null)
+			return;
+		bySource = Maps.newHashMap();
+		byEClass = Maps.newHashMap();
+		for(IResourceDescription description : index.getAllResourceDescriptions())
+			if(description != null)
+				add(description.getURI(), description);
+	}
+
+	/**
+	 * Returns the best ranked exported objects of the given classes (or their sub classes) with a name that starts
+	 * with the given prefix (case insensitive). The candidates are ranked on their position on the search path; objects
+	 * that are not on the search path are not included. Candidates with the same rank are ordered on the given classes
+	 * (earlier classes first) and then on name.
+	 *
+	 * @param prefix
+	 *            The name prefix in PP syntax, may be empty
+	 * @param eClasses
+	 *            The classes of the wanted objects
+	 * @param searchPath
+	 *            The search path used for ranking
+	 * @param filter
+	 *            Filter that the candidates must pass, typically a visibility check
+	 * @param limit
+	 *            The maximum number of objects to return
+	 * @return The best ranked objects, best first
+	 */
+	public synchronized List<IEObjectDescription> findPrefixed(String prefix, EClass[] eClasses,
+			PPSearchPath searchPath, Predicate<IEObjectDescription> filter, int limit) {
+		if(limit < 1)
+			return Collections.emptyList();
+		if(!maintained)
+			// changes are not reported so the index can not be trusted
+			bySource = null;
+		ensureBuilt();
+		String from = prefix.toLowerCase();
+		// all keys that start with the prefix sort before the prefix followed by the highest char
+		String to = from + Character.MAX_VALUE;
+
+		// bounded heap with the worst of the best candidates found so far on top
+		PriorityQueue<Candidate> best = new PriorityQueue<Candidate>(Math.max(1, limit), REVERSED_RANKING);
+		int order = 0;
+		Set<EClass> visited = Sets.newHashSet();
+		for(EClass wanted : eClasses) {
+			// merge the names of all matching classes so that candidates are visited in name order
+			PriorityQueue<NameCursor> cursors = new PriorityQueue<NameCursor>(4, NAME_ORDER);
+			for(Map.Entry<EClass, NavigableMap<String, List<IEObjectDescription>>> entry : byEClass.entrySet()) {
+				EClass eClass = entry.getKey();
+				if(!(wanted == eClass || wanted.isSuperTypeOf(eClass)) || !visited.add(eClass))
+					continue;
+				NameCursor cursor = new NameCursor(
+					eClass, entry.getValue().subMap(from, true, to, false).entrySet().iterator());
+				if(cursor.advance())
+					cursors.add(cursor);
+			}
+			while(!cursors.isEmpty()) {
+				NameCursor cursor = cursors.poll();
+				for(IEObjectDescription d : cursor.current.getValue()) {
+					int rank = searchPath.searchIndexOf(d);
+					if(rank < 0)
+						continue;
+					Candidate c = new Candidate(d, rank, order++);
+					if(best.size() >= limit) {
+						// only candidates that are better than the current worst can make it
+						if(RANKING.compare(c, best.peek()) >= 0)
+							continue;
+						if(!filter.apply(d))
+							continue;
+						best.poll();
+					}
+					else if(!filter.apply(d))
+						continue;
+					best.add(c);
+				}
+				if(cursor.advance())
+					cursors.add(cursor);
+			}
+		}
+		Candidate[] sorted = best.toArray(new Candidate[best.size()]);
+		Arrays.sort(sorted, RANKING);
+		List<IEObjectDescription> result = Lists.newArrayListWithCapacity(sorted.length);
+		for(Candidate c : sorted)
+			result.add(c.description);
+		return result;
+	}
+
+	/**
+	 * Returns a number that changes every time the resource descriptions change. This can be used to find out if
+	 * information derived from the resource descriptions must be recomputed. If the resource descriptions do not
+	 * report changes, the number is different every time.
+	 *
+	 * @return the modification count
+	 */
+	public synchronized long getModificationCount() {
+		return maintained
+				? modificationCount
+				: ++modificationCount;
+	}
+
+	private String keyOf(IEObjectDescription d) {
+		return converter.toString(d.getQualifiedName()).toLowerCase();
+	}
+
+	private void remove(URI sourceURI) {
+		List<IEObjectDescription> exported = bySource.remove(sourceURI);
+		if(exported == null)
+			return;
+		for(IEObjectDescription d : exported) {
+			NavigableMap<String, List<IEObjectDescription>> names = byEClass.get(d.getEClass());
+			if(names == null)
+				continue;
+			String key = keyOf(d);
+			List<IEObjectDescription> sameName = names.get(key);
+			if(sameName == null)
+				continue;
+			sameName.remove(d);
+			if(sameName.isEmpty())
+				names.remove(key);
+		}
+	}
+}
@@ -226,6 +226,44 @@ public class PPProposalsGenerator {
 		return computeProposals(currentName, descs, false, searchPath, types);
 	}
 
+	/**
+	 * Same as {@link #computeProposals(String, Collection, boolean, PPSearchPath, EClass...)} but the candidates are
+	 * found using the given index instead of scoring every visible description.
+	 * 
+	 * @param currentName
+	 *            the name for which proposals are to be generated
+	 * @param index
+	 *            index of the available named values
+	 * @param upperCaseProposals
+	 * @param searchPath
+	 * @param types
+	 *            if stated, the wanted types of named values
+	 * @return
+	 *         array of proposals, possibly empty, but never null.
+	 */
+	public String[] computeProposals(final String currentName, PPSuggestionIndex index, boolean upperCaseProposals,
+			PPSearchPath searchPath, EClass... types) {
+		if(currentName == null || currentName.length() < 1)
+			return new String[0];
+
+		// the 5 best matches with a score <= 5
+		List<IEObjectDescription> closest = index.findClosest(currentName, searchPath, 5, 5, types);
+		String[] proposals = new String[closest.size()];
+		for(int i = 0; i < proposals.length; i++)
+			proposals[i] = converter.toString(closest.get(i).getName());
+
+		DoubleMetaphone encoder = new DoubleMetaphone();
+		Arrays.sort(proposals, new PronunciationComparator(encoder, encoder.encode(currentName)));
+		return upperCaseProposals
+				? toUpperCaseProposals(proposals)
+				: proposals;
+	}
+
+	public String[] computeProposals(final String currentName, PPSuggestionIndex index, PPSearchPath searchPath,
+			EClass... types) {
+		return computeProposals(currentName, index, false, searchPath, types);
+	}
+
 	public Collection<String> generateAttributeCandidates(final QualifiedName currentName,
 			Collection<IEObjectDescription> descs, PPSearchPath searchPath) {
 		// find candidate names
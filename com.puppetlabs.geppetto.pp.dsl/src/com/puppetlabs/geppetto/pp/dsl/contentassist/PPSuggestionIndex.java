@@ -0,0 +1,434 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.contentassist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.xtext.naming.IQualifiedNameConverter;
+import org.eclipse.xtext.resource.IEObjectDescription;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath;
+
+/**
+ * An index of named descriptions that finds the names closest to a given (unresolved) name. The names are scored the
+ * same way as in {@link PPProposalsGenerator#computeProposals(String, Collection, PPSearchPath, EClass...)}, i.e. on
+ * their Levenshtein distance to the given name, or, when the Double Metaphone encodings of the names are equal or one
+ * starts or ends with the other, on the distance between the encodings.
+ * <p>
+ * The descriptions are partitioned on EClass. Each partition holds a BK-tree over its names, which makes it possible
+ * to find the names within a given distance without computing the distance to all of them, and the encodings of its
+ * names sorted per encoding length, both as is and reversed, for the prefix and suffix matches. The search radius
+ * shrinks as soon as enough candidates have been found.
+ * </p>
+ * <p>
+ * Candidates with the same score are ranked on name, and then on the URI of the described object, so the result does
+ * not depend on the order in which the names are visited.
+ * </p>
+ * <p>
+ * An index is immutable and can be shared between threads. Use {@link #overlay(Collection, String)} to combine a
+ * shared index with the (dirty) descriptions of a single resource.
+ * </p>
+ */
+public class PPSuggestionIndex {
+	private static class Candidate {
+		final IEObjectDescription description;
+
+		final String name;
+
+		final int score;
+
+		final String uri;
+
+		Candidate(IEObjectDescription description, String name, int score) {
+			this.description = description;
+			this.name = name;
+			this.score = score;
+			this.uri = description.getEObjectURI().toString();
+		}
+	}
+
+	/**
+	 * A node in the BK-tree, i.e. a distinct name and the descriptions having that name. The children are keyed on
+	 * their distance to this node's name.
+	 */
+	private static class Node {
+		final String name;
+
+		final String metaphone;
+
+		final List<IEObjectDescription> descriptions = Lists.newArrayListWithCapacity(1);
+
+		Map<Integer, Node> children;
+
+		Node(String name, String metaphone) {
+			this.name = name;
+			this.metaphone = metaphone;
+		}
+	}
+
+	private static class Partition {
+		final EClass eClass;
+
+		final Map<String, Node> byName = Maps.newHashMap();
+
+		/**
+		 * Nodes keyed on their metaphone, one map per metaphone length.
+		 */
+		final List<NavigableMap<String, List<Node>>> byMetaphone = Lists.newArrayList();
+
+		/**
+		 * Nodes keyed on their reversed metaphone, one map per metaphone length.
+		 */
+		final List<NavigableMap<String, List<Node>>> byReversedMetaphone = Lists.newArrayList();
+
+		Node root;
+
+		Partition(EClass eClass) {
+			this.eClass = eClass;
+		}
+
+		void add(String name, IEObjectDescription d, DoubleMetaphone encoder) {
+			Node node = byName.get(name);
+			if(node == null) {
+				node = new Node(name, encoder.encode(name));
+				byName.put(name, node);
+				insert(node);
+				addToMetaphoneIndex(byMetaphone, node.metaphone, node);
+				addToMetaphoneIndex(byReversedMetaphone, reverse(node.metaphone), node);
+			}
+			node.descriptions.add(d);
+		}
+
+		private void insert(Node node) {
+			if(root == null) {
+				root = node;
+				return;
+			}
+			Node n = root;
+			for(;;) {
+				Integer distance = StringUtils.getLevenshteinDistance(node.name, n.name);
+				if(n.children == null)
+					n.children = Maps.newHashMap();
+				Node child = n.children.get(distance);
+				if(child == null) {
+					n.children.put(distance, node);
+					return;
+				}
+				n = child;
+			}
+		}
+	}
+
+	/**
+	 * The state of a search, keeps the best candidates found so far.
+	 */
+	private static class Selection {
+		final int count;
+
+		final int cap;
+
+		final PPSearchPath searchPath;
+
+		final Map<IEObjectDescription, Candidate> selected = Maps.newHashMap();
+
+		final PriorityQueue<Candidate> worstFirst;
+
+		Selection(int count, int cap, PPSearchPath searchPath) {
+			this.count = count;
+			this.cap = cap;
+			this.searchPath = searchPath;
+			worstFirst = new PriorityQueue<Candidate>(Math.max(1, count), Collections.reverseOrder(RANKING));
+		}
+
+		void offer(Node node, int score, String hiddenPath) {
+			if(score > radius())
+				return;
+			for(IEObjectDescription d : node.descriptions) {
+				if(hiddenPath != null && hiddenPath.equals(d.getEObjectURI().path()))
+					continue;
+				// filter based on path visibility
+				if(searchPath.searchIndexOf(d) == -1)
+					continue;
+				Candidate c = new Candidate(d, node.name, score);
+				Candidate existing = selected.get(d);
+				if(existing != null) {
+					// keep the best score of each description
+					if(existing.score <= score)
+						continue;
+					worstFirst.remove(existing);
+					selected.remove(d);
+				}
+				else if(selected.size() >= count) {
+					// a candidate with the same score as the worst can still make it if it ranks higher
+					if(RANKING.compare(c, worstFirst.peek()) >= 0)
+						continue;
+					selected.remove(worstFirst.poll().description);
+				}
+				selected.put(d, c);
+				worstFirst.add(c);
+			}
+		}
+
+		/**
+		 * @return the highest score that can still make it into the selection
+		 */
+		int radius() {
+			return selected.size() < count
+					? cap
+					: worstFirst.peek().score;
+		}
+
+		List<IEObjectDescription> result() {
+			Candidate[] sorted = worstFirst.toArray(new Candidate[worstFirst.size()]);
+			Arrays.sort(sorted, RANKING);
+			List<IEObjectDescription> result = Lists.newArrayListWithCapacity(sorted.length);
+			for(Candidate c : sorted)
+				result.add(c.description);
+			return result;
+		}
+	}
+
+	/**
+	 * Orders candidates on score, and then on name and the URI of the described object.
+	 */
+	private static final Comparator<Candidate> RANKING = new Comparator<Candidate>() {
+		@Override
+		public int compare(Candidate a, Candidate b) {
+			if(a.score != b.score)
+				return a.score < b.score
+						? -1
+						: 1;
+			int cmp = a.name.compareTo(b.name);
+			if(cmp == 0)
+				cmp = a.uri.compareTo(b.uri);
+			return cmp;
+		}
+	};
+
+	private static void addToMetaphoneIndex(List<NavigableMap<String, List<Node>>> index, String key, Node node) {
+		while(index.size() <= key.length())
+			index.add(new TreeMap<String, List<Node>>());
+		NavigableMap<String, List<Node>> sameLength = index.get(key.length());
+		List<Node> nodes = sameLength.get(key);
+		if(nodes == null) {
+			nodes = Lists.newArrayListWithCapacity(1);
+			sameLength.put(key, nodes);
+		}
+		nodes.add(node);
+	}
+
+	private static boolean isWanted(EClass c, EClass[] types) {
+		if(types == null || types.length == 0)
+			return true;
+		for(EClass wanted : types)
+			if(wanted == c || wanted.isSuperTypeOf(c))
+				return true;
+		return false;
+	}
+
+	private static String reverse(String s) {
+		return new StringBuilder(s).reverse().toString();
+	}
+
+	private final IQualifiedNameConverter converter;
+
+	private final DoubleMetaphone encoder = new DoubleMetaphone();
+
+	private final Map<EClass, Partition> partitions = Maps.newLinkedHashMap();
+
+	/**
+	 * The descriptions this index was built from, see {@link #isBuiltFrom(List)}.
+	 */
+	private final List<IEObjectDescription> source;
+
+	private final PPSuggestionIndex base;
+
+	private final String hiddenPath;
+
+	/**
+	 * Creates an index of the given descriptions.
+	 *
+	 * @param descriptions
+	 *            The descriptions to index, descriptions with an empty name are ignored
+	 * @param converter
+	 *            Converter used to produce the PP name of each description
+	 */
+	public PPSuggestionIndex(List<IEObjectDescription> descriptions, IQualifiedNameConverter converter) {
+		this(descriptions, converter, null, null);
+	}
+
+	private PPSuggestionIndex(List<IEObjectDescription> descriptions, IQualifiedNameConverter converter,
+			PPSuggestionIndex base, String hiddenPath) {
+		this.converter = converter;
+		this.source = descriptions;
+		this.base = base;
+		this.hiddenPath = hiddenPath;
+		for(IEObjectDescription d : descriptions) {
+			if(d.getName().getSegmentCount() < 1)
+				continue;
+			EClass c = d.getEClass();
+			Partition p = partitions.get(c);
+			if(p == null) {
+				p = new Partition(c);
+				partitions.put(c, p);
+			}
+			p.add(converter.toString(d.getName()), d, encoder);
+		}
+	}
+
+	private void collect(Selection selection, String name, String metaphone, EClass[] types, String hidden) {
+		String reversedMetaphone = reverse(metaphone);
+		for(Partition p : partitions.values()) {
+			if(!isWanted(p.eClass, types))
+				continue;
+
+			// metaphone matches are scored on the pronounciation distance, which for a metaphone that starts or ends
+			// with the wanted metaphone is the difference in length
+			for(int extra = 0; extra <= selection.radius(); ++extra) {
+				int length = metaphone.length() + extra;
+				if(length >= p.byMetaphone.size())
+					break;
+				collectPrefixed(selection, p.byMetaphone.get(length), metaphone, extra, hidden);
+				collectPrefixed(selection, p.byReversedMetaphone.get(length), reversedMetaphone, extra, hidden);
+			}
+			if(p.root != null)
+				search(selection, p.root, name, hidden);
+		}
+	}
+
+	private void collectPrefixed(Selection selection, NavigableMap<String, List<Node>> index, String prefix, int score,
+			String hidden) {
+		// all keys that start with the prefix sort before the prefix followed by the highest char
+		for(List<Node> nodes : index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values())
+			for(Node node : nodes)
+				selection.offer(node, score, hidden);
+	}
+
+	/**
+	 * Returns the descriptions with the names closest to the given name, best first.
+	 *
+	 * @param name
+	 *            The name for which proposals are wanted
+	 * @param searchPath
+	 *            Only descriptions on the search path are considered
+	 * @param count
+	 *            The maximum number of descriptions to return
+	 * @param cap
+	 *            The highest score (distance) that a description may have
+	 * @param types
+	 *            if stated, the wanted types of named values
+	 * @return The closest descriptions, possibly empty
+	 */
+	public List<IEObjectDescription> findClosest(String name, PPSearchPath searchPath, int count, int cap,
+			EClass... types) {
+		if(count < 1)
+			return Collections.emptyList();
+		Selection selection = new Selection(count, cap, searchPath);
+		String metaphone = encoder.encode(name);
+		for(PPSuggestionIndex index = this; index != null; index = index.base)
+			index.collect(selection, name, metaphone, types, index == this
+					? null
+					: hiddenPathFor(index));
+		return selection.result();
+	}
+
+	/**
+	 * Returns the path hidden from the given base index by this index or one of its bases.
+	 */
+	private String hiddenPathFor(PPSuggestionIndex index) {
+		for(PPSuggestionIndex overlay = this; overlay != index; overlay = overlay.base)
+			if(overlay.hiddenPath != null)
+				return overlay.hiddenPath;
+		return null;
+	}
+
+	/**
+	 * Returns <code>true</code> if this index was built from the very same descriptions, in the same order, as the
+	 * given list.
+	 *
+	 * @param descriptions
+	 * @return <code>true</code> if the index can be used for the given descriptions
+	 */
+	public boolean isBuiltFrom(List<IEObjectDescription> descriptions) {
+		int top = source.size();
+		if(descriptions.size() != top)
+			return false;
+		for(int i = 0; i < top; ++i)
+			if(source.get(i) != descriptions.get(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Creates an index that contains the given descriptions, and the descriptions in this index except those that
+	 * are in the resource with the given path. This index is not copied, which makes this cheap when the number of
+	 * added descriptions is small.
+	 *
+	 * @param added
+	 *            Descriptions to add, typically the dirty exports of the resource with the hidden path
+	 * @param hiddenPath
+	 *            The path of the resource whose descriptions in this index should be hidden, may be
+	 *            <code>null</code>
+	 * @return the combined index
+	 */
+	public PPSuggestionIndex overlay(Collection<IEObjectDescription> added, String hiddenPath) {
+		return new PPSuggestionIndex(Lists.newArrayList(added), converter, this, hiddenPath);
+	}
+
+	private void search(Selection selection, Node root, String name, String hidden) {
+		// depth first, the children closest to the wanted distance are visited first and are skipped if the radius
+		// has shrunk below their minimum distance by the time they are popped
+		List<Node> stack = Lists.newArrayList();
+		List<Integer> minimumDistances = Lists.newArrayList();
+		stack.add(root);
+		minimumDistances.add(0);
+		while(!stack.isEmpty()) {
+			int last = stack.size() - 1;
+			Node n = stack.remove(last);
+			int minimum = minimumDistances.remove(last);
+			int radius = selection.radius();
+			if(minimum > radius)
+				continue;
+			int distance = StringUtils.getLevenshteinDistance(name, n.name);
+			selection.offer(n, distance, hidden);
+			if(n.children == null)
+				continue;
+			radius = selection.radius();
+			for(int delta = radius; delta >= 0; --delta) {
+				Node child = n.children.get(distance + delta);
+				if(child != null) {
+					stack.add(child);
+					minimumDistances.add(delta);
+				}
+				if(delta > 0 && distance - delta > 0) {
+					child = n.children.get(distance - delta);
+					if(child != null) {
+						stack.add(child);
+						minimumDistances.add(delta);
+					}
+				}
+			}
+		}
+	}
+}
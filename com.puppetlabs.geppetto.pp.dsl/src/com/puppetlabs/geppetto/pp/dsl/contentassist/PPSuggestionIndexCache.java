@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.contentassist;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.xtext.naming.IQualifiedNameConverter;
+import org.eclipse.xtext.resource.IEObjectDescription;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Keeps the most recently used {@link PPSuggestionIndex} instances so that all resources that see the same exported
+ * descriptions (typically all resources in a project) share one index. An index is reused when it was built from the
+ * very same description instances, which is the case until the resource descriptions change.
+ */
+@Singleton
+public class PPSuggestionIndexCache {
+	private static final int MAX_SIZE = 4;
+
+	@Inject
+	private IQualifiedNameConverter converter;
+
+	/**
+	 * Most recently used first
+	 */
+	private final LinkedList<PPSuggestionIndex> recent = Lists.newLinkedList();
+
+	/**
+	 * Returns an index of the given descriptions, reusing an earlier index if possible.
+	 *
+	 * @param descriptions
+	 *            The descriptions to index, must not be modified after this call
+	 * @return the index
+	 */
+	public synchronized PPSuggestionIndex get(List<IEObjectDescription> descriptions) {
+		for(Iterator<PPSuggestionIndex> itor = recent.iterator(); itor.hasNext();) {
+			PPSuggestionIndex index = itor.next();
+			if(index.isBuiltFrom(descriptions)) {
+				itor.remove();
+				recent.addFirst(index);
+				return index;
+			}
+		}
+		PPSuggestionIndex index = new PPSuggestionIndex(descriptions, converter);
+		recent.addFirst(index);
+		if(recent.size() > MAX_SIZE)
+			recent.removeLast();
+		return index;
+	}
+}
@@ -356,6 +356,87 @@ public class PPExpressionEquivalenceCalculator {
 		return -1;
 	}
 
+	private int hashName(String name) {
+		if(name == null)
+			return 0;
+		if(name.startsWith("$"))
+			name = name.substring(1);
+		return name.hashCode();
+	}
+
+	/**
+	 * Computes a structural hash of the given expression that is consistent with {@link #isEquivalent(Object, Object)}
+	 * in that two expressions that are equivalent always have the same hash. The reverse is not true, expressions with
+	 * the same hash are not necessarily equivalent. This makes it possible to bucket a set of expressions by hash and
+	 * only compare the expressions within each bucket.
+	 * <p>
+	 * String values are hashed on their text so that a string, a name and a variable with the same name end up in the
+	 * same bucket. Expressions that are only compared on their source text are hashed on that text.
+	 * </p>
+	 * 
+	 * @param e
+	 *            the expression, a text expression, or a string
+	 * @return the structural hash
+	 */
+	public int structuralHash(Object e) {
+		if(e == null)
+			return 0;
+		if(e instanceof String)
+			return e.hashCode();
+		if(e instanceof FunctionCall) {
+			FunctionCall fc = (FunctionCall) e;
+			int hash = structuralHash(fc.getLeftExpr());
+			for(Expression p : fc.getParameters())
+				hash = 31 * hash + structuralHash(p);
+			return hash;
+		}
+		if(e instanceof DoubleQuotedString) {
+			// A string with a single part is equivalent to that part
+			EList<TextExpression> parts = ((DoubleQuotedString) e).getStringPart();
+			if(parts.size() == 1)
+				return structuralHash(parts.get(0));
+			int hash = 1;
+			for(TextExpression part : parts)
+				hash = 31 * hash + structuralHash(part);
+			return hash;
+		}
+		if(e instanceof UnquotedString)
+			return structuralHash(((UnquotedString) e).getExpression());
+		if(e instanceof SingleQuotedString)
+			return structuralHash(((SingleQuotedString) e).getText());
+		if(e instanceof ExpressionTE) {
+			Expression tmp = ((ExpressionTE) e).getExpression();
+			if(tmp instanceof ParenthesisedExpression)
+				tmp = ((ParenthesisedExpression) tmp).getExpr();
+			return structuralHash(tmp);
+		}
+		if(e instanceof VariableTE)
+			return hashName(((VariableTE) e).getVarName());
+		if(e instanceof VerbatimTE)
+			return structuralHash(((VerbatimTE) e).getText());
+		if(e instanceof LiteralName)
+			return structuralHash(((LiteralName) e).getValue());
+		if(e instanceof LiteralNameOrReference)
+			return structuralHash(((LiteralNameOrReference) e).getValue());
+		if(e instanceof LiteralUndef)
+			return "undef".hashCode();
+		if(e instanceof LiteralDefault)
+			return "default".hashCode();
+		if(e instanceof LiteralBoolean)
+			return Boolean.valueOf(((LiteralBoolean) e).isValue()).hashCode();
+		if(e instanceof LiteralRegex)
+			return structuralHash(((LiteralRegex) e).getValue());
+		if(e instanceof VariableExpression)
+			return hashName(((VariableExpression) e).getVarName());
+		if(e instanceof EObject) {
+			// no eq possible, equivalence is determined by source text
+			INode n = NodeModelUtils.getNode((EObject) e);
+			if(n != null)
+				return NodeModelUtils.getTokenText(n).hashCode();
+		}
+		return 0;
+	}
+
 	public Boolean isEquivalent(Object e1, Object e2) {
 		if(e1 == e2)
 			return Boolean.TRUE;
@@ -21,6 +21,7 @@ import com.puppetlabs.xtext.dommodel.IDomNode;
 import com.puppetlabs.xtext.dommodel.formatter.DelegatingLayoutContext;
 import com.puppetlabs.xtext.dommodel.formatter.DomNodeLayoutFeeder;
 import com.puppetlabs.xtext.dommodel.formatter.ILayoutManager.ILayoutContext;
+import com.puppetlabs.xtext.dommodel.formatter.LayoutUtils;
 import com.puppetlabs.xtext.dommodel.formatter.css.Alignment;
 import com.puppetlabs.xtext.dommodel.formatter.css.IStyleFactory;
 import com.puppetlabs.xtext.dommodel.formatter.css.StyleSet;
@@ -30,7 +31,6 @@ import com.puppetlabs.xtext.textflow.TextFlow;
 import org.eclipse.xtext.RuleCall;
 
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -156,17 +156,17 @@ public class CaseLayout {
 
 	private boolean compactable(List<IDomNode> colonNodes, List<Integer> remainingWidths, ILayoutContext context) {
 		// must measure each, stop if not all fits, otherwise prevent compaction
-		final Predicate<IDomNode> alwaysFalse = Predicates.<IDomNode> alwaysFalse();
 		for(int i = 0; i < colonNodes.size(); i++) {
 			IDomNode p = colonNodes.get(i).getParent();
 			IDomNode statements = DomModelUtils.nodeForGrammarElement(
 				p, grammarAccess.getCaseAccess().getStatementsExpressionListParserRuleCall_4_0());
 			DelegatingLayoutContext caseStatementContext = new DelegatingLayoutContext(context, remainingWidths.get(i));
 			TextFlow caseStatementFlow = new TextFlow(caseStatementContext);
+			// stop measuring as soon as the statements are known not to fit
 			if(statements != null)
 				feeder.sequence(
 					statements, caseStatementFlow, caseStatementContext, new SkipInitialWhitespacePredicate(),
-					alwaysFalse);
+					LayoutUtils.untilOverflow(caseStatementFlow, 1, remainingWidths.get(i)));
 			// only 1 line high and did not overflow
 			if(!(caseStatementFlow.getHeight() <= 1 && caseStatementFlow.getWidthOfLastLine() <= remainingWidths.get(i))) {
 				return false;
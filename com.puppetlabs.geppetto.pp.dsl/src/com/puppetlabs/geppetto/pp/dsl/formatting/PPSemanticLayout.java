@@ -61,7 +61,6 @@ import org.eclipse.xtext.util.Pair;
 import org.eclipse.xtext.util.Tuples;
 
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -170,8 +169,6 @@ public class PPSemanticLayout extends DeclarativeSemanticFlowLayout {
 	@Inject
 	private DomNodeLayoutFeeder feeder;
 
-	private static Predicate<IDomNode> untilTheEnd = Predicates.alwaysFalse();
-
 	@Inject
 	IStyleFactory styles;
 
@@ -320,7 +317,9 @@ public class PPSemanticLayout extends DeclarativeSemanticFlowLayout {
 			DelegatingLayoutContext dlc = new DelegatingLayoutContext(context);
 			MeasuredTextFlow continuedFlow = new MeasuredTextFlow((MeasuredTextFlow) flow);
 			int heightBefore = continuedFlow.getHeight();
-			feeder.sequence(node.getChildren(), continuedFlow, dlc, new FirstLeafWithTextAndTheRest(), untilTheEnd);
+			// no need to measure beyond the height that prevents compaction
+			feeder.sequence(node.getChildren(), continuedFlow, dlc, new FirstLeafWithTextAndTheRest(), //
+				LayoutUtils.untilOverflow(continuedFlow, heightBefore + 2, Integer.MAX_VALUE));
 			if(continuedFlow.getHeight() - heightBefore > 2) {
 				node.getStyleClassifiers().remove(ResourceStyle.COMPACTABLE);
 			}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.linking;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.resource.IEObjectDescription;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Finds the closest exported container of an object given the exported descriptions of its resource. An exported
+ * description is a container of an object when it is in the same resource and its URI fragment is a prefix of the
+ * fragment of the object's URI. The closest container is the one with the longest fragment. When several descriptions
+ * have the same fragment, the first one given to the index is used.
+ * <p>
+ * The fragments are kept sorted per resource path, which makes each lookup logarithmic in the number of exported
+ * descriptions instead of linear.
+ * </p>
+ */
+public class ExportedContainerIndex {
+	private static int commonPrefixLength(String a, String b) {
+		int max = Math.min(a.length(), b.length());
+		int idx = 0;
+		while(idx < max && a.charAt(idx) == b.charAt(idx))
+			++idx;
+		return idx;
+	}
+
+	private final Map<String, TreeMap<String, IEObjectDescription>> byPath = Maps.newHashMap();
+
+	public ExportedContainerIndex(Iterable<IEObjectDescription> exportedElements) {
+		for(IEObjectDescription desc : exportedElements) {
+			URI uri = desc.getEObjectURI();
+			String fragment = uri.fragment();
+			if(fragment == null || fragment.length() == 0)
+				continue;
+			TreeMap<String, IEObjectDescription> fragments = byPath.get(uri.path());
+			if(fragments == null) {
+				fragments = new TreeMap<String, IEObjectDescription>();
+				byPath.put(uri.path(), fragments);
+			}
+			if(!fragments.containsKey(fragment))
+				fragments.put(fragment, desc);
+		}
+	}
+
+	/**
+	 * Returns the closest exported container of the object with the given URI.
+	 *
+	 * @param containedURI
+	 *            The URI of the contained object
+	 * @return The closest container or <code>null</code> if there is no exported container
+	 */
+	public IEObjectDescription findClosestContainer(URI containedURI) {
+		String fragment = containedURI.fragment();
+		if(fragment == null)
+			return null;
+		TreeMap<String, IEObjectDescription> fragments = byPath.get(containedURI.path());
+		if(fragments == null)
+			return null;
+
+		// All prefixes of the fragment sort before it. When the floor is not a prefix, no candidate longer than
+		// the common prefix of the floor and the fragment can be a prefix, so the search continues from there.
+		String key = fragment;
+		for(;;) {
+			Map.Entry<String, IEObjectDescription> floor = fragments.floorEntry(key);
+			if(floor == null)
+				return null;
+			String candidate = floor.getKey();
+			if(fragment.startsWith(candidate))
+				return floor.getValue();
+			int common = commonPrefixLength(candidate, fragment);
+			if(common == 0)
+				return null;
+			key = fragment.substring(0, common);
+		}
+	}
+}
@@ -16,7 +16,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+import com.puppetlabs.geppetto.common.tracer.Histogram;
 import com.puppetlabs.geppetto.common.tracer.ITracer;
+import com.puppetlabs.geppetto.common.tracer.Metrics;
+import com.puppetlabs.geppetto.common.tracer.Timer;
 import com.puppetlabs.geppetto.pp.AppendExpression;
 import com.puppetlabs.geppetto.pp.AssignmentExpression;
 import com.puppetlabs.geppetto.pp.BinaryExpression;
@@ -31,6 +34,8 @@ import com.puppetlabs.geppetto.pp.ResourceBody;
 import com.puppetlabs.geppetto.pp.VariableExpression;
 import com.puppetlabs.geppetto.pp.dsl.PPDSLConstants;
 import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapter;
+import com.puppetlabs.geppetto.pp.dsl.contentassist.PPSuggestionIndex;
+import com.puppetlabs.geppetto.pp.dsl.contentassist.PPSuggestionIndexCache;
 import com.puppetlabs.geppetto.pp.dsl.linking.NameInScopeFilter.Match;
 import com.puppetlabs.geppetto.pp.dsl.linking.NameInScopeFilter.SearchStrategy;
 import com.puppetlabs.geppetto.pp.dsl.linking.PPSearchPath.ISearchPathProvider;
@@ -131,6 +136,21 @@ public class PPFinder {
 
 	private Multimap<String, IEObjectDescription> exportedPerLastSegment;
 
+	/**
+	 * The exports of the current resource (possibly dirty)
+	 */
+	private List<IEObjectDescription> currentExports;
+
+	/**
+	 * The exports from the visible containers, including those of the current resource
+	 */
+	private List<IEObjectDescription> visibleExports;
+
+	private PPSuggestionIndex suggestionIndex;
+
+	@Inject
+	private PPSuggestionIndexCache suggestionIndexCache;
+
 	/**
 	 * Access to the 'pp' services (container management and more).
 	 */
@@ -164,12 +184,25 @@ public class PPFinder {
 	@Named(PPDSLConstants.PP_DEBUG_LINKER)
 	private ITracer tracer;
 
+	private final Metrics metrics;
+
+	private final Timer findExternalTimer;
+
+	private final Histogram findExternalMatches;
+
 	private Map<String, IEObjectDescription> metaCache;
 
 	private Map<String, IEObjectDescription> metaVarCache;
 
 	private List<IEObjectDescription> exportedPatternVariables;
 
+	@Inject
+	public PPFinder(Metrics metrics) {
+		this.metrics = metrics;
+		findExternalTimer = metrics.timer("pp.finder.findExternal");
+		findExternalMatches = metrics.histogram("pp.finder.findExternal.matches");
+	}
+
 	private void buildExportedObjectsIndex(IResourceDescription descr, IResourceDescriptions descriptionIndex) {
 		// The current (possibly dirty) exported resources
 		IResourceDescription dirty = resourceServiceProvider.getResourceDescriptionManager().getResourceDescription(
@@ -178,26 +211,38 @@ public class PPFinder {
 
 		Multimap<String, IEObjectDescription> map = ArrayListMultimap.create();
 		List<IEObjectDescription> patternedVariables = Lists.newArrayList();
+		List<IEObjectDescription> current = Lists.newArrayList();
+		List<IEObjectDescription> visible = Lists.newArrayList();
 		// add all (possibly dirty in global index)
 		// check for empty qualified names which may be present in case of syntax errors / while editing etc.
 		// empty names are simply skipped (they can not be found anyway).
 		//
 		for(IEObjectDescription d : dirty.getExportedObjects())
-			if(d.getQualifiedName().getSegmentCount() >= 1)
+			if(d.getQualifiedName().getSegmentCount() >= 1) {
 				map.put(d.getQualifiedName().getLastSegment(), d);
+				current.add(d);
+			}
 		// add all from global index, except those for current resource
 		for(IEObjectDescription d : getExportedObjects(descr, descriptionIndex))
-			if(!d.getEObjectURI().path().equals(pathToCurrent) && d.getQualifiedName().getSegmentCount() >= 1) {
+			if(d.getQualifiedName().getSegmentCount() >= 1) {
 				// patterned based names are exceptional
 				if(d.getUserData(PPDSLConstants.VARIABLE_PATTERN) != null) {
-					patternedVariables.add(d);
+					if(!d.getEObjectURI().path().equals(pathToCurrent))
+						patternedVariables.add(d);
 				}
 				else {
-					map.put(d.getQualifiedName().getLastSegment(), d);
+					// the current resource is kept in the list that is shared with other resources, and is hidden
+					// from the suggestions instead
+					visible.add(d);
+					if(!d.getEObjectURI().path().equals(pathToCurrent))
+						map.put(d.getQualifiedName().getLastSegment(), d);
 				}
 			}
 		exportedPerLastSegment = map;
 		exportedPatternVariables = patternedVariables;
+		currentExports = current;
+		visibleExports = visible;
+		suggestionIndex = null;
 	}
 
 	private void cacheMetaParameters(EObject scopeDetermeningObject) {
@@ -325,6 +370,17 @@ public class PPFinder {
 
 	private SearchResult findExternal(EObject scopeDetermeningObject, QualifiedName fqn,
 			PPImportedNamesAdapter importedNames, SearchStrategy matchingStrategy, EClass... eClasses) {
+		if(!metrics.isEnabled())
+			return searchExternal(scopeDetermeningObject, fqn, importedNames, matchingStrategy, eClasses);
+		long start = System.nanoTime();
+		SearchResult result = searchExternal(scopeDetermeningObject, fqn, importedNames, matchingStrategy, eClasses);
+		findExternalTimer.stop(start);
+		findExternalMatches.record(result.getRaw().size());
+		return result;
+	}
+
+	private SearchResult searchExternal(EObject scopeDetermeningObject, QualifiedName fqn,
+			PPImportedNamesAdapter importedNames, SearchStrategy matchingStrategy, EClass... eClasses) {
 		if(scopeDetermeningObject == null)
 			throw new IllegalArgumentException("scope determening object is null");
 		if(fqn == null)
@@ -671,6 +727,20 @@ public class PPFinder {
 		return Collections.unmodifiableCollection(exportedPatternVariables);
 	}
 
+	/**
+	 * Produces an index for finding the names that are close to a given name among everything visible to the
+	 * resource (i.e. the same descriptions as {@link #getExportedDescriptions()}). The part of the index that
+	 * covers the visible containers is shared with other resources that see the same descriptions.
+	 * 
+	 * @return
+	 */
+	public PPSuggestionIndex getSuggestionIndex() {
+		if(suggestionIndex == null)
+			suggestionIndex = suggestionIndexCache.get(visibleExports).overlay(
+				currentExports, resource.getURI().path());
+		return suggestionIndex;
+	}
+
 	/**
 	 * Produces an unmodifiable Multimap mapping from last segment to list of visible exports
 	 * ending with that value.
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.linking;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.resource.IReferenceDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescription.Delta;
+import org.eclipse.xtext.resource.IResourceDescription.Event;
+import org.eclipse.xtext.resource.IResourceDescriptions;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A reverse index of the reference descriptions found in an {@link IResourceDescriptions}, keyed on the URI of the
+ * referenced (target) object. The index is built on first use and is then kept up to date using the deltas of the
+ * events fired by the resource descriptions.
+ * <p>
+ * The index can only be maintained when the resource descriptions is an {@link IResourceDescription.Event.Source}. If
+ * it is not, {@link #isAvailable()} returns <code>false</code> and callers must scan the resource descriptions.
+ * </p>
+ */
+@Singleton
+public class PPReferenceIndex implements IResourceDescription.Event.Listener {
+
+	private final IResourceDescriptions index;
+
+	private final boolean available;
+
+	/**
+	 * The reference descriptions of each source resource, keyed on the source resource URI.
+	 */
+	private Map<URI, List<IReferenceDescription>> bySource;
+
+	/**
+	 * The reference descriptions per target, keyed on the target object URI and then on the source resource URI.
+	 */
+	private Map<URI, Map<URI, List<IReferenceDescription>>> byTarget;
+
+	@Inject
+	public PPReferenceIndex(IResourceDescriptions index) {
+		this.index = index;
+		available = index instanceof IResourceDescription.Event.Source;
+		if(available)
+			((IResourceDescription.Event.Source) index).addListener(this);
+	}
+
+	private void add(URI sourceURI, IResourceDescription description) {
+		List<IReferenceDescription> references = Lists.newArrayList(description.getReferenceDescriptions());
+		if(references.isEmpty())
+			return;
+		bySource.put(sourceURI, references);
+		for(IReferenceDescription reference : references) {
+			URI targetURI = reference.getTargetEObjectUri();
+			Map<URI, List<IReferenceDescription>> sources = byTarget.get(targetURI);
+			if(sources == null) {
+				sources = Maps.newLinkedHashMap();
+				byTarget.put(targetURI, sources);
+			}
+			List<IReferenceDescription> fromSource = sources.get(sourceURI);
+			if(fromSource == null) {
+				fromSource = Lists.newArrayListWithCapacity(1);
+				sources.put(sourceURI, fromSource);
+			}
+			fromSource.add(reference);
+		}
+	}
+
+	private void ensureBuilt() {
+		if(bySource != null)
+			return;
+		bySource = Maps.newHashMap();
+		byTarget = Maps.newHashMap();
+		for(IResourceDescription description : index.getAllResourceDescriptions())
+			if(description != null)
+				add(description.getURI(), description);
+	}
+
+	@Override
+	public synchronized void descriptionsChanged(Event event) {
+		// nothing to maintain until the index has been used
+		if(bySource == null)
+			return;
+		for(Delta delta : event.getDeltas()) {
+			URI sourceURI = delta.getUri();
+			remove(sourceURI);
+			IResourceDescription description = delta.getNew();
+			if(description != null)
+				add(sourceURI, description);
+		}
+	}
+
+	/**
+	 * Returns the reference descriptions that refer to any of the given targets, excluding references from the given
+	 * source resources. The result is a snapshot that is not affected by later changes.
+	 *
+	 * @param targetURIs
+	 *            the URIs of the referenced objects
+	 * @param excludedSourceURIs
+	 *            URIs of resources whose references should not be included (typically the target resources)
+	 * @return the reference descriptions
+	 */
+	public synchronized List<IReferenceDescription> getReferences(Collection<URI> targetURIs,
+			Set<URI> excludedSourceURIs) {
+		ensureBuilt();
+		List<IReferenceDescription> result = Lists.newArrayList();
+		for(URI targetURI : targetURIs) {
+			Map<URI, List<IReferenceDescription>> sources = byTarget.get(targetURI);
+			if(sources == null)
+				continue;
+			for(Map.Entry<URI, List<IReferenceDescription>> entry : sources.entrySet())
+				if(!excludedSourceURIs.contains(entry.getKey()))
+					result.addAll(entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * @return <code>true</code> if the index can be used, <code>false</code> if the resource descriptions can not
+	 *         report changes and must be scanned instead.
+	 */
+	public boolean isAvailable() {
+		return available;
+	}
+
+	private void remove(URI sourceURI) {
+		List<IReferenceDescription> references = bySource.remove(sourceURI);
+		if(references == null)
+			return;
+		for(IReferenceDescription reference : references) {
+			URI targetURI = reference.getTargetEObjectUri();
+			Map<URI, List<IReferenceDescription>> sources = byTarget.get(targetURI);
+			if(sources == null)
+				continue;
+			sources.remove(sourceURI);
+			if(sources.isEmpty())
+				byTarget.remove(targetURI);
+		}
+	}
+}
@@ -10,16 +10,113 @@
  */
 package com.puppetlabs.geppetto.pp.dsl.linking;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.naming.QualifiedName;
 import org.eclipse.xtext.resource.IDefaultResourceDescriptionStrategy;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IReferenceDescription;
 import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.IResourceDescription.Delta;
+import org.eclipse.xtext.resource.IResourceDescriptions;
 import org.eclipse.xtext.resource.impl.DefaultResourceDescriptionManager;
 
+import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 /**
- * Overrides the default to provide a PPResourceDescription instead of the default
- * 
+ * Overrides the default to provide a PPResourceDescription instead of the default, and to compute what is affected by
+ * a change with more precision than the default.
+ * <p>
+ * The default considers a resource affected if it has any reference into a changed resource, or if any name exported
+ * by a changed resource (before or after the change) is among the names it imports. This means that saving a class
+ * that is referenced from many places affects all of them, even if the change is confined to the body of the class.
+ * Here, a resource is affected by a change only if:
+ * <ul>
+ * <li>one of the descriptions it resolved to (the targets of its reference descriptions, i.e. the winners after search
+ * path adjustment) was removed or changed (name, type, location or user data), or</li>
+ * <li>a name it searched for was exported before but not after the change, or the other way around.</li>
+ * </ul>
+ * </p>
  */
 public class PPResourceDescriptionManager extends DefaultResourceDescriptionManager {
+	/**
+	 * What was changed by a delta.
+	 */
+	private static class Changes {
+		/**
+		 * URIs of objects whose description was removed or changed
+		 */
+		final Set<URI> changedTargets = Sets.newHashSet();
+
+		/**
+		 * Lower case names that are exported before or after the change, but not both
+		 */
+		final Set<String> changedNames = Sets.newHashSet();
+	}
+
+	private static Changes computeChanges(Delta delta) {
+		Changes changes = new Changes();
+		Map<URI, IEObjectDescription> newByURI = Maps.newHashMap();
+		Set<String> newNames = Sets.newHashSet();
+		if(delta.getNew() != null)
+			for(IEObjectDescription d : delta.getNew().getExportedObjects()) {
+				newByURI.put(d.getEObjectURI(), d);
+				newNames.add(toLowerCaseString(d.getName()));
+			}
+
+		Set<String> oldNames = Sets.newHashSet();
+		if(delta.getOld() != null)
+			for(IEObjectDescription d : delta.getOld().getExportedObjects()) {
+				oldNames.add(toLowerCaseString(d.getName()));
+				IEObjectDescription n = newByURI.get(d.getEObjectURI());
+				if(n == null || !isEqual(d, n))
+					changes.changedTargets.add(d.getEObjectURI());
+			}
+
+		changes.changedNames.addAll(Sets.symmetricDifference(oldNames, newNames));
+		return changes;
+	}
+
+	private static boolean isEqual(IEObjectDescription a, IEObjectDescription b) {
+		if(!(a.getName().equals(b.getName()) && a.getEClass() == b.getEClass()))
+			return false;
+		String[] aKeys = a.getUserDataKeys();
+		String[] bKeys = b.getUserDataKeys();
+		if(aKeys.length != bKeys.length || !Sets.newHashSet(aKeys).equals(Sets.newHashSet(bKeys)))
+			return false;
+		for(String key : aKeys)
+			if(!Objects.equal(a.getUserData(key), b.getUserData(key)))
+				return false;
+		return true;
+	}
+
+	private static String toLowerCaseString(QualifiedName name) {
+		return name.toLowerCase().toString();
+	}
+
+	/**
+	 * The changes computed for each delta. The same deltas are checked against all candidates of a build so the
+	 * changes are computed once per delta.
+	 */
+	private final Map<Delta, Changes> changesCache = new MapMaker().weakKeys().makeMap();
+
+	private Changes getChanges(Delta delta) {
+		Changes changes = changesCache.get(delta);
+		if(changes == null) {
+			changes = computeChanges(delta);
+			changesCache.put(delta, changes);
+		}
+		return changes;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -33,4 +130,47 @@ public class PPResourceDescriptionManager extends DefaultResourceDescriptionMana
 		return new PPResourceDescription(resource, strategy, getCache());
 
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.xtext.resource.impl.DefaultResourceDescriptionManager#isAffected(java.util.Collection,
+	 * org.eclipse.xtext.resource.IResourceDescription, org.eclipse.xtext.resource.IResourceDescriptions)
+	 */
+	@Override
+	public boolean isAffected(Collection<Delta> deltas, IResourceDescription candidate, IResourceDescriptions context) {
+		Set<URI> targets = null;
+		Set<String> importedNames = null;
+		for(Delta delta : deltas) {
+			if(!delta.haveEObjectDescriptionsChanged() || delta.getUri().equals(candidate.getURI()))
+				continue;
+
+			if(targets == null) {
+				targets = Sets.newHashSet();
+				for(IReferenceDescription ref : candidate.getReferenceDescriptions())
+					targets.add(ref.getTargetEObjectUri());
+				importedNames = Sets.newHashSet();
+				for(QualifiedName name : candidate.getImportedNames())
+					importedNames.add(toLowerCaseString(name));
+			}
+
+			Changes changes = getChanges(delta);
+			if(!Collections.disjoint(targets, changes.changedTargets))
+				return true;
+			if(!Collections.disjoint(importedNames, changes.changedNames))
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.xtext.resource.impl.DefaultResourceDescriptionManager#isAffected(org.eclipse.xtext.resource.IResourceDescription.Delta,
+	 * org.eclipse.xtext.resource.IResourceDescription)
+	 */
+	@Override
+	public boolean isAffected(Delta delta, IResourceDescription candidate) throws IllegalArgumentException {
+		return isAffected(Arrays.asList(delta), candidate, null);
+	}
 }
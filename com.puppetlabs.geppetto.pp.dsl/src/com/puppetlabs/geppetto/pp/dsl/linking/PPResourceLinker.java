@@ -19,6 +19,8 @@ import java.util.List;
 import java.util.ListIterator;
 
 import com.puppetlabs.geppetto.common.tracer.ITracer;
+import com.puppetlabs.geppetto.common.tracer.Metrics;
+import com.puppetlabs.geppetto.common.tracer.Timer;
 import com.puppetlabs.geppetto.pp.AtExpression;
 import com.puppetlabs.geppetto.pp.AttributeOperation;
 import com.puppetlabs.geppetto.pp.AttributeOperations;
@@ -103,6 +105,10 @@ public class PPResourceLinker implements IPPDiagnostics {
 	@Named(PPDSLConstants.PP_DEBUG_LINKER)
 	private ITracer tracer;
 
+	private final Metrics metrics;
+
+	private final Timer linkTimer;
+
 	/**
 	 * Access to precompiled regular expressions
 	 */
@@ -162,6 +168,12 @@ public class PPResourceLinker implements IPPDiagnostics {
 	@Inject
 	private Provider<IValidationAdvisor> validationAdvisorProvider;
 
+	@Inject
+	public PPResourceLinker(Metrics metrics) {
+		this.metrics = metrics;
+		linkTimer = metrics.timer("pp.linker.link");
+	}
+
 	private void _link(CollectExpression o, PPImportedNamesAdapter importedNames, IMessageAcceptor acceptor) {
 		classifier.classify(o);
 		ClassifierAdapter adapter = ClassifierAdapterFactory.eINSTANCE.adapt(o);
@@ -280,7 +292,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 
 			// ... and finally, if there was neither a type nor a definition reference
 			String[] proposals = proposer.computeProposals(
-				parentString, ppFinder.getExportedDescriptions(), searchPath, CLASS_AND_TYPE);
+				parentString, ppFinder.getSuggestionIndex(), searchPath, CLASS_AND_TYPE);
 			acceptor.acceptError(
 				"Unknown class: '" + parentString + "'", o, //
 				PPPackage.Literals.HOST_CLASS_DEFINITION__PARENT,
@@ -367,7 +379,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 				CrossReferenceAdapter.clear(o.getNameExpr());
 
 				String[] proposals = proposer.computeProposals(
-					className, ppFinder.getExportedDescriptions(), searchPath, CLASS_AND_TYPE);
+					className, ppFinder.getSuggestionIndex(), searchPath, CLASS_AND_TYPE);
 				acceptor.acceptError(
 					"Unknown class: '" + className + "'", o, //
 					PPPackage.Literals.RESOURCE_BODY__NAME_EXPR,
@@ -676,7 +688,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 							CrossReferenceAdapter.clear(pe);
 
 							String[] proposals = proposer.computeProposals(
-								className, ppFinder.getExportedDescriptions(), searchPath, CLASS_AND_TYPE);
+								className, ppFinder.getSuggestionIndex(), searchPath, CLASS_AND_TYPE);
 							String issueCode = proposalIssue(IPPDiagnostics.ISSUE__RESOURCE_UNKNOWN_TYPE, proposals);
 							if(param instanceof ExprList) {
 								acceptor.acceptError("Unknown class: '" + className + "'", //
@@ -777,7 +789,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 							CrossReferenceAdapter.clear(pe);
 
 							String[] p = proposer.computeProposals(
-								className, ppFinder.getExportedDescriptions(), searchPath, CLASS_AND_TYPE);
+								className, ppFinder.getSuggestionIndex(), searchPath, CLASS_AND_TYPE);
 							acceptor.acceptError(
 								"Unknown class: '" + className + "'", o, //
 								PPPackage.Literals.PARAMETERIZED_EXPRESSION__PARAMETERS, parameterIndex,
@@ -844,7 +856,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 			);
 			return; // sort of ok
 		}
-		String[] proposals = proposer.computeProposals(name, ppFinder.getExportedDescriptions(), searchPath, FUNC);
+		String[] proposals = proposer.computeProposals(name, ppFinder.getSuggestionIndex(), searchPath, FUNC);
 		acceptor.acceptError("Unknown function: '" + name + "'", nameExpr, //
 			proposalIssue(IPPDiagnostics.ISSUE__UNKNOWN_FUNCTION_REFERENCE, proposals), //
 			proposals);
@@ -978,7 +990,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 				// Add unresolved info at resource level
 				addUnresolved(importedNames, resourceTypeName, NodeModelUtils.findActualNodeFor(reference));
 				String[] proposals = proposer.computeProposals(
-					resourceTypeName, ppFinder.getExportedDescriptions(), upperCaseProposals, searchPath, DEF_AND_TYPE);
+					resourceTypeName, ppFinder.getSuggestionIndex(), upperCaseProposals, searchPath, DEF_AND_TYPE);
 				acceptor.acceptError("Unknown resource type: '" + resourceTypeName + "'", reference,
 				// PPPackage.Literals.RESOURCE_EXPRESSION__RESOURCE_EXPR, //
 				proposalIssue(IPPDiagnostics.ISSUE__RESOURCE_UNKNOWN_TYPE, proposals), //
@@ -1033,7 +1045,7 @@ public class PPResourceLinker implements IPPDiagnostics {
 					continue each_top; // ok, found
 				}
 				String[] proposals = proposer.computeProposals(
-					name, ppFinder.getExportedDescriptions(), searchPath, FUNC);
+					name, ppFinder.getSuggestionIndex(), searchPath, FUNC);
 				acceptor.acceptError(
 					"Unknown function: '" + name + "'", s, PPPackage.Literals.LITERAL_NAME_OR_REFERENCE__VALUE,
 					proposalIssue(IPPDiagnostics.ISSUE__UNKNOWN_FUNCTION_REFERENCE, proposals), //
@@ -1150,20 +1162,18 @@ public class PPResourceLinker implements IPPDiagnostics {
 	}
 
 	/**
-	 * Link all resources in the model
+	 * Configures the linker for linking of objects in the given model with {@link #linkObject}. This is done by
+	 * {@link #link(EObject, IMessageAcceptor, boolean)}, and must be done once before linking individual objects.
 	 * 
 	 * @param model
-	 * @param acceptor
+	 * @return <code>false</code> if the resource of the model is not yet known in the index (i.e. it is being cleaned)
+	 *         and should not be linked.
 	 */
-	public void link(EObject model, IMessageAcceptor acceptor, boolean profileThis) {
+	public boolean configure(EObject model) {
 		ppFinder.configure(model);
 		resource = model.eResource();
 		searchPath = searchPathProvider.get(resource);
 
-		// clear names remembered in the past
-		PPImportedNamesAdapter importedNames = PPImportedNamesAdapterFactory.eINSTANCE.adapt(resource);
-		importedNames.clear();
-
 		IResourceDescriptions descriptionIndex = indexProvider.getResourceDescriptions(resource);
 		IResourceDescription descr = descriptionIndex.getResourceDescription(resource.getURI());
 
@@ -1171,11 +1181,33 @@ public class PPResourceLinker implements IPPDiagnostics {
 			if(tracer.isTracing()) {
 				tracer.trace("Cleaning resource: " + resource.getURI().path());
 			}
-			return;
+			return false;
 		}
+		return true;
+	}
+
+	/**
+	 * Link all resources in the model
+	 * 
+	 * @param model
+	 * @param acceptor
+	 */
+	public void link(EObject model, IMessageAcceptor acceptor, boolean profileThis) {
+		boolean indexed = configure(model);
+
+		// clear names remembered in the past
+		PPImportedNamesAdapter importedNames = PPImportedNamesAdapterFactory.eINSTANCE.adapt(resource);
+		importedNames.clear();
+
+		if(!indexed)
+			return;
 
 		if(tracer.isTracing())
 			tracer.trace("Linking resource: ", resource.getURI().path(), "{");
+		boolean timed = metrics.isEnabled();
+		long start = timed
+				? System.nanoTime()
+				: 0;
 
 		// Need to get everything in the resource, not just the content of the PuppetManifest (as the manifest has top level
 		// expressions that need linking).
@@ -1183,110 +1215,130 @@ public class PPResourceLinker implements IPPDiagnostics {
 		// it is important that ResourceExpresion are linked before ResourceBodyExpression (but that should
 		// be ok with the tree iterator as the bodies are contained).
 
-		while(everything.hasNext()) {
-			EObject o = everything.next();
-			EClass clazz = o.eClass();
-			switch(clazz.getClassifierID()) {
-				case PPPackage.EXPRESSION_TE:
-					_link((ExpressionTE) o, importedNames, acceptor);
-					break;
+		while(everything.hasNext())
+			linkObject(everything.next(), importedNames, acceptor, profileThis);
 
-				case PPPackage.VARIABLE_TE:
-					_link((VariableTE) o, importedNames, acceptor);
-					break;
+		if(timed)
+			linkTimer.stop(start);
+		if(tracer.isTracing())
+			tracer.trace("}");
 
-				case PPPackage.VARIABLE_EXPRESSION:
-					_link((VariableExpression) o, importedNames, acceptor);
-					break;
+	}
 
-				case PPPackage.RESOURCE_EXPRESSION:
-					_link((ResourceExpression) o, importedNames, acceptor);
-					break;
+	/**
+	 * Links one object of the model configured with {@link #configure(EObject)}. The contained objects are not
+	 * linked. The outcome of linking an object depends only on the object, its containers and contents, and on the
+	 * exported objects visible from the resource. This makes it possible to relink only the changed parts of a model
+	 * as long as the objects exported by the resource remain the same.
+	 * 
+	 * @param o
+	 *            the object to link
+	 * @param importedNames
+	 *            receives the names and descriptions involved in the resolution of references from the object
+	 * @param acceptor
+	 *            receives linking issues
+	 * @param profileThis
+	 */
+	public void linkObject(EObject o, PPImportedNamesAdapter importedNames, IMessageAcceptor acceptor,
+			boolean profileThis) {
+		EClass clazz = o.eClass();
+		switch(clazz.getClassifierID()) {
+			case PPPackage.EXPRESSION_TE:
+				_link((ExpressionTE) o, importedNames, acceptor);
+				break;
 
-				case PPPackage.RESOURCE_BODY:
-					_link((ResourceBody) o, importedNames, acceptor, profileThis);
-					break;
+			case PPPackage.VARIABLE_TE:
+				_link((VariableTE) o, importedNames, acceptor);
+				break;
 
-				case PPPackage.FUNCTION_CALL:
-					_link((FunctionCall) o, importedNames, acceptor);
-					break;
+			case PPPackage.VARIABLE_EXPRESSION:
+				_link((VariableExpression) o, importedNames, acceptor);
+				break;
 
-				// these are needed to link un-parenthesised function calls
-				case PPPackage.PUPPET_MANIFEST:
-					internalLinkUnparenthesisedCall(((PuppetManifest) o).getStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.RESOURCE_EXPRESSION:
+				_link((ResourceExpression) o, importedNames, acceptor);
+				break;
 
-				case PPPackage.IF_EXPRESSION:
-					internalLinkUnparenthesisedCall(((IfExpression) o).getThenStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.RESOURCE_BODY:
+				_link((ResourceBody) o, importedNames, acceptor, profileThis);
+				break;
 
-				case PPPackage.UNLESS_EXPRESSION:
-					internalLinkUnparenthesisedCall(((UnlessExpression) o).getThenStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.FUNCTION_CALL:
+				_link((FunctionCall) o, importedNames, acceptor);
+				break;
 
-				case PPPackage.ELSE_EXPRESSION:
-					internalLinkUnparenthesisedCall(((ElseExpression) o).getStatements(), importedNames, acceptor);
-					break;
+			// these are needed to link un-parenthesised function calls
+			case PPPackage.PUPPET_MANIFEST:
+				internalLinkUnparenthesisedCall(((PuppetManifest) o).getStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.ELSE_IF_EXPRESSION:
-					internalLinkUnparenthesisedCall(((ElseIfExpression) o).getThenStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.IF_EXPRESSION:
+				internalLinkUnparenthesisedCall(((IfExpression) o).getThenStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.NODE_DEFINITION:
-					internalLinkUnparenthesisedCall(((NodeDefinition) o).getStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.UNLESS_EXPRESSION:
+				internalLinkUnparenthesisedCall(((UnlessExpression) o).getThenStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.DEFINITION:
-					internalLinkUnparenthesisedCall(((Definition) o).getStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.ELSE_EXPRESSION:
+				internalLinkUnparenthesisedCall(((ElseExpression) o).getStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.CASE:
-					internalLinkUnparenthesisedCall(((Case) o).getStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.ELSE_IF_EXPRESSION:
+				internalLinkUnparenthesisedCall(((ElseIfExpression) o).getThenStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.HOST_CLASS_DEFINITION:
-					_link((HostClassDefinition) o, importedNames, acceptor);
-					internalLinkUnparenthesisedCall(((HostClassDefinition) o).getStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.NODE_DEFINITION:
+				internalLinkUnparenthesisedCall(((NodeDefinition) o).getStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.COLLECT_EXPRESSION:
-					_link((CollectExpression) o, importedNames, acceptor);
-					break;
+			case PPPackage.DEFINITION:
+				internalLinkUnparenthesisedCall(((Definition) o).getStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.METHOD_CALL:
-					_link((MethodCall) o, importedNames, acceptor);
-					break;
+			case PPPackage.CASE:
+				internalLinkUnparenthesisedCall(((Case) o).getStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.JAVA_LAMBDA:
-				case PPPackage.RUBY_LAMBDA:
-					internalLinkUnparenthesisedCall(((Lambda) o).getStatements(), importedNames, acceptor);
-					break;
+			case PPPackage.HOST_CLASS_DEFINITION:
+				_link((HostClassDefinition) o, importedNames, acceptor);
+				internalLinkUnparenthesisedCall(((HostClassDefinition) o).getStatements(), importedNames, acceptor);
+				break;
 
-				case PPPackage.UNQUOTED_STRING:
-					Expression expr = ((UnquotedString) o).getExpression();
-					if(expr != null && expr instanceof LiteralNameOrReference) {
-						//
-						String varName = ((LiteralNameOrReference) expr).getValue();
-						StringBuilder varName2 = new StringBuilder();
-						if(!varName.startsWith("$"))
-							varName2.append("$");
-						varName2.append(varName);
-						if(patternHelper.isVARIABLE(varName2.toString()))
-							internalLinkVariable(
-								expr, PPPackage.Literals.LITERAL_NAME_OR_REFERENCE__VALUE, varName, importedNames,
-								acceptor);
-						else
-							acceptor.acceptError(
-								"Not a valid variable name", expr, PPPackage.Literals.LITERAL_NAME_OR_REFERENCE__VALUE,
-								IPPDiagnostics.ISSUE__NOT_VARNAME);
+			case PPPackage.COLLECT_EXPRESSION:
+				_link((CollectExpression) o, importedNames, acceptor);
+				break;
 
-					}
-					break;
-			}
-		}
-		if(tracer.isTracing())
-			tracer.trace("}");
+			case PPPackage.METHOD_CALL:
+				_link((MethodCall) o, importedNames, acceptor);
+				break;
+
+			case PPPackage.JAVA_LAMBDA:
+			case PPPackage.RUBY_LAMBDA:
+				internalLinkUnparenthesisedCall(((Lambda) o).getStatements(), importedNames, acceptor);
+				break;
 
+			case PPPackage.UNQUOTED_STRING:
+				Expression expr = ((UnquotedString) o).getExpression();
+				if(expr != null && expr instanceof LiteralNameOrReference) {
+					//
+					String varName = ((LiteralNameOrReference) expr).getValue();
+					StringBuilder varName2 = new StringBuilder();
+					if(!varName.startsWith("$"))
+						varName2.append("$");
+					varName2.append(varName);
+					if(patternHelper.isVARIABLE(varName2.toString()))
+						internalLinkVariable(
+							expr, PPPackage.Literals.LITERAL_NAME_OR_REFERENCE__VALUE, varName, importedNames,
+							acceptor);
+					else
+						acceptor.acceptError(
+							"Not a valid variable name", expr, PPPackage.Literals.LITERAL_NAME_OR_REFERENCE__VALUE,
+							IPPDiagnostics.ISSUE__NOT_VARNAME);
+
+				}
+				break;
+		}
 	}
 
 	/**
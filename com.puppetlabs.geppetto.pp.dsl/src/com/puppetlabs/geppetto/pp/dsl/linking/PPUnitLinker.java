@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.linking;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.puppetlabs.geppetto.pp.Definition;
+import com.puppetlabs.geppetto.pp.NodeDefinition;
+import com.puppetlabs.geppetto.pp.PPPackage;
+import com.puppetlabs.geppetto.pp.PuppetManifest;
+import com.puppetlabs.geppetto.pp.dsl.adapters.PPImportedNamesAdapter;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.diagnostics.IDiagnosticConsumer;
+import org.eclipse.xtext.diagnostics.Severity;
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.eclipse.xtext.resource.IEObjectDescription;
+import org.eclipse.xtext.resource.IResourceDescription;
+import org.eclipse.xtext.resource.impl.ListBasedDiagnosticConsumer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+
+/**
+ * Links the model of one resource incrementally with the {@link PPResourceLinker}. An instance keeps the outcome of
+ * linking for one resource and must not be shared between resources.
+ * <p>
+ * The model is divided into linking units, each being a statement directly in the body of the manifest or of a class,
+ * define or node definition. The linking result (imported names and issues) is kept per unit. After a partial parse,
+ * only the units containing objects that were replaced by the parser, and the units that contain those, are linked
+ * again. Since a reference is resolved against the objects exported by the resource, the whole model is linked when
+ * the exported objects have changed.
+ * </p>
+ */
+public class PPUnitLinker {
+	/**
+	 * The outcome of linking the objects of one linking unit, and where the unit started in the text when it was
+	 * linked.
+	 */
+	private static class UnitLinking {
+		final int line;
+
+		final int offset;
+
+		final PPImportedNamesAdapter importedNames = new PPImportedNamesAdapter();
+
+		final ListBasedDiagnosticConsumer diagnostics = new ListBasedDiagnosticConsumer();
+
+		final IMessageAcceptor acceptor = new DiagnosticConsumerBasedMessageAcceptor(diagnostics);
+
+		UnitLinking(EObject unit) {
+			INode node = NodeModelUtils.getNode(unit);
+			line = node == null
+					? 0
+					: node.getStartLine();
+			offset = node == null
+					? 0
+					: node.getOffset();
+		}
+	}
+
+	private static boolean isLinkingUnit(EObject o) {
+		EObject container = o.eContainer();
+		if(container == null)
+			return true;
+		EStructuralFeature feature = o.eContainingFeature();
+		if(container instanceof PuppetManifest)
+			return feature == PPPackage.Literals.EXPRESSION_BLOCK__STATEMENTS;
+		if(container instanceof Definition)
+			return feature == PPPackage.Literals.DEFINITION__STATEMENTS;
+		if(container instanceof NodeDefinition)
+			return feature == PPPackage.Literals.NODE_DEFINITION__STATEMENTS;
+		return false;
+	}
+
+	@Inject
+	private PPResourceLinker resourceLinker;
+
+	@Inject
+	private IResourceDescription.Manager descriptionManager;
+
+	/**
+	 * The model that was linked the last time, and what was needed to link it.
+	 */
+	private EObject linkedModel;
+
+	private List<String> linkedExports;
+
+	private Set<EObject> linkedObjects;
+
+	private Map<EObject, UnitLinking> linkedUnits;
+
+	/**
+	 * Forgets the outcome of previous linking, the next linking will link the whole model.
+	 */
+	public void discard() {
+		linkedModel = null;
+		linkedExports = null;
+		linkedObjects = null;
+		linkedUnits = null;
+	}
+
+	/**
+	 * @return a description of each object exported by the resource, including its URI and user data
+	 */
+	private List<String> getExports(Resource resource) {
+		List<String> exports = Lists.newArrayList();
+		for(IEObjectDescription d : descriptionManager.getResourceDescription(resource).getExportedObjects()) {
+			StringBuilder bld = new StringBuilder();
+			bld.append(d.getQualifiedName()).append('|');
+			bld.append(d.getEClass().getName()).append('|');
+			bld.append(d.getEObjectURI().fragment());
+			for(String key : d.getUserDataKeys())
+				bld.append('|').append(key).append('=').append(d.getUserData(key));
+			exports.add(bld.toString());
+		}
+		return exports;
+	}
+
+	/**
+	 * Links the model, and records the outcome of linking of all units in the given imported names and diagnostics
+	 * consumer. The outcome is the same as that of {@link PPResourceLinker#link(EObject, IMessageAcceptor, boolean)},
+	 * but only the units that changed since the last call are linked.
+	 *
+	 * @param model
+	 *            The root of the resource to link
+	 * @param importedNames
+	 *            Receives the imported names of all units
+	 * @param diagnosticsConsumer
+	 *            Receives the errors and warnings of all units
+	 */
+	public void link(EObject model, PPImportedNamesAdapter importedNames, IDiagnosticConsumer diagnosticsConsumer) {
+		if(!resourceLinker.configure(model))
+			return;
+		for(Map.Entry<EObject, UnitLinking> entry : linkUnits(model)) {
+			// the locations of unresolved names must move with the text of the unit (the diagnostics refer to nodes)
+			UnitLinking unit = entry.getValue();
+			INode node = NodeModelUtils.getNode(entry.getKey());
+			if(node == null)
+				importedNames.addAll(unit.importedNames);
+			else
+				importedNames.addAll(
+					unit.importedNames, node.getStartLine() - unit.line, node.getOffset() - unit.offset);
+			for(Severity severity : new Severity[] { Severity.ERROR, Severity.WARNING })
+				for(Resource.Diagnostic d : unit.diagnostics.getResult(severity))
+					diagnosticsConsumer.consume(d, severity);
+		}
+	}
+
+	/**
+	 * Links the linking units that have changed since the last time, or all of them if the model was replaced or if
+	 * the exported objects have changed. The linker must be configured for the model.
+	 *
+	 * @param model
+	 * @return each unit in the model and the outcome of linking it, in model order
+	 */
+	private List<Map.Entry<EObject, UnitLinking>> linkUnits(EObject model) {
+		Resource resource = model.eResource();
+		List<String> exports = getExports(resource);
+		if(model != linkedModel || !exports.equals(linkedExports))
+			discard();
+
+		// find the unit of each object, and the units that have changed
+		Map<EObject, EObject> unitOf = new IdentityHashMap<EObject, EObject>();
+		List<EObject> objects = Lists.newArrayList();
+		List<EObject> units = Lists.newArrayList();
+		Set<EObject> changed = Collections.newSetFromMap(new IdentityHashMap<EObject, Boolean>());
+		for(Iterator<EObject> itor = resource.getAllContents(); itor.hasNext();) {
+			EObject o = itor.next();
+			EObject unit = isLinkingUnit(o)
+					? o
+					: unitOf.get(o.eContainer());
+			if(unit == o)
+				units.add(o);
+			unitOf.put(o, unit);
+			objects.add(o);
+			if(linkedObjects == null || !linkedObjects.contains(o)) {
+				// a new object, its unit and all units containing it must be linked
+				EObject u = unit;
+				while(u != null && changed.add(u))
+					u = u.eContainer() == null
+							? null
+							: unitOf.get(u.eContainer());
+			}
+		}
+
+		// it is important that ResourceExpresion are linked before ResourceBodyExpression, so link in model order
+		Map<EObject, UnitLinking> unitLinkings = new IdentityHashMap<EObject, UnitLinking>();
+		for(EObject o : objects) {
+			EObject unit = unitOf.get(o);
+			if(!changed.contains(unit))
+				continue;
+			UnitLinking unitLinking = unitLinkings.get(unit);
+			if(unitLinking == null) {
+				unitLinking = new UnitLinking(unit);
+				unitLinkings.put(unit, unitLinking);
+			}
+			resourceLinker.linkObject(o, unitLinking.importedNames, unitLinking.acceptor, false);
+		}
+
+		List<Map.Entry<EObject, UnitLinking>> result = Lists.newArrayListWithCapacity(units.size());
+		for(EObject unit : units) {
+			UnitLinking unitLinking = unitLinkings.get(unit);
+			if(unitLinking == null && linkedUnits != null)
+				unitLinking = linkedUnits.get(unit);
+			if(unitLinking == null) {
+				// unit without any objects that required linking
+				unitLinking = new UnitLinking(unit);
+			}
+			unitLinkings.put(unit, unitLinking);
+			result.add(Maps.immutableEntry(unit, unitLinking));
+		}
+
+		linkedModel = model;
+		linkedExports = exports;
+		linkedObjects = Collections.newSetFromMap(new IdentityHashMap<EObject, Boolean>(objects.size()));
+		linkedObjects.addAll(objects);
+		linkedUnits = unitLinkings;
+		return result;
+	}
+}
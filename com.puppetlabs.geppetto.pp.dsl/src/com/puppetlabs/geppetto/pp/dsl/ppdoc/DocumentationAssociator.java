@@ -10,6 +10,7 @@
  */
 package com.puppetlabs.geppetto.pp.dsl.ppdoc;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.puppetlabs.geppetto.pp.Definition;
@@ -50,6 +51,8 @@ public class DocumentationAssociator {
 
 	private static final String[] defaultTaskTags = new String[] { "todo", "fixme" };
 
+	private TaskTagMatcher taskTagMatcher;
+
 	@Inject
 	public DocumentationAssociator(IGrammarAccess ga) {
 		this.ga = (PPGrammarAccess) ga;
@@ -94,25 +97,60 @@ public class DocumentationAssociator {
 
 	}
 
+	private synchronized TaskTagMatcher getTaskTagMatcher() {
+		if(taskTagMatcher == null)
+			taskTagMatcher = new TaskTagMatcher(getTaskTags());
+		return taskTagMatcher;
+	}
+
 	private String[] getTaskTags() {
 		return defaultTaskTags;
 	}
 
 	/**
+	 * Computes the offsets where each line of the given text starts.
+	 * 
 	 * @param text
+	 * @return the line start offsets in ascending order, the first is always 0
+	 */
+	private static int[] getLineStarts(String text) {
+		int count = 1;
+		int top = text.length();
+		for(int i = 0; i < top; ++i)
+			if(text.charAt(i) == '\n')
+				++count;
+		int[] lineStarts = new int[count];
+		int line = 1;
+		for(int i = 0; i < top; ++i)
+			if(text.charAt(i) == '\n')
+				lineStarts[line++] = i + 1;
+		return lineStarts;
+	}
+
+	/**
+	 * Returns true if there is anything but whitespace between the start of the line and the start of the given node.
+	 * 
+	 * @param text
+	 *            the complete text
+	 * @param lineStarts
+	 *            the line start offsets of the text
 	 * @param node
 	 * @return
 	 */
-	private boolean hasNonWSBeforeStart(String text, INode node) {
+	private boolean hasNonWSBeforeStart(String text, int[] lineStarts, INode node) {
 		int offset = node.getOffset();
-		for(int pos = offset - 1; pos >= 0; pos--) {
+		int line = Arrays.binarySearch(lineStarts, offset);
+		int lineStart = line >= 0
+				? lineStarts[line]
+				: lineStarts[-line - 2];
+		for(int pos = offset - 1; pos >= lineStart; pos--) {
 			char c = text.charAt(pos);
-			if(c == '\r' || c == '\n')
+			if(c == '\r')
 				return false;
 			if(c > ' ')
 				return true;
 		}
-		// reached start of parsed text
+		// reached start of line
 		return false;
 	}
 
@@ -137,6 +175,10 @@ public class DocumentationAssociator {
 		//
 		ICompositeNode node = NodeModelUtils.getNode(model);
 		ICompositeNode root = node.getRootNode();
+
+		// the text is materialized once, it is used for all comments
+		final String text = root.getText();
+		final int[] lineStarts = getLineStarts(text);
 		List<INode> commentSequence = Lists.newArrayList();
 		BidiTreeIterator<INode> itor = root.getAsTreeIterable().iterator();
 		COLLECT_LOOP: while(itor.hasNext()) {
@@ -145,7 +187,7 @@ public class DocumentationAssociator {
 			EObject grammarElement = x.getGrammarElement();
 			// process comments
 			if(grammarElement == slRule || grammarElement == mlRule) {
-				processCommentNode(x, tasks);
+				processCommentNode(x, text, tasks);
 				// skip all whitespace unless it contains a break which also breaks collection
 				INode sibling = x.getNextSibling();
 				while(sibling != null && sibling.getGrammarElement() == wsRule) {
@@ -171,7 +213,7 @@ public class DocumentationAssociator {
 				commentSequence.add(x);
 
 				// if comment has anything but whitespace before its start (on same line), it is not a documentation comment
-				if(hasNonWSBeforeStart(root.getText(), x)) {
+				if(hasNonWSBeforeStart(text, lineStarts, x)) {
 					commentSequence.clear();
 					continue;
 				}
@@ -208,27 +250,21 @@ public class DocumentationAssociator {
 
 	}
 
-	private void processCommentNode(INode node, List<PPTask> taskList) {
+	private void processCommentNode(INode node, String allText, List<PPTask> taskList) {
 		final String commentText = node.getText();
-		final String loweredText = commentText.toLowerCase();
 		if(commentText == null || commentText.length() == 0)
 			return;
 
 		int line = node.getStartLine();
+		int previousTagIndex = 0;
+		TaskTagMatcher matcher = getTaskTagMatcher();
 
 		for(int startPos = 0; startPos < commentText.length(); /* repeat value in loop */) {
-			int firstTagIndex = commentText.length();
-			int previousTagIndex = 0;
-			int firstTagLength = 0;
-			for(String tag : getTaskTags()) {
-				int idx = loweredText.indexOf(tag, startPos);
-				if(idx >= 0 && idx < firstTagIndex) {
-					firstTagIndex = idx;
-					firstTagLength = tag.length();
-				}
-			}
-			if(firstTagIndex == commentText.length())
+			TaskTagMatcher.Match match = matcher.find(commentText, startPos);
+			if(match == null)
 				return; // no tags
+			int firstTagIndex = match.getStart();
+			int firstTagLength = match.getLength();
 
 			// msg is text to end, or up to (but not including) the newline.
 			int endIndex = commentText.indexOf("\n", firstTagIndex);
@@ -260,7 +296,6 @@ public class DocumentationAssociator {
 			if(checkForBang.length() <= firstTagLength) {
 				// System.out.println("EMPTY TODO MSG");
 				// scan backwards from tag start
-				String allText = node.getRootNode().getText();
 				int offset = node.getOffset() + firstTagIndex + firstTagLength - 1;
 				StringBuilder builder = new StringBuilder();
 				for(int o = offset; o >= 0; o--) {
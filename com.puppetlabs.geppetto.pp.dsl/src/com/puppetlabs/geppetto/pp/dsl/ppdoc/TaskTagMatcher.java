@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.pp.dsl.ppdoc;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Case insensitive matcher of a set of task tags (such as "todo" and "fixme"). All tags are matched in one pass over
+ * the text using an Aho-Corasick automaton.
+ */
+public class TaskTagMatcher {
+	/**
+	 * A tag found in a text
+	 */
+	public static class Match {
+		private final int start;
+
+		private final int length;
+
+		Match(int start, int length) {
+			this.start = start;
+			this.length = length;
+		}
+
+		/**
+		 * @return the length of the matched tag
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the index in the text where the tag starts
+		 */
+		public int getStart() {
+			return start;
+		}
+	}
+
+	private static final int[] NO_OUTPUT = new int[0];
+
+	private static int[] toArray(List<Integer> values) {
+		if(values.isEmpty())
+			return NO_OUTPUT;
+		int[] result = new int[values.size()];
+		for(int i = 0; i < result.length; ++i)
+			result[i] = values.get(i);
+		return result;
+	}
+
+	private final String[] tags;
+
+	private final int maxTagLength;
+
+	/**
+	 * Transitions of the trie, one map per state.
+	 */
+	private final List<Map<Character, Integer>> transitions = Lists.newArrayList();
+
+	/**
+	 * The failure link of each state.
+	 */
+	private int[] failures;
+
+	/**
+	 * The indexes of the tags that end in each state, including those reached through failure links.
+	 */
+	private int[][] outputs;
+
+	/**
+	 * @param tags
+	 *            The tags to match. Tags are matched case insensitive.
+	 */
+	public TaskTagMatcher(String[] tags) {
+		this.tags = new String[tags.length];
+		int maxLength = 0;
+		for(int i = 0; i < tags.length; ++i) {
+			this.tags[i] = tags[i].toLowerCase();
+			maxLength = Math.max(maxLength, this.tags[i].length());
+		}
+		maxTagLength = maxLength;
+		build();
+	}
+
+	private void build() {
+		// the trie
+		transitions.add(Maps.<Character, Integer> newHashMap());
+		List<List<Integer>> tagEnds = Lists.newArrayList();
+		tagEnds.add(Lists.<Integer> newArrayList());
+		for(int t = 0; t < tags.length; ++t) {
+			String tag = tags[t];
+			if(tag.length() == 0)
+				continue;
+			int state = 0;
+			for(int i = 0; i < tag.length(); ++i) {
+				Character c = Character.valueOf(tag.charAt(i));
+				Integer next = transitions.get(state).get(c);
+				if(next == null) {
+					next = transitions.size();
+					transitions.add(Maps.<Character, Integer> newHashMap());
+					tagEnds.add(Lists.<Integer> newArrayList());
+					transitions.get(state).put(c, next);
+				}
+				state = next;
+			}
+			tagEnds.get(state).add(t);
+		}
+
+		// failure links in breadth first order, outputs are merged along the links
+		int stateCount = transitions.size();
+		failures = new int[stateCount];
+		outputs = new int[stateCount][];
+		outputs[0] = NO_OUTPUT;
+		LinkedList<Integer> queue = Lists.newLinkedList();
+		for(Integer s : transitions.get(0).values()) {
+			failures[s] = 0;
+			outputs[s] = toArray(tagEnds.get(s));
+			queue.add(s);
+		}
+		while(!queue.isEmpty()) {
+			int state = queue.removeFirst();
+			for(Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+				int child = transition.getValue();
+				int f = failures[state];
+				Integer next;
+				while((next = transitions.get(f).get(transition.getKey())) == null && f != 0)
+					f = failures[f];
+				failures[child] = next == null
+						? 0
+						: next;
+				List<Integer> out = Lists.newArrayList(tagEnds.get(child));
+				for(int t : outputs[failures[child]])
+					out.add(t);
+				outputs[child] = toArray(out);
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Finds the first tag that starts at or after <code>from</code>. If several tags start at the same index, the one
+	 * given first to the constructor is returned.
+	 *
+	 * @param text
+	 *            The text to search
+	 * @param from
+	 *            The index where the search starts
+	 * @return The match or <code>null</code> if no tag was found
+	 */
+	public Match find(CharSequence text, int from) {
+		int bestStart = -1;
+		int bestTag = -1;
+		int state = 0;
+		int top = text.length();
+		for(int i = from; i < top; ++i) {
+			// a tag that ends here or later can not start before the best match
+			if(bestStart >= 0 && i - bestStart >= maxTagLength)
+				break;
+			Character c = Character.valueOf(Character.toLowerCase(text.charAt(i)));
+			Integer next;
+			while((next = transitions.get(state).get(c)) == null && state != 0)
+				state = failures[state];
+			state = next == null
+					? 0
+					: next;
+			for(int t : outputs[state]) {
+				int start = i - tags[t].length() + 1;
+				if(bestStart < 0 || start < bestStart || start == bestStart && t < bestTag) {
+					bestStart = start;
+					bestTag = t;
+				}
+			}
+		}
+		return bestStart < 0
+				? null
+				: new Match(bestStart, tags[bestTag].length());
+	}
+}
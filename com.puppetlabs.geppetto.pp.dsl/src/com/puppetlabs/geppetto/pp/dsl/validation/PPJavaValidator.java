@@ -18,9 +18,14 @@ import static com.puppetlabs.geppetto.pp.adapters.ClassifierAdapter.RESOURCE_IS_
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
+import com.puppetlabs.geppetto.common.tracer.ITracer;
+import com.puppetlabs.geppetto.common.tracer.Metrics;
+import com.puppetlabs.geppetto.common.tracer.Timer;
 import com.puppetlabs.geppetto.pp.AdditiveExpression;
 import com.puppetlabs.geppetto.pp.AndExpression;
 import com.puppetlabs.geppetto.pp.AppendExpression;
@@ -87,6 +92,7 @@ import com.puppetlabs.geppetto.pp.VerbatimTE;
 import com.puppetlabs.geppetto.pp.VirtualNameOrReference;
 import com.puppetlabs.geppetto.pp.adapters.ClassifierAdapter;
 import com.puppetlabs.geppetto.pp.adapters.ClassifierAdapterFactory;
+import com.puppetlabs.geppetto.pp.dsl.PPDSLConstants;
 import com.puppetlabs.geppetto.pp.dsl.eval.PPExpressionEquivalenceCalculator;
 import com.puppetlabs.geppetto.pp.dsl.eval.PPStringConstantEvaluator;
 import com.puppetlabs.geppetto.pp.dsl.eval.PPTypeEvaluator;
@@ -113,12 +119,15 @@ import org.eclipse.xtext.util.Exceptions;
 import org.eclipse.xtext.util.PolymorphicDispatcher;
 import org.eclipse.xtext.util.PolymorphicDispatcher.ErrorHandler;
 import org.eclipse.xtext.validation.Check;
+import org.eclipse.xtext.validation.GuardException;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.name.Named;
 
 public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagnostics {
 	/**
@@ -225,6 +234,483 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
+	/**
+	 * The checks performed by this validator. Each constant calls one check method directly, which avoids the
+	 * reflective invocation done by the declarative validator.
+	 * 
+	 * @see PPJavaValidator#checkObject(EObject)
+	 */
+	private enum CheckMethod {
+		ADDITIVE_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkAdditiveExpression((AdditiveExpression) o);
+			}
+		},
+
+		APPEND_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkAppendExpression((AppendExpression) o);
+			}
+		},
+
+		ASSIGNMENT_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkAssignmentExpression((AssignmentExpression) o);
+			}
+		},
+
+		AT_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkAtExpression((AtExpression) o);
+			}
+		},
+
+		ATTRIBUTE_OPERATION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkAttributeAddition((AttributeOperation) o);
+			}
+		},
+
+		ATTRIBUTE_OPERATIONS {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkAttributeOperations((AttributeOperations) o);
+			}
+		},
+
+		BINARY_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkBinaryExpression((BinaryExpression) o);
+			}
+		},
+
+		CASE {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkCase((Case) o);
+			}
+		},
+
+		CASE_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkCaseExpression((CaseExpression) o);
+			}
+		},
+
+		COLLECT_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkCollectExpression((CollectExpression) o);
+			}
+		},
+
+		DEFINITION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkDefinition((Definition) o);
+			}
+		},
+
+		DEFINITION_ARGUMENT {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkDefinitionArgument((DefinitionArgument) o);
+			}
+		},
+
+		DEFINITION_ARGUMENT_LIST {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkDefinitionArgumentList((DefinitionArgumentList) o);
+			}
+		},
+
+		DOUBLE_QUOTED_STRING {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkDoubleQuotedString((DoubleQuotedString) o);
+			}
+		},
+
+		ELSE_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkElseExpression((ElseExpression) o);
+			}
+		},
+
+		ELSE_IF_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkElseIfExpression((ElseIfExpression) o);
+			}
+		},
+
+		EQUALITY_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkEqualityExpression((EqualityExpression) o);
+			}
+		},
+
+		FUNCTION_CALL {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkFunctionCall((FunctionCall) o);
+			}
+		},
+
+		HOST_CLASS_DEFINITION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkHostClassDefinition((HostClassDefinition) o);
+			}
+		},
+
+		IF_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkIfExpression((IfExpression) o);
+			}
+		},
+
+		IMPORT_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkImportExpression((ImportExpression) o);
+			}
+		},
+
+		IN_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkInExpression((InExpression) o);
+			}
+		},
+
+		LAMBDA {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkLambda((Lambda) o);
+			}
+		},
+
+		LITERAL_NAME {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkLiteralName((LiteralName) o);
+			}
+		},
+
+		LITERAL_NAME_OR_REFERENCE {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkLiteralNameOrReference((LiteralNameOrReference) o);
+			}
+		},
+
+		LITERAL_REGEX {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkLiteralRegex((LiteralRegex) o);
+			}
+		},
+
+		MATCHING_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkMatchingExpression((MatchingExpression) o);
+			}
+		},
+
+		METHOD_CALL {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkMethodCall((MethodCall) o);
+			}
+		},
+
+		MULTIPLICATIVE_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkMultiplicativeExpression((MultiplicativeExpression) o);
+			}
+		},
+
+		NODE_DEFINITION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkNodeDefinition((NodeDefinition) o);
+			}
+		},
+
+		PARENTHESISED_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkParenthesisedExpression((ParenthesisedExpression) o);
+			}
+		},
+
+		PUPPET_MANIFEST {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkPuppetManifest((PuppetManifest) o);
+			}
+		},
+
+		RELATIONAL_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkRelationalExpression((RelationalExpression) o);
+			}
+		},
+
+		RELATIONSHIP_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkRelationshipExpression((RelationshipExpression) o);
+			}
+		},
+
+		RESOURCE_BODY {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkResourceBody((ResourceBody) o);
+			}
+		},
+
+		RESOURCE_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkResourceExpression((ResourceExpression) o);
+			}
+		},
+
+		SELECTOR_ENTRY {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkSelectorEntry((SelectorEntry) o);
+			}
+		},
+
+		SELECTOR_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkSelectorExpression((SelectorExpression) o);
+			}
+		},
+
+		SEPARATOR_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkSeparatorExpression((SeparatorExpression) o);
+			}
+		},
+
+		SHIFT_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkShiftExpression((ShiftExpression) o);
+			}
+		},
+
+		SINGLE_QUOTED_STRING {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkSingleQuotedString((SingleQuotedString) o);
+			}
+		},
+
+		UNARY_MINUS_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkUnaryExpression((UnaryMinusExpression) o);
+			}
+		},
+
+		UNARY_NOT_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkUnaryExpression((UnaryNotExpression) o);
+			}
+		},
+
+		UNLESS_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkUnlessExpression((UnlessExpression) o);
+			}
+		},
+
+		UNQUOTED_STRING {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkUnquotedString((UnquotedString) o);
+			}
+		},
+
+		VARIABLE_EXPRESSION {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkVariableExpression((VariableExpression) o);
+			}
+		},
+
+		VARIABLE_TE {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkVariableTextExpression((VariableTE) o);
+			}
+		},
+
+		VERBATIM_TE {
+			@Override
+			void check(PPJavaValidator validator, EObject o) {
+				validator.checkVerbatimTextExpression((VerbatimTE) o);
+			}
+		};
+
+		private static final CheckMethod[] NONE = {};
+
+		/**
+		 * Returns the checks that apply to instances of the class with the given classifier id. The checks are
+		 * returned in declaration order, with checks for a super class included.
+		 * 
+		 * @param classifierID
+		 *            the classifier id of a concrete {@link PPPackage} class
+		 * @return the checks, never <code>null</code>
+		 */
+		static CheckMethod[] forClassifier(int classifierID) {
+			switch(classifierID) {
+				case PPPackage.PUPPET_MANIFEST:
+					return new CheckMethod[] { PUPPET_MANIFEST };
+				case PPPackage.RESOURCE_BODY:
+					return new CheckMethod[] { RESOURCE_BODY };
+				case PPPackage.ATTRIBUTE_OPERATION:
+					return new CheckMethod[] { ATTRIBUTE_OPERATION };
+				case PPPackage.ATTRIBUTE_OPERATIONS:
+					return new CheckMethod[] { ATTRIBUTE_OPERATIONS };
+				case PPPackage.HOST_CLASS_DEFINITION:
+					return new CheckMethod[] { DEFINITION, HOST_CLASS_DEFINITION };
+				case PPPackage.DEFINITION:
+					return new CheckMethod[] { DEFINITION };
+				case PPPackage.DEFINITION_ARGUMENT_LIST:
+					return new CheckMethod[] { DEFINITION_ARGUMENT_LIST };
+				case PPPackage.DEFINITION_ARGUMENT:
+					return new CheckMethod[] { DEFINITION_ARGUMENT };
+				case PPPackage.CASE_EXPRESSION:
+					return new CheckMethod[] { CASE_EXPRESSION };
+				case PPPackage.CASE:
+					return new CheckMethod[] { CASE };
+				case PPPackage.IF_EXPRESSION:
+					return new CheckMethod[] { IF_EXPRESSION };
+				case PPPackage.LITERAL_NAME_OR_REFERENCE:
+					return new CheckMethod[] { LITERAL_NAME_OR_REFERENCE };
+				case PPPackage.RESOURCE_EXPRESSION:
+					return new CheckMethod[] { RESOURCE_EXPRESSION };
+				case PPPackage.IMPORT_EXPRESSION:
+					return new CheckMethod[] { IMPORT_EXPRESSION };
+				case PPPackage.LITERAL_REGEX:
+					return new CheckMethod[] { LITERAL_REGEX };
+				case PPPackage.LITERAL_NAME:
+					return new CheckMethod[] { LITERAL_NAME };
+				case PPPackage.VARIABLE_EXPRESSION:
+					return new CheckMethod[] { VARIABLE_EXPRESSION };
+				case PPPackage.RELATIONSHIP_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, RELATIONSHIP_EXPRESSION };
+				case PPPackage.ASSIGNMENT_EXPRESSION:
+					return new CheckMethod[] { ASSIGNMENT_EXPRESSION, BINARY_EXPRESSION };
+				case PPPackage.APPEND_EXPRESSION:
+					return new CheckMethod[] { APPEND_EXPRESSION, BINARY_EXPRESSION };
+				case PPPackage.OR_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION };
+				case PPPackage.AND_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION };
+				case PPPackage.RELATIONAL_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, RELATIONAL_EXPRESSION };
+				case PPPackage.EQUALITY_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, EQUALITY_EXPRESSION };
+				case PPPackage.SHIFT_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, SHIFT_EXPRESSION };
+				case PPPackage.ADDITIVE_EXPRESSION:
+					return new CheckMethod[] { ADDITIVE_EXPRESSION, BINARY_EXPRESSION };
+				case PPPackage.MULTIPLICATIVE_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, MULTIPLICATIVE_EXPRESSION };
+				case PPPackage.MATCHING_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, MATCHING_EXPRESSION };
+				case PPPackage.IN_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION, IN_EXPRESSION };
+				case PPPackage.AT_EXPRESSION:
+					return new CheckMethod[] { AT_EXPRESSION };
+				case PPPackage.COLLECT_EXPRESSION:
+					return new CheckMethod[] { COLLECT_EXPRESSION };
+				case PPPackage.SELECTOR_EXPRESSION:
+					return new CheckMethod[] { SELECTOR_EXPRESSION };
+				case PPPackage.SELECTOR_ENTRY:
+					return new CheckMethod[] { BINARY_EXPRESSION, SELECTOR_ENTRY };
+				case PPPackage.FUNCTION_CALL:
+					return new CheckMethod[] { FUNCTION_CALL };
+				case PPPackage.NODE_DEFINITION:
+					return new CheckMethod[] { NODE_DEFINITION };
+				case PPPackage.UNARY_MINUS_EXPRESSION:
+					return new CheckMethod[] { UNARY_MINUS_EXPRESSION };
+				case PPPackage.UNARY_NOT_EXPRESSION:
+					return new CheckMethod[] { UNARY_NOT_EXPRESSION };
+				case PPPackage.ELSE_EXPRESSION:
+					return new CheckMethod[] { ELSE_EXPRESSION };
+				case PPPackage.ELSE_IF_EXPRESSION:
+					return new CheckMethod[] { ELSE_IF_EXPRESSION, IF_EXPRESSION };
+				case PPPackage.PARENTHESISED_EXPRESSION:
+					return new CheckMethod[] { PARENTHESISED_EXPRESSION };
+				case PPPackage.DOUBLE_QUOTED_STRING:
+					return new CheckMethod[] { DOUBLE_QUOTED_STRING };
+				case PPPackage.SINGLE_QUOTED_STRING:
+					return new CheckMethod[] { SINGLE_QUOTED_STRING };
+				case PPPackage.UNQUOTED_STRING:
+					return new CheckMethod[] { UNQUOTED_STRING };
+				case PPPackage.VERBATIM_TE:
+					return new CheckMethod[] { VERBATIM_TE };
+				case PPPackage.VARIABLE_TE:
+					return new CheckMethod[] { VARIABLE_TE };
+				case PPPackage.UNLESS_EXPRESSION:
+					return new CheckMethod[] { UNLESS_EXPRESSION };
+				case PPPackage.NAMED_ACCESS_EXPRESSION:
+					return new CheckMethod[] { BINARY_EXPRESSION };
+				case PPPackage.METHOD_CALL:
+					return new CheckMethod[] { METHOD_CALL };
+				case PPPackage.JAVA_LAMBDA:
+					return new CheckMethod[] { LAMBDA };
+				case PPPackage.RUBY_LAMBDA:
+					return new CheckMethod[] { LAMBDA };
+				case PPPackage.SEPARATOR_EXPRESSION:
+					return new CheckMethod[] { SEPARATOR_EXPRESSION };
+				default:
+					return NONE;
+			}
+		}
+
+		abstract void check(PPJavaValidator validator, EObject o);
+	}
+
+	/**
+	 * The checks that apply to each {@link PPPackage} class, indexed by classifier id.
+	 */
+	private static final CheckMethod[][] checksByClassifier;
+
+	static {
+		int count = PPPackage.eINSTANCE.getEClassifiers().size();
+		checksByClassifier = new CheckMethod[count][];
+		for(int i = 0; i < count; i++)
+			checksByClassifier[i] = CheckMethod.forClassifier(i);
+	}
+
 	/**
 	 * Classifies ResourceExpression based on its content (regular, override, etc).
 	 */
@@ -244,6 +730,17 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 	@Inject
 	private PPExpressionEquivalenceCalculator eqCalculator;
 
+	@Inject
+	@Named(PPDSLConstants.PP_DEBUG_VALIDATOR)
+	private ITracer tracer;
+
+	private final Metrics metrics;
+
+	/**
+	 * Calls and time spent per {@link CheckMethod}, only recorded when tracing or when metrics are enabled.
+	 */
+	private final Timer[] checkTimers = new Timer[CheckMethod.values().length];
+
 	/**
 	 * Classes accepted as top level statements in a pp manifest.
 	 */
@@ -316,22 +813,23 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 	);
 
 	@Inject
-	public PPJavaValidator(IGrammarAccess ga, Provider<IValidationAdvisor> validationAdvisorProvider) {
+	public PPJavaValidator(IGrammarAccess ga, Provider<IValidationAdvisor> validationAdvisorProvider, Metrics metrics) {
 		acceptor = new ValidationBasedMessageAcceptor(this);
 		this.validationAdvisorProvider = validationAdvisorProvider;
+		this.metrics = metrics;
+		for(CheckMethod check : CheckMethod.values())
+			checkTimers[check.ordinal()] = metrics.timer("pp.validator." + check.name().toLowerCase());
 	}
 
 	private IValidationAdvisor advisor() {
 		return validationAdvisorProvider.get();
 	}
 
-	@Check
 	public void checkAdditiveExpression(AdditiveExpression o) {
 		checkOperator(o, "+", "-");
 		checkNumericBinaryExpression(o);
 	}
 
-	@Check
 	public void checkAppendExpression(AppendExpression o) {
 		Expression leftExpr = o.getLeftExpr();
 		if(!(leftExpr instanceof VariableExpression))
@@ -377,7 +875,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
-	@Check
 	public void checkAssignmentExpression(AssignmentExpression o) {
 		Expression leftExpr = o.getLeftExpr();
 		if(!(leftExpr instanceof VariableExpression || leftExpr instanceof AtExpression))
@@ -398,7 +895,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 	 * 
 	 * @param o
 	 */
-	@Check
 	public void checkAtExpression(AtExpression o) {
 		if(!isStandardAtExpression(o)) {
 			checkAtExpressionAsResourceReference(o);
@@ -505,7 +1001,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkAttributeAddition(AttributeOperation o) {
 		if(!isNAME(o.getKey()))
 			acceptor.acceptError(
@@ -522,7 +1017,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				IPPDiagnostics.ISSUE__NULL_EXPRESSION);
 	}
 
-	@Check
 	public void checkAttributeOperations(AttributeOperations o) {
 		final int count = o.getAttributes().size();
 		EList<AttributeOperation> attrs = o.getAttributes();
@@ -568,7 +1062,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 						IPPDiagnostics.ISSUE__RESOURCE_DUPLICATE_PARAMETER);
 	}
 
-	@Check
 	public void checkBinaryExpression(BinaryExpression o) {
 		if(o.getLeftExpr() == null)
 			acceptor.acceptError(
@@ -586,7 +1079,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 	 * 
 	 * @param o
 	 */
-	@Check
 	public void checkCase(Case o) {
 		internalCheckTopLevelExpressions(o.getStatements());
 
@@ -610,7 +1102,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkCaseExpression(CaseExpression o) {
 		final Expression switchExpr = o.getSwitchExpr();
 
@@ -642,8 +1133,8 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 			}
 		}
 
-		// Check duplicate by equivalence (mark as duplicate)
 		// Check equality to switch expression (mark all others as unreachable),
+		// Check duplicate by equivalence (mark as duplicate)
 		for(int i = 0; i < caseExpressions.size(); i++) {
 			Expression e1 = caseExpressions.get(i);
 
@@ -652,12 +1143,9 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				for(int u = 0; u < caseExpressions.size(); u++)
 					if(u != i)
 						unreachables.add(u);
-
-			// or if equal to the case expression e1, that this particular expression is a duplicate (mark both).
-			for(int j = i + 1; j < caseExpressions.size(); j++)
-				if(eqCalculator.isEquivalent(e1, caseExpressions.get(j)))
-					duplicates.addAll(Lists.newArrayList(i, j));
 		}
+		// or if equal to another case expression, that particular expression is a duplicate (mark both).
+		collectEquivalent(caseExpressions, duplicates);
 
 		// mark all that are unreachable
 		for(Integer i : unreachables)
@@ -669,7 +1157,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
-	@Check
 	public void checkCollectExpression(CollectExpression o) {
 
 		// -- the class reference must have valid class ref format
@@ -700,7 +1187,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkDefinition(Definition o) {
 		internalCheckTopLevelExpressions(o.getStatements());
 
@@ -743,7 +1229,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkDefinitionArgument(DefinitionArgument o) {
 		// -- LHS should be a variable, use of name is deprecated
 		String argName = o.getArgName();
@@ -779,7 +1264,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		internalCheckRvalueExpression(o.getValue());
 	}
 
-	@Check
 	public void checkDefinitionArgumentList(DefinitionArgumentList o) {
 		Set<String> seen = Sets.newHashSet();
 		int lastWithoutDefault = -1;
@@ -831,7 +1315,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkDoubleQuotedString(DoubleQuotedString o) {
 		// Check if a verbatim part starting with '-' follows a VariableTE.
 		// If so, issue configurable issue for the VariableTE
@@ -920,7 +1403,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkElseExpression(ElseExpression o) {
 		internalCheckTopLevelExpressions(o.getStatements());
 		EObject container = o.eContainer();
@@ -940,7 +1422,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 			INSIGNIFICANT_INDEX, IPPDiagnostics.ISSUE__UNSUPPORTED_EXPRESSION);
 	}
 
-	@Check
 	public void checkElseIfExpression(ElseIfExpression o) {
 		internalCheckTopLevelExpressions(o.getThenStatements());
 		EObject container = o.eContainer();
@@ -952,12 +1433,10 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 			INSIGNIFICANT_INDEX, IPPDiagnostics.ISSUE__UNSUPPORTED_EXPRESSION);
 	}
 
-	@Check
 	public void checkEqualityExpression(EqualityExpression o) {
 		checkOperator(o, "==", "!=");
 	}
 
-	@Check
 	public void checkFunctionCall(FunctionCall o) {
 		if(!(o.getLeftExpr() instanceof LiteralNameOrReference))
 			acceptor.acceptError(
@@ -966,12 +1445,10 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		// rest of validation - valid function - is done during linking
 	}
 
-	@Check
 	public void checkHostClassDefinition(HostClassDefinition o) {
 		// Checks performed by checkDefinition, and in PPResourceLinker
 	}
 
-	@Check
 	public void checkIfExpression(IfExpression o) {
 		internalCheckTopLevelExpressions(o.getThenStatements());
 		Expression elseStatement = o.getElseStatement();
@@ -984,7 +1461,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 			IPPDiagnostics.ISSUE__UNSUPPORTED_EXPRESSION);
 	}
 
-	@Check
 	public void checkImportExpression(ImportExpression o) {
 		if(o.getValues().size() <= 0)
 			acceptor.acceptError(
@@ -1002,12 +1478,10 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkInExpression(InExpression o) {
 		checkOperator(o, "in");
 	}
 
-	@Check
 	public void checkLambda(Lambda o) {
 		if(!advisor().allowLambdas()) {
 			acceptor.acceptError(
@@ -1019,7 +1493,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkLiteralName(LiteralName o) {
 		if(!isNAME(o.getValue()))
 			acceptor.acceptError(
@@ -1027,7 +1500,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				IPPDiagnostics.ISSUE__NOT_NAME);
 	}
 
-	@Check
 	public void checkLiteralNameOrReference(LiteralNameOrReference o) {
 		if(isKEYWORD(o.getValue())) {
 			acceptor.acceptError(
@@ -1045,7 +1517,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
-	@Check
 	public void checkLiteralRegex(LiteralRegex o) {
 		if(!isREGEX(o.getValue())) {
 			acceptor.acceptError(
@@ -1060,7 +1531,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				IPPDiagnostics.ISSUE__UNSUPPORTED_REGEX_FLAGS);
 	}
 
-	@Check
 	public void checkMatchingExpression(MatchingExpression o) {
 		Expression regex = o.getRightExpr();
 		if(regex == null || !(regex instanceof LiteralRegex))
@@ -1071,7 +1541,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		checkOperator(o, "=~", "!~");
 	}
 
-	@Check
 	public void checkMethodCall(MethodCall o) {
 		if(!advisor().allowLambdas()) { // Note, same check as for lambdas...
 			acceptor.acceptError(
@@ -1087,7 +1556,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkMultiplicativeExpression(MultiplicativeExpression o) {
 		if(advisor().allowModulo())
 			checkOperator(o, "*", "/", "%");
@@ -1096,7 +1564,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		checkNumericBinaryExpression(o);
 	}
 
-	@Check
 	public void checkNodeDefinition(NodeDefinition o) {
 		internalCheckTopLevelExpressions(o.getStatements());
 
@@ -1141,6 +1608,47 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
+	/**
+	 * Performs all checks that apply to the given object. This is the only check method known to the declarative
+	 * validator, the checks for the object's class are called directly using a table keyed on the classifier id.
+	 * As with the declarative validator, a {@link NullPointerException} or {@link GuardException} thrown by one check
+	 * does not prevent the remaining checks from being performed.
+	 * <p>
+	 * When the validator tracer or the {@link Metrics} are enabled, the number of calls and the time spent in each
+	 * check is recorded. See {@link #traceCheckTimings()}.
+	 * </p>
+	 * 
+	 * @param o
+	 *            the object to check
+	 */
+	@Check
+	public void checkObject(EObject o) {
+		EClass eClass = o.eClass();
+		if(eClass.getEPackage() != PPPackage.eINSTANCE)
+			return;
+		int classifierID = eClass.getClassifierID();
+		if(classifierID >= checksByClassifier.length)
+			return;
+
+		boolean timed = tracer.isTracing() || metrics.isEnabled();
+		for(CheckMethod check : checksByClassifier[classifierID]) {
+			long start = timed
+					? System.nanoTime()
+					: 0;
+			try {
+				check.check(this, o);
+			}
+			catch(NullPointerException e) {
+				// ignored, the check is simply not completed
+			}
+			catch(GuardException e) {
+				// ignored, the check is not evaluated if the guard is false
+			}
+			if(timed)
+				checkTimers[check.ordinal()].stop(start);
+		}
+	}
+
 	protected void checkOperator(BinaryOpExpression o, String... ops) {
 		String op = o.getOpName();
 		for(String s : ops)
@@ -1154,7 +1662,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
-	@Check
 	public void checkParenthesisedExpression(ParenthesisedExpression o) {
 		if(o.getExpr() == null) {
 			final String msg = "Empty expression";
@@ -1181,13 +1688,11 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkPuppetManifest(PuppetManifest o) {
 		internalCheckTopLevelExpressions(o.getStatements());
 		internalCheckComments(o);
 	}
 
-	@Check
 	public void checkRelationalExpression(RelationalExpression o) {
 		String op = o.getOpName();
 		if("<".equals(op) || "<=".equals(op) || ">".equals(op) || ">=".equals(op))
@@ -1210,7 +1715,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 	 * INEDGE_SUB : TILDE GT; // '~>'
 	 * OUTEDGE_SUB : LT TILDE; // '<~'
 	 */
-	@Check
 	public void checkRelationshipExpression(RelationshipExpression o) {
 		// -- Check operator validity
 		String opName = o.getOpName();
@@ -1253,7 +1757,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkResourceBody(ResourceBody o) {
 		Expression nameExpr = o.getNameExpr();
 		// missing name is checked by container (if it is ok or not)
@@ -1308,7 +1811,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 	 * 
 	 * @param o
 	 */
-	@Check
 	public void checkResourceExpression(ResourceExpression o) {
 		classifier.classify(o);
 		ClassifierAdapter adapter = ClassifierAdapterFactory.eINSTANCE.adapt(o);
@@ -1435,7 +1937,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkSelectorEntry(SelectorEntry o) {
 		Expression lhs = o.getLeftExpr();
 		if(!isSELECTOR_LHS(lhs))
@@ -1446,7 +1947,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		// TODO: check rhs is "rvalue"
 	}
 
-	@Check
 	public void checkSelectorExpression(SelectorExpression o) {
 		Expression lhs = o.getLeftExpr();
 
@@ -1533,16 +2033,8 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 						continue;
 					unreachables.add(u);
 				}
-			for(int j = i + 1; j < caseExpressions.size(); j++) {
-				Expression e2 = caseExpressions.get(j);
-				if(e2 == null)
-					continue;
-				if(eqCalculator.isEquivalent(e1, e2)) {
-					duplicates.add(i);
-					duplicates.add(j);
-				}
-			}
 		}
+		collectEquivalent(caseExpressions, duplicates);
 
 		for(Integer i : unreachables)
 			if(caseExpressions.get(i) != null)
@@ -1584,7 +2076,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
-	@Check
 	public void checkSeparatorExpression(SeparatorExpression o) {
 		if(!advisor().allowSeparatorExpression())
 			acceptor.acceptError(
@@ -1592,13 +2083,11 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				o, IPPDiagnostics.ISSUE__UNSUPPORTED_SEPARATOR);
 	}
 
-	@Check
 	public void checkShiftExpression(ShiftExpression o) {
 		checkOperator(o, "<<", ">>");
 		checkNumericBinaryExpression(o);
 	}
 
-	@Check
 	public void checkSingleQuotedString(SingleQuotedString o) {
 		if(!isSTRING(o.getText()))
 			acceptor.acceptError(
@@ -1622,7 +2111,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 
 	}
 
-	@Check
 	public void checkUnaryExpression(UnaryMinusExpression o) {
 		if(o.getExpr() == null)
 			acceptor.acceptError(
@@ -1632,7 +2120,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				IPPDiagnostics.ISSUE__NULL_EXPRESSION);
 	}
 
-	@Check
 	public void checkUnaryExpression(UnaryNotExpression o) {
 		if(o.getExpr() == null)
 			acceptor.acceptError("A not expression must have a righ hand side expression", o, //
@@ -1640,7 +2127,6 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				IPPDiagnostics.ISSUE__NULL_EXPRESSION);
 	}
 
-	@Check
 	void checkUnlessExpression(UnlessExpression o) {
 		internalCheckTopLevelExpressions(o.getThenStatements());
 		if(!advisor().allowUnless()) {
@@ -1650,13 +2136,11 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 		}
 	}
 
-	@Check
 	public void checkUnquotedString(UnquotedString o) {
 		// Turns out these are not supported at all !
 		acceptor.acceptError("Unquoted interpolation is not supported", o, IPPDiagnostics.ISSUE__UNQUOTED_INTERPOLATION);
 	}
 
-	@Check
 	public void checkVariableExpression(VariableExpression o) {
 		if(!isVARIABLE(o.getVarName()))
 			acceptor.acceptError(
@@ -1664,12 +2148,10 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				INSIGNIFICANT_INDEX, IPPDiagnostics.ISSUE__NOT_VARNAME);
 	}
 
-	@Check
 	void checkVariableTextExpression(VariableTE o) {
 		// TODO: There is not much that can go wrong here, but should protect against manual model problems (like not a valid variable name.
 	}
 
-	@Check
 	public void checkVerbatimTextExpression(VerbatimTE o) {
 		String s = o.getText();
 		if(s == null || s.length() == 0)
@@ -1688,6 +2170,45 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				IPPDiagnostics.ISSUE__UNRECOGNIZED_ESCAPE);
 	}
 
+	/**
+	 * Adds the index of each expression that is equivalent to some other expression in the list to <code>result</code>.
+	 * The expressions are first bucketed by structural hash so that only expressions in the same bucket are compared.
+	 * 
+	 * @param expressions
+	 *            the expressions to check, <code>null</code> entries are skipped
+	 * @param result
+	 *            receives the indexes of the equivalent expressions
+	 */
+	private void collectEquivalent(List<Expression> expressions, Set<Integer> result) {
+		Map<Integer, List<Integer>> buckets = Maps.newHashMap();
+		for(int i = 0; i < expressions.size(); i++) {
+			Expression e = expressions.get(i);
+			if(e == null)
+				continue;
+			Integer hash = eqCalculator.structuralHash(e);
+			List<Integer> bucket = buckets.get(hash);
+			if(bucket == null) {
+				bucket = Lists.newArrayListWithCapacity(1);
+				buckets.put(hash, bucket);
+			}
+			bucket.add(i);
+		}
+		for(List<Integer> bucket : buckets.values()) {
+			int top = bucket.size();
+			for(int i = 0; i < top; i++) {
+				Integer i1 = bucket.get(i);
+				Expression e1 = expressions.get(i1);
+				for(int j = i + 1; j < top; j++) {
+					Integer i2 = bucket.get(j);
+					if(eqCalculator.isEquivalent(e1, expressions.get(i2))) {
+						result.add(i1);
+						result.add(i2);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * NOTE: Adds validation to the puppet package (in 1.0 the package was not added
 	 * automatically, in 2.0 it is.
@@ -1987,6 +2508,24 @@ public class PPJavaValidator extends AbstractPPJavaValidator implements IPPDiagn
 				: Severity.WARNING;
 	}
 
+	/**
+	 * Writes the number of calls and the accumulated time of each check performed so far to the validator tracer. This
+	 * method does nothing unless tracing is enabled.
+	 */
+	public void traceCheckTimings() {
+		if(!tracer.isTracing())
+			return;
+		tracer.trace("Validation checks: {");
+		for(CheckMethod check : CheckMethod.values()) {
+			Timer timer = checkTimers[check.ordinal()];
+			long calls = timer.getCount();
+			if(calls > 0)
+				tracer.trace(
+					"  ", check, ": ", calls, " calls, ", TimeUnit.NANOSECONDS.toMillis(timer.getTotalNanos()), " ms");
+		}
+		tracer.trace("}");
+	}
+
 	private void warningOrError(IMessageAcceptor acceptor, ValidationPreference validationPreference, String message,
 			EObject o, EAttribute feature, String issue) {
 		if(validationPreference.isWarning())
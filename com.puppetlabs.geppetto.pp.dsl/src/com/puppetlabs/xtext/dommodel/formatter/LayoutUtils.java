@@ -12,18 +12,24 @@ package com.puppetlabs.xtext.dommodel.formatter;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.puppetlabs.geppetto.common.stats.IntegerCluster;
 import com.puppetlabs.xtext.dommodel.IDomNode;
 import com.puppetlabs.xtext.dommodel.formatter.ILayoutManager.ILayoutContext;
 import com.puppetlabs.xtext.dommodel.formatter.css.Alignment;
+import com.puppetlabs.xtext.dommodel.formatter.css.DomCSS;
 import com.puppetlabs.xtext.dommodel.formatter.css.StyleFactory;
 import com.puppetlabs.xtext.dommodel.formatter.css.StyleSet;
+import com.puppetlabs.xtext.dommodel.impl.AbstractDomNode;
+import com.puppetlabs.xtext.textflow.IMetrics;
 import com.puppetlabs.xtext.textflow.ITextFlow;
 import com.puppetlabs.xtext.textflow.MeasuredTextFlow;
 import org.eclipse.xtext.AbstractElement;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.inject.Inject;
 
 /**
@@ -31,6 +37,46 @@ import com.google.inject.Inject;
  * 
  */
 public class LayoutUtils {
+	/**
+	 * The width of a node measured without line breaks.
+	 */
+	private static class FlatWidth {
+		final AbstractElement startGrammarElement;
+
+		final AbstractElement untilGrammarElement;
+
+		final DomCSS css;
+
+		/**
+		 * the {@link AbstractDomNode#getStyleModificationStamp(IDomNode) style modification stamp} of the DOM when the
+		 * node was measured
+		 */
+		final Object styleModificationStamp;
+
+		final int width;
+
+		/**
+		 * false if the measurement was stopped, and the node is at least {@link #width} wide
+		 */
+		final boolean exact;
+
+		FlatWidth(AbstractElement startGrammarElement, AbstractElement untilGrammarElement, ILayoutContext context,
+				Object styleModificationStamp, int width, boolean exact) {
+			this.startGrammarElement = startGrammarElement;
+			this.untilGrammarElement = untilGrammarElement;
+			this.css = context.getCSS();
+			this.styleModificationStamp = styleModificationStamp;
+			this.width = width;
+			this.exact = exact;
+		}
+
+		boolean isFor(AbstractElement startGrammarElement, AbstractElement untilGrammarElement, ILayoutContext context,
+				Object styleModificationStamp) {
+			return this.startGrammarElement == startGrammarElement &&
+					this.untilGrammarElement == untilGrammarElement && css == context.getCSS() &&
+					this.styleModificationStamp == styleModificationStamp;
+		}
+	}
 
 	/**
 	 * <p>
@@ -74,9 +120,63 @@ public class LayoutUtils {
 				new StyleFactory.AlignmentStyle(alignment)));
 	}
 
+	/**
+	 * Returns a predicate that can be used as the <i>until</i> predicate when sequencing nodes to a measuring flow. The
+	 * predicate is satisfied as soon as the flow is higher than the given height, or its last line is wider than the
+	 * given width. Since output is only ever appended to the flow, the measurements can only grow once the predicate
+	 * is satisfied (a break increases the height), and it is therefore safe to stop measuring at that point.
+	 * 
+	 * @param flow
+	 *            - the flow that is being measured
+	 * @param maxHeight
+	 *            - the highest acceptable height
+	 * @param maxWidth
+	 *            - the widest acceptable last line
+	 * @return a predicate that is true when the flow has overflowed the given limits
+	 */
+	public static Predicate<IDomNode> untilOverflow(final IMetrics flow, final int maxHeight, final int maxWidth) {
+		return new Predicate<IDomNode>() {
+			@Override
+			public boolean apply(IDomNode input) {
+				return flow.getHeight() > maxHeight || flow.getWidthOfLastLine() > maxWidth;
+			}
+		};
+	}
+
 	@Inject
 	DomNodeLayoutFeeder feeder;
 
+	/**
+	 * The width a node was found to have when it was measured without a line break, keyed on the node. Nodes that are
+	 * no longer referenced by the dom model are dropped, and so are widths measured before the styles or style
+	 * classifiers of a node in the same DOM changed.
+	 */
+	private final Map<IDomNode, FlatWidth> flatWidths = new MapMaker().weakKeys().makeMap();
+
+	/**
+	 * Returns true if the node (from the given start element until the given end element), when formatted and written
+	 * to the given flow will fit on what remains on the line. The flow and contexts are not affected by this
+	 * operation.
+	 * <p>
+	 * The measurement stops as soon as it is known that the node does not fit. When the node is measured without line
+	 * breaks, its width is remembered, and a later call for the same node and elements (typically when the node is
+	 * formatted after having been measured as part of a larger node) is answered from the remembered width without
+	 * formatting the node again. A remembered width is not used once a layout has changed the styles or style
+	 * classifiers of a node, since that may change the width.
+	 * </p>
+	 * 
+	 * @param node
+	 *            - the node to measure
+	 * @param startGrammarElement
+	 *            - the first element to measure, or <code>null</code> to measure from the start
+	 * @param untilGrammarElement
+	 *            - the last element to measure (inclusive), or <code>null</code> to measure until the end
+	 * @param flow
+	 *            - the flow where the node is to be written (at some later point in time)
+	 * @param context
+	 *            - the context used to write to the given flow
+	 * @return true if the formatted node fits on the same line
+	 */
 	public boolean fitsOnSameLine(IDomNode node, AbstractElement startGrammarElement,
 			AbstractElement untilGrammarElement, ITextFlow flow, ILayoutContext context) {
 		DelegatingLayoutContext dlc = new DelegatingLayoutContext(context);
@@ -92,14 +192,45 @@ public class LayoutUtils {
 		// take start measure
 		// if flow is empty the first output char will give it height 1
 		int h0 = Math.max(1, continuedFlow.getHeight());
+		int maxWidth = continuedFlow.getPreferredMaxWidth();
+
+		// a remembered width can only be used when continuing on a line that has been started
+		boolean midLine = !(continuedFlow.isEmpty() || continuedFlow.endsWithBreak());
+		int w0 = continuedFlow.getWidthOfLastLine();
+		Object styleModificationStamp = AbstractDomNode.getStyleModificationStamp(node);
+		boolean remember = midLine && isRememberingWidths();
+		if(remember) {
+			FlatWidth known = flatWidths.get(node);
+			if(known != null) {
+				if(!known.isFor(startGrammarElement, untilGrammarElement, context, styleModificationStamp))
+					flatWidths.remove(node);
+				else {
+					if(w0 + known.width >= maxWidth)
+						return false;
+					if(known.exact)
+						return true;
+				}
+			}
+		}
+
+		// the node does not fit if the output causes a break (height increases), or reaches the edge
+		Predicate<IDomNode> overflow = untilOverflow(continuedFlow, h0, maxWidth - 1);
 		for(IDomNode n : node.getChildren()) {
-			feeder.sequence(n, continuedFlow, dlc);
+			if(overflow.apply(n))
+				break;
+			feeder.sequence(n, continuedFlow, dlc, overflow);
 			if(untilGrammarElement != null && n.getGrammarElement() == untilGrammarElement)
 				break;
 		}
 		int h1 = continuedFlow.getHeight();
-		// if output causes break (height increases), or at edge (the '{' will not fit).
-		return h1 <= h0 && continuedFlow.getWidthOfLastLine() < continuedFlow.getPreferredMaxWidth();
+		// a width is not remembered if the styles changed while the node was measured
+		if(remember && h1 <= h0 && !continuedFlow.endsWithBreak() &&
+				styleModificationStamp == AbstractDomNode.getStyleModificationStamp(node))
+			// when measurement was stopped at the edge, the node is only known to be at least this wide
+			flatWidths.put(node, new FlatWidth(
+				startGrammarElement, untilGrammarElement, context, styleModificationStamp,
+				continuedFlow.getWidthOfLastLine() - w0, !overflow.apply(node)));
+		return h1 <= h0 && continuedFlow.getWidthOfLastLine() < maxWidth;
 	}
 
 	/**
@@ -136,4 +267,15 @@ public class LayoutUtils {
 	public boolean fitsOnSameLine(IDomNode node, ITextFlow flow, ILayoutContext context) {
 		return fitsOnSameLine(node, null, flow, context);
 	}
+
+	/**
+	 * Returns true if the width of a node that was measured without line breaks should be remembered and used by
+	 * later measurements of the same node. Subclasses may turn this off, e.g. to compare the result of formatting with
+	 * and without remembered widths.
+	 * 
+	 * @return true if widths are remembered
+	 */
+	protected boolean isRememberingWidths() {
+		return true;
+	}
 }
@@ -12,7 +12,6 @@ package com.puppetlabs.xtext.dommodel.formatter.css;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -25,6 +24,11 @@ import com.puppetlabs.xtext.dommodel.IDomNode;
 public class DomCSS {
 	ArrayList<Rule> cssRules;
 
+	/**
+	 * Index used when collecting rules, created on demand and discarded when rules are added.
+	 */
+	private volatile RuleIndex ruleIndex;
+
 	/**
 	 * Comparator that compares specificity of two rules, and if specificity is equal, the rule with
 	 * lower index is considered to be 'before'.
@@ -87,6 +91,7 @@ public class DomCSS {
 				: rule;
 		rule.setDomCSS(this);
 		cssRules.add(rule);
+		ruleIndex = null;
 	}
 
 	/**
@@ -144,13 +149,12 @@ public class DomCSS {
 	public List<Rule> collectRules(IDomNode node) {
 		ArrayList<Rule> matches = new ArrayList<Rule>(5); // guessing on size
 
-		// if element has a style map, add a (matched) rule for it
+		// the index produces the rules in RULE_COMPARATOR order
+		getRuleIndex().collectRules(node, matches);
+
+		// if element has a style map, add a (matched) rule for it, its specificity is higher than that of all other rules
 		if(node.getStyles() != null)
 			matches.add(new Rule(new Select.Instance(node), node.getStyles()).withRuleName("StyleInNode"));
-		for(Rule r : cssRules)
-			if(r.matches(node))
-				matches.add(r);
-		Collections.sort(matches, RULE_COMPARATOR);
 		return matches;
 	}
 
@@ -158,11 +162,17 @@ public class DomCSS {
 	 * Collects the style applicable to the given node. (The styles from all matching rules are reduced to a
 	 * resulting style set).
 	 * 
+	 * The returned style set may be shared between nodes and must not be modified.
+	 * 
 	 * @param context
 	 * @param element
 	 * @return a style set with all collected styles
 	 */
 	public StyleSet collectStyles(IDomNode element) {
+		StyleSet shared = getRuleIndex().getConstantStyles(element);
+		if(shared != null)
+			return shared;
+
 		StyleSetWithTracking result = new StyleSetWithTracking();
 		for(Rule r : collectRules(element)) {
 			result.setSource(r);
@@ -184,6 +194,18 @@ public class DomCSS {
 			s.visit(node, collector);
 	}
 
+	private RuleIndex getRuleIndex() {
+		RuleIndex index = ruleIndex;
+		if(index == null) {
+			synchronized(this) {
+				index = ruleIndex;
+				if(index == null)
+					ruleIndex = index = new RuleIndex(cssRules);
+			}
+		}
+		return index;
+	}
+
 	/**
 	 * Returns the style sheet index of the given rule.
 	 * 
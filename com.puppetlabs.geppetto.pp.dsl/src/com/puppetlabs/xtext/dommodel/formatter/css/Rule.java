@@ -145,6 +145,10 @@ public final class Rule implements Cloneable {
 		return ruleName;
 	}
 
+	Select.Selector getSelector() {
+		return selector;
+	}
+
 	/**
 	 * Return the specificity of the rule's selector.
 	 * 
@@ -0,0 +1,473 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.xtext.dommodel.formatter.css;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+
+import com.puppetlabs.xtext.dommodel.IDomNode;
+import com.puppetlabs.xtext.dommodel.IDomNode.NodeType;
+
+/**
+ * An immutable index over the rules of a {@link DomCSS} that is used when collecting the rules matching a node.
+ * Each rule is placed in a bucket keyed on something a node must have for the rule's selector to match (a grammar
+ * element, a text, a style class etc.) so that only the rules in the buckets of the node's own keys, and the rules
+ * that could not be keyed, are tested.
+ * <p>
+ * The rules are numbered in {@link DomCSS#RULE_COMPARATOR} order when the index is created which makes it possible to
+ * produce a sorted result without sorting. The outcome of rules that only depend on the node itself (see
+ * {@link Select.Selector#isLocal()}) is remembered per node {@link Signature} and the remaining rules are tested for
+ * every node.
+ * </p>
+ * The index is safe to use from several threads provided that the style sheet is not modified.
+ */
+class RuleIndex {
+	/**
+	 * The result of indexed matching for one signature.
+	 */
+	private static class Entry {
+		/**
+		 * The numbers of the rules that matched, or that must be tested, in rule order.
+		 */
+		final int[] ruleNumbers;
+
+		/**
+		 * Tells if the rule at the corresponding position in {@link #ruleNumbers} must be tested against the node.
+		 */
+		final boolean[] test;
+
+		final boolean constant;
+
+		/**
+		 * Lazily created style set for entries that are constant.
+		 */
+		volatile StyleSet styles;
+
+		Entry(int[] ruleNumbers, boolean[] test) {
+			this.ruleNumbers = ruleNumbers;
+			this.test = test;
+			boolean c = true;
+			for(boolean t : test)
+				if(t) {
+					c = false;
+					break;
+				}
+			this.constant = c;
+		}
+	}
+
+	/**
+	 * A key that a node can have. The kinds are declared in order of how selective they are expected to be.
+	 */
+	static final class Key {
+		enum Kind {
+			ID, TEXT, GRAMMAR, CLASSIFIER, SEMANTIC, NEAREST_SEMANTIC, TYPE
+		}
+
+		static Key classifier(Object classifier) {
+			return new Key(Kind.CLASSIFIER, classifier);
+		}
+
+		static Key grammar(EObject grammarElement) {
+			return new Key(Kind.GRAMMAR, grammarElement);
+		}
+
+		static Key id(Object id) {
+			return new Key(Kind.ID, id);
+		}
+
+		static Key semantic(EClass eClass, boolean nearest) {
+			return new Key(nearest
+					? Kind.NEAREST_SEMANTIC
+					: Kind.SEMANTIC, eClass);
+		}
+
+		static Key text(String text) {
+			return new Key(Kind.TEXT, text);
+		}
+
+		static Key type(NodeType nodeType) {
+			return new Key(Kind.TYPE, nodeType);
+		}
+
+		final Kind kind;
+
+		final Object value;
+
+		private Key(Kind kind, Object value) {
+			this.kind = kind;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o)
+				return true;
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return kind == k.kind && (value == null
+					? k.value == null
+					: value.equals(k.value));
+		}
+
+		@Override
+		public int hashCode() {
+			return kind.hashCode() * 31 + (value == null
+					? 0
+					: value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return kind + "(" + value + ")";
+		}
+	}
+
+	/**
+	 * Everything that the outcome of a local selector can depend on. The text and the id are only included when
+	 * some selector refers to them since they are otherwise different for most nodes.
+	 */
+	private static final class Signature {
+		private final EObject grammarElement;
+
+		private final NodeType nodeType;
+
+		private final Set<Object> classifiers;
+
+		private final Object id;
+
+		private final String text;
+
+		private final EClass semanticClass;
+
+		private final EClass nearestSemanticClass;
+
+		private final int hash;
+
+		Signature(EObject grammarElement, NodeType nodeType, Set<Object> classifiers, Object id, String text,
+				EClass semanticClass, EClass nearestSemanticClass) {
+			this.grammarElement = grammarElement;
+			this.nodeType = nodeType;
+			this.classifiers = classifiers;
+			this.id = id;
+			this.text = text;
+			this.semanticClass = semanticClass;
+			this.nearestSemanticClass = nearestSemanticClass;
+			int h = hash(grammarElement);
+			h = h * 31 + hash(nodeType);
+			h = h * 31 + hash(classifiers);
+			h = h * 31 + hash(id);
+			h = h * 31 + hash(text);
+			h = h * 31 + hash(semanticClass);
+			h = h * 31 + hash(nearestSemanticClass);
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o)
+				return true;
+			if(!(o instanceof Signature))
+				return false;
+			Signature s = (Signature) o;
+			return hash == s.hash && grammarElement == s.grammarElement && nodeType == s.nodeType &&
+					semanticClass == s.semanticClass && nearestSemanticClass == s.nearestSemanticClass &&
+					equal(id, s.id) && equal(text, s.text) && equal(classifiers, s.classifiers);
+		}
+
+		/**
+		 * Returns a signature that does not share the (possibly modifiable) set of classifiers with the node.
+		 */
+		Signature freeze() {
+			if(classifiers == null || classifiers.isEmpty())
+				return this;
+			return new Signature(
+				grammarElement, nodeType, Collections.unmodifiableSet(new HashSet<Object>(classifiers)), id, text,
+				semanticClass, nearestSemanticClass);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static boolean equal(Object a, Object b) {
+		return a == null
+				? b == null
+				: a.equals(b);
+	}
+
+	private static int hash(Object o) {
+		return o == null
+				? 0
+				: o.hashCode();
+	}
+
+	/**
+	 * Returns true if a node having one of the keys <code>a</code> is believed to be less common than a node having one
+	 * of the keys <code>b</code>. Both collections must be non empty.
+	 *
+	 * @param a
+	 * @param b
+	 * @return true if <code>a</code> is the better choice for the index
+	 */
+	static boolean isMoreSelective(Collection<Key> a, Collection<Key> b) {
+		int ka = a.iterator().next().kind.ordinal();
+		int kb = b.iterator().next().kind.ordinal();
+		if(ka != kb)
+			return ka < kb;
+		return a.size() < b.size();
+	}
+
+	/**
+	 * All rules in rule order.
+	 */
+	private final Rule[] rules;
+
+	private final boolean[] local;
+
+	private final Map<Key, int[]> buckets;
+
+	/**
+	 * Numbers of the rules that could not be keyed and that must be considered for all nodes.
+	 */
+	private final int[] universal;
+
+	private final Set<String> signatureTexts;
+
+	private final Set<Object> signatureIds;
+
+	private final ConcurrentMap<Signature, Entry> entries = new ConcurrentHashMap<Signature, Entry>();
+
+	/**
+	 * @param cssRules
+	 *            - the rules in the order they were added to the style sheet
+	 */
+	RuleIndex(List<Rule> cssRules) {
+		// Collections.sort is stable so rules with equal specificity keep the order in which they were added
+		// which is the order defined by DomCSS.RULE_COMPARATOR
+		List<Rule> ordered = new ArrayList<Rule>(cssRules);
+		Collections.sort(ordered, new Comparator<Rule>() {
+			public int compare(Rule r1, Rule r2) {
+				int r1s = r1.getSpecificity();
+				int r2s = r2.getSpecificity();
+				return r1s < r2s
+						? -1
+						: (r1s > r2s
+								? 1
+								: 0);
+			}
+		});
+		int top = ordered.size();
+		rules = ordered.toArray(new Rule[top]);
+		local = new boolean[top];
+
+		Map<Key, List<Integer>> keyed = new HashMap<Key, List<Integer>>();
+		List<Integer> unkeyed = new ArrayList<Integer>();
+		Set<Key> signatureKeys = new HashSet<Key>();
+		for(int idx = 0; idx < top; ++idx) {
+			Select.Selector selector = rules[idx].getSelector();
+			local[idx] = selector.isLocal();
+			if(local[idx])
+				selector.collectKeys(signatureKeys);
+
+			Collection<Key> keys = selector.getIndexKeys();
+			if(keys == null) {
+				unkeyed.add(idx);
+				continue;
+			}
+			for(Key key : keys) {
+				List<Integer> bucket = keyed.get(key);
+				if(bucket == null) {
+					bucket = new ArrayList<Integer>();
+					keyed.put(key, bucket);
+				}
+				bucket.add(idx);
+				signatureKeys.add(key);
+			}
+		}
+
+		buckets = new HashMap<Key, int[]>(keyed.size() * 2);
+		for(Map.Entry<Key, List<Integer>> bucket : keyed.entrySet())
+			buckets.put(bucket.getKey(), toArray(bucket.getValue()));
+		universal = toArray(unkeyed);
+
+		signatureTexts = new HashSet<String>();
+		signatureIds = new HashSet<Object>();
+		for(Key key : signatureKeys)
+			switch(key.kind) {
+				case TEXT:
+					signatureTexts.add((String) key.value);
+					break;
+				case ID:
+					signatureIds.add(key.value);
+					break;
+				default:
+					break;
+			}
+	}
+
+	private static int[] toArray(List<Integer> values) {
+		int[] result = new int[values.size()];
+		for(int idx = 0; idx < result.length; ++idx)
+			result[idx] = values.get(idx);
+		return result;
+	}
+
+	private void addBucket(BitSet candidates, Key key) {
+		int[] bucket = buckets.get(key);
+		if(bucket != null)
+			for(int ruleNumber : bucket)
+				candidates.set(ruleNumber);
+	}
+
+	private void addSemanticBuckets(BitSet candidates, EObject semantic, boolean nearest) {
+		if(semantic == null)
+			return;
+		EClass eClass = semantic.eClass();
+		addBucket(candidates, Key.semantic(eClass, nearest));
+		for(EClass superType : eClass.getEAllSuperTypes())
+			addBucket(candidates, Key.semantic(superType, nearest));
+	}
+
+	/**
+	 * Adds the rules that match the given node to the given list, in rule order.
+	 *
+	 * @param node
+	 * @param matches
+	 */
+	void collectRules(IDomNode node, List<Rule> matches) {
+		Entry entry = getEntry(node);
+		int[] ruleNumbers = entry.ruleNumbers;
+		boolean[] test = entry.test;
+		for(int idx = 0; idx < ruleNumbers.length; ++idx) {
+			Rule r = rules[ruleNumbers[idx]];
+			if(!test[idx] || r.matches(node))
+				matches.add(r);
+		}
+	}
+
+	/**
+	 * Returns the style set for the given node if it is known to be the same for all nodes having the same signature
+	 * and no instance style, or <code>null</code> if the styles must be collected for the node.
+	 *
+	 * @param node
+	 * @return a shared style set or <code>null</code>
+	 */
+	StyleSet getConstantStyles(IDomNode node) {
+		if(node.getStyles() != null)
+			return null;
+		Entry entry = getEntry(node);
+		if(!entry.constant)
+			return null;
+		StyleSet styles = entry.styles;
+		if(styles == null) {
+			StyleSetWithTracking result = new StyleSetWithTracking();
+			for(int ruleNumber : entry.ruleNumbers) {
+				Rule r = rules[ruleNumber];
+				result.setSource(r);
+				r.collectStyles(result);
+			}
+			result.setSource(null);
+			// concurrent creation is harmless, all threads produce equal sets
+			entry.styles = styles = result;
+		}
+		return styles;
+	}
+
+	private Entry getEntry(IDomNode node) {
+		Signature signature = getSignature(node);
+		Entry entry = entries.get(signature);
+		if(entry == null) {
+			entry = newEntry(node);
+			Entry existing = entries.putIfAbsent(signature.freeze(), entry);
+			if(existing != null)
+				entry = existing;
+		}
+		return entry;
+	}
+
+	private Signature getSignature(IDomNode node) {
+		String text = node.getText();
+		if(text != null && !signatureTexts.contains(text))
+			text = null;
+		Object id = node.getNodeId();
+		if(id != null && !signatureIds.contains(id))
+			id = null;
+		EObject semantic = node.getSemanticObject();
+		EClass semanticClass = semantic == null
+				? null
+				: semantic.eClass();
+		EObject nearest = node.getNearestSemanticObject();
+		EClass nearestClass = nearest == null
+				? null
+				: nearest.eClass();
+		return new Signature(
+			node.getGrammarElement(), node.getNodeType(), node.getStyleClassifiers(), id, text, semanticClass,
+			nearestClass);
+	}
+
+	private Entry newEntry(IDomNode node) {
+		BitSet candidates = new BitSet(rules.length);
+		for(int ruleNumber : universal)
+			candidates.set(ruleNumber);
+		addBucket(candidates, Key.grammar(node.getGrammarElement()));
+		addBucket(candidates, Key.type(node.getNodeType()));
+		Set<Object> classifiers = node.getStyleClassifiers();
+		if(classifiers != null)
+			for(Object classifier : classifiers)
+				addBucket(candidates, Key.classifier(classifier));
+		if(node.getNodeId() != null)
+			addBucket(candidates, Key.id(node.getNodeId()));
+		if(node.getText() != null)
+			addBucket(candidates, Key.text(node.getText()));
+		addSemanticBuckets(candidates, node.getSemanticObject(), false);
+		addSemanticBuckets(candidates, node.getNearestSemanticObject(), true);
+
+		int[] ruleNumbers = new int[candidates.cardinality()];
+		boolean[] test = new boolean[ruleNumbers.length];
+		int top = 0;
+		for(int ruleNumber = candidates.nextSetBit(0); ruleNumber >= 0; ruleNumber = candidates.nextSetBit(ruleNumber + 1)) {
+			if(local[ruleNumber]) {
+				// the outcome is the same for all nodes with this signature
+				if(!rules[ruleNumber].matches(node))
+					continue;
+			}
+			else
+				test[top] = true;
+			ruleNumbers[top++] = ruleNumber;
+		}
+		if(top < ruleNumbers.length) {
+			int[] trimmedNumbers = new int[top];
+			boolean[] trimmedTest = new boolean[top];
+			System.arraycopy(ruleNumbers, 0, trimmedNumbers, 0, top);
+			System.arraycopy(test, 0, trimmedTest, 0, top);
+			ruleNumbers = trimmedNumbers;
+			test = trimmedTest;
+		}
+		return new Entry(ruleNumbers, test);
+	}
+}
@@ -10,9 +10,11 @@
  */
 package com.puppetlabs.xtext.dommodel.formatter.css;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
 import com.puppetlabs.xtext.dommodel.DomModelUtils;
@@ -20,6 +22,7 @@ import com.puppetlabs.xtext.dommodel.IDomNode;
 import com.puppetlabs.xtext.dommodel.IDomNode.NodeType;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EcorePackage;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Iterators;
@@ -44,6 +47,12 @@ public class Select {
 			this.selectors = selectors;
 		}
 
+		@Override
+		void collectKeys(Set<RuleIndex.Key> keys) {
+			for(int i = 0; i < selectors.length; i++)
+				selectors[i].collectKeys(keys);
+		}
+
 		/**
 		 * Important - two And selectors are considered equal only if they have the rules in the same order.
 		 * The correctness of this can be discussed.
@@ -61,6 +70,24 @@ public class Select {
 			return true;
 		}
 
+		/**
+		 * All selectors must match so the keys of the most selective selector are used.
+		 */
+		@Override
+		Collection<RuleIndex.Key> getIndexKeys() {
+			Collection<RuleIndex.Key> best = null;
+			for(int i = 0; i < selectors.length; i++) {
+				Collection<RuleIndex.Key> keys = selectors[i].getIndexKeys();
+				if(keys == null)
+					continue;
+				if(keys.isEmpty())
+					return keys; // never matches
+				if(best == null || RuleIndex.isMoreSelective(keys, best))
+					best = keys;
+			}
+			return best;
+		}
+
 		@Override
 		public int getSpecificity() {
 			if(specificity != 0)
@@ -70,6 +97,14 @@ public class Select {
 			return specificity;
 		}
 
+		@Override
+		boolean isLocal() {
+			for(int i = 0; i < selectors.length; i++)
+				if(!selectors[i].isLocal())
+					return false;
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			if(node == null)
@@ -231,11 +266,24 @@ public class Select {
 			return matchGrammar.equals(((GrammarSelector) selector).matchGrammar);
 		}
 
+		@Override
+		Collection<RuleIndex.Key> getIndexKeys() {
+			List<RuleIndex.Key> keys = new ArrayList<RuleIndex.Key>(matchGrammar.size());
+			for(EObject grammarElement : matchGrammar)
+				keys.add(RuleIndex.Key.grammar(grammarElement));
+			return keys;
+		}
+
 		@Override
 		public int getSpecificity() {
 			return GRAMMARSPECIFICITY;
 		}
 
+		@Override
+		boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			if(node == null)
@@ -273,6 +321,11 @@ public class Select {
 			return IMPORTANT_SPECIFICITY;
 		}
 
+		@Override
+		boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			return true;
@@ -452,6 +505,12 @@ public class Select {
 					: NoIdMatch;
 		}
 
+		@Override
+		void collectKeys(Set<RuleIndex.Key> keys) {
+			if(matchingId != NoIdMatch)
+				keys.add(RuleIndex.Key.id(matchingId));
+		}
+
 		@Override
 		public boolean equalMatch(Selector selector) {
 			if(!(selector instanceof NodeSelector))
@@ -466,6 +525,24 @@ public class Select {
 			return true;
 		}
 
+		@Override
+		Collection<RuleIndex.Key> getIndexKeys() {
+			if(matchingNodeTypes.isEmpty())
+				return Collections.emptySet(); // never matches
+			if(matchingId != NoIdMatch)
+				return Collections.singleton(RuleIndex.Key.id(matchingId));
+			if(matchingClassifiers.size() > 0) {
+				// a node must have all of them, one is enough for the index
+				return Collections.singleton(RuleIndex.Key.classifier(matchingClassifiers.iterator().next()));
+			}
+			if(matchingNodeTypes.size() == NodeType.numberOfValues)
+				return null;
+			List<RuleIndex.Key> keys = new ArrayList<RuleIndex.Key>(matchingNodeTypes.size());
+			for(NodeType t : matchingNodeTypes)
+				keys.add(RuleIndex.Key.type(t));
+			return keys;
+		}
+
 		@Override
 		public int getSpecificity() {
 			if(specificity > 0)
@@ -495,6 +572,11 @@ public class Select {
 			return specificity;
 		}
 
+		@Override
+		boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			if(node == null)
@@ -547,6 +629,11 @@ public class Select {
 			this.selector = selector;
 		}
 
+		@Override
+		void collectKeys(Set<RuleIndex.Key> keys) {
+			selector.collectKeys(keys);
+		}
+
 		@Override
 		public boolean equalMatch(Selector selector) {
 			if(!(selector instanceof Not))
@@ -560,6 +647,11 @@ public class Select {
 			return this.selector.getSpecificity() + 1;
 		}
 
+		@Override
+		boolean isLocal() {
+			return selector.isLocal();
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			if(node == null)
@@ -589,11 +681,21 @@ public class Select {
 			return false;
 		}
 
+		@Override
+		Collection<RuleIndex.Key> getIndexKeys() {
+			return Collections.emptySet();
+		}
+
 		@Override
 		public int getSpecificity() {
 			return 0;
 		}
 
+		@Override
+		boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			return false;
@@ -708,8 +810,27 @@ public class Select {
 			return new And(this, selector);
 		}
 
+		/**
+		 * Adds the text and id keys that the outcome of {@link #matches(IDomNode)} depends on to the given set.
+		 * Only called for selectors that are {@link #isLocal() local}.
+		 * 
+		 * @param keys
+		 */
+		void collectKeys(Set<RuleIndex.Key> keys) {
+		}
+
 		public abstract boolean equalMatch(Selector selector);
 
+		/**
+		 * Returns the keys of which a node must have at least one for this selector to match. An empty
+		 * collection means that the selector never matches, and <code>null</code> that no such keys are known.
+		 * 
+		 * @return the keys used when placing the selector's rule in a {@link RuleIndex}
+		 */
+		Collection<RuleIndex.Key> getIndexKeys() {
+			return null;
+		}
+
 		/**
 		 * Returns the specificity in the same style as used in CSS:
 		 * 100 * id count + 10 * class count + 1 * other count
@@ -718,6 +839,17 @@ public class Select {
 		 */
 		public abstract int getSpecificity();
 
+		/**
+		 * Returns true if the outcome of {@link #matches(IDomNode)} only depends on the grammar element, node type,
+		 * style classifiers, id and text of the node and on the classes of its semantic objects. The outcome of such
+		 * a selector is the same for all nodes that are equal in these respects.
+		 * 
+		 * @return true if the selector does not look at the node's surroundings or identity
+		 */
+		boolean isLocal() {
+			return false;
+		}
+
 		public abstract boolean matches(IDomNode node);
 
 		public Rule withStyle(IStyle<? extends Object> styles) {
@@ -759,11 +891,24 @@ public class Select {
 
 		}
 
+		@Override
+		Collection<RuleIndex.Key> getIndexKeys() {
+			// all classes have EObject as a super type but it is not among their declared super types
+			if(eClass == EcorePackage.Literals.EOBJECT)
+				return null;
+			return Collections.singleton(RuleIndex.Key.semantic(eClass, nearest));
+		}
+
 		@Override
 		public int getSpecificity() {
 			return SEMANTICSPECIFICITY;
 		}
 
+		@Override
+		boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			if(node == null)
@@ -849,6 +994,11 @@ public class Select {
 			this.text = text;
 		}
 
+		@Override
+		void collectKeys(Set<RuleIndex.Key> keys) {
+			keys.add(RuleIndex.Key.text(text));
+		}
+
 		@Override
 		public boolean equalMatch(Selector selector) {
 			if(!(selector instanceof Text))
@@ -856,11 +1006,21 @@ public class Select {
 			return this.text == ((Text) selector).text;
 		}
 
+		@Override
+		Collection<RuleIndex.Key> getIndexKeys() {
+			return Collections.singleton(RuleIndex.Key.text(text));
+		}
+
 		@Override
 		public int getSpecificity() {
 			return 1;
 		}
 
+		@Override
+		boolean isLocal() {
+			return true;
+		}
+
 		@Override
 		public boolean matches(IDomNode node) {
 			if(node == null)
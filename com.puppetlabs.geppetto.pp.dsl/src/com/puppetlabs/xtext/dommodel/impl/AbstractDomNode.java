@@ -10,16 +10,20 @@
  */
 package com.puppetlabs.xtext.dommodel.impl;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 import com.puppetlabs.xtext.dommodel.IDomNode;
+import com.puppetlabs.xtext.dommodel.formatter.css.IStyle;
 import com.puppetlabs.xtext.dommodel.formatter.css.StyleSet;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.nodemodel.INode;
 
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.ForwardingSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -53,9 +57,120 @@ public abstract class AbstractDomNode implements IDomNode {
 
 	}
 
+	/**
+	 * The style classifiers of a node, reports every change.
+	 */
+	private class StyleClassifierSet extends ForwardingSet<Object> {
+		private final Set<Object> delegate = Sets.newHashSet();
+
+		@Override
+		public boolean add(Object element) {
+			return styleModified(delegate.add(element));
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends Object> collection) {
+			return styleModified(delegate.addAll(collection));
+		}
+
+		@Override
+		public void clear() {
+			styleModified(!delegate.isEmpty());
+			delegate.clear();
+		}
+
+		@Override
+		protected Set<Object> delegate() {
+			return delegate;
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			final Iterator<Object> iterator = delegate.iterator();
+			return new ForwardingIterator<Object>() {
+				@Override
+				protected Iterator<Object> delegate() {
+					return iterator;
+				}
+
+				@Override
+				public void remove() {
+					iterator.remove();
+					styleModified(true);
+				}
+			};
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			return styleModified(delegate.remove(object));
+		}
+
+		@Override
+		public boolean removeAll(Collection<?> collection) {
+			return styleModified(delegate.removeAll(collection));
+		}
+
+		@Override
+		public boolean retainAll(Collection<?> collection) {
+			return styleModified(delegate.retainAll(collection));
+		}
+	}
+
+	/**
+	 * The styles of a node, reports every change.
+	 */
+	private class NodeStyleSet extends StyleSet {
+		@Override
+		public StyleSet add(StyleSet map) {
+			if(map != null && !map.getStyles().isEmpty())
+				styleModified(true);
+			return super.add(map);
+		}
+
+		@Override
+		public void put(IStyle<?> style) {
+			styleModified(true);
+			super.put(style);
+		}
+	}
+
+	/**
+	 * Returns an object that is replaced by a new one every time the styles or the style classifiers of a node in the
+	 * DOM of the given node change, or when a node is added to or removed from that DOM. Since the styles that apply
+	 * to a node may depend on the classifiers of other nodes in the same DOM, this can be used to find out if what was
+	 * computed from the styles of a node is still valid. Changes in other DOMs do not affect the stamp.
+	 * 
+	 * @param node
+	 * @return the modification stamp, compare it by identity
+	 */
+	public static Object getStyleModificationStamp(IDomNode node) {
+		AbstractDomNode root = getRoot(node);
+		if(root == null)
+			return new Object(); // changes can not be tracked
+		if(root.styleModificationStamp == null)
+			root.styleModificationStamp = new Object();
+		return root.styleModificationStamp;
+	}
+
+	private static AbstractDomNode getRoot(IDomNode node) {
+		IDomNode root = node;
+		for(IDomNode parent = node.getParent(); parent != null; parent = parent.getParent())
+			root = parent;
+		return root instanceof AbstractDomNode
+				? (AbstractDomNode) root
+				: null;
+	}
+
 	protected IDomNode parentNode;
 
-	private Set<Object> styleClassifiers = Sets.newHashSet();
+	/**
+	 * The modification stamp of the DOM when this is the root node, <code>null</code> if the DOM has changed since
+	 * the stamp was last asked for.
+	 */
+	private Object styleModificationStamp;
+
+	private Set<Object> styleClassifiers = new StyleClassifierSet();
 
 	// private Set<Object> nonModifiableStyleClassifiers = Collections.unmodifiableSet(styleClassifiers);
 
@@ -63,7 +178,7 @@ public abstract class AbstractDomNode implements IDomNode {
 
 	protected IDomNode.NodeType nodeType = null;
 
-	private StyleSet styles = new StyleSet();
+	private StyleSet styles = new NodeStyleSet();
 
 	@Override
 	public List<IDomNode> getChildren() {
@@ -166,7 +281,19 @@ public abstract class AbstractDomNode implements IDomNode {
 	}
 
 	public void setParent(IDomNode node) {
+		// the styles that apply may change in both the DOM that is left and the DOM that is joined
+		styleModified(true);
 		parentNode = node;
+		styleModified(true);
+	}
+
+	private boolean styleModified(boolean modified) {
+		if(modified) {
+			AbstractDomNode root = getRoot(this);
+			if(root != null)
+				root.styleModificationStamp = null;
+		}
+		return modified;
 	}
 
 }
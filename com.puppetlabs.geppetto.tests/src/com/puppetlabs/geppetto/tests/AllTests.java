@@ -10,6 +10,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
 	// @fmtOff
 	com.puppetlabs.geppetto.semver.tests.AllTests.class,
+	com.puppetlabs.geppetto.common.tracer.tests.AllTests.class,
 	com.puppetlabs.geppetto.forge.api.tests.AllTests.class,
 	com.puppetlabs.geppetto.forge.v2.api.it.ForgeIT.class,
 	com.puppetlabs.geppetto.forge.tests.ForgeTests.class,
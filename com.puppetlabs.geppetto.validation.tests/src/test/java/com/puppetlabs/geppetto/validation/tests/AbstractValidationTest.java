@@ -24,6 +24,7 @@ import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLe
 import com.puppetlabs.geppetto.pp.dsl.validation.ValidationAdvisor;
 import com.puppetlabs.geppetto.ruby.RubyHelper;
 import com.puppetlabs.geppetto.ruby.jrubyparser.JRubyServices;
+import com.puppetlabs.geppetto.validation.FormattingService;
 import com.puppetlabs.geppetto.validation.ValidationOptions;
 import com.puppetlabs.geppetto.validation.ValidationService;
 import com.puppetlabs.geppetto.validation.impl.ValidationModule;
@@ -112,6 +113,10 @@ public class AbstractValidationTest {
 		return options;
 	}
 
+	public FormattingService getFormattingService() {
+		return injector.getInstance(FormattingService.class);
+	}
+
 	public ValidationService getValidationService() {
 		return injector.getInstance(ValidationService.class);
 	}
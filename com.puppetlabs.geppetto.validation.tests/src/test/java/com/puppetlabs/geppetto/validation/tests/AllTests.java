@@ -16,6 +16,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	TestCatalogCompilerRunner.class,
 	TestValidatorService.class,
 	TestValidatorServiceApi2.class,
+	TestFormattingService.class,
 	TestNodeHandling.class,
 	TestPptpOptionHandling.class,
 	// TestStackhammerDemo.class, requires stackhammer-demo repo to be present
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.validation.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.validation.FormattingOptions;
+import com.puppetlabs.geppetto.validation.FormattingService;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.SubMonitor;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class TestFormattingService extends AbstractValidationTest {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private File copyToOutput(String manifest, String dirName) throws Exception {
+		File source = TestDataProvider.getTestFile(new Path("testData/manifests/" + manifest));
+		File dir = new File(TestDataProvider.getTestOutputDir(), dirName);
+		dir.mkdirs();
+		File target = new File(dir, manifest);
+		Files.copy(source, target);
+		return target;
+	}
+
+	private FormattingOptions getFormattingOptions(boolean checkOnly) {
+		FormattingOptions options = new FormattingOptions();
+		options.setComplianceLevel(getValidationOptions().getComplianceLevel());
+		options.setEncodingProvider(getValidationOptions().getEncodingProvider());
+		options.setCheckOnly(checkOnly);
+		options.setThreadCount(2);
+		return options;
+	}
+
+	@Test
+	public void checkDoesNotWrite() throws Exception {
+		FormattingService fs = getFormattingService();
+
+		// Make sure that the fixture really needs formatting, or the check below proves nothing
+		File formatted = copyToOutput("unformatted_manifest.pp", "formatCheckFixture");
+		String unformatted = Files.toString(formatted, UTF_8);
+		Diagnostic chain = new Diagnostic();
+		fs.format(chain, formatted, getFormattingOptions(false), SubMonitor.convert(null));
+		assertTrue("There should be no errors", countErrors(chain) == 0);
+		assertFalse("The fixture should need formatting", unformatted.equals(Files.toString(formatted, UTF_8)));
+
+		File manifest = copyToOutput("unformatted_manifest.pp", "formatCheck");
+		String before = Files.toString(manifest, UTF_8);
+		chain = new Diagnostic();
+		List<File> files = fs.format(chain, manifest, getFormattingOptions(true), SubMonitor.convert(null));
+		assertEquals("The file should need formatting", 1, files.size());
+		assertEquals("There should be one warning", 1, chain.getChildren().size());
+		assertEquals("Check should not write the file", before, Files.toString(manifest, UTF_8));
+	}
+
+	@Test
+	public void formatIsStable() throws Exception {
+		File manifest = copyToOutput("ok_manifest.pp", "formatStable");
+		FormattingService fs = getFormattingService();
+		Diagnostic chain = new Diagnostic();
+		fs.format(chain, manifest.getParentFile(), getFormattingOptions(false), SubMonitor.convert(null));
+		assertTrue("There should be no errors", countErrors(chain) == 0);
+
+		chain = new Diagnostic();
+		List<File> files = fs.format(chain, manifest, getFormattingOptions(true), SubMonitor.convert(null));
+		assertTrue("A formatted file should not need formatting", files.isEmpty());
+	}
+
+	@Test
+	public void syntaxErrorsAreReported() throws Exception {
+		File manifest = copyToOutput("not_ok_manifest.pp", "formatSyntax");
+		String before = Files.toString(manifest, UTF_8);
+		FormattingService fs = getFormattingService();
+		Diagnostic chain = new Diagnostic();
+		List<File> files = fs.format(chain, manifest, getFormattingOptions(false), SubMonitor.convert(null));
+		assertTrue("There should be errors", countErrors(chain) != 0);
+		assertTrue("No file should be formatted", files.isEmpty());
+		assertEquals("A file with errors should not be written", before, Files.toString(manifest, UTF_8));
+	}
+}
@@ -0,0 +1,9 @@
+# Needs formatting: no spaces around operators, wrong indentation and unaligned arrows
+class unformatted{
+file{'/tmp/unformatted':
+ensure=>present,
+owner=>'root',
+mode=>'0644',
+}
+$list=[1,2,3]
+}
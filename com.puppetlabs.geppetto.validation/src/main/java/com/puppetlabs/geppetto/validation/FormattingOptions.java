@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.validation;
+
+import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
+import com.puppetlabs.geppetto.validation.runner.IEncodingProvider;
+
+public class FormattingOptions {
+	private ComplianceLevel complianceLevel;
+
+	private IEncodingProvider encodingProvider;
+
+	private boolean checkOnly;
+
+	private int threadCount;
+
+	/**
+	 * Defaults to 2.7 if not specified.
+	 *
+	 * @return the value of the '<em>complianceLevel</em>' attribute.
+	 */
+	public ComplianceLevel getComplianceLevel() {
+		return complianceLevel;
+	}
+
+	/**
+	 * Defaults to UTF-8 for all files if not specified.
+	 *
+	 * @return the value of the '<em>encodingProvider</em>' attribute.
+	 */
+	public IEncodingProvider getEncodingProvider() {
+		return encodingProvider;
+	}
+
+	/**
+	 * The number of files that are formatted in parallel. A value less than one means one thread per available
+	 * processor.
+	 *
+	 * @return the value of the '<em>threadCount</em>' attribute.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * When set, no files are written. Files that are not formatted are reported instead.
+	 *
+	 * @return the value of the '<em>checkOnly</em>' attribute.
+	 */
+	public boolean isCheckOnly() {
+		return checkOnly;
+	}
+
+	/**
+	 * Sets the value of the '<em>checkOnly</em>' attribute.
+	 *
+	 * @param value
+	 *            the new value of the '<em>checkOnly</em>' attribute.
+	 */
+	public void setCheckOnly(boolean value) {
+		checkOnly = value;
+	}
+
+	/**
+	 * Sets the value of the '<em>complianceLevel</em>' attribute.
+	 *
+	 * @param value
+	 *            the new value of the '<em>complianceLevel</em>' attribute.
+	 */
+	public void setComplianceLevel(ComplianceLevel value) {
+		complianceLevel = value;
+	}
+
+	/**
+	 * Sets the value of the '<em>encodingProvider</em>' attribute.
+	 *
+	 * @param value
+	 *            the new value of the '<em>encodingProvider</em>' attribute.
+	 */
+	public void setEncodingProvider(IEncodingProvider value) {
+		encodingProvider = value;
+	}
+
+	/**
+	 * Sets the value of the '<em>threadCount</em>' attribute.
+	 *
+	 * @param value
+	 *            the new value of the '<em>threadCount</em>' attribute.
+	 */
+	public void setThreadCount(int value) {
+		threadCount = value;
+	}
+}
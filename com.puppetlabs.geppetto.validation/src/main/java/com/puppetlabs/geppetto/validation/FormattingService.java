@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.validation;
+
+import java.io.File;
+import java.util.List;
+
+import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.diagnostic.DiagnosticType;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Headless formatting of PP files.
+ */
+public interface FormattingService {
+	DiagnosticType FORMATTING = new DiagnosticType("FORMATTING", FormattingService.class.getName());
+
+	/**
+	 * Formats all .pp files found in source under the control of options. The files are parsed and formatted in
+	 * parallel using one style sheet that is shared by all threads. Files that contain syntax errors are reported and
+	 * left untouched.
+	 *
+	 * When the options specify check only, no file is written. A warning is reported for each file that would change if
+	 * it was formatted.
+	 *
+	 * @param diagnostics
+	 *            Diagnostic that will receive problems and, in check only mode, the files that are not formatted.
+	 * @param source
+	 *            A .pp file or a directory that is searched recursively for .pp files.
+	 * @param options
+	 *            The formatting options. May be <code>null</code> in which case defaults are used.
+	 * @return The files that were formatted, or in check only mode, the files that needs to be formatted. The list is
+	 *         sorted in the order the files were found.
+	 */
+	List<File> format(Diagnostic diagnostics, File source, FormattingOptions options, IProgressMonitor monitor);
+}
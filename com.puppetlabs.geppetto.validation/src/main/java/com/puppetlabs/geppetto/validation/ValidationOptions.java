@@ -10,6 +10,8 @@
  */
 package com.puppetlabs.geppetto.validation;
 
+import java.io.File;
+
 import com.puppetlabs.geppetto.pp.dsl.validation.IPotentialProblemsAdvisor;
 import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
 import com.puppetlabs.geppetto.validation.runner.IEncodingProvider;
@@ -24,6 +26,8 @@ public class ValidationOptions {
 
 	private FileType fileType;
 
+	private File metricsFile;
+
 	private URI platformURI;
 
 	private IPotentialProblemsAdvisor problemsAdvisor;
@@ -36,6 +40,8 @@ public class ValidationOptions {
 
 	private boolean checkReferences;
 
+	private boolean reuseSetup;
+
 	/**
 	 * Defaults to 2.7 if not specified.
 	 * 
@@ -66,6 +72,16 @@ public class ValidationOptions {
 		return fileType;
 	}
 
+	/**
+	 * When set, the timers, counters and histograms of the validation are recorded and a summary of them is written
+	 * to this file in JSON format when the validation of a directory is done.
+	 * 
+	 * @return the value of the '<em>metricsFile</em>' attribute.
+	 */
+	public File getMetricsFile() {
+		return metricsFile;
+	}
+
 	/**
 	 * A URI to a pptp resource in string form. If null, a default pptp will be
 	 * used when validating. An unloadable pptp reference will result in an
@@ -116,6 +132,17 @@ public class ValidationOptions {
 		return checkReferences;
 	}
 
+	/**
+	 * When set, the validation will check out a warmed up PP setup (injector and EMF registration) that has been
+	 * used by an earlier validation with the same compliance level and problems advisor settings, and return it
+	 * when done. This is useful when several validations are performed in the same JVM (e.g. a Maven reactor build).
+	 * 
+	 * @return the value of the '<em>reuseSetup</em>' attribute.
+	 */
+	public boolean isReuseSetup() {
+		return reuseSetup;
+	}
+
 	/**
 	 * Sets the value of the '<em>checkLayout</em>' attribute.
 	 * 
@@ -187,6 +214,16 @@ public class ValidationOptions {
 		fileType = value;
 	}
 
+	/**
+	 * Sets the value of the '<em>metricsFile</em>' attribute.
+	 * 
+	 * @param value
+	 *            the new value of the '<em>metricsFile</em>' attribute.
+	 */
+	public void setMetricsFile(File value) {
+		metricsFile = value;
+	}
+
 	/**
 	 * Sets the value of the '<em>platformURI</em>' attribute.
 	 * 
@@ -207,6 +244,16 @@ public class ValidationOptions {
 		problemsAdvisor = value;
 	}
 
+	/**
+	 * Sets the value of the '<em>reuseSetup</em>' attribute.
+	 * 
+	 * @param value
+	 *            the new value of the '<em>reuseSetup</em>' attribute.
+	 */
+	public void setReuseSetup(boolean value) {
+		reuseSetup = value;
+	}
+
 	/**
 	 * Sets the value of the '<em>searchPath</em>' attribute.
 	 * 
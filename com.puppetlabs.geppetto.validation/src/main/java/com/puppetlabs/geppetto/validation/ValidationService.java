@@ -50,6 +50,10 @@ public interface ValidationService {
 	 * interpreted as source is a PUPPET-ROOT, and that validation for everything in the non-modules part is wanted (and
 	 * possibly for a select set of modules).
 	 * 
+	 * Diagnostics are added to the given chain as soon as they are discovered (i.e. one file at a time). Pass a
+	 * {@link com.puppetlabs.geppetto.diagnostic.StreamingDiagnostic StreamingDiagnostic} to have them written as they are
+	 * produced rather than keeping them all in memory.
+	 * 
 	 * @param diagnostics
 	 *            DiagnosticChain will receive calls to add Diagnostic instances for discovered problems/information.
 	 * @param source
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2013 Puppet Labs, Inc. and other contributors, as listed below.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Puppet Labs
+ */
+package com.puppetlabs.geppetto.validation.impl;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.puppetlabs.geppetto.common.os.FileUtils;
+import com.puppetlabs.geppetto.common.os.StreamUtil;
+import com.puppetlabs.geppetto.common.os.StreamUtil.OpenBAStream;
+import com.puppetlabs.geppetto.diagnostic.Diagnostic;
+import com.puppetlabs.geppetto.diagnostic.ExceptionDiagnostic;
+import com.puppetlabs.geppetto.diagnostic.FileDiagnostic;
+import com.puppetlabs.geppetto.forge.Forge;
+import com.puppetlabs.geppetto.pp.dsl.validation.DefaultPotentialProblemsAdvisor;
+import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
+import com.puppetlabs.geppetto.validation.FormattingOptions;
+import com.puppetlabs.geppetto.validation.FormattingService;
+import com.puppetlabs.geppetto.validation.ValidationService;
+import com.puppetlabs.geppetto.validation.runner.DefaultEncodingProvider;
+import com.puppetlabs.geppetto.validation.runner.IEncodingProvider;
+import com.puppetlabs.geppetto.validation.runner.PPDiagnosticsSetup;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.SaveOptions;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.serializer.ISerializer;
+
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.name.Named;
+
+/**
+ * Formats PP files in parallel. All threads share the injector of one {@link PPDiagnosticsSetup} and thereby the
+ * style sheet, while each file is loaded into a resource set of its own.
+ */
+public class FormattingServiceImpl implements FormattingService {
+	/**
+	 * The outcome of formatting one file.
+	 */
+	private static class FileResult {
+		final Diagnostic diagnostic = new Diagnostic();
+
+		boolean changed;
+	}
+
+	private static File relativeFile(File file, File root) {
+		if(root.isFile())
+			root = root.getParentFile();
+		if(root == null)
+			return file;
+		IPath relativePath = new Path(file.getAbsolutePath()).makeRelativeTo(new Path(root.getAbsolutePath()));
+		return relativePath.toFile();
+	}
+
+	private static FileResult waitFor(Future<FileResult> task) {
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	@Inject
+	@Named(Forge.MODULE_FILE_FILTER)
+	private FileFilter moduleFileFilter;
+
+	private void collectPPFiles(File dir, List<File> result) {
+		File[] files = dir.listFiles(moduleFileFilter);
+		if(files == null)
+			return;
+		for(File f : files) {
+			if(FileUtils.isSymlink(f))
+				continue;
+			if(f.isDirectory()) {
+				if(!f.getName().equals(".svn"))
+					collectPPFiles(f, result);
+			}
+			else if(f.getName().endsWith(".pp"))
+				result.add(f);
+		}
+	}
+
+	@Override
+	public List<File> format(Diagnostic diagnostics, File source, FormattingOptions options, IProgressMonitor monitor) {
+		if(options == null)
+			options = new FormattingOptions();
+
+		List<File> files = new ArrayList<File>();
+		if(source.isDirectory())
+			collectPPFiles(source, files);
+		else
+			files.add(source);
+
+		final SubMonitor ticker = SubMonitor.convert(monitor, files.size());
+		ComplianceLevel complianceLevel = options.getComplianceLevel();
+		if(complianceLevel == null)
+			complianceLevel = ComplianceLevel.PUPPET_2_7;
+		IEncodingProvider encodingProvider = options.getEncodingProvider();
+		if(encodingProvider == null)
+			encodingProvider = new DefaultEncodingProvider();
+		int threadCount = options.getThreadCount();
+		if(threadCount < 1)
+			threadCount = Runtime.getRuntime().availableProcessors();
+
+		List<File> result = new ArrayList<File>();
+		PPDiagnosticsSetup setup = PPDiagnosticsSetup.acquire(complianceLevel, new DefaultPotentialProblemsAdvisor());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, Math.max(files.size(), 1)));
+		try {
+			final Injector injector = setup.createInjectorAndDoEMFRegistration();
+			final boolean checkOnly = options.isCheckOnly();
+			final IEncodingProvider encoding = encodingProvider;
+			final File root = source;
+			List<Future<FileResult>> tasks = new ArrayList<Future<FileResult>>(files.size());
+			for(final File file : files)
+				tasks.add(executor.submit(new Callable<FileResult>() {
+					@Override
+					public FileResult call() {
+						if(ticker.isCanceled())
+							throw new OperationCanceledException();
+						return formatFile(injector, file, root, encoding, checkOnly);
+					}
+				}));
+
+			// Diagnostic is not thread safe so the results are merged here, in the order the files were found
+			int idx = 0;
+			for(Future<FileResult> task : tasks) {
+				FileResult fileResult = waitFor(task);
+				diagnostics.addChildren(fileResult.diagnostic.getChildren());
+				if(fileResult.changed)
+					result.add(files.get(idx));
+				++idx;
+				ticker.worked(1);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			PPDiagnosticsSetup.release(setup);
+		}
+		return result;
+	}
+
+	private FileResult formatFile(Injector injector, File file, File root, IEncodingProvider encodingProvider,
+			boolean checkOnly) {
+		FileResult fileResult = new FileResult();
+		File reportedFile = relativeFile(file, root);
+		try {
+			URI uri = URI.createFileURI(file.getPath());
+			String encoding = encodingProvider.getEncoding(uri);
+			OpenBAStream content = new OpenBAStream();
+			InputStream in = new FileInputStream(file);
+			try {
+				StreamUtil.copy(in, content);
+			}
+			finally {
+				StreamUtil.close(in);
+			}
+
+			// Each file gets a resource set of its own since resource sets are not thread safe
+			XtextResourceSet resourceSet = injector.getInstance(XtextResourceSet.class);
+			Resource r = resourceSet.createResource(uri);
+			Map<String, String> loadOptions = Maps.newHashMap();
+			loadOptions.put(XtextResource.OPTION_ENCODING, encoding);
+			r.load(content.getInputStream(), loadOptions);
+
+			if(!r.getErrors().isEmpty()) {
+				for(Resource.Diagnostic error : r.getErrors()) {
+					FileDiagnostic fd = new FileDiagnostic(
+						Diagnostic.ERROR, ValidationService.GEPPETTO_SYNTAX, error.getMessage(), reportedFile);
+					fd.setLineNumber(error.getLine());
+					fileResult.diagnostic.addChild(fd);
+				}
+				return fileResult;
+			}
+			if(r.getContents().isEmpty())
+				return fileResult;
+
+			String original = content.toString(encoding);
+			String formatted = injector.getInstance(ISerializer.class).serialize(
+				r.getContents().get(0), SaveOptions.newBuilder().format().getOptions());
+			if(formatted.equals(original))
+				return fileResult;
+
+			fileResult.changed = true;
+			if(checkOnly) {
+				fileResult.diagnostic.addChild(new FileDiagnostic(
+					Diagnostic.WARNING, FORMATTING, "File is not formatted", reportedFile));
+				return fileResult;
+			}
+
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(formatted.getBytes(encoding));
+			}
+			finally {
+				StreamUtil.close(out);
+			}
+		}
+		catch(IOException e) {
+			fileResult.diagnostic.addChild(new ExceptionDiagnostic(
+				Diagnostic.ERROR, ValidationService.INTERNAL_ERROR, "Unable to format file: " + reportedFile, e));
+		}
+		catch(RuntimeException e) {
+			// The serializer reports problems using runtime exceptions
+			fileResult.diagnostic.addChild(new ExceptionDiagnostic(
+				Diagnostic.ERROR, ValidationService.INTERNAL_ERROR, "Unable to format file: " + reportedFile, e));
+		}
+		return fileResult;
+	}
+}
@@ -1,5 +1,6 @@
 package com.puppetlabs.geppetto.validation.impl;
 
+import com.puppetlabs.geppetto.validation.FormattingService;
 import com.puppetlabs.geppetto.validation.ValidationService;
 
 import com.google.inject.AbstractModule;
@@ -9,5 +10,6 @@ public class ValidationModule extends AbstractModule {
 	@Override
 	protected void configure() {
 		bind(ValidationService.class).to(ValidationServiceImpl.class);
+		bind(FormattingService.class).to(FormattingServiceImpl.class);
 	}
 }
@@ -15,8 +15,11 @@ import static com.puppetlabs.geppetto.forge.Forge.MODULEFILE_NAME;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -25,6 +28,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import com.puppetlabs.geppetto.common.os.FileUtils;
+import com.puppetlabs.geppetto.common.tracer.Metrics;
 import com.puppetlabs.geppetto.diagnostic.DetailedFileDiagnostic;
 import com.puppetlabs.geppetto.diagnostic.Diagnostic;
 import com.puppetlabs.geppetto.diagnostic.DiagnosticType;
@@ -279,6 +283,23 @@ public class ValidationServiceImpl implements ValidationService {
 		return relativePath.toFile();
 	}
 
+	/**
+	 * Records the time spent in a phase of a validation run.
+	 * 
+	 * @param metrics
+	 * @param phase
+	 *            - the name of the phase timer
+	 * @param start
+	 *            - the time the phase started as obtained from {@link System#nanoTime()}
+	 * @return the time the phase ended, i.e. the start of the next phase
+	 */
+	private static long endPhase(Metrics metrics, String phase, long start) {
+		long now = System.nanoTime();
+		if(metrics.isEnabled())
+			metrics.timer(phase).record(now - start);
+		return now;
+	}
+
 	/**
 	 * Translate the issue severity (an enum) to BasicDiagnostic (they are probably the same...)
 	 * 
@@ -609,7 +630,7 @@ public class ValidationServiceImpl implements ValidationService {
 					IPotentialProblemsAdvisor potentialProblems = options.getProblemsAdvisor();
 					if(potentialProblems == null)
 						potentialProblems = new DefaultPotentialProblemsAdvisor();
-					ppDr.setUp(complianceLevel, potentialProblems);
+					ppDr.setUp(complianceLevel, potentialProblems, options.isReuseSetup());
 					validatePPFile(ppDr, diagnostics, source, source.getParentFile(), monitor);
 				}
 				catch(Exception e) {
@@ -705,6 +726,8 @@ public class ValidationServiceImpl implements ValidationService {
 		if(!(options.getFileType() == FileType.PUPPET_ROOT || options.getFileType() == FileType.MODULE_ROOT))
 			throw new IllegalArgumentException("doDir can only process PUPPET_ROOT or MODULE_ROOT");
 
+		final long runStart = System.nanoTime();
+
 		// Process request to check layout
 		if(options.isCheckLayout()) {
 			if(options.getFileType() == FileType.MODULE_ROOT)
@@ -717,6 +740,7 @@ public class ValidationServiceImpl implements ValidationService {
 		List<File> rbFiles = findRubyFiles(root);
 		Collection<File> mdRoots = forge.findModuleRoots(root, null);
 		List<File> rakeFiles = findRakefiles(root);
+		final long scanEnd = System.nanoTime();
 
 		final int workload = ppFiles.size() + mdRoots.size() * 3 + rbFiles.size() * 2 //
 				+ rakeFiles.size() * 2 //
@@ -736,13 +760,23 @@ public class ValidationServiceImpl implements ValidationService {
 			IPotentialProblemsAdvisor problemsAdvisor = options.getProblemsAdvisor();
 			if(problemsAdvisor == null)
 				problemsAdvisor = new DefaultPotentialProblemsAdvisor();
-			ppRunner.setUp(complianceLevel, problemsAdvisor);
+			ppRunner.setUp(complianceLevel, problemsAdvisor, options.isReuseSetup());
 			rubyHelper.setUp();
 		}
 		catch(Exception e) {
 			addExceptionDiagnostic(diagnostics, "Internal Error: Exception while setting up diagnostics.", e);
 			return new BuildResult(rubyHelper.isRubyServicesAvailable()); // give up
 		}
+		// The metrics are obtained from the PP injector to make the linker and validator record to the same registry.
+		final Metrics metrics = ppRunner.get(Metrics.class);
+		final File metricsFile = options.getMetricsFile();
+		metrics.setEnabled(metricsFile != null || Boolean.getBoolean(Metrics.METRICS_PROPERTY));
+		if(metricsFile != null)
+			// the setup may be reused from an earlier run
+			metrics.reset();
+		endPhase(metrics, "validation.scan", runStart);
+		long phaseStart = endPhase(metrics, "validation.setup", scanEnd);
+
 		ppRunner.configureEncoding(options.getEncodingProvider());
 		ppRunner.configureSearchPath(root, options.getSearchPath(), options.getEnvironment());
 
@@ -920,6 +954,8 @@ public class ValidationServiceImpl implements ValidationService {
 				}
 			}
 		}
+		phaseStart = endPhase(metrics, "validation.metadata", phaseStart);
+
 		// TODO: Wasteful to calculate the URL's more than once.
 		// Could be done once per pp and rb (to separate the processing), or have all in one pile
 		// and let processing look at extension.
@@ -956,6 +992,7 @@ public class ValidationServiceImpl implements ValidationService {
 			}
 		}
 		worked(ticker, 1);
+		phaseStart = endPhase(metrics, "validation.containers", phaseStart);
 
 		// Load all ruby
 		for(File f : rbFiles) {
@@ -988,6 +1025,8 @@ public class ValidationServiceImpl implements ValidationService {
 				e.printStackTrace();
 			}
 		}
+		phaseStart = endPhase(metrics, "validation.ruby", phaseStart);
+
 		RakefileInfo rakefileInfo = new RakefileInfo();
 		// System.err.println("Processing Rakefiles count: " + rakeFiles.size());
 
@@ -1003,6 +1042,8 @@ public class ValidationServiceImpl implements ValidationService {
 			rakefileInfo.addRakefile(getRakefileInformation(rubyHelper, f, root, ticker.newChild(1)));
 
 		}
+		phaseStart = endPhase(metrics, "validation.rakefiles", phaseStart);
+
 		// Load all pp
 		// crosslink and validate all
 		Map<File, Resource> ppResources = Maps.newHashMapWithExpectedSize(ppFiles.size());
@@ -1025,6 +1066,7 @@ public class ValidationServiceImpl implements ValidationService {
 		// relative paths
 		for(Resource r : ppResources.values())
 			rememberRootInResource(root, r);
+		phaseStart = endPhase(metrics, "validation.pp.load", phaseStart);
 
 		IResourceValidator validator = ppRunner.getPPResourceValidator();
 		long maxLinkTime = 0;
@@ -1038,8 +1080,10 @@ public class ValidationServiceImpl implements ValidationService {
 			long beforeTime = System.currentTimeMillis();
 			boolean profileThis = false; // /* for debugging slow file */
 											// f.equals(slowCandidate);
+			long linkStart = System.nanoTime();
 			if(options.isCheckReferences())
 				ppRunner.resolveCrossReferences(r.getValue(), profileThis, ticker);
+			long validateStart = endPhase(metrics, "validation.pp.link", linkStart);
 			long afterTime = System.currentTimeMillis();
 			if(afterTime - beforeTime > maxLinkTime) {
 				maxLinkTime = afterTime - beforeTime;
@@ -1054,6 +1098,7 @@ public class ValidationServiceImpl implements ValidationService {
 			for(Issue issue : issues) {
 				addIssueDiagnostic(diagnostics, issue, f, root);
 			}
+			endPhase(metrics, "validation.pp.validate", validateStart);
 		}
 		// // Debug stuff
 		// if(slowestFile != null)
@@ -1076,6 +1121,9 @@ public class ValidationServiceImpl implements ValidationService {
 
 		// set the root to allow relative lookup of module exports
 		all.setRoot(root);
+		endPhase(metrics, "validation.total", runStart);
+		if(metricsFile != null)
+			writeMetrics(diagnostics, metrics, metricsFile);
 
 		// // Debug stuff...
 		// for(File f : result.getMap().keySet()) {
@@ -1267,4 +1315,27 @@ public class ValidationServiceImpl implements ValidationService {
 			throw new OperationCanceledException();
 		monitor.worked(amount);
 	}
+
+	/**
+	 * Writes a JSON summary of the metrics recorded during a validation run. Failing to do so is reported as a warning
+	 * since it does not affect the validation result.
+	 */
+	private void writeMetrics(Diagnostic diagnostics, Metrics metrics, File metricsFile) {
+		try {
+			File parent = metricsFile.getParentFile();
+			if(parent != null)
+				parent.mkdirs();
+			Writer out = new OutputStreamWriter(new FileOutputStream(metricsFile), "UTF-8");
+			try {
+				metrics.writeJSON(out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch(IOException e) {
+			diagnostics.addChild(new ExceptionDiagnostic(Diagnostic.WARNING, INTERNAL_ERROR, "Unable to write metrics to " +
+					metricsFile, e));
+		}
+	}
 }
@@ -11,16 +11,20 @@
 package com.puppetlabs.geppetto.validation.runner;
 
 import com.puppetlabs.geppetto.pp.dsl.PPRuntimeModule;
+import com.puppetlabs.geppetto.pp.dsl.formatting.PPStylesheetProvider;
 import com.puppetlabs.geppetto.pp.dsl.validation.IPotentialProblemsAdvisor;
 import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor;
 import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
 import com.puppetlabs.geppetto.pp.dsl.validation.ValidationAdvisorProvider;
+import com.puppetlabs.xtext.dommodel.formatter.css.DomCSS;
 import org.eclipse.emf.ecore.EValidator;
 import org.eclipse.emf.ecore.impl.EValidatorRegistryImpl;
 import org.eclipse.xtext.linking.ILinker;
 import org.eclipse.xtext.linking.lazy.LazyLinker;
 import org.eclipse.xtext.resource.IContainer.Manager;
 
+import com.google.inject.Singleton;
+
 /**
  * Provides bindings for the PPDiagnostician.
  * 
@@ -62,6 +66,15 @@ public class PPDiagnosticsModule extends PPRuntimeModule {
 		return LazyLinker.class;
 	}
 
+	/**
+	 * There are no preferences that can change the style sheet when running headless so one instance is compiled and
+	 * then shared by all formatting performed with this injector, also when formatting in parallel.
+	 */
+	@Override
+	public void configureStylesheet(com.google.inject.Binder binder) {
+		binder.bind(DomCSS.class).toProvider(PPStylesheetProvider.class).in(Singleton.class);
+	}
+
 	/**
 	 * Bind a ValidationAdvisorProvider.
 	 * 
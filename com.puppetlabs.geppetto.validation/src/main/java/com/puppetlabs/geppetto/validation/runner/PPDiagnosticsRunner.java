@@ -217,6 +217,8 @@ public class PPDiagnosticsRunner {
 
 	private PPDiagnosticsSetup instance;
 
+	private boolean sharedSetup;
+
 	private IResourceServiceProvider pptpRubyResourceServiceProvider;
 
 	private IResourceServiceProvider ppResourceServiceProvider;
@@ -721,8 +723,24 @@ public class PPDiagnosticsRunner {
 	 */
 	public void setUp(IValidationAdvisor.ComplianceLevel complianceLevel, IPotentialProblemsAdvisor problemsAdvisor)
 			throws Exception {
+		setUp(complianceLevel, problemsAdvisor, false);
+	}
+
+	/**
+	 * Must be called prior to calling any other methods. Creates an injector and sets things up. If
+	 * <code>reuseSetup</code> is <code>true</code>, then a warm setup will be checked out using
+	 * {@link PPDiagnosticsSetup#acquire(IValidationAdvisor.ComplianceLevel, IPotentialProblemsAdvisor)} and it will
+	 * be released again by {@link #tearDown()}.
+	 * 
+	 * @throws Exception
+	 */
+	public void setUp(IValidationAdvisor.ComplianceLevel complianceLevel, IPotentialProblemsAdvisor problemsAdvisor,
+			boolean reuseSetup) throws Exception {
 		// Setup with overrides
-		instance = new PPDiagnosticsSetup(complianceLevel, problemsAdvisor);
+		instance = reuseSetup
+				? PPDiagnosticsSetup.acquire(complianceLevel, problemsAdvisor)
+				: new PPDiagnosticsSetup(complianceLevel, problemsAdvisor);
+		sharedSetup = reuseSetup;
 		injector = instance.createInjectorAndDoEMFRegistration();
 		resourceSet = get(XtextResourceSet.class);
 		resourceSet.setClasspathURIContext(getClass());
@@ -744,6 +762,10 @@ public class PPDiagnosticsRunner {
 	}
 
 	public void tearDown() {
+		if(injector != null)
+			injector.getInstance(PPJavaValidator.class).traceCheckTimings();
+		if(sharedSetup)
+			PPDiagnosticsSetup.release(instance);
 		injector = null;
 		instance = null;
 	}
@@ -12,13 +12,23 @@ package com.puppetlabs.geppetto.validation.runner;
 
 import static com.puppetlabs.geppetto.injectable.CommonModuleProvider.getCommonModule;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.xtext.resource.IResourceServiceProvider;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
 import com.puppetlabs.geppetto.pp.dsl.PPStandaloneSetup;
 import com.puppetlabs.geppetto.pp.dsl.validation.IPotentialProblemsAdvisor;
 import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor;
 import com.puppetlabs.geppetto.pp.dsl.validation.IValidationAdvisor.ComplianceLevel;
-
-import com.google.inject.Guice;
-import com.google.inject.Injector;
+import com.puppetlabs.geppetto.pp.dsl.validation.ValidationPreference;
 
 /**
  * Setup of PP runtime with overrides for validation service.
@@ -26,15 +36,101 @@ import com.google.inject.Injector;
  */
 public class PPDiagnosticsSetup extends PPStandaloneSetup {
 
+	private static final Map<String, List<PPDiagnosticsSetup>> idleSetups = new HashMap<String, List<PPDiagnosticsSetup>>();
+
+	private static final Comparator<Method> methodNameComparator = new Comparator<Method>() {
+		@Override
+		public int compare(Method a, Method b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
+
+	/**
+	 * Checks out a setup that has already created its injectors for the given <code>complianceLevel</code> and
+	 * problem preferences, or creates a new one if no such setup is idle. The setup is not shared with other callers
+	 * until it is returned using {@link #release(PPDiagnosticsSetup)}. The returned setup must still be registered
+	 * using {@link #createInjectorAndDoEMFRegistration()} but will then reuse its injector.
+	 * 
+	 * @param complianceLevel
+	 *            The compliance level
+	 * @param problemsAdvisor
+	 *            The problems advisor
+	 * @return A setup that is exclusive to the caller until it is released
+	 */
+	public static PPDiagnosticsSetup acquire(IValidationAdvisor.ComplianceLevel complianceLevel,
+			IPotentialProblemsAdvisor problemsAdvisor) {
+		String key = getSetupKey(complianceLevel, problemsAdvisor);
+		synchronized(idleSetups) {
+			List<PPDiagnosticsSetup> idle = idleSetups.get(key);
+			if(idle != null && !idle.isEmpty())
+				return idle.remove(0);
+		}
+		return new PPDiagnosticsSetup(complianceLevel, problemsAdvisor, key);
+	}
+
+	private static String getSetupKey(ComplianceLevel complianceLevel, IPotentialProblemsAdvisor problemsAdvisor) {
+		// The advisor is bound in the injector so its current preferences are part of the key
+		StringBuilder bld = new StringBuilder();
+		bld.append(complianceLevel);
+		Method[] methods = IPotentialProblemsAdvisor.class.getMethods();
+		Arrays.sort(methods, methodNameComparator);
+		for(Method method : methods) {
+			if(method.getParameterTypes().length != 0 || method.getReturnType() != ValidationPreference.class)
+				continue;
+			bld.append(',');
+			bld.append(method.getName());
+			bld.append('=');
+			try {
+				bld.append(method.invoke(problemsAdvisor));
+			}
+			catch(Exception e) {
+				// Not a setup that we can safely share
+				return null;
+			}
+		}
+		return bld.toString();
+	}
+
+	/**
+	 * Returns a setup obtained from {@link #acquire(ComplianceLevel, IPotentialProblemsAdvisor)} so that it can be
+	 * reused by subsequent validations.
+	 * 
+	 * @param setup
+	 *            The setup to return. Can be <code>null</code>.
+	 */
+	public static void release(PPDiagnosticsSetup setup) {
+		if(setup == null || setup.setupKey == null || setup.injector == null)
+			return;
+
+		synchronized(idleSetups) {
+			List<PPDiagnosticsSetup> idle = idleSetups.get(setup.setupKey);
+			if(idle == null) {
+				idle = new LinkedList<PPDiagnosticsSetup>();
+				idleSetups.put(setup.setupKey, idle);
+			}
+			if(!idle.contains(setup))
+				idle.add(setup);
+		}
+	}
+
 	private final ComplianceLevel complianceLevel;
 
 	private IPotentialProblemsAdvisor problemsAdvisor;
 
+	private final String setupKey;
+
+	private Injector injector;
+
 	public PPDiagnosticsSetup(IValidationAdvisor.ComplianceLevel complianceLevel,
 			IPotentialProblemsAdvisor problemsAdvisor) {
+		this(complianceLevel, problemsAdvisor, null);
+	}
+
+	private PPDiagnosticsSetup(IValidationAdvisor.ComplianceLevel complianceLevel,
+			IPotentialProblemsAdvisor problemsAdvisor, String setupKey) {
 		this.complianceLevel = complianceLevel;
 		this.problemsAdvisor = problemsAdvisor;
-
+		this.setupKey = setupKey;
 	}
 
 	@Override
@@ -42,4 +138,22 @@ public class PPDiagnosticsSetup extends PPStandaloneSetup {
 		return Guice.createInjector(getCommonModule(), new PPDiagnosticsModule(complianceLevel, problemsAdvisor));
 	}
 
+	/**
+	 * Creates the injectors on first call. Subsequent calls will just redo the EMF registration of the
+	 * already created injectors since another setup might have replaced them.
+	 */
+	@Override
+	public synchronized Injector createInjectorAndDoEMFRegistration() {
+		if(injector == null) {
+			injector = super.createInjectorAndDoEMFRegistration();
+			return injector;
+		}
+
+		register(injector);
+		IResourceServiceProvider.Registry.INSTANCE.getExtensionToFactoryMap().put(
+			"rb", getPptpRubyInjector().getInstance(IResourceServiceProvider.class));
+		IResourceServiceProvider.Registry.INSTANCE.getExtensionToFactoryMap().put(
+			"pptp", getPptpInjector().getInstance(IResourceServiceProvider.class));
+		return injector;
+	}
 }